@@ -0,0 +1,77 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脚本内容编解码基准测试
+ *
+ * @description 对比script_versions.content各存储格式的编码、解码耗时和存储大小。
+ *              parseJsonText为改为二进制存储前的读取方式（应用的ObjectMapper解析TEXT列的字符串），作为基准；
+ *              decode/encode按format参数走ScriptContentCodec，与类型处理器读写数据库时相同。
+ *              每组参数开始时输出JSON文本和存储格式的字节数
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContentCodecBenchmark {
+
+    /**
+     * 分镜数量：3-6为典型脚本，60和600为超长脚本
+     */
+    @Param({"3", "6", "60", "600"})
+    private int sceneCount;
+
+    @Param({"JSON", "SMILE", "SMILE_LZ4"})
+    private ScriptContentCodec.Format format;
+
+    private ObjectMapper objectMapper;
+    private ScriptContentCodec codec;
+    private ScriptContentDTO content;
+    private String contentJson;
+    private byte[] stored;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new JacksonConfig().objectMapper();
+        content = ScriptFixtures.script(sceneCount, 0);
+        contentJson = objectMapper.writeValueAsString(content);
+        codec = new ScriptContentCodec(format);
+        stored = codec.encode(content);
+        System.out.printf("%nscenes=%d, json=%d bytes, %s=%d bytes%n", sceneCount,
+                contentJson.getBytes(StandardCharsets.UTF_8).length, format, stored.length);
+    }
+
+    /**
+     * 基准：解析TEXT列中的JSON文本
+     */
+    @Benchmark
+    public ScriptContentDTO parseJsonText() throws Exception {
+        return objectMapper.readValue(contentJson, ScriptContentDTO.class);
+    }
+
+    /**
+     * 读取版本时解码存储内容
+     */
+    @Benchmark
+    public ScriptContentDTO decode() {
+        return codec.decode(stored);
+    }
+
+    /**
+     * 保存版本时编码脚本内容
+     */
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(content);
+    }
+}
@@ -0,0 +1,153 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.config.WebClientConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.loadtest.DashScopeStub;
+import com.scriptcraftai.backend.service.AiService;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.service.impl.AiServiceImpl;
+import com.scriptcraftai.backend.service.impl.ModelRouterImpl;
+import com.scriptcraftai.backend.service.impl.PromptTemplateServiceImpl;
+import com.scriptcraftai.backend.util.UsageAttribution;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成方式基准测试
+ *
+ * @description 对比一次请求返回完整脚本（monolithic）与先生成大纲再并发生成各部分（decomposed）
+ *              的端到端耗时。上游为本地通义千问替身，输出速度和首字延迟可调；
+ *              只启动AI调用相关的Bean（并发限制器、线程池、WebClient），不依赖数据库和Redis。
+ *              token用量只在内存中累计，按迭代输出上游调用次数和输入、输出token数（除以generations即每次生成的成本）
+ *              运行：mvn -Pjmh compile exec:exec -Djmh.args="GenerationModeBenchmark"
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class GenerationModeBenchmark {
+
+    @Param({AiService.GENERATION_MODE_MONOLITHIC, AiService.GENERATION_MODE_DECOMPOSED})
+    private String mode;
+
+    /**
+     * 单个请求每秒输出的token数
+     */
+    @Param({"30", "60"})
+    private int tokensPerSecond;
+
+    /**
+     * 首个token的延迟（毫秒），分段生成每个请求都要付出一次
+     */
+    @Param({"500"})
+    private int firstTokenMillis;
+
+    @Param({"6"})
+    private int sceneCount;
+
+    private DashScopeStub stub;
+    private AnnotationConfigApplicationContext context;
+    private AiService aiService;
+    private CountingTokenUsageService tokenUsageService;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = new DashScopeStub(tokensPerSecond, firstTokenMillis, sceneCount);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "tongyi.api-key", "stub",
+                "tongyi.api-url", stub.getUrl(),
+                "tongyi.model", "stub",
+                "scriptcraft.generation.mode", mode,
+                // 固定并发上限，避免自适应限制器在基准中途调整
+                "scriptcraft.ai-limiter.initial-limit", "32",
+                "scriptcraft.ai-limiter.min-limit", "32")));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        tokenUsageService = new CountingTokenUsageService();
+        context.registerBean(TokenUsageService.class, () -> tokenUsageService);
+        context.register(JacksonConfig.class, AsyncConfig.class, WebClientConfig.class, ModelRouterImpl.class,
+                PromptTemplateServiceImpl.class, AiServiceImpl.class);
+        context.refresh();
+        aiService = context.getBean(AiService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+
+    /**
+     * 生成一个完整脚本
+     */
+    @Benchmark
+    public ScriptContentDTO generate(Usage usage) {
+        long calls = tokenUsageService.calls.sum();
+        long inputTokens = tokenUsageService.inputTokens.sum();
+        long outputTokens = tokenUsageService.outputTokens.sum();
+        ScriptContentDTO content = aiService.generateScriptReactive("knowledge", "如何挑选一台适合自己的笔记本电脑",
+                "professional", 0).block();
+        usage.generations++;
+        usage.calls += tokenUsageService.calls.sum() - calls;
+        usage.inputTokens += tokenUsageService.inputTokens.sum() - inputTokens;
+        usage.outputTokens += tokenUsageService.outputTokens.sum() - outputTokens;
+        return content;
+    }
+
+    /**
+     * 每次迭代的上游调用次数和token用量
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Usage {
+        public long generations;
+        public long calls;
+        public long inputTokens;
+        public long outputTokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            generations = 0;
+            calls = 0;
+            inputTokens = 0;
+            outputTokens = 0;
+        }
+    }
+
+    /**
+     * 只在内存中累计token用量
+     */
+    private static class CountingTokenUsageService implements TokenUsageService {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+
+        @Override
+        public void checkQuota(String userId) {
+        }
+
+        @Override
+        public void record(UsageAttribution attribution, String promptVersion, String model, long latencyNanos,
+                           Integer inputTokens, Integer outputTokens) {
+            calls.increment();
+            this.inputTokens.add(inputTokens != null ? inputTokens : 0);
+            this.outputTokens.add(outputTokens != null ? outputTokens : 0);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.util.IdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主键布局插入基准测试
+ *
+ * @description 在与script_versions结构相同的表上对比三种主键布局的插入吞吐：随机UUID存为VARCHAR(36)（原布局）、
+ *              UUIDv7存为VARCHAR(36)（只改变顺序）和UUIDv7存为BINARY(16)（新布局）。
+ *              表中先写入preloadRows行，使索引超出几个页的规模；每次操作按一次生成请求的方式批量插入batchSize行，
+ *              结束时输出表和索引的大小。需要本地MySQL，只读写独立的基准库（默认scriptcraft_ai_bench）
+ *              运行：mvn -Pjmh compile exec:exec -Djmh.args="IdLayoutInsertBenchmark -p jdbcUrl=... -p password=..."
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+public class IdLayoutInsertBenchmark {
+
+    private static final String LAYOUT_VARCHAR_RANDOM = "varchar_random";
+    private static final String LAYOUT_VARCHAR_TIME_ORDERED = "varchar_time_ordered";
+    private static final String LAYOUT_BINARY_TIME_ORDERED = "binary_time_ordered";
+
+    @Param({LAYOUT_VARCHAR_RANDOM, LAYOUT_VARCHAR_TIME_ORDERED, LAYOUT_BINARY_TIME_ORDERED})
+    private String layout;
+
+    @Param({"jdbc:mysql://localhost:3306/scriptcraft_ai_bench?createDatabaseIfNotExist=true&rewriteBatchedStatements=true"})
+    private String jdbcUrl;
+
+    @Param({"root"})
+    private String user;
+
+    @Param({""})
+    private String password;
+
+    /**
+     * 开始计时前已有的行数
+     */
+    @Param({"200000"})
+    private int preloadRows;
+
+    /**
+     * 每次操作插入的行数
+     */
+    @Param({"5"})
+    private int batchSize;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private String table;
+    private String contentJson;
+    private int versionIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        contentJson = new JacksonConfig().objectMapper().writeValueAsString(ScriptFixtures.script(6, 0));
+        table = "bench_script_versions_" + layout;
+        String idType = LAYOUT_BINARY_TIME_ORDERED.equals(layout) ? "BINARY(16)" : "VARCHAR(36)";
+
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " ("
+                    + "id " + idType + " PRIMARY KEY, "
+                    + "session_id " + idType + " NOT NULL, "
+                    + "version_index INT NOT NULL, "
+                    + "title VARCHAR(200) NOT NULL, "
+                    + "content_json TEXT NOT NULL, "
+                    + "is_selected TINYINT DEFAULT 0, "
+                    + "created_at DATETIME DEFAULT CURRENT_TIMESTAMP, "
+                    + "INDEX idx_session_id (session_id), "
+                    + "INDEX idx_created_at (created_at), "
+                    + "INDEX idx_is_selected (is_selected)"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        }
+        insert = connection.prepareStatement("INSERT INTO " + table
+                + " (id, session_id, version_index, title, content_json, created_at) VALUES (?, ?, ?, ?, ?, NOW())");
+
+        for (int inserted = 0; inserted < preloadRows; inserted += 1000) {
+            insertSession(Math.min(1000, preloadRows - inserted));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + table);
+            try (ResultSet rs = statement.executeQuery("SELECT table_rows, data_length, index_length "
+                    + "FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = '" + table + "'")) {
+                if (rs.next()) {
+                    System.out.printf("%n%s: rows≈%d, data=%.1f MB, secondary indexes=%.1f MB%n", layout,
+                            rs.getLong(1), rs.getLong(2) / 1048576.0, rs.getLong(3) / 1048576.0);
+                }
+            }
+            statement.execute("DROP TABLE IF EXISTS " + table);
+        }
+        insert.close();
+        connection.close();
+    }
+
+    /**
+     * 插入一次生成请求的全部版本
+     */
+    @Benchmark
+    public int[] insertVersions() throws SQLException {
+        return insertSession(batchSize);
+    }
+
+    /**
+     * 为同一个会话批量插入版本
+     *
+     * @param rows 行数
+     * @return 各行的影响行数
+     */
+    private int[] insertSession(int rows) throws SQLException {
+        String sessionId = nextId();
+        for (int i = 0; i < rows; i++) {
+            bindId(1, nextId());
+            bindId(2, sessionId);
+            insert.setInt(3, ++versionIndex);
+            insert.setString(4, "普通人也能听懂：三分钟讲清楚一个常见误区");
+            insert.setString(5, contentJson);
+            insert.addBatch();
+        }
+        return insert.executeBatch();
+    }
+
+    private String nextId() {
+        return LAYOUT_VARCHAR_RANDOM.equals(layout) ? IdGenerator.generateUUID() : IdGenerator.generateTimeOrderedId();
+    }
+
+    private void bindId(int index, String id) throws SQLException {
+        if (LAYOUT_BINARY_TIME_ORDERED.equals(layout)) {
+            insert.setBytes(index, IdGenerator.toBinary(id));
+        } else {
+            insert.setString(index, id);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.util.DashScopeResponseParser;
+import com.scriptcraftai.backend.util.ScriptStreamAssembler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI响应解析基准测试
+ *
+ * @description 对比原实现（完整字符串 -> JsonNode树 -> 两次正则 -> 再次解析）与
+ *              增量解析（按网络分片解析响应 -> 在原字符串上跳过markdown标记直接解析）
+ *              的耗时；流式生成时对比流式组装器按增量分片解析与先拼接全部分片再解析（bufferedDeltas）。
+ *              内存分配配合-prof gc查看
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseParseBenchmark {
+
+    // 模拟WebClient的网络分片大小
+    private static final int NETWORK_CHUNK_SIZE = 8192;
+
+    // 模拟通义千问增量输出的分片长度（字符）
+    private static final int DELTA_CHUNK_SIZE = 16;
+
+    /**
+     * 分镜数量：6为典型脚本，2000约为数MB的极端响应
+     */
+    @Param({"6", "2000"})
+    private int sceneCount;
+
+    private ObjectMapper objectMapper;
+    private byte[] responseBytes;
+    private List<String> deltas;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+
+        Map<String, Object> script = new HashMap<>();
+        script.put("title", "iPhone 16 深度测评：值不值得升级？");
+        script.put("alternativeTitles", new String[]{"备选标题1", "备选标题2"});
+        List<Map<String, String>> scenes = new ArrayList<>();
+        for (int i = 0; i < sceneCount; i++) {
+            scenes.add(Map.of(
+                    "timeRange", (i * 10) + "-" + (i * 10 + 10) + "秒",
+                    "visualDescription", "特写镜头展示手机背面的新配色，\"自然光\"下缓慢旋转 #" + i,
+                    "voiceover", "这一代最大的变化其实不在外观，而在你每天都会用到的细节里。",
+                    "subtitle", "变化藏在细节里"));
+        }
+        script.put("scenes", scenes);
+        script.put("videoElements", Map.of("bgmStyle", "轻快电子", "shootingLocation", "室内桌面", "effects", "快切转场"));
+        script.put("endingCTA", new String[]{"关注我", "点赞收藏", "评论区聊聊"});
+
+        // 模型常见输出：说明文字 + markdown代码块 + 多余的结尾
+        String content = "好的，以下是脚本：\n```json\n" + objectMapper.writeValueAsString(script) + "\n```\n希望对你有帮助";
+
+        Map<String, Object> envelope = Map.of(
+                "output", Map.of("choices", List.of(Map.of(
+                        "finish_reason", "stop",
+                        "message", Map.of("role", "assistant", "content", content)))),
+                "usage", Map.of("input_tokens", 512, "output_tokens", 1024),
+                "request_id", "benchmark");
+        responseBytes = objectMapper.writeValueAsBytes(envelope);
+
+        deltas = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += DELTA_CHUNK_SIZE) {
+            deltas.add(content.substring(i, Math.min(content.length(), i + DELTA_CHUNK_SIZE)));
+        }
+    }
+
+    /**
+     * 原实现：先解码为完整字符串，再构建树、正则清理、二次解析
+     */
+    @Benchmark
+    public ScriptContentDTO treeAndRegex() throws Exception {
+        String response = new String(responseBytes, StandardCharsets.UTF_8);
+        JsonNode root = objectMapper.readTree(response);
+        String content = root.at("/output/choices/0/message/content").asText();
+        content = content.replaceAll("```json\\s*", "")
+                .replaceAll("```\\s*", "")
+                .trim();
+        // 原实现遇到前后的说明文字会解析失败，这里截掉以便对比耗时
+        content = content.substring(content.indexOf('{'), content.lastIndexOf('}') + 1);
+        return objectMapper.readValue(content, ScriptContentDTO.class);
+    }
+
+    /**
+     * 新实现：按网络分片增量解析响应，再在原字符串上直接解析脚本
+     */
+    @Benchmark
+    public ScriptContentDTO streamingParser() {
+        DashScopeResponseParser parser = new DashScopeResponseParser(objectMapper.getFactory());
+        for (int i = 0; i < responseBytes.length; i += NETWORK_CHUNK_SIZE) {
+            parser.feed(ByteBuffer.wrap(responseBytes, i, Math.min(NETWORK_CHUNK_SIZE, responseBytes.length - i)));
+        }
+        return ScriptStreamAssembler.parse(objectMapper, parser.endOfInput().getContent());
+    }
+
+    /**
+     * 流式生成的基准：等全部增量分片到齐后拼接，再一次性解析
+     */
+    @Benchmark
+    public ScriptContentDTO bufferedDeltas() {
+        StringBuilder content = new StringBuilder();
+        for (String delta : deltas) {
+            content.append(delta);
+        }
+        return ScriptStreamAssembler.parse(objectMapper, content.toString());
+    }
+
+    /**
+     * 流式生成：按增量分片组装，边接收边产出分镜事件
+     */
+    @Benchmark
+    public ScriptContentDTO streamingAssembler() {
+        ScriptStreamAssembler assembler = new ScriptStreamAssembler(objectMapper);
+        for (String delta : deltas) {
+            assembler.append(delta);
+        }
+        return assembler.finish();
+    }
+}
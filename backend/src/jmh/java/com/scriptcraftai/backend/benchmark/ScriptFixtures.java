@@ -0,0 +1,79 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 基准测试用的脚本数据
+ *
+ * @description 按指定分镜数量生成中文脚本，分镜内容轮换使用几组长度不同的真实文案，避免所有分镜完全相同
+ * @author ScriptCraft AI Team
+ */
+public class ScriptFixtures {
+
+    private static final String[] VISUALS = {
+        "特写镜头展示手机背面的新配色，自然光下缓慢旋转，随后切到手握机身的中景。",
+        "主播坐在书桌前，身后的白板写着今天的三个关键词，镜头从白板缓慢推到主播面部。",
+        "俯拍厨房台面，锅里的油开始冒泡，切好的葱姜蒜依次下锅，画面右下角出现计时器。",
+        "街头随机采访，路人对着镜头回答问题，画面快速切换三位不同年龄的受访者。",
+    };
+
+    private static final String[] VOICEOVERS = {
+        "这一代最大的变化其实不在外观，而在你每天都会用到的细节里，我们一项一项来看。",
+        "很多人以为多喝水就能排毒，其实肾脏每天能处理的水量是有上限的，喝太多反而会增加负担。",
+        "火候是这道菜成败的关键，油温六成热的时候下料，香味才能完全被激发出来，记住这个小技巧。",
+        "你有没有想过，为什么同样的工资，有人存得下钱，有人月底还要借钱？答案就藏在这三个习惯里。",
+    };
+
+    private static final String[] SUBTITLES = {
+        "变化藏在细节里",
+        "多喝水≠排毒",
+        "六成油温是关键",
+        "存钱的三个习惯",
+    };
+
+    /**
+     * 生成脚本内容
+     *
+     * @param sceneCount 分镜数量
+     * @param variant 内容变体，不同变体的文案不同（用于模拟重新生成的结果）
+     * @return 脚本内容
+     */
+    public static ScriptContentDTO script(int sceneCount, int variant) {
+        ScriptContentDTO.SceneDTO[] scenes = new ScriptContentDTO.SceneDTO[sceneCount];
+        int length = Math.max(1, 60 / sceneCount);
+        for (int i = 0; i < sceneCount; i++) {
+            int pick = (i + variant) % VOICEOVERS.length;
+            scenes[i] = new ScriptContentDTO.SceneDTO(
+                    (i * length) + "-" + ((i + 1) * length) + "秒",
+                    VISUALS[pick],
+                    VOICEOVERS[pick],
+                    SUBTITLES[pick]);
+        }
+        return new ScriptContentDTO(
+                "普通人也能听懂：三分钟讲清楚一个常见误区",
+                new String[]{"这个误区，90%的人都中过招", "看完这条视频，你会重新认识它"},
+                scenes,
+                new ScriptContentDTO.VideoElementsDTO(
+                        "轻快的电子乐，节奏随分镜切换逐渐加快",
+                        "明亮的室内桌面，搭配简洁的浅色背景",
+                        "分镜之间使用快切转场，关键数据处加放大特效"),
+                new String[]{"你最在意哪一点？评论区告诉我", "觉得有用就点个赞收藏起来", "关注我，下期继续聊"});
+    }
+
+    /**
+     * 锁定每隔一个分镜（约一半）
+     *
+     * @param sceneCount 分镜数量
+     * @return 锁定的分镜索引
+     */
+    public static Set<Integer> lockedScenes(int sceneCount) {
+        Set<Integer> locked = new HashSet<>();
+        for (int i = 0; i < sceneCount; i += 2) {
+            locked.add(i);
+        }
+        return locked;
+    }
+}
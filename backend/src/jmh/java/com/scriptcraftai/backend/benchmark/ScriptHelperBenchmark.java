@@ -0,0 +1,101 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.service.PromptTemplateService;
+import com.scriptcraftai.backend.service.impl.PromptTemplateServiceImpl;
+import com.scriptcraftai.backend.util.ScriptContents;
+import com.scriptcraftai.backend.util.ScriptPrompts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脚本辅助方法基准测试
+ *
+ * @description 每次生成、编辑、锁定和重新生成都会调用的辅助方法：提示词构建、锁定分镜的读写、
+ *              锁定分镜合并和字数统计。提示词模板和ObjectMapper与应用使用同一套配置
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScriptHelperBenchmark {
+
+    /**
+     * 分镜数量：3-6为典型脚本，60和600为超长脚本
+     */
+    @Param({"3", "6", "60", "600"})
+    private int sceneCount;
+
+    private AnnotationConfigApplicationContext context;
+    private PromptTemplateService promptTemplateService;
+    private ObjectMapper objectMapper;
+
+    private ScriptContentDTO original;
+    private ScriptContentDTO regenerated;
+    private Set<Integer> lockedScenes;
+    private String lockedScenesJson;
+
+    @Setup
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(JacksonConfig.class, PromptTemplateServiceImpl.class);
+        promptTemplateService = context.getBean(PromptTemplateService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        original = ScriptFixtures.script(sceneCount, 0);
+        regenerated = ScriptFixtures.script(sceneCount, 1);
+        lockedScenes = ScriptFixtures.lockedScenes(sceneCount);
+        lockedScenesJson = ScriptContents.formatLockedScenes(objectMapper, lockedScenes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 生成提示词（与分镜数量无关）
+     */
+    @Benchmark
+    public String buildPrompt() {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_SCRIPT, Map.of("requirements",
+                ScriptPrompts.requirements("knowledge", "三分钟讲清楚为什么多喝水不等于排毒", "professional", 1)));
+    }
+
+    /**
+     * 重新生成提示词
+     */
+    @Benchmark
+    public String buildRegenerationPrompt() {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_REGENERATION, Map.of(
+                "title", original.getTitle(),
+                "scenes", ScriptPrompts.regenerationScenes(original, lockedScenes)));
+    }
+
+    @Benchmark
+    public Set<Integer> parseLockedScenes() {
+        return ScriptContents.parseLockedScenes(objectMapper, lockedScenesJson);
+    }
+
+    @Benchmark
+    public String formatLockedScenes() {
+        return ScriptContents.formatLockedScenes(objectMapper, lockedScenes);
+    }
+
+    @Benchmark
+    public ScriptContentDTO mergeContentWithLocks() {
+        return ScriptContents.mergeContentWithLocks(original, regenerated, lockedScenes);
+    }
+
+    @Benchmark
+    public int calculateWordCount() {
+        return ScriptContents.calculateWordCount(original);
+    }
+}
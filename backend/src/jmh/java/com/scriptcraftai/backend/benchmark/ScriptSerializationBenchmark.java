@@ -0,0 +1,89 @@
+package com.scriptcraftai.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.util.JsonRepair;
+import com.scriptcraftai.backend.util.ScriptStreamAssembler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脚本序列化基准测试
+ *
+ * @description 使用应用配置的ObjectMapper（JacksonConfig）序列化和反序列化脚本内容（保存版本、读取详情），
+ *              以及解析AI输出：格式正确时的严格解析，和被截断、混入中文引号时先修复再解析的路径
+ * @author ScriptCraft AI Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScriptSerializationBenchmark {
+
+    /**
+     * 分镜数量：3-6为典型脚本，60和600为超长脚本
+     */
+    @Param({"3", "6", "60", "600"})
+    private int sceneCount;
+
+    private ObjectMapper objectMapper;
+    private ScriptContentDTO content;
+    private String contentJson;
+    private String response;
+    private String malformedResponse;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new JacksonConfig().objectMapper();
+        content = ScriptFixtures.script(sceneCount, 0);
+        contentJson = objectMapper.writeValueAsString(content);
+
+        // 模型常见输出：说明文字 + markdown代码块 + 多余的结尾
+        response = "好的，以下是脚本：\n```json\n" + objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(content) + "\n```\n希望对你有帮助";
+
+        // 字段名使用中文引号，并在最后一个分镜中途截断
+        String truncated = contentJson.substring(0, contentJson.lastIndexOf("\"voiceover\""));
+        malformedResponse = "```json\n" + truncated.replaceFirst("\"title\"", "“title”");
+    }
+
+    /**
+     * 保存版本时序列化脚本内容
+     */
+    @Benchmark
+    public String serialize() throws Exception {
+        return objectMapper.writeValueAsString(content);
+    }
+
+    /**
+     * 读取详情、重新生成时反序列化脚本内容
+     */
+    @Benchmark
+    public ScriptContentDTO deserialize() throws Exception {
+        return objectMapper.readValue(contentJson, ScriptContentDTO.class);
+    }
+
+    /**
+     * 解析格式正确的AI输出（跳过markdown标记和说明文字）
+     */
+    @Benchmark
+    public ScriptContentDTO parseResponse() throws Exception {
+        return ScriptStreamAssembler.read(objectMapper, response, ScriptContentDTO.class);
+    }
+
+    /**
+     * 严格解析失败后修复再解析
+     */
+    @Benchmark
+    public ScriptContentDTO parseResponseRepaired() throws Exception {
+        try {
+            return ScriptStreamAssembler.read(objectMapper, malformedResponse, ScriptContentDTO.class);
+        } catch (Exception e) {
+            return ScriptStreamAssembler.read(objectMapper, JsonRepair.repair(malformedResponse).json(),
+                    ScriptContentDTO.class);
+        }
+    }
+}
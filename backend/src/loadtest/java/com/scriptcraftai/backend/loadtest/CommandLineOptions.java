@@ -0,0 +1,45 @@
+package com.scriptcraftai.backend.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令行参数
+ *
+ * @description 解析 --name=value 形式的参数，未提供的参数使用默认值
+ * @author ScriptCraft AI Team
+ */
+public class CommandLineOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param args 命令行参数
+     * @throws IllegalArgumentException 参数不是 --name=value 形式时抛出
+     */
+    public CommandLineOptions(String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,293 @@
+package com.scriptcraftai.backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 本地通义千问替身
+ *
+ * @description 兼容通义千问文本生成接口（普通响应和X-DashScope-SSE增量输出），按提示词要求的JSON格式返回固定内容，
+ *              也可用文件指定完整脚本的内容。响应时间 = 首字延迟 + 输出字数 / 每秒输出字数，首字延迟服从
+ *              以配置值为中位数的对数正态分布；可按比例注入429限流和500错误。用于在没有网络和API Key的环境下
+ *              做基准测试和端到端压测。中文内容按一个字约一个token估算
+ * @author ScriptCraft AI Team
+ */
+public class DashScopeStub implements AutoCloseable {
+
+    private static final String VOICEOVER = "这一代最大的变化其实不在外观，而在你每天都会用到的细节里，我们一项一项来看。";
+    private static final String VISUAL = "特写镜头展示产品细节，自然光下缓慢旋转，随后切到实际使用场景。";
+
+    // 流式输出时每个分片的字数
+    private static final int STREAM_CHUNK_CHARS = 8;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Settings settings;
+    private final Object cannedScript;
+
+    /**
+     * 替身配置
+     *
+     * @param port 监听端口，0为随机端口
+     * @param tokensPerSecond 每个请求每秒输出的token数
+     * @param firstTokenMillis 首个token延迟的中位数（毫秒）
+     * @param latencyJitter 首个token延迟的离散程度（对数正态分布的sigma），0为固定延迟
+     * @param throttleRate 返回429限流的比例（0-1）
+     * @param errorRate 返回500错误的比例（0-1）
+     * @param sceneCount 返回的分镜数量
+     * @param scriptFile 完整脚本内容的JSON文件（ScriptContentDTO格式），为null时使用内置内容
+     */
+    public record Settings(int port, int tokensPerSecond, int firstTokenMillis, double latencyJitter,
+                           double throttleRate, double errorRate, int sceneCount, String scriptFile) {
+    }
+
+    /**
+     * 构造函数（随机端口、固定延迟、不注入错误）
+     *
+     * @param tokensPerSecond 每个请求每秒输出的token数
+     * @param firstTokenMillis 首个token的延迟（毫秒）
+     * @param sceneCount 返回的分镜数量
+     * @throws IOException 端口监听失败
+     */
+    public DashScopeStub(int tokensPerSecond, int firstTokenMillis, int sceneCount) throws IOException {
+        this(new Settings(0, tokensPerSecond, firstTokenMillis, 0, 0, 0, sceneCount, null));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param settings 替身配置
+     * @throws IOException 端口监听失败或脚本文件读取失败
+     */
+    public DashScopeStub(Settings settings) throws IOException {
+        this.settings = settings;
+        this.cannedScript = settings.scriptFile() != null
+                ? objectMapper.readValue(new File(settings.scriptFile()), Object.class) : null;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.port()), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * 独立运行替身
+     *
+     * @description 参数：--port（默认18080）、--tokens-per-second（默认40）、--first-token-millis（默认800）、
+     *              --latency-jitter（默认0.3）、--throttle-rate、--error-rate（默认0）、--scene-count（默认6）、
+     *              --script-file
+     * @param args 命令行参数
+     * @throws Exception 启动失败
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        DashScopeStub stub = new DashScopeStub(new Settings(
+                options.getInt("port", 18080),
+                options.getInt("tokens-per-second", 40),
+                options.getInt("first-token-millis", 800),
+                options.getDouble("latency-jitter", 0.3),
+                options.getDouble("throttle-rate", 0),
+                options.getDouble("error-rate", 0),
+                options.getInt("scene-count", 6),
+                options.getString("script-file", null)));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.close();
+            stopped.countDown();
+        }));
+        System.out.println("通义千问替身已启动: " + stub.getUrl());
+        stopped.await();
+    }
+
+    /**
+     * 获取替身的接口地址
+     *
+     * @return 接口地址
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/generation";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            // 连接预热等非POST请求直接返回
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String prompt = request.at("/input/messages/0/content").asText();
+
+            double draw = ThreadLocalRandom.current().nextDouble();
+            if (draw < settings.throttleRate()) {
+                sendError(exchange, 429, "Throttling.RateQuota", "Requests rate limit exceeded, please try again later.");
+                return;
+            }
+            if (draw < settings.throttleRate() + settings.errorRate()) {
+                sendError(exchange, 500, "InternalError", "Injected error from stub.");
+                return;
+            }
+
+            String content = objectMapper.writeValueAsString(respond(prompt));
+            Thread.sleep(firstTokenDelayMillis());
+            if ("enable".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-DashScope-SSE"))) {
+                stream(exchange, prompt, content);
+            } else {
+                // 模拟逐token输出的耗时
+                Thread.sleep(content.length() * 1000L / settings.tokensPerSecond());
+                sendJson(exchange, 200, envelope(content, "stop", prompt.length(), content.length()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 以SSE增量输出返回内容，按每秒输出字数逐个分片发送
+     *
+     * @param exchange HTTP交换
+     * @param prompt 提示词
+     * @param content 完整内容
+     * @throws IOException 客户端断开
+     * @throws InterruptedException 替身关闭
+     */
+    private void stream(HttpExchange exchange, String prompt, String content) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        long chunkMillis = STREAM_CHUNK_CHARS * 1000L / settings.tokensPerSecond();
+        try (OutputStream out = exchange.getResponseBody()) {
+            int id = 0;
+            for (int start = 0; start < content.length(); start += STREAM_CHUNK_CHARS) {
+                int end = Math.min(content.length(), start + STREAM_CHUNK_CHARS);
+                boolean last = end == content.length();
+                Map<String, Object> chunk = envelope(content.substring(start, end), last ? "stop" : "null",
+                        prompt.length(), end);
+                String event = "id:" + (++id) + "\nevent:result\ndata:" + objectMapper.writeValueAsString(chunk) + "\n\n";
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (!last) {
+                    Thread.sleep(chunkMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * 首个token的延迟：以配置值为中位数的对数正态分布
+     *
+     * @return 延迟（毫秒）
+     */
+    private long firstTokenDelayMillis() {
+        double jitter = settings.latencyJitter() > 0
+                ? Math.exp(settings.latencyJitter() * ThreadLocalRandom.current().nextGaussian()) : 1;
+        return Math.round(settings.firstTokenMillis() * jitter);
+    }
+
+    private Map<String, Object> envelope(String content, String finishReason, int inputTokens, int outputTokens) {
+        return Map.of(
+                "output", Map.of("choices", List.of(Map.of(
+                        "finish_reason", finishReason,
+                        "message", Map.of("role", "assistant", "content", content)))),
+                "usage", Map.of("input_tokens", inputTokens, "output_tokens", outputTokens),
+                "request_id", "stub");
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        sendJson(exchange, status, Map.of("code", code, "message", message, "request_id", "stub"));
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 按提示词中要求的JSON字段决定返回内容
+     *
+     * @param prompt 提示词
+     * @return 生成内容
+     */
+    private Object respond(String prompt) {
+        int sceneCount = settings.sceneCount();
+        if (prompt.contains("\"point\"")) {
+            List<Map<String, String>> points = new ArrayList<>();
+            for (int i = 0; i < sceneCount; i++) {
+                points.add(Map.of("timeRange", timeRange(i), "point", "第" + (i + 1) + "部分：讲清一个关键差异和它的实际影响"));
+            }
+            return Map.of("title", "值不值得升级？看完这几点再决定", "scenes", points);
+        }
+        if (prompt.contains("\"scenes\"")) {
+            if (cannedScript != null) {
+                return cannedScript;
+            }
+            List<Map<String, String>> scenes = new ArrayList<>();
+            for (int i = 0; i < sceneCount; i++) {
+                scenes.add(scene(i));
+            }
+            return Map.of(
+                    "title", "值不值得升级？看完这几点再决定",
+                    "alternativeTitles", extras().get("alternativeTitles"),
+                    "scenes", scenes,
+                    "videoElements", videoElements(),
+                    "endingCTA", extras().get("endingCTA"));
+        }
+        if (prompt.contains("\"bgmStyle\"")) {
+            return videoElements();
+        }
+        if (prompt.contains("\"endingCTA\"")) {
+            return extras();
+        }
+        Map<String, String> scene = new HashMap<>(scene(0));
+        scene.remove("timeRange");
+        return scene;
+    }
+
+    private Map<String, String> scene(int index) {
+        return Map.of("timeRange", timeRange(index), "visualDescription", VISUAL,
+                "voiceover", VOICEOVER, "subtitle", "变化藏在细节里");
+    }
+
+    private Map<String, String> videoElements() {
+        return Map.of("bgmStyle", "轻快的电子乐，节奏随分镜切换逐渐加快",
+                "shootingLocation", "明亮的室内桌面，搭配简洁的浅色背景",
+                "effects", "分镜之间使用快切转场，关键数据处加放大特效");
+    }
+
+    private Map<String, Object> extras() {
+        return Map.of("alternativeTitles", List.of("升级之前，先看这几个细节", "这几点决定了你要不要换"),
+                "endingCTA", List.of("你最在意哪一点？评论区告诉我", "觉得有用就点个赞收藏起来", "关注我，下期带你实测续航"));
+    }
+
+    private String timeRange(int index) {
+        int length = 60 / settings.sceneCount();
+        return (index * length) + "-" + ((index + 1) * length) + "秒";
+    }
+}
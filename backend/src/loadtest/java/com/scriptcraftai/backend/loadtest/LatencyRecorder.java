@@ -0,0 +1,103 @@
+package com.scriptcraftai.backend.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按操作记录耗时和错误
+ *
+ * @description 保存每次成功调用的耗时，结束后计算吞吐量和p50/p95/p99；错误按原因计数，不计入耗时分布。线程安全
+ * @author ScriptCraft AI Team
+ */
+public class LatencyRecorder {
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次成功调用
+     *
+     * @param operation 操作名称
+     * @param latencyNanos 耗时（纳秒）
+     */
+    public void recordSuccess(String operation, long latencyNanos) {
+        Operation stats = operation(operation);
+        synchronized (stats) {
+            stats.latencies.add(latencyNanos);
+        }
+    }
+
+    /**
+     * 记录一次失败调用
+     *
+     * @param operation 操作名称
+     * @param reason 失败原因（HTTP状态码、业务码或异常类型）
+     */
+    public void recordError(String operation, String reason) {
+        operation(operation).errors.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * 输出各操作的统计结果
+     *
+     * @param out 输出流
+     * @param elapsedNanos 压测持续时间（纳秒）
+     */
+    public void report(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%-12s %8s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "ok", "errors", "ok/s", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        Map<String, String> errorDetails = new TreeMap<>();
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            Operation stats = entry.getValue();
+            long[] sorted;
+            synchronized (stats) {
+                sorted = stats.latencies.stream().mapToLong(Long::longValue).toArray();
+            }
+            Arrays.sort(sorted);
+            long errors = stats.errors.values().stream().mapToLong(LongAdder::sum).sum();
+            out.printf("%-12s %8d %8d %10.2f %10.1f %10.1f %10.1f %10.1f%n",
+                    entry.getKey(), sorted.length, errors, sorted.length / seconds,
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.95)),
+                    millis(percentile(sorted, 0.99)), millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+            if (errors > 0) {
+                errorDetails.put(entry.getKey(), stats.errors.toString());
+            }
+        }
+        errorDetails.forEach((operation, reasons) -> out.println("errors " + operation + ": " + reasons));
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, key -> new Operation());
+    }
+
+    /**
+     * 最近秩法计算分位数
+     *
+     * @param sorted 升序排列的耗时
+     * @param quantile 分位（0-1）
+     * @return 分位数，没有样本时为0
+     */
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class Operation {
+        private final List<Long> latencies = new ArrayList<>();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
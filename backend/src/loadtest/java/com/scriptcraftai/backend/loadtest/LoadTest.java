@@ -0,0 +1,278 @@
+package com.scriptcraftai.backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端压测
+ *
+ * @description 先注册并登录一批用户，然后按固定速率（开环，不等待上一个流程结束）启动用户流程：
+ *              提交生成任务并轮询到完成、查看详情、编辑、锁定第一个分镜、重新生成、查看历史。
+ *              主题从固定大小的主题池中随机选取，主题池越小缓存命中越多。结束后按操作输出吞吐量和p50/p95/p99。
+ *              配合通义千问替身（DashScopeStub）即可在没有网络和API Key的环境下运行
+ * @author ScriptCraft AI Team
+ */
+public class LoadTest {
+
+    private static final String VIDEO_TYPE = "knowledge";
+    private static final String PASSWORD = "loadtest123";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final HttpClient httpClient;
+
+    private final String baseUrl;
+    private final double rps;
+    private final int durationSeconds;
+    private final int users;
+    private final int themePool;
+    private final int variants;
+    private final int maxInFlight;
+    private final long pollMillis;
+    private final long jobTimeoutMillis;
+    private final Set<String> steps;
+
+    private final List<String> tokens = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong completedFlows = new AtomicLong();
+    private final AtomicLong failedFlows = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param options 命令行参数
+     */
+    public LoadTest(CommandLineOptions options) {
+        this.baseUrl = options.getString("base-url", "http://localhost:8080/api");
+        this.rps = options.getDouble("rps", 1);
+        this.durationSeconds = options.getInt("duration-seconds", 60);
+        this.users = options.getInt("users", 10);
+        this.themePool = options.getInt("theme-pool", 50);
+        this.variants = options.getInt("variants", 1);
+        this.maxInFlight = options.getInt("max-in-flight", 200);
+        this.pollMillis = options.getInt("poll-millis", 500);
+        this.jobTimeoutMillis = TimeUnit.SECONDS.toMillis(options.getInt("job-timeout-seconds", 180));
+        this.steps = Set.of(options.getString("steps", "detail,edit,lock,regenerate,history").split(","));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+    }
+
+    /**
+     * 运行压测
+     *
+     * @description 参数：--base-url（默认http://localhost:8080/api）、--rps（每秒启动的流程数，默认1）、
+     *              --duration-seconds（默认60）、--users（默认10）、--theme-pool（默认50）、--variants（默认1）、
+     *              --max-in-flight（同时进行的流程上限，超出时跳过，默认200）、--poll-millis（默认500）、
+     *              --job-timeout-seconds（默认180）、--steps（生成之后的步骤，默认detail,edit,lock,regenerate,history）
+     * @param args 命令行参数
+     * @throws Exception 压测失败
+     */
+    public static void main(String[] args) throws Exception {
+        new LoadTest(new CommandLineOptions(args)).run();
+    }
+
+    private void run() throws InterruptedException {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < users; i++) {
+            String email = "lt-" + runId + "-" + i + "@loadtest.local";
+            try {
+                call("register", "POST", "/auth/register", Map.of("email", email, "password", PASSWORD,
+                        "nickname", "压测用户" + i), null, null);
+                JsonNode login = call("login", "POST", "/auth/login",
+                        Map.of("email", email, "password", PASSWORD), null, null);
+                tokens.add(login.at("/data/token").asText());
+            } catch (LoadTestException e) {
+                System.err.println("准备用户失败: " + email + ", " + e.getMessage());
+            }
+        }
+        if (tokens.isEmpty()) {
+            System.err.println("没有可用的用户，压测终止");
+            return;
+        }
+        System.out.printf("开始压测: users=%d, rps=%.2f, duration=%ds, themePool=%d%n",
+                tokens.size(), rps, durationSeconds, themePool);
+
+        ExecutorService flows = Executors.newCachedThreadPool();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long startedAt = System.nanoTime();
+        scheduler.scheduleAtFixedRate(() -> {
+            if (inFlight.get() >= maxInFlight) {
+                skipped.incrementAndGet();
+                return;
+            }
+            inFlight.incrementAndGet();
+            flows.execute(() -> {
+                try {
+                    runFlow();
+                    completedFlows.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failedFlows.incrementAndGet();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }, 0, Math.max(1, Math.round(1e9 / rps)), TimeUnit.NANOSECONDS);
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        scheduler.shutdownNow();
+        // 等待已启动的流程结束
+        flows.shutdown();
+        if (!flows.awaitTermination(jobTimeoutMillis * 2, TimeUnit.MILLISECONDS)) {
+            flows.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - startedAt;
+
+        System.out.printf("%n流程: completed=%d, failed=%d, skipped=%d, %.2f flows/s, elapsed=%.1fs%n%n",
+                completedFlows.get(), failedFlows.get(), skipped.get(),
+                completedFlows.get() / (elapsed / 1e9), elapsed / 1e9);
+        recorder.report(System.out, elapsed);
+        System.exit(0);
+    }
+
+    /**
+     * 执行一个用户流程，任一步骤失败时结束该流程
+     */
+    private void runFlow() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String token = tokens.get(random.nextInt(tokens.size()));
+        String theme = "压测主题" + random.nextInt(themePool) + "：三分钟讲清楚一个常见的科普误区";
+
+        long submittedAt = System.nanoTime();
+        JsonNode submitted = call("generate", "POST", "/scripts/generate", Map.of("videoType", VIDEO_TYPE,
+                "themeInput", theme, "stylePreference", "professional", "variants", variants), token, null);
+        String jobId = submitted.at("/data/jobId").asText();
+        JsonNode job = awaitJob(jobId, token);
+        recorder.recordSuccess("job", System.nanoTime() - submittedAt);
+        String versionId = job.at("/result/versions/0/versionId").asText();
+
+        JsonNode content = null;
+        if (steps.contains("detail") || steps.contains("edit")) {
+            content = call("detail", "GET", "/scripts/versions/" + versionId, null, token, null).at("/data/content");
+        }
+        if (steps.contains("edit") && content instanceof ObjectNode editable && editable.at("/scenes/0").isObject()) {
+            ObjectNode scene = (ObjectNode) editable.at("/scenes/0");
+            scene.put("voiceover", scene.path("voiceover").asText() + "（已编辑）");
+            call("edit", "PUT", "/scripts/versions/" + versionId, Map.of("content", editable), token, null);
+        }
+        if (steps.contains("lock")) {
+            call("lock", "POST", "/scripts/versions/" + versionId + "/scenes/0/lock?locked=true", null, token, null);
+        }
+        if (steps.contains("regenerate")) {
+            call("regenerate", "POST", "/scripts/versions/" + versionId + "/regenerate?mode=scene", null, token,
+                    UUID.randomUUID().toString());
+        }
+        if (steps.contains("history")) {
+            call("history", "GET", "/scripts/sessions?page=1&pageSize=10", null, token, null);
+        }
+    }
+
+    /**
+     * 轮询生成任务直到结束
+     *
+     * @param jobId 任务ID
+     * @param token 登录令牌
+     * @return 成功的任务
+     */
+    private JsonNode awaitJob(String jobId, String token) {
+        long deadline = System.currentTimeMillis() + jobTimeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            JsonNode job = call("poll", "GET", "/scripts/jobs/" + jobId, null, token, null).path("data");
+            String status = job.path("status").asText();
+            if ("succeeded".equals(status)) {
+                return job;
+            }
+            if ("failed".equals(status)) {
+                recorder.recordError("job", "failed");
+                throw new LoadTestException("生成任务失败: " + job.path("errorMessage").asText());
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LoadTestException("压测已停止");
+            }
+        }
+        recorder.recordError("job", "timeout");
+        throw new LoadTestException("生成任务超时: " + jobId);
+    }
+
+    /**
+     * 调用一个接口并记录耗时
+     *
+     * @param operation 操作名称
+     * @param method HTTP方法
+     * @param path 接口路径（不含base-url）
+     * @param body 请求体，为null时不发送
+     * @param token 登录令牌，为null时不携带
+     * @param idempotencyKey 幂等键，为null时不携带
+     * @return 响应体
+     */
+    private JsonNode call(String operation, String method, String path, Object body, String token,
+                          String idempotencyKey) {
+        long startedAt = System.nanoTime();
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofMillis(jobTimeoutMillis))
+                    .header("Content-Type", "application/json")
+                    .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            if (token != null) {
+                request.header("Authorization", "Bearer " + token);
+            }
+            if (idempotencyKey != null) {
+                request.header("Idempotency-Key", idempotencyKey);
+            }
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long latency = System.nanoTime() - startedAt;
+            if (response.statusCode() >= 300) {
+                recorder.recordError(operation, "http_" + response.statusCode());
+                throw new LoadTestException(operation + " 返回HTTP " + response.statusCode());
+            }
+            JsonNode result = objectMapper.readTree(response.body());
+            if (!result.path("success").asBoolean(false)) {
+                recorder.recordError(operation, "code_" + result.path("code").asText());
+                throw new LoadTestException(operation + " 失败: " + result.path("message").asText());
+            }
+            recorder.recordSuccess(operation, latency);
+            return result;
+        } catch (IOException e) {
+            recorder.recordError(operation, e.getClass().getSimpleName());
+            throw new LoadTestException(operation + " 调用失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadTestException("压测已停止");
+        }
+    }
+
+    /**
+     * 单个步骤失败，结束当前流程
+     */
+    private static class LoadTestException extends RuntimeException {
+        private LoadTestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.scriptcraftai.backend;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * ScriptCraft AI 应用启动类
@@ -12,6 +13,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  */
 @SpringBootApplication
 @MapperScan("com.scriptcraftai.backend.mapper")
+@EnableScheduling
 public class ScriptCraftAiApplication {
 
     public static void main(String[] args) {
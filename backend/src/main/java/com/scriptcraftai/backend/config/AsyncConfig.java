@@ -1,16 +1,207 @@
 package com.scriptcraftai.backend.config;
 
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 异步配置类
- * 
- * @description 启用异步支持
+ *
+ * @description 启用异步支持，为生成编排和AI调用两个阶段分别配置有界线程池及对应的Reactor调度器，
+ *              队列满时按429/503拒绝，并上报队列深度、活跃线程数和排队等待时间
  * @author ScriptCraft AI Team
  */
+@Slf4j
 @Configuration
 @EnableAsync
-public class AsyncConfig {
-}
+public class AsyncConfig implements AsyncConfigurer {
+
+    /**
+     * 生成编排线程池：保存会话/版本、组装结果
+     */
+    public static final String GENERATION_EXECUTOR = "generationExecutor";
+
+    /**
+     * AI调用线程池：等待通义千问响应
+     */
+    public static final String AI_IO_EXECUTOR = "aiIoExecutor";
+
+    /**
+     * 基于生成编排线程池的Reactor调度器（响应式链路中的数据库操作）
+     */
+    public static final String GENERATION_SCHEDULER = "generationScheduler";
+
+    /**
+     * 基于AI调用线程池的Reactor调度器（解析AI响应）
+     */
+    public static final String AI_IO_SCHEDULER = "aiIoScheduler";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${scriptcraft.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${scriptcraft.executor.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${scriptcraft.executor.generation.core-size:8}")
+    private int generationCoreSize;
+
+    @Value("${scriptcraft.executor.generation.max-size:16}")
+    private int generationMaxSize;
+
+    @Value("${scriptcraft.executor.generation.queue-capacity:100}")
+    private int generationQueueCapacity;
+
+    @Value("${scriptcraft.executor.ai-io.core-size:16}")
+    private int aiIoCoreSize;
 
+    @Value("${scriptcraft.executor.ai-io.max-size:32}")
+    private int aiIoMaxSize;
+
+    @Value("${scriptcraft.executor.ai-io.queue-capacity:200}")
+    private int aiIoQueueCapacity;
+
+    /**
+     * 生成编排线程池
+     *
+     * @return 线程池（队列满时返回429）
+     */
+    @Bean(GENERATION_EXECUTOR)
+    public ThreadPoolTaskExecutor generationExecutor() {
+        return buildExecutor(GENERATION_EXECUTOR, generationCoreSize, generationMaxSize,
+                generationQueueCapacity, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    /**
+     * AI调用线程池
+     *
+     * @return 线程池（队列满时返回503）
+     */
+    @Bean(AI_IO_EXECUTOR)
+    public ThreadPoolTaskExecutor aiIoExecutor() {
+        return buildExecutor(AI_IO_EXECUTOR, aiIoCoreSize, aiIoMaxSize,
+                aiIoQueueCapacity, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * 生成编排调度器
+     *
+     * @return Reactor调度器
+     */
+    @Bean(GENERATION_SCHEDULER)
+    public Scheduler generationScheduler() {
+        return Schedulers.fromExecutor(generationExecutor());
+    }
+
+    /**
+     * AI调用调度器
+     *
+     * @return Reactor调度器
+     */
+    @Bean(AI_IO_SCHEDULER)
+    public Scheduler aiIoScheduler() {
+        return Schedulers.fromExecutor(aiIoExecutor());
+    }
+
+    /**
+     * 未指定线程池的@Async方法使用生成编排线程池
+     *
+     * @return 默认异步执行器
+     */
+    @Override
+    public Executor getAsyncExecutor() {
+        return generationExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return new SimpleAsyncUncaughtExceptionHandler();
+    }
+
+    /**
+     * 构建有界线程池并注册监控指标
+     *
+     * @param name 线程池名称
+     * @param coreSize 核心线程数
+     * @param maxSize 最大线程数
+     * @param queueCapacity 队列容量
+     * @param rejectStatus 拒绝时返回的HTTP状态
+     * @return 线程池
+     */
+    private ThreadPoolTaskExecutor buildExecutor(String name, int coreSize, int maxSize,
+                                                 int queueCapacity, HttpStatus rejectStatus) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        if (virtualThreads) {
+            // 虚拟线程创建成本低，直接按最大并发数保留，队列和拒绝策略保持不变（需JDK 21）
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory());
+            executor.setCorePoolSize(maxSize);
+            executor.setMaxPoolSize(maxSize);
+            executor.setAllowCoreThreadTimeOut(true);
+        } else {
+            executor.setCorePoolSize(coreSize);
+            executor.setMaxPoolSize(maxSize);
+        }
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        // 提交时记录时间，开始执行时上报排队等待时间
+        Timer waitTimer = Timer.builder("scriptcraft.executor.wait")
+                .description("任务排队等待时间")
+                .tag("executor", name)
+                .register(meterRegistry);
+        executor.setTaskDecorator(task -> {
+            long submittedAt = System.nanoTime();
+            return () -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                task.run();
+            };
+        });
+
+        Counter rejectedCounter = Counter.builder("scriptcraft.executor.rejected")
+                .description("队列已满被拒绝的任务数")
+                .tag("executor", name)
+                .register(meterRegistry);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejectedCounter.increment();
+            log.warn("线程池已满，拒绝任务: executor={}, active={}, queued={}",
+                    name, pool.getActiveCount(), pool.getQueue().size());
+            throw new ServiceOverloadedException(rejectStatus.value(), "当前生成请求较多，请稍后重试", retryAfterSeconds);
+        });
+
+        Gauge.builder("scriptcraft.executor.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("排队中的任务数")
+                .tag("executor", name)
+                .register(meterRegistry);
+        Gauge.builder("scriptcraft.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("正在执行任务的线程数")
+                .tag("executor", name)
+                .register(meterRegistry);
+
+        log.info("初始化线程池: name={}, core={}, max={}, queue={}, virtualThreads={}",
+                name, executor.getCorePoolSize(), executor.getMaxPoolSize(), queueCapacity, virtualThreads);
+        return executor;
+    }
+}
@@ -0,0 +1,50 @@
+package com.scriptcraftai.backend.config;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.mapper.handler.BinaryIdTypeHandler;
+import com.scriptcraftai.backend.mapper.handler.ScriptContentTypeHandler;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.mybatis.spring.boot.autoconfigure.ConfigurationCustomizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MyBatis配置类
+ *
+ * @description 注册类型处理器：字符串ID与BINARY(16)的转换，以及脚本内容的编解码。
+ *              脚本内容的写入格式由scriptcraft.content.format配置，通过构造参数传给类型处理器
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Configuration
+public class MyBatisConfig {
+
+    /**
+     * 脚本内容编解码器
+     *
+     * @param format 写入格式：smile_lz4（默认）、smile、json（可读文本，排查用）
+     * @return 编解码器
+     */
+    @Bean
+    public ScriptContentCodec scriptContentCodec(
+            @Value("${scriptcraft.content.format:smile_lz4}") ScriptContentCodec.Format format) {
+        log.info("脚本内容写入格式: {}", format);
+        return new ScriptContentCodec(format);
+    }
+
+    /**
+     * 注册类型处理器
+     *
+     * @param codec 脚本内容编解码器
+     * @return MyBatis配置定制器
+     */
+    @Bean
+    public ConfigurationCustomizer typeHandlerCustomizer(ScriptContentCodec codec) {
+        return configuration -> {
+            configuration.getTypeHandlerRegistry().register(new BinaryIdTypeHandler());
+            configuration.getTypeHandlerRegistry().register(ScriptContentDTO.class, new ScriptContentTypeHandler(codec));
+        };
+    }
+}
@@ -1,30 +1,294 @@
 package com.scriptcraftai.backend.config;
 
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.util.AdaptiveConcurrencyLimiter;
+import com.scriptcraftai.backend.util.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.PrematureCloseException;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * WebClient配置类
  * 
- * @description 配置用于调用外部API的WebClient
+ * @description 配置通义千问专用的连接池和WebClient，以及通义千问调用的自适应并发限制和熔断
  * @author ScriptCraft AI Team
  */
+@Slf4j
 @Configuration
 public class WebClientConfig {
 
     /**
-     * 创建WebClient实例
+     * 通义千问调用的并发限制器名称
+     */
+    public static final String TONGYI_LIMITER = "tongyiConcurrencyLimiter";
+
+    /**
+     * 通义千问调用的熔断器名称
+     */
+    public static final String TONGYI_CIRCUIT_BREAKER = "tongyiCircuitBreaker";
+
+    /**
+     * 通义千问专用的HttpClient名称（连接预热使用）
+     */
+    public static final String TONGYI_HTTP_CLIENT = "tongyiHttpClient";
+
+    /**
+     * 通义千问专用的WebClient名称
+     */
+    public static final String TONGYI_WEB_CLIENT = "tongyiWebClient";
+
+    @Value("${tongyi.api-url}")
+    private String apiUrl;
+
+    @Value("${scriptcraft.ai-http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${scriptcraft.ai-http.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${scriptcraft.ai-http.pending-acquire-timeout-millis:5000}")
+    private long pendingAcquireTimeoutMillis;
+
+    @Value("${scriptcraft.ai-http.max-idle-seconds:30}")
+    private long maxIdleSeconds;
+
+    @Value("${scriptcraft.ai-http.max-life-seconds:300}")
+    private long maxLifeSeconds;
+
+    @Value("${scriptcraft.ai-http.evict-interval-seconds:15}")
+    private long evictIntervalSeconds;
+
+    @Value("${scriptcraft.ai-http.connect-timeout-millis:3000}")
+    private int connectTimeoutMillis;
+
+    @Value("${scriptcraft.ai-http.read-timeout-seconds:90}")
+    private long readTimeoutSeconds;
+
+    @Value("${scriptcraft.ai-http.compress:true}")
+    private boolean compress;
+
+    @Value("${scriptcraft.ai-http.http2:true}")
+    private boolean http2;
+
+    @Value("${scriptcraft.ai-http.prewarm-connections:4}")
+    private int prewarmConnections;
+
+    @Value("${scriptcraft.ai-http.prewarm-timeout-seconds:10}")
+    private long prewarmTimeoutSeconds;
+
+    @Autowired
+    @Qualifier(TONGYI_HTTP_CLIENT)
+    private ObjectProvider<HttpClient> tongyiHttpClient;
+
+    @Value("${scriptcraft.ai-limiter.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${scriptcraft.ai-limiter.min-limit:1}")
+    private int minLimit;
+
+    @Value("${scriptcraft.ai-limiter.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${scriptcraft.ai-limiter.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${scriptcraft.ai-limiter.queue-timeout-millis:10000}")
+    private long queueTimeoutMillis;
+
+    @Value("${scriptcraft.ai-limiter.backoff-ratio:0.7}")
+    private double backoffRatio;
+
+    @Value("${scriptcraft.ai-limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${scriptcraft.ai-limiter.retry-after-seconds:10}")
+    private long retryAfterSeconds;
+
+    @Value("${scriptcraft.ai-circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${scriptcraft.ai-circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${scriptcraft.ai-circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${scriptcraft.ai-circuit-breaker.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${scriptcraft.ai-circuit-breaker.half-open-calls:2}")
+    private int halfOpenCalls;
+
+    /**
+     * 创建通义千问专用的连接池
+     * 
+     * @description 限制连接数和等待连接的请求数，等待超时直接失败而不是无限排队；后台定期回收空闲连接，
+     *              在服务端关闭空闲连接之前主动释放，避免复用已失效的连接。优先复用最近使用过的连接，
+     *              多余的连接空闲后被回收。连接池指标为reactor.netty.connection.provider.*，按连接池名称和远端地址区分
+     * @return 连接池
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider tongyiConnectionProvider() {
+        return ConnectionProvider.builder("tongyi")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                .maxLifeTime(Duration.ofSeconds(maxLifeSeconds))
+                .evictInBackground(Duration.ofSeconds(evictIntervalSeconds))
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * 创建通义千问专用的HttpClient
      * 
+     * @description 开启TCP keep-alive和gzip响应压缩；HTTPS地址在服务端支持时通过ALPN协商HTTP/2，
+     *              否则使用HTTP/1.1。读超时是两次读取之间的最长间隔，只兜底卡死的连接，
+     *              每次调用的超时仍由请求截止时间决定。连接、TLS握手、DNS解析耗时等指标
+     *              （reactor.netty.http.client.*）写入全局注册表，Spring Boot默认会把应用的注册表加入其中
+     * @param connectionProvider 连接池
+     * @return HttpClient
+     */
+    @Bean(TONGYI_HTTP_CLIENT)
+    public HttpClient tongyiHttpClient(ConnectionProvider connectionProvider) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofSeconds(readTimeoutSeconds))
+                .compress(compress)
+                // 只调用固定的接口地址，URI标签不会膨胀
+                .metrics(true, Function.identity());
+        if (http2 && apiUrl.startsWith("https://")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+
+    /**
+     * 创建通义千问专用的WebClient
+     * 
+     * @param httpClient 通义千问专用的HttpClient
      * @return WebClient实例
      */
-    @Bean
-    public WebClient webClient() {
+    @Bean(TONGYI_WEB_CLIENT)
+    public WebClient tongyiWebClient(@Qualifier(TONGYI_HTTP_CLIENT) HttpClient httpClient) {
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> configurer
                         .defaultCodecs()
                         .maxInMemorySize(10 * 1024 * 1024)) // 10MB
                 .build();
     }
-}
 
+    /**
+     * 创建通义千问调用的自适应并发限制器
+     * 
+     * @description 上游返回429/503或请求超时视为拥塞
+     * @param meterRegistry 指标注册表
+     * @return 并发限制器
+     */
+    @Bean(TONGYI_LIMITER)
+    public AdaptiveConcurrencyLimiter tongyiConcurrencyLimiter(MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter("tongyi", initialLimit, minLimit, maxLimit,
+                queueCapacity, Duration.ofMillis(queueTimeoutMillis),
+                backoffRatio, latencyTolerance, retryAfterSeconds,
+                WebClientConfig::isUpstreamCongested, meterRegistry);
+    }
+
+    /**
+     * 创建通义千问调用的熔断器
+     * 
+     * @description 只有上游自身的故障计为失败：连接和传输错误、上游超时、5xx和429。
+     *              本地排队被拒绝、请求截止时间到达、调用被取消以及业务和解析错误均不计入
+     * @param meterRegistry 指标注册表
+     * @return 熔断器
+     */
+    @Bean(TONGYI_CIRCUIT_BREAKER)
+    public CircuitBreaker tongyiCircuitBreaker(MeterRegistry meterRegistry) {
+        return new CircuitBreaker("tongyi", failureRateThreshold, minimumCalls, windowSize,
+                Duration.ofSeconds(openSeconds), halfOpenCalls,
+                WebClientConfig::isUpstreamFailure, meterRegistry);
+    }
+
+    /**
+     * 启动完成后预热通义千问连接
+     * 
+     * @description 先初始化事件循环、DNS解析器和SSL上下文，再并发发出若干HEAD请求建立连接（含TLS握手）放入连接池，
+     *              第一批生成请求不必再付出握手耗时。响应状态无关紧要，失败只记录日志，不影响启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarmTongyiConnections() {
+        if (prewarmConnections <= 0) {
+            return;
+        }
+        HttpClient httpClient = tongyiHttpClient.getObject();
+        httpClient.warmup()
+                .thenMany(Flux.range(0, prewarmConnections)
+                        .flatMap(i -> httpClient.head().uri(apiUrl).response()
+                                .timeout(Duration.ofSeconds(prewarmTimeoutSeconds))
+                                .map(response -> 1)
+                                .onErrorResume(e -> {
+                                    log.debug("通义千问连接预热失败: {}", e.getMessage());
+                                    return Mono.just(0);
+                                }), prewarmConnections))
+                .reduce(0, Integer::sum)
+                .subscribe(warmed -> log.info("通义千问连接预热完成: {}/{}", warmed, prewarmConnections),
+                        e -> log.warn("通义千问连接预热失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 判断调用失败是否由上游故障引起
+     *
+     * @param error 调用异常，业务层包装的异常按其原因判断
+     * @return true-计为上游失败
+     */
+    static boolean isUpstreamFailure(Throwable error) {
+        Throwable cause = error instanceof BusinessException && error.getCause() != null ? error.getCause() : error;
+        if (isUpstreamCongested(cause)) {
+            return true;
+        }
+        if (cause instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return cause instanceof WebClientRequestException
+                || cause instanceof PrematureCloseException
+                || cause instanceof ReadTimeoutException;
+    }
+
+    private static boolean isUpstreamCongested(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            HttpStatus status = HttpStatus.resolve(responseException.getStatusCode().value());
+            return status == HttpStatus.TOO_MANY_REQUESTS || status == HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return false;
+    }
+}
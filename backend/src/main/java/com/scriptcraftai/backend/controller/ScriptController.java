@@ -1,23 +1,41 @@
 package com.scriptcraftai.backend.controller;
 
 import com.scriptcraftai.backend.common.Result;
-import com.scriptcraftai.backend.dto.GenerateScriptDTO;
+import com.scriptcraftai.backend.dto.GenerationJobDTO;
 import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.dto.ScriptStreamEvent;
 import com.scriptcraftai.backend.dto.ScriptVersionBriefDTO;
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
 import com.scriptcraftai.backend.entity.ScriptVersion;
 import com.scriptcraftai.backend.request.GenerateScriptRequest;
+import com.scriptcraftai.backend.service.GenerationJobService;
 import com.scriptcraftai.backend.service.ScriptService;
+import com.scriptcraftai.backend.util.ExceptionUtils;
+import com.scriptcraftai.backend.util.RequestDeadline;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * 脚本控制器
@@ -33,31 +51,145 @@ public class ScriptController {
     @Autowired
     private ScriptService scriptService;
     
+    @Autowired
+    private GenerationJobService generationJobService;
+    
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 重新生成请求的截止时间（秒），传到下游每一次AI调用
+    @Value("${scriptcraft.request.deadline-seconds:120}")
+    private long deadlineSeconds;
+
+    // 流式生成请求的截止时间（秒）
+    @Value("${scriptcraft.request.stream-deadline-seconds:180}")
+    private long streamDeadlineSeconds;
+
+    // Servlet异步超时比请求截止时间多留的时间（毫秒），正常情况下由截止时间先触发
+    private static final long ASYNC_TIMEOUT_MARGIN_MILLIS = 10_000L;
+
+    // 任务进度的SSE连接超时时间（毫秒）
+    private static final long WATCH_TIMEOUT_MILLIS = 300_000L;
+
+    // 任务进度的SSE事件名
+    private static final String JOB_EVENT = "job";
+
+    // 幂等键请求头
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     /**
-     * 生成脚本
+     * 提交生成任务
      *
+     * @description 写入会话和任务后立即返回202，由任务执行器在后台生成，
+     *              客户端通过GET /scripts/jobs/{jobId}查询进度和结果。
+     *              携带Idempotency-Key重复提交时返回第一次提交的任务
      * @param request 生成请求
-     * @return 生成结果
+     * @param idempotencyKey 幂等键（可选）
+     * @return 排队中的任务
      */
     @PostMapping("/generate")
-    public Result<GenerateScriptDTO> generateScripts(@Valid @RequestBody GenerateScriptRequest request) {
+    public ResponseEntity<Result<GenerationJobDTO>> generateScripts(
+            @Valid @RequestBody GenerateScriptRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         String userId = getCurrentUserId();
         log.info("收到脚本生成请求: userId={}, videoType={}", userId, request.getVideoType());
 
-        try {
-            // 同步调用，避免异步线程安全上下文问题
-            GenerateScriptDTO result = scriptService.generateScripts(request, userId)
-                    .get(300, java.util.concurrent.TimeUnit.SECONDS); // 5分钟超时
+        GenerationJobDTO job = generationJobService.submit(request, userId, idempotencyKey);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/scripts/jobs/{jobId}")
+                .buildAndExpand(job.getJobId())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(location)
+                .body(Result.success(job, "已提交生成任务"));
+    }
 
-            log.info("脚本生成成功，返回结果: sessionId={}", result.getSessionId());
-            return Result.success(result, "生成成功");
-        } catch (Exception e) {
-            log.error("生成脚本失败", e);
-            return Result.failed("生成失败，请稍后重试");
-        }
+    /**
+     * 查询生成任务
+     *
+     * @param jobId 任务ID
+     * @return 任务进度，完成时包含生成结果
+     */
+    @GetMapping("/jobs/{jobId}")
+    public Result<GenerationJobDTO> getGenerationJob(@PathVariable String jobId) {
+        String userId = getCurrentUserId();
+        return Result.success(generationJobService.getJob(jobId, userId));
+    }
+
+    /**
+     * 订阅生成任务进度（SSE）
+     *
+     * @description 先推送当前状态，之后每次状态变化推送一个job事件（数据同GET /scripts/jobs/{jobId}），
+     *              任务结束后关闭连接。任务可能在任意节点上执行，状态变化通过Redis发布订阅送达本节点
+     * @param jobId 任务ID
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watchGenerationJob(@PathVariable String jobId) {
+        String userId = getCurrentUserId();
+
+        SseEmitter emitter = new SseEmitter(WATCH_TIMEOUT_MILLIS);
+        Disposable subscription = generationJobService.watchJob(jobId, userId)
+                .subscribe(
+                        job -> sendEvent(emitter, JOB_EVENT, job),
+                        error -> {
+                            String message = error instanceof BusinessException
+                                    ? error.getMessage() : "查询生成任务失败";
+                            try {
+                                sendStreamEvent(emitter, ScriptStreamEvent.error(message));
+                                emitter.complete();
+                            } catch (Exception e) {
+                                emitter.completeWithError(e);
+                            }
+                        },
+                        emitter::complete);
+
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    /**
+     * 流式生成脚本（SSE）
+     *
+     * @description 依次推送title、scene、videoElements、endingCTA事件，
+     *              保存完成后推送done事件（数据同任务完成后的生成结果），失败时推送error事件
+     * @param request 生成请求
+     * @return SSE事件流
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateScriptsStream(@Valid @RequestBody GenerateScriptRequest request) {
+        String userId = getCurrentUserId();
+        log.info("收到流式脚本生成请求: userId={}, videoType={}", userId, request.getVideoType());
+
+        Duration deadline = Duration.ofSeconds(streamDeadlineSeconds);
+        SseEmitter emitter = new SseEmitter(deadline.toMillis() + ASYNC_TIMEOUT_MARGIN_MILLIS);
+        Disposable subscription = RequestDeadline.within(scriptService.streamScripts(request, userId), deadline)
+                .subscribe(
+                        event -> sendStreamEvent(emitter, event),
+                        error -> {
+                            log.error("流式生成脚本失败", error);
+                            recordDeadline("stream", error);
+                            String message = error instanceof BusinessException
+                                    ? error.getMessage() : "生成失败，请稍后重试";
+                            try {
+                                sendStreamEvent(emitter, ScriptStreamEvent.error(message));
+                                emitter.complete();
+                            } catch (Exception e) {
+                                emitter.completeWithError(e);
+                            }
+                        },
+                        emitter::complete);
+
+        // 客户端断开或超时后停止上游生成
+        emitter.onTimeout(() -> cancel(subscription, "stream", "timeout"));
+        emitter.onError(e -> cancel(subscription, "stream", "client_disconnect"));
+        emitter.onCompletion(() -> cancel(subscription, "stream", "client_disconnect"));
+        return emitter;
     }
 
     /**
@@ -71,26 +203,33 @@ public class ScriptController {
         String userId = getCurrentUserId();
         ScriptVersion version = scriptService.getVersionDetail(versionId, userId);
         
-        try {
-            ScriptContentDTO content = objectMapper.readValue(version.getContentJson(), ScriptContentDTO.class);
-            
-            Map<String, Object> result = Map.of(
-                "id", version.getId(),
-                "sessionId", version.getSessionId(),
-                "versionIndex", version.getVersionIndex(),
-                "title", version.getTitle(),
-                "content", content,
-                "isSelected", version.getIsSelected() == 1,
-                "wordCount", version.getWordCount(),
-                "sceneCount", version.getSceneCount(),
-                "createdAt", version.getCreatedAt()
-            );
-            
-            return Result.success(result);
-        } catch (Exception e) {
-            log.error("解析脚本内容失败", e);
-            return Result.failed("获取脚本详情失败");
-        }
+        Map<String, Object> result = Map.of(
+            "id", version.getId(),
+            "sessionId", version.getSessionId(),
+            "versionIndex", version.getVersionIndex(),
+            "title", version.getTitle(),
+            "content", version.getContent(),
+            "isSelected", version.getIsSelected() == 1,
+            "wordCount", version.getWordCount(),
+            "sceneCount", version.getSceneCount(),
+            "source", version.getSource(),
+            "createdAt", version.getCreatedAt()
+        );
+        
+        return Result.success(result);
+    }
+
+    /**
+     * 获取脚本内容的存储信息
+     * 
+     * @description 内容以二进制格式存储，数据库中不可直接阅读，排查问题时通过此接口查看格式、大小和JSON文本
+     * @param versionId 版本ID
+     * @return 存储信息
+     */
+    @GetMapping("/versions/{versionId}/stored-content")
+    public Result<Map<String, Object>> getStoredContent(@PathVariable String versionId) {
+        String userId = getCurrentUserId();
+        return Result.success(scriptService.getStoredContent(versionId, userId));
     }
 
     /**
@@ -153,13 +292,18 @@ public class ScriptController {
      * 重新生成脚本（保持锁定分镜不变）
      *
      * @param versionId 基础版本ID
+     * @param mode 重新生成模式（scene-只重新生成未锁定的分镜，full-整体重新生成）
+     * @param idempotencyKey 幂等键（可选），重试时携带相同的键返回第一次的结果
      * @return 重新生成的脚本内容
      */
     @PostMapping("/versions/{versionId}/regenerate")
-    public Result<ScriptContentDTO> regenerateScript(@PathVariable String versionId) {
+    public DeferredResult<Result<ScriptContentDTO>> regenerateScript(
+            @PathVariable String versionId,
+            @RequestParam(required = false) String mode,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         String userId = getCurrentUserId();
-        ScriptContentDTO newContent = scriptService.regenerateScript(versionId, userId);
-        return Result.success(newContent, "重新生成成功");
+        return toDeferredResult("regenerate", scriptService.regenerateScript(versionId, mode, userId, idempotencyKey),
+                "重新生成成功", "重新生成失败");
     }
 
     /**
@@ -178,17 +322,17 @@ public class ScriptController {
     /**
      * 获取生成历史
      * 
-     * @param page 页码
+     * @param cursor 分页游标（上一页返回的nextCursor），第一页不传
      * @param pageSize 每页数量
      * @param videoType 视频类型
      * @return 历史记录
      */
     @GetMapping("/sessions")
-    public Result<Map<String, Object>> getUserHistory(@RequestParam(required = false) Integer page,
+    public Result<Map<String, Object>> getUserHistory(@RequestParam(required = false) String cursor,
                                                        @RequestParam(required = false) Integer pageSize,
                                                         @RequestParam(required = false) String videoType) {
         String userId = getCurrentUserId();
-        Map<String, Object> history = scriptService.getUserHistory(userId, page, pageSize, videoType);
+        Map<String, Object> history = scriptService.getUserHistory(userId, cursor, pageSize, videoType);
         return Result.success(history);
     }
 
@@ -201,6 +345,100 @@ public class ScriptController {
         return Result.success("删除成功");
     }
 
+    /**
+     * 将异步结果转换为DeferredResult
+     *
+     * @description 业务异常交给全局异常处理（过载时返回429/503），
+     *              请求的截止时间传到下游AI调用，截止时间到达或客户端断开时取消上游AI调用
+     * @param endpoint 接口名（用于指标）
+     * @param mono 异步结果
+     * @param successMessage 成功提示
+     * @param failMessage 未知异常时的提示
+     * @return DeferredResult
+     */
+    private <T> DeferredResult<Result<T>> toDeferredResult(String endpoint, Mono<T> mono,
+                                                           String successMessage, String failMessage) {
+        Duration deadline = Duration.ofSeconds(deadlineSeconds);
+        DeferredResult<Result<T>> deferredResult =
+                new DeferredResult<>(deadline.toMillis() + ASYNC_TIMEOUT_MARGIN_MILLIS);
+        Disposable subscription = RequestDeadline.within(mono, deadline).subscribe(
+                data -> deferredResult.setResult(Result.success(data, successMessage)),
+                error -> {
+                    Throwable cause = ExceptionUtils.unwrap(error);
+                    recordDeadline(endpoint, cause);
+                    if (cause instanceof BusinessException) {
+                        deferredResult.setErrorResult(cause);
+                    } else {
+                        log.error(failMessage, cause);
+                        deferredResult.setResult(Result.failed(failMessage));
+                    }
+                });
+
+        deferredResult.onTimeout(() -> {
+            cancel(subscription, endpoint, "timeout");
+            deferredResult.setResult(Result.failed(failMessage));
+        });
+        deferredResult.onError(e -> cancel(subscription, endpoint, "client_disconnect"));
+        deferredResult.onCompletion(() -> cancel(subscription, endpoint, "client_disconnect"));
+        return deferredResult;
+    }
+
+    /**
+     * 取消仍在进行的上游生成
+     *
+     * @description 订阅已正常结束时无需取消，不计入指标
+     * @param subscription 订阅
+     * @param endpoint 接口名
+     * @param reason 取消原因（client_disconnect/timeout）
+     */
+    private void cancel(Disposable subscription, String endpoint, String reason) {
+        if (subscription.isDisposed()) {
+            return;
+        }
+        subscription.dispose();
+        log.info("取消进行中的生成: endpoint={}, reason={}", endpoint, reason);
+        meterRegistry.counter("scriptcraft.requests.cancelled", "endpoint", endpoint, "reason", reason).increment();
+    }
+
+    /**
+     * 记录因截止时间到达而取消的请求
+     *
+     * @param endpoint 接口名
+     * @param error 失败原因
+     */
+    private void recordDeadline(String endpoint, Throwable error) {
+        if (error instanceof DeadlineExceededException) {
+            meterRegistry.counter("scriptcraft.requests.cancelled", "endpoint", endpoint, "reason", "deadline")
+                    .increment();
+        }
+    }
+
+    /**
+     * 发送单个SSE事件
+     *
+     * @param emitter SSE发送器
+     * @param event 事件
+     */
+    private void sendStreamEvent(SseEmitter emitter, ScriptStreamEvent event) {
+        sendEvent(emitter, event.getType(), event);
+    }
+
+    /**
+     * 发送单个命名SSE事件
+     *
+     * @param emitter SSE发送器
+     * @param name 事件名
+     * @param data 事件数据
+     */
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // 抛出后由订阅者取消上游生成
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * 获取当前登录用户ID
      * 
@@ -0,0 +1,59 @@
+package com.scriptcraftai.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步生成任务DTO
+ *
+ * @description 提交生成请求和查询任务进度时返回
+ * @author ScriptCraft AI Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationJobDTO {
+
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 会话ID
+     */
+    private String sessionId;
+
+    /**
+     * 任务状态：queued-排队中，running-执行中，succeeded-已完成，failed-失败
+     */
+    private String status;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 失败原因（失败或等待重试时有值）
+     */
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * 生成结果（仅完成时有值）
+     */
+    private GenerateScriptDTO result;
+}
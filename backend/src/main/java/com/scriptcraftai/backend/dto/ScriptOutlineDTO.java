@@ -0,0 +1,47 @@
+package com.scriptcraftai.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 脚本大纲DTO
+ *
+ * @description 分段生成时第一步返回的大纲，只包含标题和每个分镜的时间范围与要点，
+ *              分镜正文、视频元素、备选标题和结尾话术随后按大纲并发生成
+ * @author ScriptCraft AI Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptOutlineDTO {
+
+    /**
+     * 主标题
+     */
+    private String title;
+
+    /**
+     * 分镜要点列表
+     */
+    private OutlineSceneDTO[] scenes;
+
+    /**
+     * 分镜要点DTO
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OutlineSceneDTO {
+
+        /**
+         * 时间范围
+         */
+        private String timeRange;
+
+        /**
+         * 本分镜要表达的要点
+         */
+        private String point;
+    }
+}
@@ -0,0 +1,124 @@
+package com.scriptcraftai.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 脚本流式生成事件DTO
+ *
+ * @description 流式生成过程中推送给前端的单个SSE事件
+ * @author ScriptCraft AI Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptStreamEvent {
+
+    /**
+     * 事件类型：标题
+     */
+    public static final String TITLE = "title";
+
+    /**
+     * 事件类型：单个分镜
+     */
+    public static final String SCENE = "scene";
+
+    /**
+     * 事件类型：视频元素建议
+     */
+    public static final String VIDEO_ELEMENTS = "videoElements";
+
+    /**
+     * 事件类型：结尾互动话术
+     */
+    public static final String ENDING_CTA = "endingCTA";
+
+    /**
+     * 事件类型：AI返回的完整脚本内容（服务内部使用，保存后转换为done事件）
+     */
+    public static final String COMPLETE = "complete";
+
+    /**
+     * 事件类型：脚本已保存，携带会话和版本信息
+     */
+    public static final String DONE = "done";
+
+    /**
+     * 事件类型：单个方案生成失败或超时（其余方案继续生成）
+     */
+    public static final String VARIANT_ERROR = "variantError";
+
+    /**
+     * 事件类型：生成失败
+     */
+    public static final String ERROR = "error";
+
+    /**
+     * 事件类型
+     */
+    private String type;
+
+    /**
+     * 分镜序号（仅scene事件有值，从0开始）
+     */
+    private Integer index;
+
+    /**
+     * 事件数据
+     */
+    private Object data;
+
+    /**
+     * 方案序号（从0开始，done和error事件为空）
+     */
+    private Integer variant;
+
+    public ScriptStreamEvent(String type, Integer index, Object data) {
+        this(type, index, data, null);
+    }
+
+    /**
+     * 标记事件所属的方案
+     *
+     * @param variant 方案序号
+     * @return 当前事件
+     */
+    public ScriptStreamEvent withVariant(int variant) {
+        this.variant = variant;
+        return this;
+    }
+
+    public static ScriptStreamEvent title(String title) {
+        return new ScriptStreamEvent(TITLE, null, title);
+    }
+
+    public static ScriptStreamEvent scene(int index, ScriptContentDTO.SceneDTO scene) {
+        return new ScriptStreamEvent(SCENE, index, scene);
+    }
+
+    public static ScriptStreamEvent videoElements(ScriptContentDTO.VideoElementsDTO videoElements) {
+        return new ScriptStreamEvent(VIDEO_ELEMENTS, null, videoElements);
+    }
+
+    public static ScriptStreamEvent endingCTA(String[] endingCTA) {
+        return new ScriptStreamEvent(ENDING_CTA, null, endingCTA);
+    }
+
+    public static ScriptStreamEvent complete(ScriptContentDTO content) {
+        return new ScriptStreamEvent(COMPLETE, null, content);
+    }
+
+    public static ScriptStreamEvent done(GenerateScriptDTO result) {
+        return new ScriptStreamEvent(DONE, null, result);
+    }
+
+    public static ScriptStreamEvent variantError(int variant, String message) {
+        return new ScriptStreamEvent(VARIANT_ERROR, null, message, variant);
+    }
+
+    public static ScriptStreamEvent error(String message) {
+        return new ScriptStreamEvent(ERROR, null, message);
+    }
+}
@@ -39,6 +39,11 @@ public class ScriptVersionBriefDTO {
      * 是否被选中：1-是，0-否
      */
     private Integer isSelected;
+
+    /**
+     * 内容来源：ai-AI生成，cache-命中缓存
+     */
+    private String source;
     
     /**
      * 预览信息DTO
@@ -0,0 +1,114 @@
+package com.scriptcraftai.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步生成任务实体类
+ *
+ * @description 对应generation_jobs表
+ * @author ScriptCraft AI Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationJob {
+
+    /**
+     * 任务状态：排队中
+     */
+    public static final String STATUS_QUEUED = "queued";
+
+    /**
+     * 任务状态：执行中
+     */
+    public static final String STATUS_RUNNING = "running";
+
+    /**
+     * 任务状态：已完成
+     */
+    public static final String STATUS_SUCCEEDED = "succeeded";
+
+    /**
+     * 任务状态：失败
+     */
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * 任务ID（UUID）
+     */
+    private String id;
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 会话ID
+     */
+    private String sessionId;
+
+    /**
+     * 生成请求（JSON格式）
+     */
+    private String requestJson;
+
+    /**
+     * 任务状态：queued-排队中，running-执行中，succeeded-已完成，failed-失败
+     */
+    private String status;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 最多执行次数
+     */
+    private Integer maxAttempts;
+
+    /**
+     * 持有租约的节点
+     */
+    private String leaseOwner;
+
+    /**
+     * 租约到期时间
+     */
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * 最早可领取时间（重试退避）
+     */
+    private LocalDateTime availableAt;
+
+    /**
+     * 截止时间，超过后不再重试
+     */
+    private LocalDateTime deadlineAt;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updatedAt;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishedAt;
+}
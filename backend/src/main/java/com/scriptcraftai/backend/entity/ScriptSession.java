@@ -16,6 +16,21 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ScriptSession {
+
+    /**
+     * 会话状态：生成中
+     */
+    public static final String STATUS_PENDING = "pending";
+
+    /**
+     * 会话状态：生成完成
+     */
+    public static final String STATUS_COMPLETED = "completed";
+
+    /**
+     * 会话状态：生成失败
+     */
+    public static final String STATUS_FAILED = "failed";
     
     /**
      * 会话ID（UUID）
@@ -42,6 +57,16 @@ public class ScriptSession {
      */
     private String stylePreference;
     
+    /**
+     * 生成状态：pending-生成中，completed-已完成，failed-失败
+     */
+    private String status;
+    
+    /**
+     * 失败原因（仅失败时有值）
+     */
+    private String errorMessage;
+    
     /**
      * 创建时间
      */
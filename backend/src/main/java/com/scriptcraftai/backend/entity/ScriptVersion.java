@@ -1,5 +1,6 @@
 package com.scriptcraftai.backend.entity;
 
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,21 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ScriptVersion {
+
+    /**
+     * 内容来源：AI生成
+     */
+    public static final String SOURCE_AI = "ai";
+
+    /**
+     * 内容来源：命中生成结果缓存
+     */
+    public static final String SOURCE_CACHE = "cache";
+
+    /**
+     * 内容来源：AI服务不可用时的模板草稿，可重新生成
+     */
+    public static final String SOURCE_FALLBACK = "fallback";
     
     /**
      * 版本ID（UUID）
@@ -38,9 +54,14 @@ public class ScriptVersion {
     private String title;
     
     /**
-     * 脚本内容（JSON格式）
+     * 脚本内容（以二进制格式存储，见ScriptContentCodec）
      */
-    private String contentJson;
+    private ScriptContentDTO content;
+
+    /**
+     * 存储内容的格式字节（只读，用于判断是否需要改写为当前格式）
+     */
+    private Integer contentFormat;
     
     /**
      * 是否被选中：1-是，0-否
@@ -57,11 +78,26 @@ public class ScriptVersion {
      */
     private Integer sceneCount;
 
+    /**
+     * 第一个分镜的画面描述（列表预览，写入时从内容中提取）
+     */
+    private String firstScene;
+
     /**
      * 锁定的分镜索引（JSON数组，例如：[0,2,4]表示第1、3、5个分镜被锁定）
      */
     private String lockedScenes;
 
+    /**
+     * 内容来源：ai-AI生成，cache-命中缓存
+     */
+    private String source;
+
+    /**
+     * 生成时使用的提示词模板版本，模板草稿为null
+     */
+    private String promptVersion;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,75 @@
+package com.scriptcraftai.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * token用量日汇总实体类
+ *
+ * @description 对应token_usage_daily表，每行为一天内同一用户、视频类型、提示词版本和模型的累计用量
+ * @author ScriptCraft AI Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenUsageDaily {
+
+    /**
+     * 日期
+     */
+    private LocalDate usageDate;
+
+    /**
+     * 用户ID（无法归属的调用为unknown）
+     */
+    private String userId;
+
+    /**
+     * 视频类型（重新生成为regeneration）
+     */
+    private String videoType;
+
+    /**
+     * 提示词模板版本
+     */
+    private String promptVersion;
+
+    /**
+     * 模型名称
+     */
+    private String model;
+
+    /**
+     * 调用次数
+     */
+    private Long callCount;
+
+    /**
+     * 输入token数
+     */
+    private Long inputTokens;
+
+    /**
+     * 输出token数
+     */
+    private Long outputTokens;
+
+    /**
+     * 累计调用耗时（毫秒）
+     */
+    private Long latencyMillis;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updatedAt;
+}
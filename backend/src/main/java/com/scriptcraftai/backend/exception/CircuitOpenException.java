@@ -0,0 +1,19 @@
+package com.scriptcraftai.backend.exception;
+
+/**
+ * 熔断异常
+ *
+ * @description 上游AI服务近期失败率过高，熔断器打开期间的调用不再发出，直接返回503并携带Retry-After
+ * @author ScriptCraft AI Team
+ */
+public class CircuitOpenException extends ServiceOverloadedException {
+
+    /**
+     * 构造函数
+     *
+     * @param retryAfterSeconds 熔断器预计恢复试探的等待时间（秒）
+     */
+    public CircuitOpenException(long retryAfterSeconds) {
+        super(503, "AI服务暂不可用，请稍后重试", retryAfterSeconds);
+    }
+}
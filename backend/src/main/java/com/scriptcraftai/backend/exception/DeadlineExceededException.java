@@ -0,0 +1,17 @@
+package com.scriptcraftai.backend.exception;
+
+/**
+ * 请求超时异常
+ *
+ * @description 请求的截止时间已到，剩余的生成和上游AI调用均已取消
+ * @author ScriptCraft AI Team
+ */
+public class DeadlineExceededException extends BusinessException {
+
+    /**
+     * 构造函数
+     */
+    public DeadlineExceededException() {
+        super(504, "生成超时，请稍后重试");
+    }
+}
@@ -2,7 +2,9 @@ package com.scriptcraftai.backend.exception;
 
 import com.scriptcraftai.backend.common.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -36,6 +38,20 @@ public class GlobalExceptionHandler {
         return Result.failed(e.getCode(), e.getMessage());
     }
 
+    /**
+     * 处理服务过载异常
+     * 
+     * @param e 服务过载异常
+     * @return 429/503响应，携带Retry-After头
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Result<Void>> handleServiceOverloadedException(ServiceOverloadedException e) {
+        log.warn("服务过载: code={}, {}", e.getCode(), e.getMessage());
+        return ResponseEntity.status(e.getCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.failed(e.getCode(), e.getMessage()));
+    }
+
     /**
      * 处理参数校验异常（@Valid）
      * 
@@ -0,0 +1,20 @@
+package com.scriptcraftai.backend.exception;
+
+/**
+ * 用量超限异常
+ *
+ * @description 用户当天或当月的token用量已达配额时拒绝新的生成，返回429并携带Retry-After（距配额重置的时间）
+ * @author ScriptCraft AI Team
+ */
+public class QuotaExceededException extends ServiceOverloadedException {
+
+    /**
+     * 构造函数
+     *
+     * @param message 错误消息
+     * @param retryAfterSeconds 距配额重置的时间（秒）
+     */
+    public QuotaExceededException(String message, long retryAfterSeconds) {
+        super(429, message, retryAfterSeconds);
+    }
+}
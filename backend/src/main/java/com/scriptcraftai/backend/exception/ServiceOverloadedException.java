@@ -0,0 +1,30 @@
+package com.scriptcraftai.backend.exception;
+
+import lombok.Getter;
+
+/**
+ * 服务过载异常
+ * 
+ * @description 线程池、队列等资源已满时抛出，返回429/503状态码并携带Retry-After
+ * @author ScriptCraft AI Team
+ */
+@Getter
+public class ServiceOverloadedException extends BusinessException {
+
+    /**
+     * 建议客户端重试的等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * 构造函数
+     * 
+     * @param code HTTP状态码（429或503）
+     * @param message 错误消息
+     * @param retryAfterSeconds 建议重试等待时间（秒）
+     */
+    public ServiceOverloadedException(Integer code, String message, long retryAfterSeconds) {
+        super(code, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,109 @@
+package com.scriptcraftai.backend.mapper;
+
+import com.scriptcraftai.backend.entity.GenerationJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 异步生成任务Mapper接口
+ *
+ * @description 异步生成任务数据访问层，租约时间均以数据库时间为准，避免各节点时钟不一致
+ * @author ScriptCraft AI Team
+ */
+@Mapper
+public interface GenerationJobMapper {
+
+    /**
+     * 插入任务
+     *
+     * @param job 任务对象
+     * @return 影响行数
+     */
+    int insert(GenerationJob job);
+
+    /**
+     * 根据ID查询任务
+     *
+     * @param id 任务ID
+     * @return 任务对象
+     */
+    GenerationJob selectById(@Param("id") String id);
+
+    /**
+     * 查询可领取的任务ID（排队到期，或执行中但租约已过期）
+     *
+     * @param limit 最多返回数量
+     * @param minAgeSeconds 排队任务至少已到期多久（秒），队列分发时避免与刚发布的任务竞争
+     * @return 任务ID列表
+     */
+    List<String> selectClaimableIds(@Param("limit") Integer limit,
+                                    @Param("minAgeSeconds") Long minAgeSeconds);
+
+    /**
+     * 领取任务（条件更新，只有一个节点能领取成功）
+     *
+     * @param id 任务ID
+     * @param owner 节点标识
+     * @param leaseSeconds 租约时长（秒）
+     * @return 影响行数，1表示领取成功
+     */
+    int claim(@Param("id") String id,
+              @Param("owner") String owner,
+              @Param("leaseSeconds") Long leaseSeconds);
+
+    /**
+     * 续期本节点持有的全部租约
+     *
+     * @param owner 节点标识
+     * @param leaseSeconds 租约时长（秒）
+     * @return 影响行数
+     */
+    int renewLeases(@Param("owner") String owner,
+                    @Param("leaseSeconds") Long leaseSeconds);
+
+    /**
+     * 标记任务完成
+     *
+     * @param id 任务ID
+     * @param owner 节点标识（租约已被其他节点接管时不更新）
+     * @return 影响行数
+     */
+    int markSucceeded(@Param("id") String id,
+                      @Param("owner") String owner);
+
+    /**
+     * 标记任务失败
+     *
+     * @param id 任务ID
+     * @param owner 节点标识，为空时不校验租约
+     * @param errorMessage 失败原因
+     * @return 影响行数
+     */
+    int markFailed(@Param("id") String id,
+                   @Param("owner") String owner,
+                   @Param("errorMessage") String errorMessage);
+
+    /**
+     * 任务重新排队，延迟一段时间后可再次领取
+     *
+     * @param id 任务ID
+     * @param owner 节点标识
+     * @param delaySeconds 延迟时间（秒）
+     * @param errorMessage 本次失败原因
+     * @return 影响行数
+     */
+    int requeue(@Param("id") String id,
+                @Param("owner") String owner,
+                @Param("delaySeconds") Long delaySeconds,
+                @Param("errorMessage") String errorMessage);
+
+    /**
+     * 释放本节点持有的全部租约（停机时调用），任务立即可被其他节点领取且不计入执行次数
+     *
+     * @param owner 节点标识
+     * @return 影响行数
+     */
+    int releaseLeases(@Param("owner") String owner);
+}
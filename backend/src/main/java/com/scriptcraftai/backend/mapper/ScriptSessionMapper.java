@@ -4,6 +4,7 @@ import com.scriptcraftai.backend.entity.ScriptSession;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -32,26 +33,54 @@ public interface ScriptSessionMapper {
     ScriptSession selectById(@Param("id") String id);
     
     /**
-     * 查询用户的会话列表（分页）
+     * 按游标查询用户的会话列表
      * 
+     * @description 按(created_at, id)倒序，从游标之后开始读取，翻页深度不影响查询耗时
      * @param userId 用户ID
-     * @param offset 偏移量
+     * @param videoType 视频类型（精确匹配），为null时不过滤
+     * @param cursorCreatedAt 上一页最后一个会话的创建时间，第一页为null
+     * @param cursorId 上一页最后一个会话的ID，第一页为null
      * @param limit 限制数量
-     * @param videoType 视频类型
      * @return 会话列表
      */
-    List<ScriptSession> selectByUserId(@Param("userId") String userId, 
-                                      @Param("offset") Integer offset, 
-                                      @Param("limit") Integer limit,
-                                       @Param("videoType") String videoType);
+    List<ScriptSession> selectByUserId(@Param("userId") String userId,
+                                       @Param("videoType") String videoType,
+                                       @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                       @Param("cursorId") String cursorId,
+                                       @Param("limit") Integer limit);
     
     /**
-     * 统计用户的会话总数
+     * 统计用户的会话数量（读取计数表）
      * 
      * @param userId 用户ID
-     * @return 总数
+     * @param videoType 视频类型，为null时统计全部类型
+     * @return 会话数量
+     */
+    int sumCounts(@Param("userId") String userId, @Param("videoType") String videoType);
+    
+    /**
+     * 累加用户某个视频类型的会话数量，需与会话的插入、删除在同一事务中
+     * 
+     * @param userId 用户ID
+     * @param videoType 视频类型
+     * @param delta 增量（新增为1，删除为-1）
+     * @return 影响行数
+     */
+    int incrementCount(@Param("userId") String userId,
+                       @Param("videoType") String videoType,
+                       @Param("delta") int delta);
+    
+    /**
+     * 更新会话生成状态
+     * 
+     * @param id 会话ID
+     * @param status 生成状态
+     * @param errorMessage 失败原因
+     * @return 影响行数
      */
-    int countByUserId(@Param("userId") String userId);
+    int updateStatus(@Param("id") String id,
+                     @Param("status") String status,
+                     @Param("errorMessage") String errorMessage);
     
     /**
      * 根据ID删除会话
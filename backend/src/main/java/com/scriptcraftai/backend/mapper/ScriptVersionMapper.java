@@ -1,5 +1,6 @@
 package com.scriptcraftai.backend.mapper;
 
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
 import com.scriptcraftai.backend.entity.ScriptVersion;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -23,6 +24,14 @@ public interface ScriptVersionMapper {
      */
     int insert(ScriptVersion version);
     
+    /**
+     * 批量插入脚本版本
+     * 
+     * @param versions 版本列表
+     * @return 影响行数
+     */
+    int insertBatch(@Param("versions") List<ScriptVersion> versions);
+    
     /**
      * 根据ID查询版本
      * 
@@ -32,12 +41,21 @@ public interface ScriptVersionMapper {
     ScriptVersion selectById(@Param("id") String id);
     
     /**
-     * 根据会话ID查询所有版本
+     * 查询存储的脚本内容字节
      * 
+     * @param id 版本ID
+     * @return 存储字节（格式见ScriptContentCodec），版本不存在时为null
+     */
+    byte[] selectStoredContent(@Param("id") String id);
+    
+    /**
+     * 根据会话ID查询所有版本的列表信息
+     * 
+     * @description 只查询预览所需的列，不读取content，由覆盖索引idx_session_brief直接返回
      * @param sessionId 会话ID
-     * @return 版本列表
+     * @return 版本列表（contentJson等未查询的字段为null）
      */
-    List<ScriptVersion> selectBySessionId(@Param("sessionId") String sessionId);
+    List<ScriptVersion> selectBriefBySessionId(@Param("sessionId") String sessionId);
     
     /**
      * 更新脚本版本
@@ -47,6 +65,27 @@ public interface ScriptVersionMapper {
      */
     int update(ScriptVersion version);
     
+    /**
+     * 改写脚本内容的存储格式
+     * 
+     * @description 只在存储内容的格式字节仍为fromFormat时更新，不改变updated_at
+     * @param id 版本ID
+     * @param content 脚本内容（按当前格式编码）
+     * @param fromFormat 读取时的格式字节
+     * @return 影响行数
+     */
+    int updateContent(@Param("id") String id, @Param("content") ScriptContentDTO content,
+                      @Param("fromFormat") Integer fromFormat);
+    
+    /**
+     * 更新分镜锁定状态
+     * 
+     * @param id 版本ID
+     * @param lockedScenes 锁定的分镜索引（JSON数组）
+     * @return 影响行数
+     */
+    int updateLockedScenes(@Param("id") String id, @Param("lockedScenes") String lockedScenes);
+    
     /**
      * 更新选中状态
      * 
@@ -0,0 +1,25 @@
+package com.scriptcraftai.backend.mapper;
+
+import com.scriptcraftai.backend.entity.TokenUsageDaily;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * token用量Mapper接口
+ *
+ * @description token用量日汇总数据访问层，各节点定期写入增量，同一行的增量在数据库中累加
+ * @author ScriptCraft AI Team
+ */
+@Mapper
+public interface TokenUsageMapper {
+
+    /**
+     * 批量累加用量，行不存在时插入
+     *
+     * @param rows 用量增量
+     * @return 影响行数
+     */
+    int upsertBatch(@Param("rows") List<TokenUsageDaily> rows);
+}
@@ -0,0 +1,49 @@
+package com.scriptcraftai.backend.mapper.handler;
+
+import com.scriptcraftai.backend.util.IdGenerator;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 二进制ID类型处理器
+ *
+ * @description 主键和外键以BINARY(16)存储，实体和接口中仍为32位十六进制字符串。
+ *              只对声明了jdbcType=BINARY的参数和结果列生效，其他字符串列不受影响
+ * @author ScriptCraft AI Team
+ */
+@MappedTypes(String.class)
+@MappedJdbcTypes(JdbcType.BINARY)
+public class BinaryIdTypeHandler extends BaseTypeHandler<String> {
+
+    // 格式不正确的ID（如路径参数被篡改）绑定为空字节串，与任何行都不匹配，按不存在处理
+    private static final byte[] NO_MATCH = new byte[0];
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
+            throws SQLException {
+        byte[] bytes = IdGenerator.toBinary(parameter);
+        ps.setBytes(i, bytes != null ? bytes : NO_MATCH);
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return IdGenerator.fromBinary(rs.getBytes(columnName));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return IdGenerator.fromBinary(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return IdGenerator.fromBinary(cs.getBytes(columnIndex));
+    }
+}
@@ -0,0 +1,53 @@
+package com.scriptcraftai.backend.mapper.handler;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 脚本内容类型处理器
+ *
+ * @description script_versions.content列与ScriptContentDTO之间的转换，编码格式见ScriptContentCodec。
+ *              写入使用编解码器配置的格式，读取支持所有格式（包括迁移前的JSON文本）。由MyBatisConfig注册
+ * @author ScriptCraft AI Team
+ */
+@MappedTypes(ScriptContentDTO.class)
+public class ScriptContentTypeHandler extends BaseTypeHandler<ScriptContentDTO> {
+
+    private final ScriptContentCodec codec;
+
+    /**
+     * @param codec 脚本内容编解码器
+     */
+    public ScriptContentTypeHandler(ScriptContentCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, ScriptContentDTO parameter, JdbcType jdbcType)
+            throws SQLException {
+        ps.setBytes(i, codec.encode(parameter));
+    }
+
+    @Override
+    public ScriptContentDTO getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return codec.decode(rs.getBytes(columnName));
+    }
+
+    @Override
+    public ScriptContentDTO getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return codec.decode(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public ScriptContentDTO getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return codec.decode(cs.getBytes(columnIndex));
+    }
+}
@@ -1,5 +1,7 @@
 package com.scriptcraftai.backend.request;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
@@ -30,5 +32,17 @@ public class GenerateScriptRequest {
      * 风格偏好（可选）
      */
     private String stylePreference;
+
+    /**
+     * 是否跳过生成结果缓存，强制调用AI重新生成（可选）
+     */
+    private Boolean forceFresh;
+
+    /**
+     * 并行生成的方案数量（可选，1-5，默认1）
+     */
+    @Min(value = 1, message = "方案数量至少为1")
+    @Max(value = 5, message = "方案数量最多为5")
+    private Integer variants;
 }
 
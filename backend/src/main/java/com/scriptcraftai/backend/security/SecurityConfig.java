@@ -1,11 +1,8 @@
 package com.scriptcraftai.backend.security;
 
-import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
-import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.AsyncConfigurer;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -15,8 +12,6 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
-import java.util.concurrent.Executor;
-
 /**
  * Spring Security配置类
  *
@@ -35,31 +30,6 @@ public class SecurityConfig {
         SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_INHERITABLETHREADLOCAL);
     }
 
-    /**
-     * 异步任务执行器配置（确保Security上下文传递）
-     * @return AsyncConfigurer
-     */
-    @Bean
-    public AsyncConfigurer asyncConfigurer() {
-        return new AsyncConfigurer() {
-            @Override
-            public Executor getAsyncExecutor() {
-                ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-                executor.setCorePoolSize(5);
-                executor.setMaxPoolSize(10);
-                executor.setQueueCapacity(25);
-                executor.setThreadNamePrefix("ScriptCraft-");
-                executor.initialize();
-                return executor;
-            }
-
-            @Override
-            public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
-                return new SimpleAsyncUncaughtExceptionHandler();
-            }
-        };
-    }
-
     /**
      * 配置安全过滤器链
      * 
@@ -80,6 +50,8 @@ public class SecurityConfig {
             
             // 配置请求授权
             .authorizeHttpRequests(auth -> auth
+                // 异步结果（SSE等）的再次分派已在首次请求时完成认证
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 // 允许注册和登录接口匿名访问
                 .requestMatchers("/auth/register", "/auth/login").permitAll()
                 // 其他所有请求需要认证
@@ -1,6 +1,9 @@
 package com.scriptcraftai.backend.service;
 
 import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.dto.ScriptStreamEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -11,6 +14,15 @@ import java.util.concurrent.CompletableFuture;
  * @author ScriptCraft AI Team
  */
 public interface AiService {
+
+    // 生成方式：一次请求返回完整脚本
+    String GENERATION_MODE_MONOLITHIC = "monolithic";
+
+    // 生成方式：先生成大纲，再并发生成分镜正文、视频元素、备选标题和结尾话术
+    String GENERATION_MODE_DECOMPOSED = "decomposed";
+
+    // 特殊视频类型：主题描述即为完整的重新生成提示词
+    String VIDEO_TYPE_REGENERATION = "regeneration";
     
     /**
      * 生成单个脚本内容
@@ -23,5 +35,109 @@ public interface AiService {
     CompletableFuture<ScriptContentDTO> generateScript(String videoType, 
                                                        String themeInput, 
                                                        String stylePreference);
-}
 
+    /**
+     * 生成单个脚本内容（响应式）
+     * 
+     * @description 等待AI响应期间不占用任何线程，订阅被取消时同时取消上游HTTP请求
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @return 脚本内容
+     */
+    Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                  String themeInput, 
+                                                  String stylePreference);
+
+    /**
+     * 生成指定方案的脚本内容（响应式）
+     * 
+     * @description 方案0使用默认提示词和参数，其余方案使用不同的创作角度和更高的采样温度，
+     *              使同一请求的多个方案互不雷同。使用配置的生成方式（scriptcraft.generation.mode）
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 脚本内容
+     */
+    Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                  String themeInput, 
+                                                  String stylePreference,
+                                                  int variant);
+
+    /**
+     * 以指定的生成方式生成脚本内容（响应式）
+     * 
+     * @description decomposed方式先用一次短输出确定标题和分镜要点，再把各部分拆成并发的小请求，
+     *              总耗时约为大纲耗时加最慢的一个部分，而不是整个脚本的输出耗时
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @param mode 生成方式（monolithic/decomposed）
+     * @return 脚本内容
+     */
+    Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                  String themeInput, 
+                                                  String stylePreference,
+                                                  int variant,
+                                                  String mode);
+
+    /**
+     * 流式生成单个脚本内容
+     * 
+     * @description 使用通义千问增量输出，标题、每个分镜、视频元素、结尾话术完整后立即推送，
+     *              最后推送一个complete事件携带完整脚本内容
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @return 脚本事件流
+     */
+    Flux<ScriptStreamEvent> streamScript(String videoType, 
+                                         String themeInput, 
+                                         String stylePreference);
+
+    /**
+     * 流式生成指定方案的脚本内容
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 脚本事件流
+     */
+    Flux<ScriptStreamEvent> streamScript(String videoType, 
+                                         String themeInput, 
+                                         String stylePreference,
+                                         int variant);
+
+    /**
+     * 重新生成单个分镜（响应式）
+     * 
+     * @description 只发送标题、当前分镜的时间范围和原文案以及前后相邻分镜作为上下文，
+     *              模型只返回这一个分镜，输出量与分镜数量成正比
+     * @param title 脚本标题
+     * @param scenes 全部分镜
+     * @param sceneIndex 需要重新生成的分镜索引
+     * @return 新的分镜内容
+     */
+    Mono<ScriptContentDTO.SceneDTO> regenerateScene(String title, 
+                                                    ScriptContentDTO.SceneDTO[] scenes, 
+                                                    int sceneIndex);
+
+    /**
+     * 获取当前提示词版本
+     *
+     * @description 提示词变化后生成结果不再等价，作为生成结果缓存键的一部分
+     * @return 提示词版本
+     */
+    String getPromptVersion();
+
+    /**
+     * 上游AI服务当前是否可用
+     *
+     * @description 熔断器打开期间返回false，调用会立即失败
+     * @return 是否可用
+     */
+    boolean isAvailable();
+}
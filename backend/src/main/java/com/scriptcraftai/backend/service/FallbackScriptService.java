@@ -0,0 +1,31 @@
+package com.scriptcraftai.backend.service;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+
+/**
+ * 模板草稿服务接口
+ *
+ * @description 上游AI服务不可用或剩余时间不足时，用本地的分镜模板库按视频类型和风格组装脚本草稿，
+ *              毫秒级返回。草稿保存为source=fallback的版本，用户可稍后重新生成
+ * @author ScriptCraft AI Team
+ */
+public interface FallbackScriptService {
+
+    // 降级原因：熔断器打开
+    String REASON_CIRCUIT_OPEN = "circuit_open";
+
+    // 降级原因：剩余时间不足以完成一次AI生成
+    String REASON_DEADLINE = "deadline";
+
+    /**
+     * 组装模板草稿
+     *
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始），不同方案使用不同的标题模板
+     * @param reason 降级原因
+     * @return 脚本内容
+     */
+    ScriptContentDTO generate(String videoType, String themeInput, String stylePreference, int variant, String reason);
+}
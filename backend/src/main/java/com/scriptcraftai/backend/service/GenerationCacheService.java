@@ -0,0 +1,41 @@
+package com.scriptcraftai.backend.service;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+
+/**
+ * 生成结果缓存服务接口
+ *
+ * @description 按（视频类型、主题、风格、提示词版本、方案序号）缓存AI生成的脚本内容，
+ *              进程内缓存在前，Redis在后
+ * @author ScriptCraft AI Team
+ */
+public interface GenerationCacheService {
+
+    /**
+     * 查询缓存的脚本内容
+     *
+     * @param key 生成请求键（见buildKey）
+     * @return 脚本内容，未命中时返回null
+     */
+    ScriptContentDTO get(String key);
+
+    /**
+     * 缓存生成的脚本内容
+     *
+     * @param key 生成请求键（见buildKey）
+     * @param content 脚本内容
+     */
+    void put(String key, ScriptContentDTO content);
+
+    /**
+     * 构建生成请求的规范化键
+     *
+     * @description 主题中的空白、标点和大小写差异视为同一主题，并包含提示词版本和方案序号
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return SHA-256十六进制字符串
+     */
+    String buildKey(String videoType, String themeInput, String stylePreference, int variant);
+}
@@ -0,0 +1,25 @@
+package com.scriptcraftai.backend.service;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * 生成请求合并服务接口
+ *
+ * @description 相同键的并发生成请求共享一次上游AI调用（single-flight），
+ *              本实例内直接共享结果，跨实例通过Redis短租约协调
+ * @author ScriptCraft AI Team
+ */
+public interface GenerationCoalescingService {
+
+    /**
+     * 合并执行生成请求
+     *
+     * @param key 规范化的生成请求键
+     * @param upstream 实际调用AI的生成逻辑，同一时刻每个键只会被执行一次
+     * @return 共享的脚本内容
+     */
+    Mono<ScriptContentDTO> coalesce(String key, Supplier<Mono<ScriptContentDTO>> upstream);
+}
@@ -0,0 +1,52 @@
+package com.scriptcraftai.backend.service;
+
+import java.util.List;
+
+/**
+ * 生成任务分发队列接口
+ *
+ * @description 任务状态始终以generation_jobs表为准，队列只负责把新任务及时、均衡地分发给各节点，
+ *              消息丢失时由数据库扫描兜底
+ * @author ScriptCraft AI Team
+ */
+public interface GenerationJobQueue {
+
+    /**
+     * 是否启用队列分发
+     *
+     * @return true-启用，false-仅通过数据库扫描领取任务
+     */
+    boolean isEnabled();
+
+    /**
+     * 发布新任务
+     *
+     * @param jobId 任务ID
+     */
+    void publish(String jobId);
+
+    /**
+     * 拉取分配给本节点的任务，包括从崩溃节点接管的未确认任务
+     *
+     * @param consumer 节点标识
+     * @param count 最多拉取数量（本节点空闲并发数）
+     * @return 待处理的任务
+     */
+    List<QueuedJob> poll(String consumer, int count);
+
+    /**
+     * 确认任务已处理完毕
+     *
+     * @param messageId 消息ID
+     */
+    void ack(String messageId);
+
+    /**
+     * 队列中的任务
+     *
+     * @param messageId 消息ID
+     * @param jobId 任务ID
+     */
+    record QueuedJob(String messageId, String jobId) {
+    }
+}
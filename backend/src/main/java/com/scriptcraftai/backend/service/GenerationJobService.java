@@ -0,0 +1,45 @@
+package com.scriptcraftai.backend.service;
+
+import com.scriptcraftai.backend.dto.GenerationJobDTO;
+import com.scriptcraftai.backend.request.GenerateScriptRequest;
+import reactor.core.publisher.Flux;
+
+/**
+ * 异步生成任务服务接口
+ *
+ * @description 生成请求先持久化为任务再由各节点的执行器按租约领取执行，
+ *              客户端断开、节点重启都不会丢失已提交的生成
+ * @author ScriptCraft AI Team
+ */
+public interface GenerationJobService {
+
+    /**
+     * 提交生成任务
+     *
+     * @description 携带幂等键重复提交时不再创建新任务，直接返回第一次提交的任务
+     * @param request 生成请求
+     * @param userId 用户ID
+     * @param idempotencyKey 幂等键，可为空
+     * @return 排队中的任务
+     */
+    GenerationJobDTO submit(GenerateScriptRequest request, String userId, String idempotencyKey);
+
+    /**
+     * 查询任务进度
+     *
+     * @param jobId 任务ID
+     * @param userId 用户ID
+     * @return 任务信息，完成时包含生成结果
+     */
+    GenerationJobDTO getJob(String jobId, String userId);
+
+    /**
+     * 订阅任务进度
+     *
+     * @description 先推送当前状态，之后任务在任意节点上状态变化时推送最新状态，任务结束后完成
+     * @param jobId 任务ID
+     * @param userId 用户ID
+     * @return 任务状态流
+     */
+    Flux<GenerationJobDTO> watchJob(String jobId, String userId);
+}
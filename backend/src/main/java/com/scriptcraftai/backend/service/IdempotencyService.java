@@ -0,0 +1,52 @@
+package com.scriptcraftai.backend.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * 幂等键服务接口
+ *
+ * @description 客户端通过Idempotency-Key请求头标识一次操作，超时重试或重复提交时
+ *              返回第一次的结果，不再重复调用AI。幂等键按用户和操作类型隔离，保存在Redis中并设置过期时间
+ * @author ScriptCraft AI Team
+ */
+public interface IdempotencyService {
+
+    /**
+     * 预留幂等键并直接记录结果（结果在执行前就已确定的操作，如提交任务时预先生成的任务ID）
+     *
+     * @param scope 操作类型
+     * @param userId 用户ID
+     * @param key 幂等键
+     * @param request 请求内容（相同幂等键的请求内容必须一致）
+     * @param value 本次操作的结果
+     * @return 幂等键已被使用时返回第一次的结果；为null表示预留成功，调用方应继续执行操作
+     */
+    String reserve(String scope, String userId, String key, Object request, String value);
+
+    /**
+     * 操作失败时释放预留的幂等键，允许客户端用同一个键重试
+     *
+     * @param scope 操作类型
+     * @param userId 用户ID
+     * @param key 幂等键
+     */
+    void release(String scope, String userId, String key);
+
+    /**
+     * 以幂等键执行异步操作
+     *
+     * @description 已完成的键直接返回保存的结果；正在执行的键等待并共享同一次执行的结果；
+     *              执行失败时删除键，客户端可用同一个键重试。幂等键为空时直接执行
+     * @param scope 操作类型
+     * @param userId 用户ID
+     * @param key 幂等键
+     * @param request 请求内容（相同幂等键的请求内容必须一致）
+     * @param type 结果类型
+     * @param action 实际操作
+     * @return 操作结果
+     */
+    <T> Mono<T> execute(String scope, String userId, String key, Object request,
+                        Class<T> type, Supplier<Mono<T>> action);
+}
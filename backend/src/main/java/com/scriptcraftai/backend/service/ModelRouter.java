@@ -0,0 +1,41 @@
+package com.scriptcraftai.backend.service;
+
+/**
+ * 模型路由接口
+ *
+ * @description 按任务类型选择通义千问模型；通义千问调用排队过深或该模型近期p95耗时超出目标时
+ *              改用更快的降级模型。记录路由决策和各模型的耗时、token用量，用于权衡成本与速度
+ * @author ScriptCraft AI Team
+ */
+public interface ModelRouter {
+
+    // 任务类型：完整脚本（一次性生成、分段生成的大纲、流式生成）
+    String TASK_FULL_SCRIPT = "full_script";
+
+    // 任务类型：局部生成（重新生成、分段生成的分镜正文和视频元素）
+    String TASK_PARTIAL = "partial";
+
+    // 任务类型：只生成标题和结尾话术
+    String TASK_TITLES = "titles";
+
+    /**
+     * 为一次调用选择模型
+     *
+     * @param task 任务类型
+     * @return 模型名称
+     */
+    String route(String task);
+
+    /**
+     * 记录一次调用的结果
+     *
+     * @param task 任务类型
+     * @param model 模型名称
+     * @param latencyNanos 调用耗时（纳秒，不含排队）
+     * @param success 是否成功
+     * @param inputTokens 输入token数，未知时为null
+     * @param outputTokens 输出token数，未知时为null
+     */
+    void recordCall(String task, String model, long latencyNanos, boolean success,
+                    Integer inputTokens, Integer outputTokens);
+}
@@ -0,0 +1,53 @@
+package com.scriptcraftai.backend.service;
+
+import java.util.Map;
+
+/**
+ * 提示词模板服务接口
+ *
+ * @description 启动时加载当前版本的全部提示词模板并预编译，生成时只做变量拼接。
+ *              模板版本写入缓存键和生成的脚本版本，用于区分不同提示词的生成结果
+ * @author ScriptCraft AI Team
+ */
+public interface PromptTemplateService {
+
+    // 完整脚本
+    String TEMPLATE_SCRIPT = "script";
+
+    // 分段生成：大纲
+    String TEMPLATE_OUTLINE = "outline";
+
+    // 分段生成：单个分镜正文
+    String TEMPLATE_SCENE_BODY = "scene-body";
+
+    // 分段生成：视频元素
+    String TEMPLATE_VIDEO_ELEMENTS = "video-elements";
+
+    // 分段生成：备选标题和结尾话术
+    String TEMPLATE_EXTRAS = "extras";
+
+    // 重写单个分镜
+    String TEMPLATE_SCENE_REWRITE = "scene-rewrite";
+
+    // 保持锁定分镜整体重新生成
+    String TEMPLATE_REGENERATION = "regeneration";
+
+    // 脚本中断后从指定分镜续写
+    String TEMPLATE_CONTINUATION = "continuation";
+
+    /**
+     * 渲染提示词
+     *
+     * @param name 模板名称
+     * @param values 变量值
+     * @return 提示词
+     */
+    String render(String name, Map<String, String> values);
+
+    /**
+     * 获取当前模板版本
+     *
+     * @return 模板版本
+     */
+    String getVersion();
+}
@@ -2,13 +2,16 @@ package com.scriptcraftai.backend.service;
 
 import com.scriptcraftai.backend.dto.GenerateScriptDTO;
 import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.dto.ScriptStreamEvent;
 import com.scriptcraftai.backend.dto.ScriptVersionBriefDTO;
+import com.scriptcraftai.backend.entity.ScriptSession;
 import com.scriptcraftai.backend.entity.ScriptVersion;
 import com.scriptcraftai.backend.request.GenerateScriptRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * 脚本服务接口
@@ -17,15 +20,42 @@ import java.util.concurrent.CompletableFuture;
  * @author ScriptCraft AI Team
  */
 public interface ScriptService {
+
+    // 重新生成模式：逐个分镜重新生成
+    String REGENERATE_MODE_SCENE = "scene";
+
+    // 重新生成模式：整体重新生成后合并锁定分镜
+    String REGENERATE_MODE_FULL = "full";
     
     /**
-     * 生成脚本（2-3个方案）
+     * 写入生成中状态的会话
      * 
      * @param request 生成请求
      * @param userId 用户ID
-     * @return 生成结果（异步）
+     * @return 会话对象
+     */
+    ScriptSession createPendingSession(GenerateScriptRequest request, String userId);
+
+    /**
+     * 为已创建的会话生成脚本
+     * 
+     * @description 由异步生成任务执行，重复执行时先把会话恢复为生成中；
+     *              失败或被取消（停机移交任务）时会话保持生成中，是否重试以及不再重试时标记会话失败由调用方决定
+     * @param session 生成中的会话
+     * @param request 生成请求
+     * @return 生成结果（异步，等待AI期间不占用线程）
      */
-    CompletableFuture<GenerateScriptDTO> generateScripts(GenerateScriptRequest request, String userId);
+    Mono<GenerateScriptDTO> generateScripts(ScriptSession session, GenerateScriptRequest request);
+
+    /**
+     * 流式生成脚本
+     * 
+     * @description 逐个推送标题、分镜、视频元素和结尾话术，生成完成后保存并推送done事件
+     * @param request 生成请求
+     * @param userId 用户ID
+     * @return 脚本事件流
+     */
+    Flux<ScriptStreamEvent> streamScripts(GenerateScriptRequest request, String userId);
     
     /**
      * 获取脚本版本详情
@@ -36,6 +66,15 @@ public interface ScriptService {
      */
     ScriptVersion getVersionDetail(String versionId, String userId);
     
+    /**
+     * 获取脚本内容的存储信息（排查问题用）
+     * 
+     * @param versionId 版本ID
+     * @param userId 用户ID
+     * @return 存储格式、存储字节数和转换后的JSON文本
+     */
+    Map<String, Object> getStoredContent(String versionId, String userId);
+    
     /**
      * 更新脚本内容
      * 
@@ -66,13 +105,14 @@ public interface ScriptService {
     /**
      * 获取用户的生成历史
      * 
+     * @description 按创建时间倒序分页，游标为上一页返回的nextCursor，没有更多记录时nextCursor为空
      * @param userId 用户ID
-     * @param page 页码
+     * @param cursor 分页游标，第一页为null
      * @param pageSize 每页数量
-     * @param videoType 视频类型
+     * @param videoType 视频类型（精确匹配）
      * @return 历史记录
      */
-    Map<String, Object> getUserHistory(String userId, Integer page, Integer pageSize, String videoType);
+    Map<String, Object> getUserHistory(String userId, String cursor, Integer pageSize, String videoType);
 
     /**
      * 删除会话
@@ -93,10 +133,14 @@ public interface ScriptService {
     /**
      * 基于现有脚本重新生成（保持锁定分镜不变）
      *
+     * @description scene模式只为未锁定的分镜各自并发发起小请求，结果按索引拼回；
+     *              full模式让模型返回完整脚本后再合并锁定分镜
      * @param versionId 基础版本ID
+     * @param mode 重新生成模式（scene/full），为空时使用scene
      * @param userId 用户ID
-     * @return 重新生成的脚本内容
+     * @param idempotencyKey 幂等键，客户端重试时携带相同的键直接返回第一次的结果，可为空
+     * @return 重新生成的脚本内容（异步）
      */
-    ScriptContentDTO regenerateScript(String versionId, String userId);
+    Mono<ScriptContentDTO> regenerateScript(String versionId, String mode, String userId, String idempotencyKey);
 }
 
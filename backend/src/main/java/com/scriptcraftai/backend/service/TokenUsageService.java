@@ -0,0 +1,40 @@
+package com.scriptcraftai.backend.service;
+
+import com.scriptcraftai.backend.util.UsageAttribution;
+
+/**
+ * token用量服务接口
+ *
+ * @description 记录每次AI调用的token用量：按用户累加Redis中的当天、当月计数（用于配额），
+ *              按日期、用户、视频类型、提示词版本和模型汇总后定期写入数据库，并记录token和费用指标
+ * @author ScriptCraft AI Team
+ */
+public interface TokenUsageService {
+
+    /**
+     * 生成排队前检查用户配额
+     *
+     * @description 用量在调用结束后才计入，已排队的生成不受影响，实际用量可能略超配额
+     * @param userId 用户ID
+     * @throws com.scriptcraftai.backend.exception.QuotaExceededException 当天或当月用量已达配额
+     */
+    void checkQuota(String userId);
+
+    /**
+     * 记录一次AI调用的token用量
+     *
+     * @param attribution 用量归属
+     * @param promptVersion 提示词模板版本
+     * @param model 模型名称
+     * @param latencyNanos 调用耗时（纳秒）
+     * @param inputTokens 输入token数，未知时为null
+     * @param outputTokens 输出token数，未知时为null
+     */
+    void record(UsageAttribution attribution, String promptVersion, String model, long latencyNanos,
+                Integer inputTokens, Integer outputTokens);
+
+    /**
+     * 将内存中的汇总写入数据库
+     */
+    void flush();
+}
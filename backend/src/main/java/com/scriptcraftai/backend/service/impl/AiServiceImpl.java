@@ -1,22 +1,51 @@
 package com.scriptcraftai.backend.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.config.WebClientConfig;
 import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.dto.ScriptOutlineDTO;
+import com.scriptcraftai.backend.dto.ScriptStreamEvent;
 import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
 import com.scriptcraftai.backend.service.AiService;
+import com.scriptcraftai.backend.service.ModelRouter;
+import com.scriptcraftai.backend.service.PromptTemplateService;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.util.AdaptiveConcurrencyLimiter;
+import com.scriptcraftai.backend.util.CircuitBreaker;
+import com.scriptcraftai.backend.util.DashScopeResponseParser;
+import com.scriptcraftai.backend.util.ExceptionUtils;
+import com.scriptcraftai.backend.util.JsonRepair;
+import com.scriptcraftai.backend.util.RequestDeadline;
+import com.scriptcraftai.backend.util.ScriptPrompts;
+import com.scriptcraftai.backend.util.ScriptStreamAssembler;
+import com.scriptcraftai.backend.util.UsageAttribution;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * AI服务实现类
@@ -37,11 +66,59 @@ public class AiServiceImpl implements AiService {
     @Value("${tongyi.model}")
     private String model;
     
+    @Value("${scriptcraft.generation.mode:" + GENERATION_MODE_MONOLITHIC + "}")
+    private String generationMode;
+    
     @Autowired
+    @Qualifier(WebClientConfig.TONGYI_WEB_CLIENT)
     private WebClient webClient;
     
     @Autowired
     private ObjectMapper objectMapper;
+    
+    @Autowired
+    @Qualifier(AsyncConfig.AI_IO_SCHEDULER)
+    private Scheduler aiIoScheduler;
+    
+    @Autowired
+    @Qualifier(WebClientConfig.TONGYI_LIMITER)
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    
+    @Autowired
+    @Qualifier(WebClientConfig.TONGYI_CIRCUIT_BREAKER)
+    private CircuitBreaker circuitBreaker;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ModelRouter modelRouter;
+    
+    @Autowired
+    private PromptTemplateService promptTemplateService;
+    
+    @Autowired
+    private TokenUsageService tokenUsageService;
+
+    // 解析结果的类型（指标标签）
+    private static final String KIND_SCRIPT = "script";
+    private static final String KIND_OUTLINE = "outline";
+    private static final String KIND_SCENE = "scene";
+    private static final String KIND_VIDEO_ELEMENTS = "video_elements";
+    private static final String KIND_EXTRAS = "extras";
+    private static final String KIND_CONTINUATION = "continuation";
+
+    // 重新生成单个分镜时的采样温度，略高于默认值使新内容与原文案有所区别
+    private static final Double SCENE_TEMPERATURE = 0.9;
+
+    // 单次非流式调用的超时上限，请求剩余时间更短时以剩余时间为准
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(60);
+
+    // 流式响应两个分片之间的最长等待时间
+    private static final Duration STREAM_IDLE_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
 
     /**
      * 生成单个脚本内容
@@ -52,106 +129,545 @@ public class AiServiceImpl implements AiService {
      * @return 脚本内容（异步）
      */
     @Override
-    @Async
     public CompletableFuture<ScriptContentDTO> generateScript(String videoType, 
                                                               String themeInput, 
                                                               String stylePreference) {
-        log.info("开始生成脚本: videoType={}, theme={}", videoType, themeInput);
-        
-        try {
-            // 1. 构建提示词
-            String prompt = buildPrompt(videoType, themeInput, stylePreference);
-            
-            // 2. 调用通义千问API
-            String response = callTongyiApi(prompt);
-            
-            // 3. 解析响应
-            ScriptContentDTO content = parseResponse(response);
+        return generateScriptReactive(videoType, themeInput, stylePreference).toFuture();
+    }
+
+    /**
+     * 生成单个脚本内容（响应式）
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @return 脚本内容
+     */
+    @Override
+    public Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                         String themeInput, 
+                                                         String stylePreference) {
+        return generateScriptReactive(videoType, themeInput, stylePreference, 0);
+    }
+
+    /**
+     * 生成指定方案的脚本内容（响应式）
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 脚本内容
+     */
+    @Override
+    public Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                         String themeInput, 
+                                                         String stylePreference,
+                                                         int variant) {
+        return generateScriptReactive(videoType, themeInput, stylePreference, variant, generationMode);
+    }
+
+    /**
+     * 以指定的生成方式生成脚本内容（响应式）
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @param mode 生成方式（monolithic/decomposed）
+     * @return 脚本内容
+     */
+    @Override
+    public Mono<ScriptContentDTO> generateScriptReactive(String videoType, 
+                                                         String themeInput, 
+                                                         String stylePreference,
+                                                         int variant,
+                                                         String mode) {
+        // 重新生成的提示词已包含锁定分镜，不拆分
+        if (GENERATION_MODE_DECOMPOSED.equals(mode) && !VIDEO_TYPE_REGENERATION.equals(videoType)) {
+            return generateDecomposed(videoType, themeInput, stylePreference, variant);
+        }
+        return Mono.defer(() -> {
+                    log.info("开始生成脚本: videoType={}, theme={}, variant={}", videoType, themeInput, variant);
+                    
+                    // 1. 构建提示词（重新生成时主题描述即为完整提示词，只改写未锁定的分镜，按局部生成选择模型）
+                    boolean regeneration = VIDEO_TYPE_REGENERATION.equals(videoType);
+                    String requirements = regeneration
+                            ? null : ScriptPrompts.requirements(videoType, themeInput, stylePreference, variant);
+                    String prompt = regeneration
+                            ? themeInput
+                            : promptTemplateService.render(PromptTemplateService.TEMPLATE_SCRIPT,
+                                    Map.of("requirements", requirements));
+                    String task = regeneration ? ModelRouter.TASK_PARTIAL : ModelRouter.TASK_FULL_SCRIPT;
+                    Double temperature = variantTemperature(variant);
+                    
+                    // 2. 调用通义千问API（等待期间不占用线程），在AI线程池中解析响应，避免占用Netty事件循环
+                    return callTongyiApi(prompt, temperature, task)
+                            .publishOn(aiIoScheduler)
+                            .map(content -> parse(content, ScriptContentDTO.class, KIND_SCRIPT))
+                            .flatMap(parsed -> ensureComplete(parsed, requirements, temperature));
+                })
+                .doOnNext(content -> log.info("脚本生成成功: title={}", content.getTitle()))
+                .onErrorMap(this::toGenerationError);
+    }
+
+    /**
+     * 流式生成单个脚本内容
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @return 脚本事件流
+     */
+    @Override
+    public Flux<ScriptStreamEvent> streamScript(String videoType, 
+                                                String themeInput, 
+                                                String stylePreference) {
+        return streamScript(videoType, themeInput, stylePreference, 0);
+    }
+
+    /**
+     * 流式生成指定方案的脚本内容
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 脚本事件流
+     */
+    @Override
+    public Flux<ScriptStreamEvent> streamScript(String videoType, 
+                                                String themeInput, 
+                                                String stylePreference,
+                                                int variant) {
+        return Flux.defer(() -> {
+            log.info("开始流式生成脚本: videoType={}, theme={}, variant={}", videoType, themeInput, variant);
             
-            log.info("脚本生成成功: title={}", content.getTitle());
-            return CompletableFuture.completedFuture(content);
+            String requirements = ScriptPrompts.requirements(videoType, themeInput, stylePreference, variant);
+            String prompt = promptTemplateService.render(PromptTemplateService.TEMPLATE_SCRIPT,
+                    Map.of("requirements", requirements));
+            Double temperature = variantTemperature(variant);
+            ScriptStreamAssembler assembler = new ScriptStreamAssembler(objectMapper);
+            // 保留原文，组装器无法完成解析时用于修复
+            StringBuilder received = new StringBuilder();
             
-        } catch (Exception e) {
-            log.error("脚本生成失败: {}", e.getMessage(), e);
-            throw new BusinessException("AI脚本生成失败，请稍后重试");
-        }
+            return callTongyiApiStream(prompt, temperature)
+                    .doOnNext(received::append)
+                    .concatMapIterable(assembler::append)
+                    .concatWith(Mono.fromCallable(() -> new Parsed<>(assembler.finish(), false))
+                            .onErrorResume(e -> Mono.fromCallable(() ->
+                                    parse(received.toString(), ScriptContentDTO.class, KIND_SCRIPT)))
+                            .flatMap(parsed -> ensureComplete(parsed, requirements, temperature))
+                            .map(content -> {
+                                log.info("流式脚本生成成功: title={}", content.getTitle());
+                                return ScriptStreamEvent.complete(content);
+                            }));
+        });
+    }
+
+    /**
+     * 分段生成脚本内容
+     * 
+     * @description 先生成大纲（标题和分镜要点），再并发生成每个分镜的正文、视频元素、
+     *              备选标题和结尾话术，最后按大纲顺序组装。任一部分失败时整体失败
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 脚本内容
+     */
+    private Mono<ScriptContentDTO> generateDecomposed(String videoType, 
+                                                      String themeInput, 
+                                                      String stylePreference,
+                                                      int variant) {
+        Double temperature = variantTemperature(variant);
+        return Mono.defer(() -> {
+                    log.info("开始分段生成脚本: videoType={}, theme={}, variant={}", videoType, themeInput, variant);
+                    return callTongyiApi(buildOutlinePrompt(videoType, themeInput, stylePreference, variant),
+                            temperature, ModelRouter.TASK_FULL_SCRIPT);
+                })
+                .publishOn(aiIoScheduler)
+                .map(content -> parseJson(content, ScriptOutlineDTO.class, KIND_OUTLINE))
+                .flatMap(outline -> {
+                    if (outline.getScenes() == null || outline.getScenes().length == 0) {
+                        return Mono.error(new BusinessException("AI返回的大纲为空"));
+                    }
+                    return generateParts(outline, videoType, themeInput, stylePreference, temperature);
+                })
+                .doOnNext(content -> log.info("分段脚本生成成功: title={}, scenes={}",
+                        content.getTitle(), content.getScenes().length))
+                .onErrorMap(this::toGenerationError);
+    }
+
+    /**
+     * 按大纲并发生成各部分并组装
+     * 
+     * @param outline 脚本大纲
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param temperature 采样温度
+     * @return 组装后的脚本内容
+     */
+    private Mono<ScriptContentDTO> generateParts(ScriptOutlineDTO outline,
+                                                 String videoType,
+                                                 String themeInput,
+                                                 String stylePreference,
+                                                 Double temperature) {
+        String brief = buildBrief(videoType, themeInput, stylePreference, outline);
+        ScriptOutlineDTO.OutlineSceneDTO[] outlineScenes = outline.getScenes();
+
+        // 分镜正文：每个分镜一个请求，结果按大纲顺序排列，时间范围以大纲为准
+        Mono<ScriptContentDTO.SceneDTO[]> scenes = Flux.range(0, outlineScenes.length)
+                .flatMapSequential(index -> callTongyiApi(buildSceneBodyPrompt(brief, outlineScenes, index),
+                                temperature, ModelRouter.TASK_PARTIAL)
+                        .publishOn(aiIoScheduler)
+                        .map(content -> {
+                            ScriptContentDTO.SceneDTO scene =
+                                    parseJson(content, ScriptContentDTO.SceneDTO.class, KIND_SCENE);
+                            scene.setTimeRange(outlineScenes[index].getTimeRange());
+                            return scene;
+                        }), outlineScenes.length)
+                .collectList()
+                .map(list -> list.toArray(new ScriptContentDTO.SceneDTO[0]));
+
+        Mono<ScriptContentDTO.VideoElementsDTO> videoElements =
+                callTongyiApi(buildVideoElementsPrompt(brief), temperature, ModelRouter.TASK_PARTIAL)
+                        .publishOn(aiIoScheduler)
+                        .map(content -> parseJson(content, ScriptContentDTO.VideoElementsDTO.class,
+                                KIND_VIDEO_ELEMENTS));
+
+        // 备选标题和结尾话术都很短，合并为一个请求
+        Mono<ScriptContentDTO> extras = callTongyiApi(buildExtrasPrompt(brief), temperature, ModelRouter.TASK_TITLES)
+                .publishOn(aiIoScheduler)
+                .map(content -> parseJson(content, ScriptContentDTO.class, KIND_EXTRAS));
+
+        return Mono.zip(scenes, videoElements, extras)
+                .map(parts -> new ScriptContentDTO(
+                        outline.getTitle(),
+                        parts.getT3().getAlternativeTitles(),
+                        parts.getT1(),
+                        parts.getT2(),
+                        parts.getT3().getEndingCTA()));
+    }
+
+    /**
+     * 重新生成单个分镜（响应式）
+     * 
+     * @param title 脚本标题
+     * @param scenes 全部分镜
+     * @param sceneIndex 需要重新生成的分镜索引
+     * @return 新的分镜内容
+     */
+    @Override
+    public Mono<ScriptContentDTO.SceneDTO> regenerateScene(String title, 
+                                                           ScriptContentDTO.SceneDTO[] scenes, 
+                                                           int sceneIndex) {
+        return Mono.defer(() -> {
+                    log.info("开始重新生成分镜: title={}, sceneIndex={}", title, sceneIndex);
+                    return callTongyiApi(buildScenePrompt(title, scenes, sceneIndex), SCENE_TEMPERATURE,
+                            ModelRouter.TASK_PARTIAL);
+                })
+                .publishOn(aiIoScheduler)
+                .map(content -> parseJson(content, ScriptContentDTO.SceneDTO.class, KIND_SCENE))
+                .onErrorMap(this::toGenerationError);
+    }
+
+    @Override
+    public String getPromptVersion() {
+        // 两种生成方式的结果不等价，缓存互不复用
+        String version = promptTemplateService.getVersion();
+        return GENERATION_MODE_DECOMPOSED.equals(generationMode)
+                ? version + "-" + GENERATION_MODE_DECOMPOSED : version;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted();
     }
 
     /**
-     * 构建提示词
+     * 构建大纲提示词
      * 
+     * @description 只要求标题和每个分镜一句话的要点，输出很短
      * @param videoType 视频类型
      * @param themeInput 主题描述
      * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
      * @return 提示词
      */
-    private String buildPrompt(String videoType, String themeInput, String stylePreference) {
-        StringBuilder prompt = new StringBuilder();
-        // 增强专家设定
-        prompt.append("你是一位资深的短视频内容专家，有着丰富的创作经验。\n");
-        prompt.append("特别擅长将复杂专业知识转化为通俗易懂的短视频内容。\n");
-        prompt.append("你的脚本总是准确、专业、有趣，并且具有很强的实用价值。\n\n");
-        // 内容要求
-        prompt.append("创作要求：\n");
-        prompt.append("1. 深入理解主题的专业内涵\n");
-        prompt.append("2. 使用准确的术语和概念\n");
-        prompt.append("3. 避免常识性错误\n");
-        prompt.append("4. 提供可操作的实用建议\n");
-        prompt.append("5. 保持内容有趣性和可看性\n\n");
-    
-        // 领域分析
-        prompt.append("请先分析这个主题涉及的专业领域和关键要点：\n");
-        prompt.append("- 核心概念：\n");
-        prompt.append("- 实用技巧：\n");
-        prompt.append("- 注意事项：\n");
-        prompt.append("- 常见误区：\n\n");
-        // 脚本要求
-        prompt.append("请根据以下要求生成一个完整的短视频脚本：\n\n");
-        prompt.append("视频类型：").append(getVideoTypeLabel(videoType)).append("\n");
-        prompt.append("主题：").append(themeInput).append("\n");
-        
-        if (stylePreference != null && !stylePreference.isEmpty()) {
-            prompt.append("风格：").append(getStyleLabel(stylePreference)).append("\n");
+    private String buildOutlinePrompt(String videoType, String themeInput, String stylePreference, int variant) {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_OUTLINE,
+                Map.of("requirements", ScriptPrompts.requirements(videoType, themeInput, stylePreference, variant)));
+    }
+
+    /**
+     * 构建各部分共用的背景：视频要求和大纲
+     * 
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param outline 脚本大纲
+     * @return 背景说明
+     */
+    private String buildBrief(String videoType, String themeInput, String stylePreference, ScriptOutlineDTO outline) {
+        StringBuilder brief = new StringBuilder();
+        ScriptPrompts.appendRequirements(brief, videoType, themeInput, stylePreference, 0);
+        brief.append("脚本标题：").append(outline.getTitle()).append("\n\n");
+        brief.append("脚本大纲：\n");
+        ScriptOutlineDTO.OutlineSceneDTO[] scenes = outline.getScenes();
+        for (int i = 0; i < scenes.length; i++) {
+            brief.append(i + 1).append(". ").append(scenes[i].getTimeRange())
+                    .append("：").append(scenes[i].getPoint()).append("\n");
+        }
+        return brief.append("\n").toString();
+    }
+
+    /**
+     * 构建分镜正文提示词
+     * 
+     * @param brief 视频要求和大纲
+     * @param scenes 大纲中的分镜要点
+     * @param sceneIndex 需要展开的分镜索引
+     * @return 提示词
+     */
+    private String buildSceneBodyPrompt(String brief, ScriptOutlineDTO.OutlineSceneDTO[] scenes, int sceneIndex) {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_SCENE_BODY, Map.of(
+                "brief", brief,
+                "sceneNumber", String.valueOf(sceneIndex + 1),
+                "timeRange", Objects.toString(scenes[sceneIndex].getTimeRange(), ""),
+                "point", Objects.toString(scenes[sceneIndex].getPoint(), "")));
+    }
+
+    /**
+     * 构建视频元素提示词
+     * 
+     * @param brief 视频要求和大纲
+     * @return 提示词
+     */
+    private String buildVideoElementsPrompt(String brief) {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_VIDEO_ELEMENTS, Map.of("brief", brief));
+    }
+
+    /**
+     * 构建备选标题和结尾话术提示词
+     * 
+     * @param brief 视频要求和大纲
+     * @return 提示词
+     */
+    private String buildExtrasPrompt(String brief) {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_EXTRAS, Map.of("brief", brief));
+    }
+
+    /**
+     * 构建单个分镜的重新生成提示词
+     * 
+     * @description 只带上相邻分镜，不发送整个脚本，也不要求模型返回完整JSON
+     * @param title 脚本标题
+     * @param scenes 全部分镜
+     * @param sceneIndex 需要重新生成的分镜索引
+     * @return 提示词
+     */
+    private String buildScenePrompt(String title, ScriptContentDTO.SceneDTO[] scenes, int sceneIndex) {
+        ScriptContentDTO.SceneDTO current = scenes[sceneIndex];
+        StringBuilder context = new StringBuilder();
+        if (sceneIndex > 0) {
+            appendSceneContext(context, "上一个分镜", scenes[sceneIndex - 1]);
+        }
+        context.append("当前分镜（需要重写）：\n");
+        context.append("- 时间范围：").append(current.getTimeRange()).append("\n");
+        context.append("- 原文案：").append(current.getVoiceover()).append("\n");
+        if (sceneIndex < scenes.length - 1) {
+            context.append("\n");
+            appendSceneContext(context, "下一个分镜", scenes[sceneIndex + 1]);
         }
         
-        prompt.append("\n请按照以下JSON格式返回脚本内容（直接返回JSON，不要有任何其他说明文字）：\n");
-        prompt.append("{\n");
-        prompt.append("  \"title\": \"脚本标题\",\n");
-        prompt.append("  \"alternativeTitles\": [\"备选标题1\", \"备选标题2\"],\n");
-        prompt.append("  \"scenes\": [\n");
-        prompt.append("    {\n");
-        prompt.append("      \"timeRange\": \"0-10秒\",\n");
-        prompt.append("      \"visualDescription\": \"画面描述\",\n");
-        prompt.append("      \"voiceover\": \"文案/旁白\",\n");
-        prompt.append("      \"subtitle\": \"字幕提示\"\n");
-        prompt.append("    }\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"videoElements\": {\n");
-        prompt.append("    \"bgmStyle\": \"BGM风格建议\",\n");
-        prompt.append("    \"shootingLocation\": \"拍摄场地建议\",\n");
-        prompt.append("    \"effects\": \"特效/转场建议\"\n");
-        prompt.append("  },\n");
-        prompt.append("  \"endingCTA\": [\"结尾话术1\", \"结尾话术2\", \"结尾话术3\"]\n");
-        prompt.append("}\n\n");
-        prompt.append("要求：\n");
-        prompt.append("1. 脚本时长控制在60秒内\n");
-        prompt.append("2. 分镜数量3-6个\n");
-        prompt.append("3. 每个分镜的文案简洁有力\n");
-        prompt.append("4. 画面描述要具体可执行\n");
-        prompt.append("5. 确保返回的是纯JSON格式，不要包含任何markdown标记或其他文字");
-        
-        return prompt.toString();
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_SCENE_REWRITE, Map.of(
+                "title", Objects.toString(title, ""),
+                "sceneNumber", String.valueOf(sceneIndex + 1),
+                "sceneCount", String.valueOf(scenes.length),
+                "scenes", context.toString()));
+    }
+
+    /**
+     * 追加相邻分镜作为上下文
+     * 
+     * @param prompt 提示词
+     * @param label 分镜说明
+     * @param scene 相邻分镜
+     */
+    private void appendSceneContext(StringBuilder prompt, String label, ScriptContentDTO.SceneDTO scene) {
+        prompt.append(label).append("：\n");
+        prompt.append("- 画面描述：").append(scene.getVisualDescription()).append("\n");
+        prompt.append("- 文案/旁白：").append(scene.getVoiceover()).append("\n");
     }
 
     /**
      * 调用通义千问API
      * 
+     * @description 响应体按网络分片增量解析，只提取生成内容，不拼接完整响应字符串
+     * @param prompt 提示词
+     * @param temperature 采样温度，为空时使用模型默认值
+     * @param task 任务类型，决定使用的模型
+     * @return AI生成的文本内容
+     */
+    private Mono<String> callTongyiApi(String prompt, Double temperature, String task) {
+        // 熔断打开时立即失败，不排队也不等待上游超时
+        return circuitBreaker.protect(Mono.deferContextual(context -> {
+            // 在排队之前选择模型，排队过深时本次调用直接使用降级模型
+            String modelName = modelRouter.route(task);
+            UsageAttribution attribution = UsageAttribution.from(context);
+            Map<String, Object> requestBody = buildRequestBody(modelName, prompt, false, temperature);
+            AtomicLong startedAt = new AtomicLong();
+            
+            Mono<DashScopeResponseParser> call = webClient.post()
+                    .uri(apiUrl)
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("Content-Type", "application/json")
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .collect(() -> new DashScopeResponseParser(objectMapper.getFactory()), this::feedResponse)
+                    .map(DashScopeResponseParser::endOfInput)
+                    .doOnSubscribe(subscription -> startedAt.set(System.nanoTime()));
+            
+            // 超出自适应并发上限时排队，排队失败直接返回503；请求取消时中止HTTP调用并归还许可
+            return concurrencyLimiter.limit(RequestDeadline.timeout(call, CALL_TIMEOUT))
+                    .doOnNext(parser -> recordCall(attribution, task, modelName, startedAt.get(),
+                            parser.getContent() != null, parser))
+                    .doOnError(e -> recordFailedCall(task, modelName, startedAt.get()))
+                    .doOnCancel(() -> recordCancelled("chat"))
+                    .map(this::extractContent)
+                    .onErrorMap(e -> !(e instanceof BusinessException), e -> {
+                        log.error("调用通义千问API失败: {}", e.getMessage(), e);
+                        // 保留原因，熔断器据此区分上游故障
+                        return new BusinessException(500, "AI服务调用失败，请稍后重试", e);
+                    });
+        }));
+    }
+
+    /**
+     * 记录一次完成的调用：模型耗时和token用量用于路由，token用量同时按用户、视频类型和提示词版本计入
+     * 
+     * @param attribution 用量归属
+     * @param task 任务类型
+     * @param modelName 模型名称
+     * @param startedAt 开始调用的时间（纳秒）
+     * @param success 是否成功
+     * @param usage 带token用量的响应解析结果，没有时为null
+     */
+    private void recordCall(UsageAttribution attribution, String task, String modelName, long startedAt,
+                            boolean success, DashScopeResponseParser usage) {
+        long latencyNanos = System.nanoTime() - startedAt;
+        Integer inputTokens = usage != null ? usage.getInputTokens() : null;
+        Integer outputTokens = usage != null ? usage.getOutputTokens() : null;
+        modelRouter.recordCall(task, modelName, latencyNanos, success, inputTokens, outputTokens);
+        tokenUsageService.record(attribution, getPromptVersion(), modelName, latencyNanos, inputTokens, outputTokens);
+    }
+
+    /**
+     * 记录一次失败的调用（包括超时），排队阶段就失败的调用没有发往模型，不计入
+     * 
+     * @param task 任务类型
+     * @param modelName 模型名称
+     * @param startedAt 开始调用的时间（纳秒），未开始时为0
+     */
+    private void recordFailedCall(String task, String modelName, long startedAt) {
+        if (startedAt != 0) {
+            modelRouter.recordCall(task, modelName, System.nanoTime() - startedAt, false, null, null);
+        }
+    }
+
+    /**
+     * 将一个响应分片喂给解析器并释放分片
+     * 
+     * @param parser 响应解析器
+     * @param buffer 响应分片
+     */
+    private void feedResponse(DashScopeResponseParser parser, DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                parser.feed(iterator.next());
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * 从解析结果中取出生成内容
+     * 
+     * @param parser 响应解析器
+     * @return 生成内容
+     */
+    private String extractContent(DashScopeResponseParser parser) {
+        if (parser.getContent() == null) {
+            log.error("通义千问API返回错误: code={}, message={}", parser.getCode(), parser.getMessage());
+            throw new BusinessException("AI服务调用失败，请稍后重试");
+        }
+        log.debug("通义千问API响应: {} chars", parser.getContent().length());
+        return parser.getContent();
+    }
+
+    /**
+     * 以SSE方式调用通义千问API（增量输出）
+     * 
      * @param prompt 提示词
-     * @return API响应
+     * @param temperature 采样温度，为空时使用模型默认值
+     * @return 每个分片新增的文本内容
      */
-    private String callTongyiApi(String prompt) {
+    private Flux<String> callTongyiApiStream(String prompt, Double temperature) {
+        return circuitBreaker.protect(Flux.deferContextual(context -> {
+            String task = ModelRouter.TASK_FULL_SCRIPT;
+            String modelName = modelRouter.route(task);
+            UsageAttribution attribution = UsageAttribution.from(context);
+            AtomicLong startedAt = new AtomicLong();
+            // token用量在最后一个分片中返回
+            AtomicReference<DashScopeResponseParser> lastChunk = new AtomicReference<>();
+            
+            Flux<ServerSentEvent<String>> call = webClient.post()
+                    .uri(apiUrl)
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("X-DashScope-SSE", "enable")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(buildRequestBody(modelName, prompt, true, temperature))
+                    .retrieve()
+                    .bodyToFlux(SSE_TYPE)
+                    .timeout(STREAM_IDLE_TIMEOUT)
+                    .doOnSubscribe(subscription -> startedAt.set(System.nanoTime()));
+            
+            // 整个流结束后才归还并发许可，请求取消时中止HTTP调用
+            return concurrencyLimiter.limit(call)
+                    .doOnCancel(() -> recordCancelled("stream"))
+                    .map(ServerSentEvent::data)
+                    .filter(Objects::nonNull)
+                    .map(data -> extractDeltaContent(data, lastChunk))
+                    .filter(delta -> !delta.isEmpty())
+                    .doOnComplete(() -> recordCall(attribution, task, modelName, startedAt.get(), true,
+                            lastChunk.get()))
+                    .doOnError(e -> recordFailedCall(task, modelName, startedAt.get()))
+                    .onErrorMap(e -> !(e instanceof BusinessException), e -> {
+                        log.error("调用通义千问流式API失败: {}", e.getMessage(), e);
+                        // 保留原因，熔断器据此区分上游故障
+                        return new BusinessException(500, "AI服务调用失败，请稍后重试", e);
+                    });
+        }));
+    }
+
+    /**
+     * 构建通义千问请求体
+     * 
+     * @param modelName 模型名称
+     * @param prompt 提示词
+     * @param incremental 是否使用增量输出
+     * @param temperature 采样温度，为空时使用模型默认值
+     * @return 请求体
+     */
+    private Map<String, Object> buildRequestBody(String modelName, String prompt, boolean incremental,
+                                                 Double temperature) {
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", model);
+        requestBody.put("model", modelName);
         
         Map<String, Object> input = new HashMap<>();
         input.put("messages", new Object[]{
@@ -161,89 +677,236 @@ public class AiServiceImpl implements AiService {
         
         Map<String, Object> parameters = new HashMap<>();
         parameters.put("result_format", "message");
+        if (incremental) {
+            parameters.put("incremental_output", true);
+        }
+        if (temperature != null) {
+            parameters.put("temperature", temperature);
+        }
         requestBody.put("parameters", parameters);
-        
+        return requestBody;
+    }
+
+    /**
+     * 从流式分片中提取新增文本
+     * 
+     * @param data SSE分片数据
+     * @param lastChunk 保存最近一个带token用量的分片
+     * @return 新增文本
+     */
+    private String extractDeltaContent(String data, AtomicReference<DashScopeResponseParser> lastChunk) {
+        DashScopeResponseParser parser;
         try {
-            String response = webClient.post()
-                    .uri(apiUrl)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(60))
-                    .block();
-            
-            log.debug("通义千问API响应: {}", response);
-            return response;
-            
+            parser = DashScopeResponseParser.parse(objectMapper.getFactory(), data);
         } catch (Exception e) {
-            log.error("调用通义千问API失败: {}", e.getMessage(), e);
+            log.warn("解析流式分片失败: {}", data);
+            return "";
+        }
+        if (parser.getContent() == null && parser.getCode() != null) {
+            log.error("通义千问流式API返回错误: code={}, message={}", parser.getCode(), parser.getMessage());
             throw new BusinessException("AI服务调用失败，请稍后重试");
         }
+        if (parser.getOutputTokens() != null) {
+            lastChunk.set(parser);
+        }
+        return parser.getContent() != null ? parser.getContent() : "";
     }
 
     /**
-     * 解析API响应
+     * 记录被取消的上游调用（客户端断开或请求超时后不再等待结果）
      * 
-     * @param response API响应
-     * @return 脚本内容
+     * @param api 调用方式（chat/stream）
+     */
+    private void recordCancelled(String api) {
+        meterRegistry.counter("scriptcraft.ai.calls.cancelled", "api", api).increment();
+    }
+
+    /**
+     * 转换生成失败的异常
+     * 
+     * @description 过载异常（返回429/503）和请求超时异常原样抛出，其余异常统一为业务异常
+     * @param e 原始异常
+     * @return 转换后的异常
      */
-    private ScriptContentDTO parseResponse(String response) {
+    private Throwable toGenerationError(Throwable e) {
+        Throwable cause = ExceptionUtils.unwrap(e);
+        if (cause instanceof ServiceOverloadedException || cause instanceof DeadlineExceededException) {
+            return cause;
+        }
+        log.error("脚本生成失败: {}", cause.getMessage(), cause);
+        return new BusinessException("AI脚本生成失败，请稍后重试");
+    }
+
+    /**
+     * 获取方案的采样温度
+     * 
+     * @param variant 方案序号（从0开始）
+     * @return 采样温度，方案0使用模型默认值
+     */
+    private Double variantTemperature(int variant) {
+        return variant > 0 ? Math.min(1.2, 0.85 + 0.05 * variant) : null;
+    }
+
+    /**
+     * 解析AI输出的JSON
+     * 
+     * @description 先严格解析（跳过markdown标记和说明文字，忽略JSON之后的多余内容），
+     *              失败时修复常见格式问题后再解析一次，仍失败才报错
+     * @param content AI生成的文本内容
+     * @param type 目标类型
+     * @param kind 内容类型（指标标签）
+     * @return 解析结果
+     */
+    private <T> T parseJson(String content, Class<T> type, String kind) {
+        return parse(content, type, kind).value();
+    }
+
+    /**
+     * 解析AI输出的JSON，并记录是否因输出被截断而丢弃了末尾的内容
+     * 
+     * @param content AI生成的文本内容
+     * @param type 目标类型
+     * @param kind 内容类型（指标标签）
+     * @return 解析结果
+     */
+    <T> Parsed<T> parse(String content, Class<T> type, String kind) {
         try {
-            JsonNode root = objectMapper.readTree(response);
-            String content = root.at("/output/choices/0/message/content").asText();
-            
-            // 清理可能的markdown标记
-            content = content.replaceAll("```json\\s*", "")
-                           .replaceAll("```\\s*", "")
-                           .trim();
-            
-            return objectMapper.readValue(content, ScriptContentDTO.class);
-            
+            T value = ScriptStreamAssembler.read(objectMapper, content, type);
+            recordParse(kind, "clean");
+            return new Parsed<>(value, false);
         } catch (Exception e) {
-            log.error("解析AI响应失败: {}", e.getMessage(), e);
-            throw new BusinessException("解析AI响应失败，请重新生成");
+            log.warn("AI响应JSON格式错误，尝试修复: kind={}, {}", kind, e.getMessage());
         }
+        
+        JsonRepair.Result repaired = JsonRepair.repair(content);
+        if (repaired != null) {
+            try {
+                T value = ScriptStreamAssembler.read(objectMapper, repaired.json(), type);
+                repaired.fixes().forEach(fix ->
+                        meterRegistry.counter("scriptcraft.ai.response.fixes", "kind", kind, "fix", fix).increment());
+                recordParse(kind, "repaired");
+                log.info("AI响应JSON已修复: kind={}, fixes={}", kind, repaired.fixes());
+                return new Parsed<>(value, repaired.fixes().contains(JsonRepair.FIX_TRUNCATED));
+            } catch (Exception e) {
+                log.warn("修复后的AI响应仍无法解析: kind={}, {}", kind, e.getMessage());
+            }
+        }
+        recordParse(kind, "failed");
+        log.error("解析AI响应失败: kind={}, length={}", kind, content == null ? 0 : content.length());
+        throw new BusinessException("解析AI响应失败，请重新生成");
+    }
+
+    private void recordParse(String kind, String outcome) {
+        meterRegistry.counter("scriptcraft.ai.response.parse", "kind", kind, "outcome", outcome).increment();
     }
 
     /**
-     * 获取视频类型标签
+     * 解析结果
      * 
-     * @param type 类型代码
-     * @return 类型标签
+     * @param value 解析出的对象
+     * @param truncated 输出是否被截断（修复时丢弃了末尾不完整的内容）
      */
-    private String getVideoTypeLabel(String type) {
-        return switch (type) {
-            case "product_review" -> "产品测评";
-            case "knowledge" -> "知识科普";
-            case "vlog" -> "Vlog日记";
-            case "comedy" -> "搞笑剧情";
-            case "food" -> "美食制作";
-            case "makeup" -> "美妆教程";
-            case "movie" -> "影视解说";
-            case "unboxing" -> "开箱体验";
-            case "skill" -> "技能教学";
-            default -> "其他";
-        };
+    record Parsed<T>(T value, boolean truncated) {
     }
 
     /**
-     * 获取风格标签
+     * 输出被截断时从中断处续写
      * 
-     * @param style 风格代码
-     * @return 风格标签
+     * @description 能完整解析（包括修复格式问题后）的脚本照常接受，不按分镜数量等内容规则追加调用；
+     *              只有输出被截断、修复时丢弃了末尾的内容才续写缺失的部分，不重新生成整个脚本。
+     *              不完整的分镜（缺少画面描述或文案）及其后的分镜被丢弃。没有视频要求（重新生成）时不续写，
+     *              返回修复后的内容
+     * @param parsed 解析出的脚本
+     * @param requirements 视频要求，为null时不续写
+     * @param temperature 采样温度
+     * @return 完整的脚本
      */
-    private String getStyleLabel(String style) {
-        return switch (style) {
-            case "humorous" -> "幽默风趣";
-            case "professional" -> "专业严谨";
-            case "cute" -> "亲切可爱";
-            case "passionate" -> "激情澎湃";
-            case "emotional" -> "温情故事";
-            case "suspenseful" -> "悬念刺激";
-            default -> "";
-        };
+    Mono<ScriptContentDTO> ensureComplete(Parsed<ScriptContentDTO> parsed, String requirements, Double temperature) {
+        ScriptContentDTO content = parsed.value();
+        if (!parsed.truncated()) {
+            return Mono.just(content);
+        }
+        ScriptContentDTO.SceneDTO[] scenes = completeScenes(content.getScenes());
+        content.setScenes(scenes);
+        if (requirements == null || isBlank(content.getTitle())) {
+            return Mono.just(content);
+        }
+        
+        log.info("AI返回脚本被截断，从第{}个分镜续写: title={}", scenes.length + 1, content.getTitle());
+        String prompt = promptTemplateService.render(PromptTemplateService.TEMPLATE_CONTINUATION, Map.of(
+                "requirements", requirements,
+                "title", content.getTitle(),
+                "scenes", describeScenes(scenes),
+                "sceneNumber", String.valueOf(scenes.length + 1)));
+        return callTongyiApi(prompt, temperature, ModelRouter.TASK_PARTIAL)
+                .publishOn(aiIoScheduler)
+                .map(rest -> mergeContinuation(content,
+                        parseJson(rest, ScriptContentDTO.class, KIND_CONTINUATION)))
+                .doOnSuccess(merged -> meterRegistry.counter("scriptcraft.ai.response.continuation",
+                        "outcome", "success").increment())
+                .doOnError(e -> meterRegistry.counter("scriptcraft.ai.response.continuation",
+                        "outcome", "failed").increment());
     }
-}
 
+    /**
+     * 保留开头连续的完整分镜
+     * 
+     * @param scenes 解析出的分镜
+     * @return 完整的分镜
+     */
+    private ScriptContentDTO.SceneDTO[] completeScenes(ScriptContentDTO.SceneDTO[] scenes) {
+        if (scenes == null) {
+            return new ScriptContentDTO.SceneDTO[0];
+        }
+        int count = 0;
+        while (count < scenes.length && scenes[count] != null
+                && !isBlank(scenes[count].getVisualDescription()) && !isBlank(scenes[count].getVoiceover())) {
+            count++;
+        }
+        return count == scenes.length ? scenes : Arrays.copyOf(scenes, count);
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * 描述已完成的分镜，作为续写的上下文
+     * 
+     * @param scenes 已完成的分镜
+     * @return 分镜描述
+     */
+    private String describeScenes(ScriptContentDTO.SceneDTO[] scenes) {
+        if (scenes.length == 0) {
+            return "（无）\n";
+        }
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < scenes.length; i++) {
+            description.append(i + 1).append(". ").append(scenes[i].getTimeRange()).append("\n");
+            description.append("- 画面描述：").append(scenes[i].getVisualDescription()).append("\n");
+            description.append("- 文案/旁白：").append(scenes[i].getVoiceover()).append("\n");
+        }
+        return description.toString();
+    }
+
+    /**
+     * 将续写的部分拼接到已完成的脚本后
+     * 
+     * @param content 已完成的脚本
+     * @param rest 续写的部分
+     * @return 拼接后的脚本
+     */
+    private ScriptContentDTO mergeContinuation(ScriptContentDTO content, ScriptContentDTO rest) {
+        ScriptContentDTO.SceneDTO[] restScenes = completeScenes(rest.getScenes());
+        ScriptContentDTO.SceneDTO[] scenes = Arrays.copyOf(content.getScenes(),
+                content.getScenes().length + restScenes.length);
+        System.arraycopy(restScenes, 0, scenes, content.getScenes().length, restScenes.length);
+        return new ScriptContentDTO(
+                content.getTitle(),
+                content.getAlternativeTitles() != null ? content.getAlternativeTitles() : rest.getAlternativeTitles(),
+                scenes,
+                content.getVideoElements() != null ? content.getVideoElements() : rest.getVideoElements(),
+                content.getEndingCTA() != null && content.getEndingCTA().length > 0
+                        ? content.getEndingCTA() : rest.getEndingCTA());
+    }
+}
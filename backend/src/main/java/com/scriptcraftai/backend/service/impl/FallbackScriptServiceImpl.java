@@ -0,0 +1,131 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.service.FallbackScriptService;
+import com.scriptcraftai.backend.util.ScriptLabels;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板草稿服务实现类
+ *
+ * @description 分镜模板库按视频类型组织（fallback/scene-skeletons.json），未收录的类型使用default。
+ *              模板中alternativeTitles为标题模板池，按方案序号轮换主标题，其余作为备选标题；
+ *              分镜不含时间范围，按60秒平均分配。{theme}替换为主题，{style}替换为风格标签
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class FallbackScriptServiceImpl implements FallbackScriptService {
+
+    private static final String SKELETON_LOCATION = "fallback/scene-skeletons.json";
+
+    private static final String DEFAULT_SKELETON = "default";
+
+    // 脚本总时长（秒）
+    private static final int TOTAL_SECONDS = 60;
+
+    // 主题在标题和文案中最多保留的字数
+    private static final int MAX_THEME_LENGTH = 20;
+
+    // 未选择风格时的风格描述
+    private static final String DEFAULT_STYLE = "轻松自然";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Map<String, ScriptContentDTO> skeletons;
+
+    @PostConstruct
+    public void init() throws IOException {
+        try (InputStream in = new ClassPathResource(SKELETON_LOCATION).getInputStream()) {
+            skeletons = objectMapper.readValue(in, new TypeReference<Map<String, ScriptContentDTO>>() {});
+        }
+        if (!skeletons.containsKey(DEFAULT_SKELETON)) {
+            throw new IllegalStateException("分镜模板库缺少default模板: " + SKELETON_LOCATION);
+        }
+        log.info("加载分镜模板库: {} 个视频类型", skeletons.size());
+    }
+
+    @Override
+    public ScriptContentDTO generate(String videoType, String themeInput, String stylePreference,
+                                     int variant, String reason) {
+        ScriptContentDTO skeleton = skeletons.getOrDefault(videoType, skeletons.get(DEFAULT_SKELETON));
+        String theme = shortenTheme(themeInput);
+        String styleLabel = stylePreference == null || stylePreference.isEmpty()
+                ? "" : ScriptLabels.style(stylePreference);
+        String style = styleLabel.isEmpty() ? DEFAULT_STYLE : styleLabel;
+
+        // 主标题按方案轮换，其余标题作为备选
+        String[] titleTemplates = skeleton.getAlternativeTitles();
+        int titleIndex = variant % titleTemplates.length;
+        List<String> alternativeTitles = new ArrayList<>();
+        for (int i = 1; i < titleTemplates.length; i++) {
+            alternativeTitles.add(fill(titleTemplates[(titleIndex + i) % titleTemplates.length], theme, style));
+        }
+
+        ScriptContentDTO.SceneDTO[] templateScenes = skeleton.getScenes();
+        ScriptContentDTO.SceneDTO[] scenes = new ScriptContentDTO.SceneDTO[templateScenes.length];
+        for (int i = 0; i < templateScenes.length; i++) {
+            scenes[i] = new ScriptContentDTO.SceneDTO(
+                    timeRange(i, templateScenes.length),
+                    fill(templateScenes[i].getVisualDescription(), theme, style),
+                    fill(templateScenes[i].getVoiceover(), theme, style),
+                    fill(templateScenes[i].getSubtitle(), theme, style));
+        }
+
+        ScriptContentDTO.VideoElementsDTO elements = skeleton.getVideoElements();
+        ScriptContentDTO.VideoElementsDTO videoElements = new ScriptContentDTO.VideoElementsDTO(
+                fill(elements.getBgmStyle(), theme, style),
+                fill(elements.getShootingLocation(), theme, style),
+                fill(elements.getEffects(), theme, style));
+
+        String[] endingCTA = new String[skeleton.getEndingCTA().length];
+        for (int i = 0; i < endingCTA.length; i++) {
+            endingCTA[i] = fill(skeleton.getEndingCTA()[i], theme, style);
+        }
+
+        meterRegistry.counter("scriptcraft.generation.fallback", "reason", reason).increment();
+        log.info("使用模板草稿: videoType={}({}), variant={}, reason={}",
+                videoType, ScriptLabels.videoType(videoType), variant, reason);
+        return new ScriptContentDTO(
+                fill(titleTemplates[titleIndex], theme, style),
+                alternativeTitles.toArray(new String[0]),
+                scenes,
+                videoElements,
+                endingCTA);
+    }
+
+    private String fill(String template, String theme, String style) {
+        return template == null ? null : template.replace("{theme}", theme).replace("{style}", style);
+    }
+
+    private String shortenTheme(String themeInput) {
+        String theme = themeInput == null ? "" : themeInput.strip();
+        if (theme.codePointCount(0, theme.length()) <= MAX_THEME_LENGTH) {
+            return theme;
+        }
+        return theme.substring(0, theme.offsetByCodePoints(0, MAX_THEME_LENGTH)) + "…";
+    }
+
+    private String timeRange(int index, int count) {
+        int start = TOTAL_SECONDS * index / count;
+        int end = TOTAL_SECONDS * (index + 1) / count;
+        return start + "-" + end + "秒";
+    }
+}
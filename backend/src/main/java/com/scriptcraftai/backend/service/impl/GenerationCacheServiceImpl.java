@@ -0,0 +1,160 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.service.AiService;
+import com.scriptcraftai.backend.service.GenerationCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * 生成结果缓存服务实现类
+ *
+ * @description Caffeine + Redis两级缓存。缓存键为规范化输入与提示词版本的SHA-256，
+ *              主题中的空白、标点和大小写差异视为同一主题；Redis异常只记录日志，不影响生成
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class GenerationCacheServiceImpl implements GenerationCacheService {
+
+    // Redis key前缀
+    private static final String CACHE_KEY_PREFIX = "script_cache:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${scriptcraft.cache.generation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scriptcraft.cache.generation.local-max-size:1000}")
+    private long localMaxSize;
+
+    @Value("${scriptcraft.cache.generation.local-ttl-seconds:600}")
+    private long localTtlSeconds;
+
+    @Value("${scriptcraft.cache.generation.redis-ttl-seconds:86400}")
+    private long redisTtlSeconds;
+
+    // 本地缓存保存JSON字符串，避免调用方修改共享对象
+    private Cache<String, String> localCache;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+    }
+
+    @Override
+    public ScriptContentDTO get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        String json = localCache.getIfPresent(key);
+        if (json != null) {
+            recordLookup("local");
+            return deserialize(key, json);
+        }
+
+        try {
+            Object value = redisTemplate.opsForValue().get(CACHE_KEY_PREFIX + key);
+            if (value instanceof String redisJson) {
+                localCache.put(key, redisJson);
+                recordLookup("redis");
+                return deserialize(key, redisJson);
+            }
+        } catch (Exception e) {
+            log.warn("读取生成结果缓存失败: key={}, {}", key, e.getMessage());
+        }
+
+        recordLookup("miss");
+        return null;
+    }
+
+    @Override
+    public void put(String key, ScriptContentDTO content) {
+        if (!enabled || content == null) {
+            return;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(content);
+            localCache.put(key, json);
+            redisTemplate.opsForValue().set(CACHE_KEY_PREFIX + key, json, Duration.ofSeconds(redisTtlSeconds));
+            log.debug("写入生成结果缓存: key={}", key);
+        } catch (Exception e) {
+            log.warn("写入生成结果缓存失败: key={}, {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public String buildKey(String videoType, String themeInput, String stylePreference, int variant) {
+        String raw = String.join("\n",
+                aiService.getPromptVersion(),
+                normalize(videoType),
+                normalize(themeInput),
+                normalize(stylePreference),
+                String.valueOf(variant));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 规范化输入：全角转半角、转小写，去掉空白和标点
+     *
+     * @param value 原始输入
+     * @return 规范化后的字符串
+     */
+    private String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return Normalizer.normalize(value, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[\\s\\p{P}\\p{Z}]+", "");
+    }
+
+    private ScriptContentDTO deserialize(String key, String json) {
+        try {
+            return objectMapper.readValue(json, ScriptContentDTO.class);
+        } catch (Exception e) {
+            log.warn("解析生成结果缓存失败，忽略缓存: key={}", key);
+            localCache.invalidate(key);
+            return null;
+        }
+    }
+
+    private void recordLookup(String result) {
+        meterRegistry.counter("scriptcraft.cache.generation", "result", result).increment();
+    }
+}
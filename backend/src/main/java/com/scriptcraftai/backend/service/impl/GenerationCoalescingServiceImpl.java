@@ -0,0 +1,235 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.service.GenerationCoalescingService;
+import com.scriptcraftai.backend.util.IdGenerator;
+import com.scriptcraftai.backend.util.RequestDeadline;
+import com.scriptcraftai.backend.util.UsageAttribution;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 生成请求合并服务实现类
+ *
+ * @description 本实例内相同键的请求共享同一个进行中的调用；跨实例时先用SET NX抢占Redis租约，
+ *              抢到租约的实例调用AI并把结果短暂写入Redis，其余实例轮询结果。
+ *              租约持有者失败（租约被释放或过期）或等待超时时，等待方自行调用AI。
+ *              Redis不可用时退化为仅在本实例内合并。
+ *              共享调用不继承任何调用方的截止时间，每个调用方在共享之后按自己的截止时间计时；
+ *              token用量全部归属于创建共享调用的请求，合并进来的请求（含复用其他实例结果的请求）不记录用量。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class GenerationCoalescingServiceImpl implements GenerationCoalescingService {
+
+    // Redis key前缀
+    private static final String LEASE_KEY_PREFIX = "script_flight_lease:";
+    private static final String RESULT_KEY_PREFIX = "script_flight_result:";
+
+    // 只释放自己持有的租约
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(AsyncConfig.GENERATION_SCHEDULER)
+    private Scheduler generationScheduler;
+
+    @Value("${scriptcraft.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scriptcraft.coalesce.lease-seconds:90}")
+    private long leaseSeconds;
+
+    @Value("${scriptcraft.coalesce.poll-interval-millis:500}")
+    private long pollIntervalMillis;
+
+    @Value("${scriptcraft.coalesce.result-ttl-seconds:60}")
+    private long resultTtlSeconds;
+
+    // 本实例内进行中的调用
+    private final Map<String, Mono<ScriptContentDTO>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<ScriptContentDTO> coalesce(String key, Supplier<Mono<ScriptContentDTO>> upstream) {
+        if (!enabled) {
+            return upstream.get();
+        }
+        return Mono.deferContextual(context -> {
+            AtomicBoolean created = new AtomicBoolean(false);
+            Mono<ScriptContentDTO> flight = inFlight.computeIfAbsent(key, k -> {
+                created.set(true);
+                return startFlight(k, upstream, UsageAttribution.from(context));
+            });
+            if (!created.get()) {
+                log.info("合并进行中的生成请求: key={}", key);
+                recordCall("local");
+            }
+            return flight;
+        });
+    }
+
+    /**
+     * 创建本实例内共享的调用
+     *
+     * @description 结果共享给所有等待者，部分调用方断开时共享调用继续完成；
+     *              全部调用方都断开或超时后取消共享调用，不再占用上游并发。
+     *              共享调用在首个订阅者的上下文中执行，因此去掉其截止时间，并把用量归属固定为创建者，
+     *              不随订阅顺序变化
+     * @param key 生成请求键
+     * @param upstream 实际生成逻辑
+     * @param owner 创建共享调用的请求的用量归属
+     * @return 共享调用
+     */
+    private Mono<ScriptContentDTO> startFlight(String key, Supplier<Mono<ScriptContentDTO>> upstream,
+                                               UsageAttribution owner) {
+        AtomicReference<Mono<ScriptContentDTO>> self = new AtomicReference<>();
+        Mono<ScriptContentDTO> flight = Mono.fromCallable(() -> tryAcquireLease(key))
+                .subscribeOn(generationScheduler)
+                .flatMap(token -> token.isEmpty()
+                        ? awaitRemote(key, upstream, System.currentTimeMillis() + leaseSeconds * 1000)
+                        : callAsLeader(key, token, upstream))
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .as(mono -> UsageAttribution.attribute(mono, owner.userId(), owner.videoType()))
+                .contextWrite(RequestDeadline::detach)
+                .flux()
+                .replay(1)
+                .refCount(1)
+                .singleOrEmpty();
+        self.set(flight);
+        return flight;
+    }
+
+    /**
+     * 持有租约时调用AI并发布结果
+     *
+     * @param key 生成请求键
+     * @param token 租约令牌
+     * @param upstream 实际生成逻辑
+     * @return 脚本内容
+     */
+    private Mono<ScriptContentDTO> callAsLeader(String key, String token, Supplier<Mono<ScriptContentDTO>> upstream) {
+        recordCall("upstream");
+        return upstream.get()
+                .publishOn(generationScheduler)
+                .doOnNext(content -> publishResult(key, content))
+                .doFinally(signal -> generationScheduler.schedule(() -> releaseLease(key, token)));
+    }
+
+    /**
+     * 等待其他实例的调用结果
+     *
+     * @param key 生成请求键
+     * @param upstream 实际生成逻辑
+     * @param deadline 最长等待到的时间点（毫秒）
+     * @return 脚本内容
+     */
+    private Mono<ScriptContentDTO> awaitRemote(String key, Supplier<Mono<ScriptContentDTO>> upstream, long deadline) {
+        return Mono.delay(Duration.ofMillis(pollIntervalMillis))
+                .publishOn(generationScheduler)
+                .flatMap(tick -> {
+                    ScriptContentDTO content = readResult(key);
+                    if (content != null) {
+                        log.info("复用其他实例的生成结果: key={}", key);
+                        recordCall("remote");
+                        return Mono.just(content);
+                    }
+                    if (System.currentTimeMillis() >= deadline || !isLeaseHeld(key)) {
+                        // 租约持有者失败或等待超时，自行调用
+                        log.info("等待其他实例生成结果失败，自行调用AI: key={}", key);
+                        recordCall("fallback");
+                        return upstream.get();
+                    }
+                    return awaitRemote(key, upstream, deadline);
+                });
+    }
+
+    /**
+     * 尝试抢占租约
+     *
+     * @param key 生成请求键
+     * @return 租约令牌；已被其他实例持有时为空字符串；Redis不可用时视为抢到租约
+     */
+    private String tryAcquireLease(String key) {
+        String token = IdGenerator.generateUUID();
+        try {
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LEASE_KEY_PREFIX + key, token, Duration.ofSeconds(leaseSeconds));
+            return Boolean.FALSE.equals(acquired) ? "" : token;
+        } catch (Exception e) {
+            log.warn("抢占生成租约失败，仅在本实例内合并: key={}, {}", key, e.getMessage());
+            return token;
+        }
+    }
+
+    private boolean isLeaseHeld(String key) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_KEY_PREFIX + key));
+        } catch (Exception e) {
+            log.warn("查询生成租约失败: key={}, {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private void releaseLease(String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE_SCRIPT, List.of(LEASE_KEY_PREFIX + key), token);
+        } catch (Exception e) {
+            log.warn("释放生成租约失败: key={}, {}", key, e.getMessage());
+        }
+    }
+
+    private void publishResult(String key, ScriptContentDTO content) {
+        try {
+            redisTemplate.opsForValue().set(RESULT_KEY_PREFIX + key,
+                    objectMapper.writeValueAsString(content), Duration.ofSeconds(resultTtlSeconds));
+        } catch (Exception e) {
+            log.warn("发布生成结果失败: key={}, {}", key, e.getMessage());
+        }
+    }
+
+    private ScriptContentDTO readResult(String key) {
+        try {
+            Object value = redisTemplate.opsForValue().get(RESULT_KEY_PREFIX + key);
+            if (value instanceof String json) {
+                return objectMapper.readValue(json, ScriptContentDTO.class);
+            }
+        } catch (Exception e) {
+            log.warn("读取其他实例的生成结果失败: key={}, {}", key, e.getMessage());
+        }
+        return null;
+    }
+
+    private void recordCall(String result) {
+        meterRegistry.counter("scriptcraft.generation.coalesce", "result", result).increment();
+    }
+}
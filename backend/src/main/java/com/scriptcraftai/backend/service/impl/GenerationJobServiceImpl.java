@@ -0,0 +1,490 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.dto.GenerateScriptDTO;
+import com.scriptcraftai.backend.dto.GenerationJobDTO;
+import com.scriptcraftai.backend.entity.GenerationJob;
+import com.scriptcraftai.backend.entity.ScriptSession;
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+import com.scriptcraftai.backend.mapper.GenerationJobMapper;
+import com.scriptcraftai.backend.mapper.ScriptSessionMapper;
+import com.scriptcraftai.backend.request.GenerateScriptRequest;
+import com.scriptcraftai.backend.service.GenerationJobQueue;
+import com.scriptcraftai.backend.service.GenerationJobService;
+import com.scriptcraftai.backend.service.IdempotencyService;
+import com.scriptcraftai.backend.service.ScriptService;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.util.ExceptionUtils;
+import com.scriptcraftai.backend.util.IdGenerator;
+import com.scriptcraftai.backend.util.RequestDeadline;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 异步生成任务服务实现类
+ *
+ * @description 提交时在一个事务内写入生成中的会话和排队任务；每个节点定时续期自己持有的租约，
+ *              并按空闲并发数领取排队到期或租约已过期的任务（条件更新保证同一任务只被一个节点领取）。
+ *              启用Redis Streams分发时新任务通过消费组推送给空闲节点，数据库扫描降频为兜底
+ *              （重试到期、消息丢失）。执行失败时按退避时间重新排队（会话保持生成中），
+ *              超过最多执行次数或截止时间后任务和会话标记失败。
+ *              正常停机时释放租约，任务立即由其他节点继续；节点崩溃时等待租约过期后被接管。
+ *              任务状态变化通过Redis发布订阅广播，持有客户端连接的节点据此推送进度。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class GenerationJobServiceImpl implements GenerationJobService {
+
+    // 任务状态变化的广播频道
+    private static final String JOB_EVENTS_CHANNEL = "script_job_events";
+
+    // 提交任务的幂等键作用域
+    private static final String IDEMPOTENCY_SCOPE_GENERATE = "generate";
+
+    @Autowired
+    private GenerationJobMapper jobMapper;
+
+    @Autowired
+    private ScriptSessionMapper sessionMapper;
+
+    @Autowired
+    private ScriptService scriptService;
+
+    @Autowired
+    private GenerationJobQueue jobQueue;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private TokenUsageService tokenUsageService;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(AsyncConfig.GENERATION_SCHEDULER)
+    private Scheduler generationScheduler;
+
+    @Value("${scriptcraft.jobs.node-id:}")
+    private String nodeId;
+
+    @Value("${scriptcraft.jobs.worker-concurrency:8}")
+    private int workerConcurrency;
+
+    @Value("${scriptcraft.jobs.lease-seconds:90}")
+    private long leaseSeconds;
+
+    @Value("${scriptcraft.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${scriptcraft.jobs.deadline-seconds:600}")
+    private long deadlineSeconds;
+
+    @Value("${scriptcraft.jobs.retry-backoff-seconds:10}")
+    private long retryBackoffSeconds;
+
+    @Value("${scriptcraft.jobs.redis-stream.sweep-interval-millis:10000}")
+    private long sweepIntervalMillis;
+
+    @Value("${scriptcraft.jobs.redis-stream.sweep-grace-seconds:10}")
+    private long sweepGraceSeconds;
+
+    // 本节点正在执行的任务
+    private final Map<String, Disposable> running = new ConcurrentHashMap<>();
+
+    // 本节点正在执行的任务对应的队列消息，任务结束后确认
+    private final Map<String, String> messageIds = new ConcurrentHashMap<>();
+
+    // 各节点广播的任务状态变化（任务ID）
+    private final Sinks.Many<String> jobUpdates = Sinks.many().multicast().directBestEffort();
+
+    // 上次扫描数据库的时间
+    private volatile long lastSweepAt;
+
+    // 停机中不再领取新任务
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = resolveHostName() + ":" + IdGenerator.generateUUID().substring(0, 8);
+        }
+        Gauge.builder("scriptcraft.generation.jobs.running", running, Map::size)
+                .description("本节点正在执行的生成任务数")
+                .register(meterRegistry);
+        listenerContainer.addMessageListener((message, pattern) -> {
+            Object jobId = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (jobId != null) {
+                // 监听容器可能在多个线程上回调，串行发出
+                synchronized (jobUpdates) {
+                    jobUpdates.tryEmitNext(jobId.toString());
+                }
+            }
+        }, new ChannelTopic(JOB_EVENTS_CHANNEL));
+        log.info("生成任务执行器已启动: nodeId={}, concurrency={}", nodeId, workerConcurrency);
+    }
+
+    @Override
+    public GenerationJobDTO submit(GenerateScriptRequest request, String userId, String idempotencyKey) {
+        String requestJson;
+        try {
+            requestJson = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new BusinessException("提交生成任务失败");
+        }
+
+        GenerationJob job = new GenerationJob();
+        job.setId(IdGenerator.generateTimeOrderedId());
+        job.setUserId(userId);
+        job.setRequestJson(requestJson);
+        job.setMaxAttempts(maxAttempts);
+        job.setDeadlineAt(LocalDateTime.now().plusSeconds(deadlineSeconds));
+
+        boolean idempotent = idempotencyKey != null && !idempotencyKey.isBlank();
+        if (idempotent) {
+            // 先以预生成的任务ID预留幂等键，重复提交直接返回第一次的任务
+            String existingJobId = idempotencyService.reserve(IDEMPOTENCY_SCOPE_GENERATE, userId,
+                    idempotencyKey, request, job.getId());
+            if (existingJobId != null) {
+                return getSubmittedJob(existingJobId, userId);
+            }
+        }
+
+        // 会话和任务同时写入，避免出现没有任务的生成中会话；超出配额时释放幂等键，配额重置后可用同一个键重试
+        try {
+            tokenUsageService.checkQuota(userId);
+            transactionTemplate.executeWithoutResult(status -> {
+                ScriptSession session = scriptService.createPendingSession(request, userId);
+                job.setSessionId(session.getId());
+                jobMapper.insert(job);
+            });
+        } catch (RuntimeException e) {
+            if (idempotent) {
+                idempotencyService.release(IDEMPOTENCY_SCOPE_GENERATE, userId, idempotencyKey);
+            }
+            throw e;
+        }
+
+        log.info("提交生成任务: jobId={}, sessionId={}, userId={}", job.getId(), job.getSessionId(), userId);
+        if (jobQueue.isEnabled()) {
+            try {
+                jobQueue.publish(job.getId());
+            } catch (Exception e) {
+                log.warn("发布生成任务失败，等待数据库扫描领取: jobId={}, {}", job.getId(), e.getMessage());
+            }
+        }
+        return toDTO(jobMapper.selectById(job.getId()), null);
+    }
+
+    /**
+     * 返回重复提交对应的任务
+     *
+     * @param jobId 第一次提交的任务ID
+     * @param userId 用户ID
+     * @return 任务信息，第一次提交尚未写入数据库时返回排队中状态
+     */
+    private GenerationJobDTO getSubmittedJob(String jobId, String userId) {
+        if (jobMapper.selectById(jobId) == null) {
+            return new GenerationJobDTO(jobId, null, GenerationJob.STATUS_QUEUED, 0, null, null, null, null);
+        }
+        return getJob(jobId, userId);
+    }
+
+    @Override
+    public GenerationJobDTO getJob(String jobId, String userId) {
+        GenerationJob job = jobMapper.selectById(jobId);
+        if (job == null) {
+            throw new BusinessException(404, "生成任务不存在");
+        }
+        if (!job.getUserId().equals(userId)) {
+            throw new BusinessException(403, "无权访问此生成任务");
+        }
+
+        GenerateScriptDTO result = null;
+        if (GenerationJob.STATUS_SUCCEEDED.equals(job.getStatus())) {
+            result = new GenerateScriptDTO(job.getSessionId(),
+                    scriptService.getSessionVersions(job.getSessionId(), userId));
+        }
+        return toDTO(job, result);
+    }
+
+    @Override
+    public Flux<GenerationJobDTO> watchJob(String jobId, String userId) {
+        // 同时订阅状态变化和读取当前状态，避免两者之间的变化丢失
+        Flux<GenerationJobDTO> updates = jobUpdates.asFlux()
+                .filter(jobId::equals)
+                .onBackpressureLatest()
+                .concatMap(id -> Mono.fromCallable(() -> getJob(id, userId)).subscribeOn(generationScheduler));
+        Mono<GenerationJobDTO> current = Mono.fromCallable(() -> getJob(jobId, userId))
+                .subscribeOn(generationScheduler);
+        return Flux.merge(updates, current)
+                .distinctUntilChanged(dto -> dto.getStatus() + ":" + dto.getAttempts())
+                .takeUntil(dto -> GenerationJob.STATUS_SUCCEEDED.equals(dto.getStatus())
+                        || GenerationJob.STATUS_FAILED.equals(dto.getStatus()));
+    }
+
+    /**
+     * 续期租约并领取任务
+     */
+    @Scheduled(fixedDelayString = "${scriptcraft.jobs.poll-interval-millis:1000}")
+    public void dispatch() {
+        if (stopping) {
+            return;
+        }
+        try {
+            if (!running.isEmpty()) {
+                jobMapper.renewLeases(nodeId, leaseSeconds);
+            }
+
+            int capacity = workerConcurrency - running.size();
+            if (capacity <= 0) {
+                return;
+            }
+
+            long minAgeSeconds = 0;
+            if (jobQueue.isEnabled()) {
+                for (GenerationJobQueue.QueuedJob queued : jobQueue.poll(nodeId, capacity)) {
+                    if (claimAndStart(queued.jobId(), queued.messageId())) {
+                        capacity--;
+                    } else if (!hasLiveLease(queued.jobId())) {
+                        // 任务已结束或已重新排队（由数据库扫描领取），消息不再需要
+                        jobQueue.ack(queued.messageId());
+                    }
+                    // 任务仍在租约内执行时不确认：执行节点完成后确认，崩溃时租约过期后可再次接管
+                }
+                // 队列分发时数据库扫描只兜底，且不与刚发布的任务竞争
+                if (capacity <= 0 || System.currentTimeMillis() - lastSweepAt < sweepIntervalMillis) {
+                    return;
+                }
+                lastSweepAt = System.currentTimeMillis();
+                minAgeSeconds = sweepGraceSeconds;
+            }
+
+            for (String jobId : jobMapper.selectClaimableIds(capacity, minAgeSeconds)) {
+                claimAndStart(jobId, null);
+            }
+        } catch (Exception e) {
+            log.error("领取生成任务失败: nodeId={}", nodeId, e);
+        }
+    }
+
+    /**
+     * 停机时停止领取并释放租约，由其他节点继续执行
+     *
+     * @description 取消正在执行的生成不会把会话标记为失败，会话保持生成中直到接管的节点完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        running.values().forEach(Disposable::dispose);
+        running.clear();
+        messageIds.clear();
+        try {
+            int released = jobMapper.releaseLeases(nodeId);
+            if (released > 0) {
+                log.info("停机释放生成任务: nodeId={}, count={}", nodeId, released);
+            }
+        } catch (Exception e) {
+            log.warn("释放生成任务租约失败，等待租约过期后由其他节点接管: nodeId={}", nodeId, e);
+        }
+    }
+
+    /**
+     * 领取并执行任务
+     *
+     * @param jobId 任务ID
+     * @param messageId 队列消息ID，数据库扫描领取时为空
+     * @return 是否领取成功
+     */
+    private boolean claimAndStart(String jobId, String messageId) {
+        if (jobMapper.claim(jobId, nodeId, leaseSeconds) != 1) {
+            return false;
+        }
+        if (messageId != null) {
+            messageIds.put(jobId, messageId);
+        }
+        publishJobEvent(jobId);
+        start(jobMapper.selectById(jobId));
+        return true;
+    }
+
+    /**
+     * 任务是否正在某个节点的有效租约内执行
+     *
+     * @param jobId 任务ID
+     * @return true-租约未过期
+     */
+    private boolean hasLiveLease(String jobId) {
+        GenerationJob job = jobMapper.selectById(jobId);
+        return job != null && GenerationJob.STATUS_RUNNING.equals(job.getStatus())
+                && job.getLeaseExpiresAt() != null && job.getLeaseExpiresAt().isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * 执行已领取的任务
+     *
+     * @param job 任务对象
+     */
+    private void start(GenerationJob job) {
+        if (job.getAttempts() > job.getMaxAttempts() || LocalDateTime.now().isAfter(job.getDeadlineAt())) {
+            // 多次在执行中被中断（节点崩溃）或已超过截止时间
+            finishFailed(job, job.getErrorMessage() != null ? job.getErrorMessage() : "生成超时，请重新提交");
+            return;
+        }
+
+        ScriptSession session = sessionMapper.selectById(job.getSessionId());
+        GenerateScriptRequest request;
+        try {
+            request = objectMapper.readValue(job.getRequestJson(), GenerateScriptRequest.class);
+        } catch (JsonProcessingException e) {
+            log.error("解析生成任务请求失败: jobId={}", job.getId(), e);
+            request = null;
+        }
+        if (session == null || request == null) {
+            finishFailed(job, "生成任务已失效");
+            return;
+        }
+
+        log.info("开始执行生成任务: jobId={}, attempt={}/{}", job.getId(), job.getAttempts(), job.getMaxAttempts());
+        // 先登记再订阅，避免执行很快结束时留下已结束的登记
+        Disposable.Swap slot = Disposables.swap();
+        running.put(job.getId(), slot);
+        // 任务的截止时间传到每次AI调用，到期后取消剩余的生成
+        Duration budget = Duration.between(LocalDateTime.now(), job.getDeadlineAt());
+        slot.update(RequestDeadline.within(scriptService.generateScripts(session, request), budget)
+                .publishOn(generationScheduler)
+                .doFinally(signal -> {
+                    running.remove(job.getId(), slot);
+                    // 停机取消时不确认消息，由其他节点接管
+                    if (signal != SignalType.CANCEL) {
+                        ackMessage(job.getId());
+                    }
+                })
+                .subscribe(
+                        result -> onSucceeded(job),
+                        error -> onFailed(job, ExceptionUtils.unwrap(error))));
+    }
+
+    private void onSucceeded(GenerationJob job) {
+        if (jobMapper.markSucceeded(job.getId(), nodeId) == 0) {
+            log.warn("生成任务租约已被其他节点接管: jobId={}", job.getId());
+        }
+        recordJob("succeeded");
+        publishJobEvent(job.getId());
+        log.info("生成任务完成: jobId={}, sessionId={}", job.getId(), job.getSessionId());
+    }
+
+    private void onFailed(GenerationJob job, Throwable cause) {
+        String message = cause instanceof BusinessException ? cause.getMessage() : "生成失败，请稍后重试";
+        boolean retryable = job.getAttempts() < job.getMaxAttempts()
+                && LocalDateTime.now().plusSeconds(retryBackoffSeconds).isBefore(job.getDeadlineAt());
+        if (!retryable) {
+            log.error("生成任务失败: jobId={}, attempts={}, {}", job.getId(), job.getAttempts(), message);
+            // 只有任务进入终态时会话才标记为失败，重新排队期间保持生成中
+            if (jobMapper.markFailed(job.getId(), nodeId, message) > 0) {
+                sessionMapper.updateStatus(job.getSessionId(), ScriptSession.STATUS_FAILED, message);
+            }
+            recordJob("failed");
+            publishJobEvent(job.getId());
+            return;
+        }
+
+        // 过载时按服务端建议的时间退避，其余按执行次数线性退避
+        long delay = cause instanceof ServiceOverloadedException overloaded
+                ? Math.max(overloaded.getRetryAfterSeconds(), retryBackoffSeconds)
+                : retryBackoffSeconds * job.getAttempts();
+        log.warn("生成任务失败，{}秒后重试: jobId={}, attempts={}, {}", delay, job.getId(), job.getAttempts(), message);
+        jobMapper.requeue(job.getId(), nodeId, delay, message);
+        recordJob("retried");
+        publishJobEvent(job.getId());
+    }
+
+    private void finishFailed(GenerationJob job, String message) {
+        jobMapper.markFailed(job.getId(), nodeId, message);
+        sessionMapper.updateStatus(job.getSessionId(), ScriptSession.STATUS_FAILED, message);
+        ackMessage(job.getId());
+        recordJob("failed");
+        publishJobEvent(job.getId());
+        log.warn("生成任务终止: jobId={}, attempts={}, {}", job.getId(), job.getAttempts(), message);
+    }
+
+    private void ackMessage(String jobId) {
+        String messageId = messageIds.remove(jobId);
+        if (messageId != null) {
+            jobQueue.ack(messageId);
+        }
+    }
+
+    /**
+     * 广播任务状态变化
+     *
+     * @param jobId 任务ID
+     */
+    private void publishJobEvent(String jobId) {
+        try {
+            redisTemplate.convertAndSend(JOB_EVENTS_CHANNEL, jobId);
+        } catch (Exception e) {
+            log.warn("广播生成任务状态失败: jobId={}, {}", jobId, e.getMessage());
+        }
+    }
+
+    private GenerationJobDTO toDTO(GenerationJob job, GenerateScriptDTO result) {
+        return new GenerationJobDTO(job.getId(), job.getSessionId(), job.getStatus(), job.getAttempts(),
+                job.getErrorMessage(), job.getCreatedAt(), job.getFinishedAt(), result);
+    }
+
+    private void recordJob(String result) {
+        meterRegistry.counter("scriptcraft.generation.jobs", "result", result).increment();
+    }
+
+    private String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.service.IdempotencyService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 幂等键服务实现类
+ *
+ * @description 第一次请求用SET NX写入执行中记录，完成后替换为带结果的完成记录；
+ *              本实例内的重复请求直接共享进行中的调用，其他实例的重复请求轮询Redis等待结果。
+ *              请求内容不一致时返回422，避免客户端误用幂等键拿到其他请求的结果。
+ *              Redis不可用时直接执行，不阻塞正常请求。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    // Redis key前缀
+    private static final String KEY_PREFIX = "idempotency:";
+
+    // 幂等键最大长度
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private static final String STATUS_PENDING = "pending";
+    private static final String STATUS_COMPLETED = "completed";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(AsyncConfig.GENERATION_SCHEDULER)
+    private Scheduler generationScheduler;
+
+    @Value("${scriptcraft.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${scriptcraft.idempotency.pending-ttl-seconds:300}")
+    private long pendingTtlSeconds;
+
+    @Value("${scriptcraft.idempotency.poll-interval-millis:500}")
+    private long pollIntervalMillis;
+
+    // 本实例内进行中的调用
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public String reserve(String scope, String userId, String key, Object request, String value) {
+        String redisKey = buildKey(scope, userId, key);
+        String fingerprint = fingerprint(request);
+        try {
+            String json = objectMapper.writeValueAsString(new IdempotencyRecord(STATUS_COMPLETED, fingerprint, value));
+            Boolean reserved = redisTemplate.opsForValue()
+                    .setIfAbsent(redisKey, json, Duration.ofSeconds(ttlSeconds));
+            if (!Boolean.FALSE.equals(reserved)) {
+                recordRequest(scope, "new");
+                return null;
+            }
+            IdempotencyRecord existing = readRecord(redisKey);
+            if (existing == null) {
+                // 刚好过期，按新请求处理
+                redisTemplate.opsForValue().set(redisKey, json, Duration.ofSeconds(ttlSeconds));
+                recordRequest(scope, "new");
+                return null;
+            }
+            checkFingerprint(existing, fingerprint);
+            log.info("幂等键已使用，返回第一次的结果: scope={}, key={}", scope, key);
+            recordRequest(scope, "replayed");
+            return existing.getValue();
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("预留幂等键失败，按新请求处理: scope={}, key={}, {}", scope, key, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void release(String scope, String userId, String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        deleteRecord(buildKey(scope, userId, key));
+    }
+
+    @Override
+    public <T> Mono<T> execute(String scope, String userId, String key, Object request,
+                               Class<T> type, Supplier<Mono<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        return Mono.defer(() -> {
+            String redisKey = buildKey(scope, userId, key);
+            String fingerprint = fingerprint(request);
+            AtomicBoolean created = new AtomicBoolean(false);
+            Flight flight = inFlight.computeIfAbsent(redisKey, k -> {
+                created.set(true);
+                return startFlight(scope, k, fingerprint, type, action);
+            });
+            if (!created.get()) {
+                if (!flight.fingerprint().equals(fingerprint)) {
+                    return Mono.error(mismatch());
+                }
+                log.info("幂等键对应的请求正在执行，等待其结果: scope={}, key={}", scope, key);
+                recordRequest(scope, "attached");
+            }
+            return flight.result().cast(type);
+        });
+    }
+
+    /**
+     * 创建本实例内共享的调用
+     *
+     * @description 全部等待方都断开或超时后取消共享调用并释放幂等键
+     * @param scope 操作类型
+     * @param redisKey Redis键
+     * @param fingerprint 请求指纹
+     * @param type 结果类型
+     * @param action 实际操作
+     * @return 共享调用
+     */
+    private <T> Flight startFlight(String scope, String redisKey, String fingerprint,
+                                   Class<T> type, Supplier<Mono<T>> action) {
+        AtomicReference<Flight> self = new AtomicReference<>();
+        long deadline = System.currentTimeMillis() + pendingTtlSeconds * 1000;
+        Mono<Object> result = resolve(scope, redisKey, fingerprint, type, action, deadline)
+                .cast(Object.class)
+                .doFinally(signal -> inFlight.remove(redisKey, self.get()))
+                .flux()
+                .replay(1)
+                .refCount(1)
+                .singleOrEmpty();
+        Flight flight = new Flight(fingerprint, result);
+        self.set(flight);
+        return flight;
+    }
+
+    /**
+     * 抢占幂等键后执行，或根据已有记录返回结果、等待其他实例
+     *
+     * @param scope 操作类型
+     * @param redisKey Redis键
+     * @param fingerprint 请求指纹
+     * @param type 结果类型
+     * @param action 实际操作
+     * @param deadline 最长等待到的时间点（毫秒）
+     * @return 操作结果
+     */
+    private <T> Mono<T> resolve(String scope, String redisKey, String fingerprint,
+                                Class<T> type, Supplier<Mono<T>> action, long deadline) {
+        return Mono.fromCallable(() -> tryAcquire(redisKey, fingerprint))
+                .subscribeOn(generationScheduler)
+                .flatMap(existing -> {
+                    if (existing.isEmpty()) {
+                        recordRequest(scope, "new");
+                        return runAsOwner(redisKey, fingerprint, action);
+                    }
+                    IdempotencyRecord record = existing.get();
+                    checkFingerprint(record, fingerprint);
+                    if (STATUS_COMPLETED.equals(record.getStatus())) {
+                        recordRequest(scope, "replayed");
+                        return Mono.fromCallable(() -> objectMapper.readValue(record.getValue(), type));
+                    }
+                    if (System.currentTimeMillis() >= deadline) {
+                        return Mono.error(new BusinessException(409, "相同的请求正在处理中，请稍后重试"));
+                    }
+                    // 其他实例正在执行，等待其完成（失败时键被删除，下一轮由本实例执行）
+                    return Mono.delay(Duration.ofMillis(pollIntervalMillis))
+                            .then(resolve(scope, redisKey, fingerprint, type, action, deadline));
+                });
+    }
+
+    /**
+     * 持有幂等键时执行操作并保存结果
+     *
+     * @param redisKey Redis键
+     * @param fingerprint 请求指纹
+     * @param action 实际操作
+     * @return 操作结果
+     */
+    private <T> Mono<T> runAsOwner(String redisKey, String fingerprint, Supplier<Mono<T>> action) {
+        return action.get()
+                .publishOn(generationScheduler)
+                .doOnNext(result -> saveResult(redisKey, fingerprint, result))
+                .doOnError(e -> deleteRecord(redisKey))
+                .doOnCancel(() -> generationScheduler.schedule(() -> deleteRecord(redisKey)));
+    }
+
+    /**
+     * 尝试抢占幂等键
+     *
+     * @param redisKey Redis键
+     * @param fingerprint 请求指纹
+     * @return 抢占成功或Redis不可用时为空，否则为已有的记录
+     */
+    private Optional<IdempotencyRecord> tryAcquire(String redisKey, String fingerprint) {
+        try {
+            String json = objectMapper.writeValueAsString(new IdempotencyRecord(STATUS_PENDING, fingerprint, null));
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(redisKey, json, Duration.ofSeconds(pendingTtlSeconds));
+            if (!Boolean.FALSE.equals(acquired)) {
+                return Optional.empty();
+            }
+            IdempotencyRecord existing = readRecord(redisKey);
+            // 读取前记录刚被删除，视为仍在执行，下一轮重新抢占
+            return Optional.of(existing != null ? existing : new IdempotencyRecord(STATUS_PENDING, fingerprint, null));
+        } catch (Exception e) {
+            log.warn("抢占幂等键失败，直接执行: key={}, {}", redisKey, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private IdempotencyRecord readRecord(String redisKey) throws Exception {
+        Object value = redisTemplate.opsForValue().get(redisKey);
+        return value instanceof String json ? objectMapper.readValue(json, IdempotencyRecord.class) : null;
+    }
+
+    private void saveResult(String redisKey, String fingerprint, Object result) {
+        try {
+            IdempotencyRecord record = new IdempotencyRecord(STATUS_COMPLETED, fingerprint,
+                    objectMapper.writeValueAsString(result));
+            redisTemplate.opsForValue().set(redisKey, objectMapper.writeValueAsString(record),
+                    Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("保存幂等结果失败: key={}, {}", redisKey, e.getMessage());
+        }
+    }
+
+    private void deleteRecord(String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (Exception e) {
+            log.warn("删除幂等键失败: key={}, {}", redisKey, e.getMessage());
+        }
+    }
+
+    private void checkFingerprint(IdempotencyRecord record, String fingerprint) {
+        if (!fingerprint.equals(record.getFingerprint())) {
+            throw mismatch();
+        }
+    }
+
+    private BusinessException mismatch() {
+        return new BusinessException(422, "Idempotency-Key已用于其他请求");
+    }
+
+    private String buildKey(String scope, String userId, String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException(400, "Idempotency-Key长度不能超过" + MAX_KEY_LENGTH);
+        }
+        return KEY_PREFIX + scope + ":" + userId + ":" + key;
+    }
+
+    /**
+     * 计算请求内容的指纹
+     *
+     * @description Map按键排序后序列化，同一请求在不同实例、重启前后的指纹相同
+     * @param request 请求内容
+     * @return SHA-256十六进制字符串
+     */
+    String fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String json = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsString(request);
+            byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (Exception e) {
+            throw new IllegalStateException("计算请求指纹失败", e);
+        }
+    }
+
+    private void recordRequest(String scope, String result) {
+        meterRegistry.counter("scriptcraft.idempotency.requests", "scope", scope, "result", result).increment();
+    }
+
+    /**
+     * 本实例内进行中的调用
+     *
+     * @param fingerprint 请求指纹
+     * @param result 共享结果
+     */
+    private record Flight(String fingerprint, Mono<Object> result) {
+    }
+
+    /**
+     * Redis中保存的幂等记录
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class IdempotencyRecord {
+
+        /**
+         * 状态：pending-执行中，completed-已完成
+         */
+        private String status;
+
+        /**
+         * 请求指纹
+         */
+        private String fingerprint;
+
+        /**
+         * 结果（JSON格式）
+         */
+        private String value;
+    }
+}
@@ -0,0 +1,156 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.config.WebClientConfig;
+import com.scriptcraftai.backend.service.ModelRouter;
+import com.scriptcraftai.backend.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型路由实现类
+ *
+ * @description 各任务类型配置主模型和p95耗时目标。调用前按以下顺序判断：
+ *              未配置降级模型时始终使用主模型；通义千问调用的排队数达到阈值时使用降级模型；
+ *              主模型在该任务上最近一个统计窗口内的p95耗时超出目标时使用降级模型。
+ *              降级期间主模型没有新样本，窗口过期后p95归零，自动恢复使用主模型
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class ModelRouterImpl implements ModelRouter {
+
+    private static final double SLO_PERCENTILE = 0.95;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(WebClientConfig.TONGYI_LIMITER)
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Value("${scriptcraft.model-router.full-script-model:${tongyi.model}}")
+    private String fullScriptModel;
+
+    @Value("${scriptcraft.model-router.partial-model:${tongyi.model}}")
+    private String partialModel;
+
+    @Value("${scriptcraft.model-router.titles-model:${tongyi.model}}")
+    private String titlesModel;
+
+    @Value("${scriptcraft.model-router.fallback-model:}")
+    private String fallbackModel;
+
+    @Value("${scriptcraft.model-router.queue-depth-threshold:10}")
+    private int queueDepthThreshold;
+
+    @Value("${scriptcraft.model-router.full-script-p95-slo-millis:45000}")
+    private long fullScriptSloMillis;
+
+    @Value("${scriptcraft.model-router.partial-p95-slo-millis:15000}")
+    private long partialSloMillis;
+
+    @Value("${scriptcraft.model-router.titles-p95-slo-millis:10000}")
+    private long titlesSloMillis;
+
+    @Value("${scriptcraft.model-router.slo-window-seconds:120}")
+    private long sloWindowSeconds;
+
+    // 各模型在各任务上的耗时（按模型和任务类型缓存，计算窗口内的p95）
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+
+    @Override
+    public String route(String task) {
+        String primary = primaryModel(task);
+        String model = primary;
+        String reason = "primary";
+        if (fallbackModel != null && !fallbackModel.isBlank() && !fallbackModel.equals(primary)) {
+            if (concurrencyLimiter.getQueued() >= queueDepthThreshold) {
+                model = fallbackModel;
+                reason = "queue";
+            } else if (recentP95Millis(task, primary) > sloMillis(task)) {
+                model = fallbackModel;
+                reason = "slo";
+            }
+        }
+        if (!"primary".equals(reason)) {
+            log.debug("模型降级: task={}, primary={}, model={}, reason={}", task, primary, model, reason);
+        }
+        meterRegistry.counter("scriptcraft.ai.route", "task", task, "model", model, "reason", reason).increment();
+        return model;
+    }
+
+    @Override
+    public void recordCall(String task, String model, long latencyNanos, boolean success,
+                           Integer inputTokens, Integer outputTokens) {
+        latencyTimer(task, model).record(latencyNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("scriptcraft.ai.model.calls", "task", task, "model", model,
+                "outcome", success ? "success" : "failure").increment();
+        if (inputTokens != null) {
+            tokenSummary(task, model, "input").record(inputTokens);
+        }
+        if (outputTokens != null) {
+            tokenSummary(task, model, "output").record(outputTokens);
+        }
+    }
+
+    private String primaryModel(String task) {
+        return switch (task) {
+            case TASK_PARTIAL -> partialModel;
+            case TASK_TITLES -> titlesModel;
+            default -> fullScriptModel;
+        };
+    }
+
+    private long sloMillis(String task) {
+        return switch (task) {
+            case TASK_PARTIAL -> partialSloMillis;
+            case TASK_TITLES -> titlesSloMillis;
+            default -> fullScriptSloMillis;
+        };
+    }
+
+    /**
+     * 模型在该任务上最近一个统计窗口内的p95耗时
+     *
+     * @param task 任务类型
+     * @param model 模型名称
+     * @return p95耗时（毫秒），没有样本时为0
+     */
+    private double recentP95Millis(String task, String model) {
+        for (ValueAtPercentile percentile : latencyTimer(task, model).takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == SLO_PERCENTILE) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    private Timer latencyTimer(String task, String model) {
+        return latencyTimers.computeIfAbsent(task + ":" + model, key -> Timer.builder("scriptcraft.ai.model.latency")
+                .tag("task", task)
+                .tag("model", model)
+                .publishPercentiles(SLO_PERCENTILE)
+                .distributionStatisticExpiry(Duration.ofSeconds(sloWindowSeconds))
+                .register(meterRegistry));
+    }
+
+    private DistributionSummary tokenSummary(String task, String model, String type) {
+        return DistributionSummary.builder("scriptcraft.ai.model.tokens")
+                .tag("task", task)
+                .tag("model", model)
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.service.PromptTemplateService;
+import com.scriptcraftai.backend.util.PromptTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 提示词模板服务实现类
+ *
+ * @description 模板位于 prompts/{版本}/{模板名称}.txt，启动时全部加载，缺少任何一个模板则启动失败。
+ *              切换版本只需新增目录并修改 scriptcraft.prompt.version，旧版本的缓存结果自动失效
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class PromptTemplateServiceImpl implements PromptTemplateService {
+
+    private static final List<String> TEMPLATE_NAMES = List.of(
+            TEMPLATE_SCRIPT, TEMPLATE_OUTLINE, TEMPLATE_SCENE_BODY, TEMPLATE_VIDEO_ELEMENTS,
+            TEMPLATE_EXTRAS, TEMPLATE_SCENE_REWRITE, TEMPLATE_REGENERATION, TEMPLATE_CONTINUATION);
+
+    @Value("${scriptcraft.prompt.version:v2}")
+    private String version;
+
+    private final Map<String, PromptTemplate> templates = new HashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        for (String name : TEMPLATE_NAMES) {
+            String location = "prompts/" + version + "/" + name + ".txt";
+            try (InputStream in = new ClassPathResource(location).getInputStream()) {
+                String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                // 去掉文件末尾的换行，提示词以最后一个变量结束
+                if (text.endsWith("\n")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                PromptTemplate template = PromptTemplate.compile(name, text);
+                templates.put(name, template);
+                log.debug("加载提示词模板: name={}, staticPrefix={} chars", name, template.getStaticPrefix().length());
+            }
+        }
+        log.info("加载提示词模板: version={}, count={}", version, templates.size());
+    }
+
+    @Override
+    public String render(String name, Map<String, String> values) {
+        PromptTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("提示词模板不存在: " + name);
+        }
+        return template.render(values);
+    }
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+}
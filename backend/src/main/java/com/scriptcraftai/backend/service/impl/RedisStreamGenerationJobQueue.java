@@ -0,0 +1,176 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.service.GenerationJobQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于Redis Streams的生成任务分发队列
+ *
+ * @description 所有节点属于同一个消费组，每个节点只按自己的空闲并发数拉取消息，
+ *              忙碌的节点不会再被分配新任务。消息在任务结束后才确认，未确认的消息空闲超过接管时间后
+ *              可被任一节点（包括原消费者）通过XCLAIM接管；任务是否真的需要接管以数据库租约为准，
+ *              租约仍有效的任务不会被领取，其消息也不确认，留待租约过期后再次接管。
+ *              拉取不阻塞，与任务执行器的轮询共用一个周期。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class RedisStreamGenerationJobQueue implements GenerationJobQueue {
+
+    private static final String JOB_ID_FIELD = "jobId";
+
+    // 每次检查的未确认消息数量
+    private static final long PENDING_SCAN_SIZE = 100;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${scriptcraft.jobs.redis-stream.enabled:false}")
+    private boolean enabled;
+
+    @Value("${scriptcraft.jobs.redis-stream.key:script_generation_jobs}")
+    private String streamKey;
+
+    @Value("${scriptcraft.jobs.redis-stream.group:generation-workers}")
+    private String group;
+
+    @Value("${scriptcraft.jobs.redis-stream.reclaim-idle-seconds:120}")
+    private long reclaimIdleSeconds;
+
+    @Value("${scriptcraft.jobs.redis-stream.max-length:10000}")
+    private long maxLength;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"), group);
+            log.info("创建生成任务消费组: stream={}, group={}", streamKey, group);
+        } catch (Exception e) {
+            // 消费组已存在（BUSYGROUP）
+            log.debug("生成任务消费组已存在: stream={}, group={}", streamKey, group);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void publish(String jobId) {
+        StreamOperations<String, Object, Object> ops = redisTemplate.opsForStream();
+        RecordId id = ops.add(MapRecord.create(streamKey, Map.of(JOB_ID_FIELD, jobId)));
+        // 已确认的历史消息没有保留价值，近似裁剪控制内存
+        ops.trim(streamKey, maxLength, true);
+        log.debug("发布生成任务: jobId={}, messageId={}", jobId, id);
+    }
+
+    @Override
+    public List<QueuedJob> poll(String consumer, int count) {
+        List<QueuedJob> result = new ArrayList<>(reclaim(consumer, count));
+        int remaining = count - result.size();
+        if (remaining <= 0) {
+            return result;
+        }
+
+        List<MapRecord<String, Object, Object>> records = readNew(consumer, remaining);
+        if (records != null) {
+            records.forEach(record -> result.add(toQueuedJob(record)));
+        }
+        return result;
+    }
+
+    @Override
+    public void ack(String messageId) {
+        try {
+            redisTemplate.opsForStream().acknowledge(streamKey, group, messageId);
+        } catch (Exception e) {
+            // 未确认的消息被接管后会因任务已领取或已结束而直接确认
+            log.warn("确认生成任务消息失败: messageId={}, {}", messageId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取消费组中尚未分配的新消息
+     *
+     * @param consumer 节点标识
+     * @param count 最多读取数量
+     * @return 新消息
+     */
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> readNew(String consumer, int count) {
+        // 只读一个流，可变参数的泛型数组创建是安全的
+        return redisTemplate.opsForStream().read(
+                Consumer.from(group, consumer),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+    }
+
+    /**
+     * 接管长时间未确认的消息
+     *
+     * @description 消息空闲只说明任务执行时间长或节点已崩溃，由调用方按数据库租约判断是否领取。
+     *              本节点自己的消息也会被接管，本节点接管后未确认的消息在原执行节点崩溃时不会被遗漏
+     * @param consumer 节点标识
+     * @param count 最多接管数量
+     * @return 接管的任务
+     */
+    private List<QueuedJob> reclaim(String consumer, int count) {
+        Duration minIdle = Duration.ofSeconds(reclaimIdleSeconds);
+        PendingMessages pending = redisTemplate.opsForStream()
+                .pending(streamKey, group, Range.unbounded(), PENDING_SCAN_SIZE);
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (stale.size() >= count) {
+                break;
+            }
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                stale.add(message.getId());
+            }
+        }
+        if (stale.isEmpty()) {
+            return List.of();
+        }
+
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream()
+                .claim(streamKey, group, consumer, minIdle, stale.toArray(new RecordId[0]));
+        List<QueuedJob> result = new ArrayList<>();
+        claimed.forEach(record -> result.add(toQueuedJob(record)));
+        if (!result.isEmpty()) {
+            meterRegistry.counter("scriptcraft.generation.jobs.reclaimed").increment(result.size());
+            log.info("接管未确认的生成任务: consumer={}, count={}", consumer, result.size());
+        }
+        return result;
+    }
+
+    private QueuedJob toQueuedJob(MapRecord<String, Object, Object> record) {
+        return new QueuedJob(record.getId().getValue(), String.valueOf(record.getValue().get(JOB_ID_FIELD)));
+    }
+}
@@ -1,25 +1,48 @@
 package com.scriptcraftai.backend.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.AsyncConfig;
 import com.scriptcraftai.backend.dto.*;
 import com.scriptcraftai.backend.entity.ScriptSession;
 import com.scriptcraftai.backend.entity.ScriptVersion;
 import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.exception.CircuitOpenException;
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
 import com.scriptcraftai.backend.mapper.ScriptSessionMapper;
 import com.scriptcraftai.backend.mapper.ScriptVersionMapper;
 import com.scriptcraftai.backend.request.GenerateScriptRequest;
 import com.scriptcraftai.backend.service.AiService;
+import com.scriptcraftai.backend.service.FallbackScriptService;
+import com.scriptcraftai.backend.service.GenerationCacheService;
+import com.scriptcraftai.backend.service.GenerationCoalescingService;
+import com.scriptcraftai.backend.service.IdempotencyService;
+import com.scriptcraftai.backend.service.PromptTemplateService;
 import com.scriptcraftai.backend.service.ScriptService;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.util.ExceptionUtils;
 import com.scriptcraftai.backend.util.IdGenerator;
+import com.scriptcraftai.backend.util.RequestDeadline;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import com.scriptcraftai.backend.util.ScriptContents;
+import com.scriptcraftai.backend.util.ScriptPrompts;
+import com.scriptcraftai.backend.util.UsageAttribution;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.ContextView;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 脚本服务实现类
@@ -34,6 +57,24 @@ public class ScriptServiceImpl implements ScriptService {
     @Autowired
     private AiService aiService;
     
+    @Autowired
+    private FallbackScriptService fallbackScriptService;
+    
+    @Autowired
+    private GenerationCacheService generationCacheService;
+    
+    @Autowired
+    private GenerationCoalescingService generationCoalescingService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private PromptTemplateService promptTemplateService;
+    
+    @Autowired
+    private TokenUsageService tokenUsageService;
+    
     @Autowired
     private ScriptSessionMapper sessionMapper;
     
@@ -42,75 +83,495 @@ public class ScriptServiceImpl implements ScriptService {
     
     @Autowired
     private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ScriptContentCodec contentCodec;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier(AsyncConfig.GENERATION_SCHEDULER)
+    private Scheduler generationScheduler;
+
+    @Value("${scriptcraft.fallback.enabled:true}")
+    private boolean fallbackEnabled;
+
+    @Value("${scriptcraft.fallback.min-remaining-seconds:15}")
+    private long fallbackMinRemainingSeconds;
+
+    // 生成时每个方案的超时上限，请求剩余时间更短时以剩余时间为准（下同）
+    private static final long GENERATION_TIMEOUT_SECONDS = 70L;
+
+    // 流式生成时每个方案的最长时间（两个分片之间的等待另有空闲超时）
+    private static final long STREAM_TIMEOUT_SECONDS = 180L;
+
+    // 单次请求最多生成的方案数量
+    private static final int MAX_VARIANTS = 5;
 
     // 重新生成时的超时时间
     private static final long REGENERATION_TIMEOUT_SECONDS = 70L;
 
+    // 逐个分镜重新生成时每个分镜的超时时间
+    private static final long SCENE_REGENERATION_TIMEOUT_SECONDS = 40L;
+
+    // 重新生成的幂等键作用域
+    private static final String IDEMPOTENCY_SCOPE_REGENERATE = "regenerate";
+
     @Override
-    @Async
-    @Transactional(rollbackFor = Exception.class)
-    public CompletableFuture<GenerateScriptDTO> generateScripts(GenerateScriptRequest request, String userId) {
+    public Mono<GenerateScriptDTO> generateScripts(ScriptSession session, GenerateScriptRequest request) {
+        int variantCount = resolveVariantCount(request);
         
-        try {
-            // 1. 创建会话
-            ScriptSession session = new ScriptSession();
-            session.setId(IdGenerator.generateUUID());
-            session.setUserId(userId);
-            session.setVideoType(request.getVideoType());
-            session.setThemeInput(request.getThemeInput());
-            session.setStylePreference(request.getStylePreference());
-            sessionMapper.insert(session);
-            //记录开始时间
-            long startTime = System.currentTimeMillis();
-            // 2. 生成单个脚本方案
-            ScriptContentDTO content = aiService.generateScript(
+        // 1. 确保会话为生成中（AI调用期间不持有数据库连接）
+        return Mono.fromRunnable(() -> resetPendingSession(session))
+            .subscribeOn(generationScheduler)
+            .then(Mono.defer(() -> {
+                //记录开始时间
+                long startTime = System.currentTimeMillis();
+                List<Throwable> variantErrors = Collections.synchronizedList(new ArrayList<>());
+                
+                // 2. 各方案并行生成，单个方案失败或超时不影响其他方案
+                return Flux.range(0, variantCount)
+                    .flatMap(variant -> generateVariant(request, variant)
+                        .onErrorResume(e -> {
+                            Throwable cause = ExceptionUtils.unwrap(e);
+                            log.warn("方案生成失败: sessionId={}, variant={}, {}",
+                                    session.getId(), variant, cause.getMessage());
+                            variantErrors.add(cause);
+                            return Mono.empty();
+                        }), variantCount)
+                    .collectList()
+                    // 3. 在生成编排线程池中短事务批量保存版本并完成会话
+                    .publishOn(generationScheduler)
+                    .flatMap(variants -> variants.isEmpty()
+                            ? Mono.error(variantErrors.isEmpty()
+                                    ? new BusinessException("生成脚本失败，请稍后重试") : variantErrors.get(0))
+                            : Mono.fromCallable(() -> completeSession(session, variants)))
+                    .doOnNext(result -> {
+                        //记录结束时间
+                        long endTime = System.currentTimeMillis();
+                        log.info("脚本生成完成，所消耗的时间为{}，成功方案{}/{}",
+                                (endTime - startTime) / 1000.0, result.getVersions().size(), variantCount);
+                    })
+                    // 失败和取消（停机移交）都不改变会话状态：任务可能重新排队，不再重试时由任务服务标记会话失败
+                    .onErrorMap(e -> {
+                        Throwable cause = ExceptionUtils.unwrap(e);
+                        log.error("生成脚本失败: {}", cause.getMessage(), cause);
+                        return cause instanceof ServiceOverloadedException
+                                || cause instanceof DeadlineExceededException
+                                ? cause : new BusinessException("生成脚本失败，请稍后重试");
+                    });
+            }))
+            .as(mono -> UsageAttribution.attribute(mono, session.getUserId(), request.getVideoType()));
+    }
+
+    @Override
+    public Flux<ScriptStreamEvent> streamScripts(GenerateScriptRequest request, String userId) {
+        long startTime = System.currentTimeMillis();
+        int variantCount = resolveVariantCount(request);
+        
+        return Mono.fromCallable(() -> {
+                tokenUsageService.checkQuota(userId);
+                return createPendingSession(request, userId);
+            })
+            .subscribeOn(generationScheduler)
+            .flatMapMany(session -> {
+                List<GeneratedVariant> completed = Collections.synchronizedList(new ArrayList<>());
+                List<Throwable> variantErrors = Collections.synchronizedList(new ArrayList<>());
+                
+                // 各方案的事件交错推送，每个事件标记所属方案
+                Flux<ScriptStreamEvent> variantEvents = Flux.range(0, variantCount)
+                    .flatMap(variant -> Flux.deferContextual(context -> streamVariant(request, variant)
+                            .take(RequestDeadline.remaining(context, Duration.ofSeconds(STREAM_TIMEOUT_SECONDS))))
+                        .concatMap(event -> {
+                            if (event.getData() instanceof GeneratedVariant generated) {
+                                completed.add(generated);
+                                return Mono.<ScriptStreamEvent>empty();
+                            }
+                            return Mono.just(event.withVariant(variant));
+                        })
+                        .concatWith(Mono.defer(() -> {
+                            boolean done = completed.stream().anyMatch(v -> v.index() == variant);
+                            return done ? Mono.empty() : Mono.error(new BusinessException("生成超时，请稍后重试"));
+                        }))
+                        .onErrorResume(e -> {
+                            Throwable cause = ExceptionUtils.unwrap(e);
+                            log.warn("方案流式生成失败: sessionId={}, variant={}, {}",
+                                    session.getId(), variant, cause.getMessage());
+                            variantErrors.add(cause);
+                            return variantCount > 1
+                                    ? Mono.just(ScriptStreamEvent.variantError(variant, errorMessage(cause)))
+                                    : Mono.empty();
+                        }), variantCount);
+                
+                // 全部方案结束后一次性保存
+                Mono<ScriptStreamEvent> done = Mono.defer(() -> {
+                    if (completed.isEmpty()) {
+                        return Mono.error(variantErrors.isEmpty()
+                                ? new BusinessException("生成脚本失败，请稍后重试") : variantErrors.get(0));
+                    }
+                    return Mono.<GenerateScriptDTO>fromCallable(
+                                    () -> completeSession(session, new ArrayList<GeneratedVariant>(completed)))
+                            .subscribeOn(generationScheduler)
+                            .map(ScriptStreamEvent::done);
+                });
+                
+                return variantEvents.concatWith(done)
+                    .onErrorResume(e -> Mono.fromRunnable(() -> failSession(session, e))
+                            .subscribeOn(generationScheduler)
+                            .then(Mono.error(e)))
+                    .doOnCancel(() -> generationScheduler.schedule(() ->
+                            failSession(session, new BusinessException("生成已取消"))));
+            })
+            .doOnComplete(() -> log.info("流式脚本生成完成，所消耗的时间为{}",
+                    (System.currentTimeMillis() - startTime) / 1000.0))
+            .as(flux -> UsageAttribution.attribute(flux, userId, request.getVideoType()));
+    }
+
+    /**
+     * 生成单个方案
+     *
+     * @description 优先复用相同输入的生成结果；未命中时相同输入的并发请求共享一次AI调用。
+     *              AI服务熔断或剩余时间不足时改用模板草稿
+     * @param request 生成请求
+     * @param variant 方案序号
+     * @return 生成的方案
+     */
+    private Mono<GeneratedVariant> generateVariant(GenerateScriptRequest request, int variant) {
+        String key = buildVariantKey(request, variant);
+        Duration timeout = Duration.ofSeconds(GENERATION_TIMEOUT_SECONDS);
+        return lookupCache(request, key)
+            .map(content -> new GeneratedVariant(variant, content, ScriptVersion.SOURCE_CACHE))
+            .switchIfEmpty(Mono.deferContextual(context -> {
+                String fallbackReason = fallbackReason(context, timeout);
+                if (fallbackReason != null) {
+                    return fallbackVariant(request, variant, fallbackReason);
+                }
+                return generationCoalescingService.coalesce(key,
+                        () -> aiService.generateScriptReactive(
+                                request.getVideoType(),
+                                request.getThemeInput(),
+                                request.getStylePreference(),
+                                variant
+                            )
+                            .publishOn(generationScheduler)
+                            .doOnNext(content -> generationCacheService.put(key, content)))
+                    // 每个方案单独计时，慢方案超时后丢弃
+                    .as(mono -> RequestDeadline.timeout(mono, timeout))
+                    .map(content -> new GeneratedVariant(variant, content, ScriptVersion.SOURCE_AI))
+                    .onErrorResume(this::isCircuitOpen,
+                            e -> fallbackVariant(request, variant, FallbackScriptService.REASON_CIRCUIT_OPEN));
+            }));
+    }
+
+    /**
+     * 流式生成单个方案
+     *
+     * @description 命中缓存时按流式事件的顺序一次性推送；方案完成时以data为GeneratedVariant的事件结束
+     * @param request 生成请求
+     * @param variant 方案序号
+     * @return 方案事件流
+     */
+    private Flux<ScriptStreamEvent> streamVariant(GenerateScriptRequest request, int variant) {
+        String key = buildVariantKey(request, variant);
+        return lookupCache(request, key)
+            .flatMapMany(content -> replayVariant(new GeneratedVariant(variant, content, ScriptVersion.SOURCE_CACHE)))
+            .switchIfEmpty(Flux.deferContextual(context -> {
+                String fallbackReason = fallbackReason(context, Duration.ofSeconds(STREAM_TIMEOUT_SECONDS));
+                if (fallbackReason != null) {
+                    return fallbackVariant(request, variant, fallbackReason).flatMapMany(this::replayVariant);
+                }
+                return aiService.streamScript(
+                        request.getVideoType(),
+                        request.getThemeInput(),
+                        request.getStylePreference(),
+                        variant
+                    )
+                    .concatMap(event -> {
+                        if (!ScriptStreamEvent.COMPLETE.equals(event.getType())) {
+                            return Mono.just(event);
+                        }
+                        ScriptContentDTO content = (ScriptContentDTO) event.getData();
+                        return Mono.fromCallable(() -> {
+                                    generationCacheService.put(key, content);
+                                    return variantCompleted(new GeneratedVariant(variant, content, ScriptVersion.SOURCE_AI));
+                                })
+                                .subscribeOn(generationScheduler);
+                    })
+                    // 熔断在发出请求前就会失败，此时还没有推送任何事件
+                    .onErrorResume(this::isCircuitOpen,
+                            e -> fallbackVariant(request, variant, FallbackScriptService.REASON_CIRCUIT_OPEN)
+                                    .flatMapMany(this::replayVariant));
+            }));
+    }
+
+    /**
+     * 将已有的完整方案按流式事件的顺序一次性推送
+     *
+     * @param generated 生成的方案（命中缓存或模板草稿）
+     * @return 方案事件流
+     */
+    private Flux<ScriptStreamEvent> replayVariant(GeneratedVariant generated) {
+        return Flux.fromIterable(toStreamEvents(generated.content()))
+            .concatWith(Mono.just(variantCompleted(generated)));
+    }
+
+    /**
+     * 判断是否应改用模板草稿
+     *
+     * @param context 订阅上下文（含请求截止时间）
+     * @param cap 本次生成的超时上限
+     * @return 降级原因，不需要降级时为null
+     */
+    private String fallbackReason(ContextView context, Duration cap) {
+        if (!fallbackEnabled) {
+            return null;
+        }
+        if (!aiService.isAvailable()) {
+            return FallbackScriptService.REASON_CIRCUIT_OPEN;
+        }
+        if (RequestDeadline.remaining(context, cap).getSeconds() < fallbackMinRemainingSeconds) {
+            return FallbackScriptService.REASON_DEADLINE;
+        }
+        return null;
+    }
+
+    private boolean isCircuitOpen(Throwable e) {
+        return fallbackEnabled && ExceptionUtils.unwrap(e) instanceof CircuitOpenException;
+    }
+
+    /**
+     * 用模板草稿生成单个方案
+     *
+     * @param request 生成请求
+     * @param variant 方案序号
+     * @param reason 降级原因
+     * @return 生成的方案（不写入生成结果缓存）
+     */
+    private Mono<GeneratedVariant> fallbackVariant(GenerateScriptRequest request, int variant, String reason) {
+        return Mono.fromCallable(() -> new GeneratedVariant(variant,
+                fallbackScriptService.generate(request.getVideoType(), request.getThemeInput(),
+                        request.getStylePreference(), variant, reason),
+                ScriptVersion.SOURCE_FALLBACK));
+    }
+
+    /**
+     * 包装方案完成事件（服务内部使用，不推送给前端）
+     *
+     * @param generated 生成的方案
+     * @return complete事件
+     */
+    private ScriptStreamEvent variantCompleted(GeneratedVariant generated) {
+        return new ScriptStreamEvent(ScriptStreamEvent.COMPLETE, null, generated);
+    }
+
+    /**
+     * 查询生成结果缓存
+     *
+     * @param request 生成请求（forceFresh为true时跳过缓存）
+     * @param key 生成请求键
+     * @return 缓存的脚本内容，未命中时为空
+     */
+    private Mono<ScriptContentDTO> lookupCache(GenerateScriptRequest request, String key) {
+        if (Boolean.TRUE.equals(request.getForceFresh())) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> generationCacheService.get(key))
+            .subscribeOn(generationScheduler)
+            .doOnNext(content -> log.info("命中生成结果缓存: videoType={}, theme={}",
+                    request.getVideoType(), request.getThemeInput()));
+    }
+
+    private String buildVariantKey(GenerateScriptRequest request, int variant) {
+        return generationCacheService.buildKey(
                 request.getVideoType(),
                 request.getThemeInput(),
-                request.getStylePreference()
-            ).get(70, TimeUnit.SECONDS); // 70秒超时
-
-            // 3. 保存到数据库
-            ScriptVersion version = new ScriptVersion();
-            version.setId(IdGenerator.generateUUID());
-            version.setSessionId(session.getId());
-            version.setVersionIndex(1); // 只有一个版本
-            version.setTitle(content.getTitle());
-            version.setContentJson(objectMapper.writeValueAsString(content));
-            version.setIsSelected(1); // 直接设为选中状态，因为只有一个版本
-            version.setWordCount(calculateWordCount(content));
-            version.setSceneCount(content.getScenes() != null ? content.getScenes().length : 0);
+                request.getStylePreference(),
+                variant);
+    }
 
-            versionMapper.insert(version);
-
-            // 构建返回DTO
-            List<ScriptVersionBriefDTO> versions = new ArrayList<>();
-            ScriptVersionBriefDTO briefDTO = new ScriptVersionBriefDTO();
-            briefDTO.setVersionId(version.getId());
-            briefDTO.setVersionIndex(version.getVersionIndex());
-            briefDTO.setTitle(version.getTitle());
-            briefDTO.setIsSelected(1); // 设置为选中状态
-
-            ScriptVersionBriefDTO.PreviewDTO preview = new ScriptVersionBriefDTO.PreviewDTO();
-            preview.setFirstScene(content.getScenes() != null && content.getScenes().length > 0 ?
-                content.getScenes()[0].getVisualDescription() : "");
-            preview.setWordCount(version.getWordCount());
-            preview.setSceneCount(version.getSceneCount());
-            briefDTO.setPreview(preview);
-
-            versions.add(briefDTO);
-            //记录结束时间
-            long endTime = System.currentTimeMillis();
-            log.info("脚本生成完成，所消耗的时间为{}",(endTime - startTime) / 1000.0);
-            
-            GenerateScriptDTO result = new GenerateScriptDTO();
-            result.setSessionId(session.getId());
-            result.setVersions(versions);
-            return CompletableFuture.completedFuture(result);
-            
+    private int resolveVariantCount(GenerateScriptRequest request) {
+        Integer variants = request.getVariants();
+        return variants == null ? 1 : Math.max(1, Math.min(MAX_VARIANTS, variants));
+    }
+
+    private String errorMessage(Throwable cause) {
+        return cause instanceof BusinessException ? cause.getMessage() : "生成失败，请稍后重试";
+    }
+
+    /**
+     * 将完整脚本拆分为流式事件
+     *
+     * @param content 脚本内容
+     * @return 标题、分镜、视频元素、结尾话术事件
+     */
+    private List<ScriptStreamEvent> toStreamEvents(ScriptContentDTO content) {
+        List<ScriptStreamEvent> events = new ArrayList<>();
+        events.add(ScriptStreamEvent.title(content.getTitle()));
+        if (content.getScenes() != null) {
+            for (int i = 0; i < content.getScenes().length; i++) {
+                events.add(ScriptStreamEvent.scene(i, content.getScenes()[i]));
+            }
+        }
+        if (content.getVideoElements() != null) {
+            events.add(ScriptStreamEvent.videoElements(content.getVideoElements()));
+        }
+        if (content.getEndingCTA() != null) {
+            events.add(ScriptStreamEvent.endingCTA(content.getEndingCTA()));
+        }
+        return events;
+    }
+
+    /**
+     * 写入生成中状态的会话
+     *
+     * @param request 生成请求
+     * @param userId 用户ID
+     * @return 会话对象
+     */
+    @Override
+    public ScriptSession createPendingSession(GenerateScriptRequest request, String userId) {
+        ScriptSession session = buildSession(request, userId);
+        session.setStatus(ScriptSession.STATUS_PENDING);
+        // 会话数量与会话在同一事务中写入（提交任务时加入外层事务）
+        transactionTemplate.executeWithoutResult(status -> {
+            sessionMapper.insert(session);
+            sessionMapper.incrementCount(userId, session.getVideoType(), 1);
+        });
+        return session;
+    }
+
+    /**
+     * 将会话恢复为生成中（任务重新执行时）
+     *
+     * @param session 会话对象
+     */
+    private void resetPendingSession(ScriptSession session) {
+        if (!ScriptSession.STATUS_PENDING.equals(session.getStatus())) {
+            sessionMapper.updateStatus(session.getId(), ScriptSession.STATUS_PENDING, null);
+            session.setStatus(ScriptSession.STATUS_PENDING);
+            session.setErrorMessage(null);
+        }
+    }
+
+    /**
+     * 在一个短事务中批量保存生成的方案并将会话标记为完成
+     *
+     * @param session 生成中的会话
+     * @param variants 成功生成的方案
+     * @return 生成结果
+     */
+    private GenerateScriptDTO completeSession(ScriptSession session, List<GeneratedVariant> variants) {
+        // 序列化等准备工作放在事务之外；版本序号按方案顺序连续编号
+        List<GeneratedVariant> sorted = new ArrayList<>(variants);
+        sorted.sort(Comparator.comparingInt(GeneratedVariant::index));
+        
+        // 缓存按提示词版本区分，命中缓存的内容与当前版本一致；模板草稿不经过提示词
+        String promptVersion = aiService.getPromptVersion();
+        List<ScriptVersion> versions = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            ScriptVersion version = buildVersion(session.getId(), i + 1, sorted.get(i).content());
+            version.setSource(sorted.get(i).source());
+            if (!ScriptVersion.SOURCE_FALLBACK.equals(version.getSource())) {
+                version.setPromptVersion(promptVersion);
+            }
+            // 只有一个方案时直接设为选中，多个方案由用户选择
+            version.setIsSelected(sorted.size() == 1 ? 1 : 0);
+            versions.add(version);
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            versionMapper.insertBatch(versions);
+            sessionMapper.updateStatus(session.getId(), ScriptSession.STATUS_COMPLETED, null);
+        });
+        session.setStatus(ScriptSession.STATUS_COMPLETED);
+        
+        return buildGenerateResult(session, versions);
+    }
+
+    /**
+     * 将会话标记为生成失败
+     *
+     * @param session 生成中的会话
+     * @param cause 失败原因
+     */
+    private void failSession(ScriptSession session, Throwable cause) {
+        String message = cause instanceof BusinessException ? cause.getMessage() : "生成失败，请稍后重试";
+        try {
+            sessionMapper.updateStatus(session.getId(), ScriptSession.STATUS_FAILED, message);
+            session.setStatus(ScriptSession.STATUS_FAILED);
+            session.setErrorMessage(message);
         } catch (Exception e) {
-            log.error("生成脚本失败: {}", e.getMessage(), e);
-            throw new BusinessException("生成脚本失败，请稍后重试");
+            log.warn("更新会话失败状态失败: sessionId={}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 构建会话对象
+     *
+     * @param request 生成请求
+     * @param userId 用户ID
+     * @return 会话对象
+     */
+    private ScriptSession buildSession(GenerateScriptRequest request, String userId) {
+        ScriptSession session = new ScriptSession();
+        session.setId(IdGenerator.generateTimeOrderedId());
+        session.setUserId(userId);
+        session.setVideoType(request.getVideoType());
+        session.setThemeInput(request.getThemeInput());
+        session.setStylePreference(request.getStylePreference());
+        return session;
+    }
+
+    /**
+     * 构建脚本版本对象
+     *
+     * @param sessionId 会话ID
+     * @param versionIndex 版本序号
+     * @param content 脚本内容
+     * @return 版本对象
+     * @throws BusinessException 序列化失败时抛出
+     */
+    private ScriptVersion buildVersion(String sessionId, int versionIndex, ScriptContentDTO content) {
+        ScriptVersion version = new ScriptVersion();
+        version.setId(IdGenerator.generateTimeOrderedId());
+        version.setSessionId(sessionId);
+        version.setVersionIndex(versionIndex);
+        version.setTitle(content.getTitle());
+        version.setContent(content);
+        version.setWordCount(ScriptContents.calculateWordCount(content));
+        version.setSceneCount(content.getScenes() != null ? content.getScenes().length : 0);
+        version.setFirstScene(ScriptContents.firstScenePreview(content));
+        return version;
+    }
+
+    /**
+     * 构建生成结果DTO
+     *
+     * @param session 会话对象
+     * @param versions 版本对象
+     * @return 生成结果
+     */
+    private GenerateScriptDTO buildGenerateResult(ScriptSession session, List<ScriptVersion> versions) {
+        List<ScriptVersionBriefDTO> briefs = new ArrayList<>();
+        for (ScriptVersion version : versions) {
+            briefs.add(toBrief(version));
         }
+
+        GenerateScriptDTO result = new GenerateScriptDTO();
+        result.setSessionId(session.getId());
+        result.setVersions(briefs);
+        return result;
+    }
+
+    /**
+     * 生成成功的单个方案
+     *
+     * @param index 方案序号（从0开始）
+     * @param content 脚本内容
+     * @param source 内容来源
+     */
+    private record GeneratedVariant(int index, ScriptContentDTO content, String source) {
     }
 
     @Override
@@ -126,9 +587,42 @@ public class ScriptServiceImpl implements ScriptService {
             throw new BusinessException(403, "无权访问此脚本");
         }
         
+        migrateContent(version);
         return version;
     }
 
+    @Override
+    public Map<String, Object> getStoredContent(String versionId, String userId) {
+        getVersionDetail(versionId, userId);
+        byte[] stored = versionMapper.selectStoredContent(versionId);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("format", ScriptContentCodec.formatOf(stored));
+        result.put("storedBytes", stored.length);
+        result.put("json", contentCodec.toJson(stored));
+        return result;
+    }
+
+    /**
+     * 将旧格式的内容改写为当前写入格式
+     *
+     * @description 迁移前的JSON文本在首次读取时改写，只更新content列且不改变updated_at；
+     *              按读到的格式做条件更新，并发编辑已写入新内容时不会被覆盖。改写失败不影响本次读取
+     * @param version 已读取的版本
+     */
+    private void migrateContent(ScriptVersion version) {
+        if (version.getContent() == null || !contentCodec.needsMigration(version.getContentFormat())) {
+            return;
+        }
+        try {
+            int updated = versionMapper.updateContent(version.getId(), version.getContent(), version.getContentFormat());
+            log.debug("改写脚本内容格式: versionId={}, from={}, updated={}",
+                    version.getId(), ScriptContentCodec.Format.of(version.getContentFormat()), updated);
+        } catch (Exception e) {
+            log.warn("改写脚本内容格式失败: versionId={}", version.getId(), e);
+        }
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public ScriptVersion updateVersion(String versionId, ScriptContentDTO content, String userId) {
@@ -136,9 +630,10 @@ public class ScriptServiceImpl implements ScriptService {
         
         try {
             version.setTitle(content.getTitle());
-            version.setContentJson(objectMapper.writeValueAsString(content));
-            version.setWordCount(calculateWordCount(content));
+            version.setContent(content);
+            version.setWordCount(ScriptContents.calculateWordCount(content));
             version.setSceneCount(content.getScenes() != null ? content.getScenes().length : 0);
+            version.setFirstScene(ScriptContents.firstScenePreview(content));
             
             versionMapper.update(version);
             
@@ -176,60 +671,110 @@ public class ScriptServiceImpl implements ScriptService {
             throw new BusinessException(403, "无权访问此会话");
         }
         
-        List<ScriptVersion> versions = versionMapper.selectBySessionId(sessionId);
+        // 预览字段在写入时已提取，列表不读取也不解码content
+        List<ScriptVersion> versions = versionMapper.selectBriefBySessionId(sessionId);
         List<ScriptVersionBriefDTO> result = new ArrayList<>();
-        
         for (ScriptVersion version : versions) {
-            ScriptVersionBriefDTO dto = new ScriptVersionBriefDTO();
-            dto.setVersionId(version.getId());
-            dto.setVersionIndex(version.getVersionIndex());
-            dto.setTitle(version.getTitle());
-            dto.setIsSelected(version.getIsSelected());
-            
-            ScriptVersionBriefDTO.PreviewDTO preview = new ScriptVersionBriefDTO.PreviewDTO();
-            preview.setWordCount(version.getWordCount());
-            preview.setSceneCount(version.getSceneCount());
-            
-            try {
-                ScriptContentDTO content = objectMapper.readValue(version.getContentJson(), ScriptContentDTO.class);
-                preview.setFirstScene(content.getScenes() != null && content.getScenes().length > 0 ?
-                    content.getScenes()[0].getVisualDescription() : "");
-            } catch (Exception e) {
-                preview.setFirstScene("");
-            }
-            
-            dto.setPreview(preview);
-            result.add(dto);
+            result.add(toBrief(version));
         }
         
         return result;
     }
 
+    /**
+     * 转换为版本简要信息
+     *
+     * @param version 版本对象（只需列表预览的字段）
+     * @return 版本简要信息
+     */
+    private ScriptVersionBriefDTO toBrief(ScriptVersion version) {
+        ScriptVersionBriefDTO dto = new ScriptVersionBriefDTO();
+        dto.setVersionId(version.getId());
+        dto.setVersionIndex(version.getVersionIndex());
+        dto.setTitle(version.getTitle());
+        dto.setIsSelected(version.getIsSelected());
+        dto.setSource(version.getSource());
+        
+        ScriptVersionBriefDTO.PreviewDTO preview = new ScriptVersionBriefDTO.PreviewDTO();
+        preview.setFirstScene(version.getFirstScene() != null ? version.getFirstScene() : "");
+        preview.setWordCount(version.getWordCount());
+        preview.setSceneCount(version.getSceneCount());
+        dto.setPreview(preview);
+        return dto;
+    }
+
     @Override
-    public Map<String, Object> getUserHistory(String userId, Integer page, Integer pageSize, String videoType) {
-        page = (page != null && page > 0) ? page : 1;
+    public Map<String, Object> getUserHistory(String userId, String cursor, Integer pageSize, String videoType) {
         pageSize = (pageSize != null && pageSize > 0 && pageSize <= 50) ? pageSize : 10;
+        videoType = (videoType != null && !videoType.isBlank()) ? videoType : null;
+        HistoryCursor after = (cursor != null && !cursor.isEmpty()) ? decodeCursor(cursor) : null;
         
-        int offset = (page - 1) * pageSize;
-        int total = sessionMapper.countByUserId(userId);
-        List<ScriptSession> sessions = sessionMapper.selectByUserId(userId, offset, pageSize, videoType);
+        // 多取一条判断是否还有下一页
+        List<ScriptSession> sessions = sessionMapper.selectByUserId(userId, videoType,
+                after != null ? after.createdAt() : null, after != null ? after.id() : null, pageSize + 1);
+        String nextCursor = null;
+        if (sessions.size() > pageSize) {
+            sessions = new ArrayList<>(sessions.subList(0, pageSize));
+            nextCursor = encodeCursor(sessions.get(pageSize - 1));
+        }
+        int total = sessionMapper.sumCounts(userId, videoType);
         
         Map<String, Object> result = new HashMap<>();
         result.put("total", total);
-        result.put("page", page);
         result.put("pageSize", pageSize);
         result.put("sessions", sessions);
+        result.put("nextCursor", nextCursor);
         
         return result;
     }
 
+    /**
+     * 历史记录分页游标：上一页最后一个会话的创建时间和ID
+     *
+     * @param createdAt 创建时间
+     * @param id 会话ID
+     */
+    private record HistoryCursor(LocalDateTime createdAt, String id) {
+    }
+
+    /**
+     * 编码分页游标
+     *
+     * @param last 本页最后一个会话
+     * @return URL安全的Base64字符串
+     */
+    private String encodeCursor(ScriptSession last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码分页游标
+     *
+     * @param cursor 分页游标
+     * @return 创建时间和ID
+     */
+    private HistoryCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new BusinessException(400, "无效的分页游标");
+        }
+    }
+
     @Override
     public void deleteSession(String sessionId) {
         ScriptSession session = sessionMapper.selectById(sessionId);
         if (session == null) {
             throw new BusinessException(404, "会话不存在");
         }
-        sessionMapper.deleteById(sessionId);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (sessionMapper.deleteById(sessionId) > 0) {
+                sessionMapper.incrementCount(session.getUserId(), session.getVideoType(), -1);
+            }
+        });
     }
 
     @Override
@@ -239,7 +784,7 @@ public class ScriptServiceImpl implements ScriptService {
 
         try {
             // 解析当前的锁定状态
-            Set<Integer> lockedSceneSet = parseLockedScenes(version.getLockedScenes());
+            Set<Integer> lockedSceneSet = ScriptContents.parseLockedScenes(objectMapper, version.getLockedScenes());
 
             if (locked) {
                 lockedSceneSet.add(sceneIndex);
@@ -248,8 +793,8 @@ public class ScriptServiceImpl implements ScriptService {
             }
 
             // 保存新的锁定状态
-            version.setLockedScenes(formatLockedScenes(lockedSceneSet));
-            versionMapper.update(version);
+            version.setLockedScenes(ScriptContents.formatLockedScenes(objectMapper, lockedSceneSet));
+            versionMapper.updateLockedScenes(versionId, version.getLockedScenes());
 
             log.info("更新分镜锁定状态: versionId={}, sceneIndex={}, locked={}", versionId, sceneIndex, locked);
         } catch (Exception e) {
@@ -259,209 +804,215 @@ public class ScriptServiceImpl implements ScriptService {
     }
 
     @Override
-    public ScriptContentDTO regenerateScript(String versionId, String userId) {
-        ScriptVersion version = getVersionDetail(versionId, userId);
-
-        try {
-            // 解析锁定状态
-            Set<Integer> lockedSceneSet = parseLockedScenes(version.getLockedScenes());
-
-            // 如果没有锁定任何分镜，直接返回原内容
-            if (lockedSceneSet.isEmpty()) {
-                return objectMapper.readValue(version.getContentJson(), ScriptContentDTO.class);
-            }
-
-            // 解析原内容
-            ScriptContentDTO originalContent = objectMapper.readValue(version.getContentJson(), ScriptContentDTO.class);
-
-            // 构建新的提示词
-            String prompt = buildRegenerationPrompt(originalContent, lockedSceneSet);
-
-            // 调用AI重新生成
-            ScriptContentDTO newContent = aiService.generateScript(
-                "regeneration", // 特殊类型表示重新生成
-                prompt,
-                "professional"
-            ).get(REGENERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-
-            // 合并锁定分镜和新生成的内容
-            ScriptContentDTO mergedContent = mergeContentWithLocks(originalContent, newContent, lockedSceneSet);
-
-            // 更新数据库
-            version.setContentJson(objectMapper.writeValueAsString(mergedContent));
-            version.setWordCount(calculateWordCount(mergedContent));
-            versionMapper.update(version);
-
-            log.info("重新生成脚本成功: versionId={}, lockedScenes={}", versionId, lockedSceneSet);
-            return mergedContent;
-
-        } catch (Exception e) {
-            log.error("重新生成脚本失败: versionId={}", versionId, e);
-            throw new BusinessException("重新生成脚本失败");
+    public Mono<ScriptContentDTO> regenerateScript(String versionId, String mode, String userId,
+                                                   String idempotencyKey) {
+        boolean fullMode = REGENERATE_MODE_FULL.equals(mode);
+        if (!fullMode && mode != null && !REGENERATE_MODE_SCENE.equals(mode)) {
+            return Mono.error(new BusinessException("不支持的重新生成模式"));
         }
+        Map<String, String> fingerprint = Map.of("versionId", versionId,
+                "mode", fullMode ? REGENERATE_MODE_FULL : REGENERATE_MODE_SCENE);
+        return idempotencyService.execute(IDEMPOTENCY_SCOPE_REGENERATE, userId, idempotencyKey, fingerprint,
+                ScriptContentDTO.class, () -> regenerateScript(versionId, fullMode, userId));
     }
 
     /**
-     * 解析锁定分镜的JSON字符串
+     * 重新生成脚本并统一转换异常
      *
-     * @param lockedScenesJson JSON字符串，如 "[0,2,4]"
-     * @return 锁定分镜的索引集合
+     * @param versionId 基础版本ID
+     * @param fullMode 是否整体重新生成
+     * @param userId 用户ID
+     * @return 重新生成的脚本内容
      */
-    private Set<Integer> parseLockedScenes(String lockedScenesJson) {
-        Set<Integer> result = new HashSet<>();
-        if (lockedScenesJson == null || lockedScenesJson.trim().isEmpty()) {
-            return result;
-        }
+    private Mono<ScriptContentDTO> regenerateScript(String versionId, boolean fullMode, String userId) {
+        return Mono.fromCallable(() -> {
+                ScriptVersion version = getVersionDetail(versionId, userId);
+                tokenUsageService.checkQuota(userId);
+                return version;
+            })
+            .subscribeOn(generationScheduler)
+            .flatMap(version -> regenerateWithLocks(version, fullMode)
+                .onErrorMap(e -> {
+                    Throwable cause = ExceptionUtils.unwrap(e);
+                    if (cause instanceof ServiceOverloadedException || cause instanceof DeadlineExceededException) {
+                        return cause;
+                    }
+                    log.error("重新生成脚本失败: versionId={}", versionId, cause);
+                    return new BusinessException("重新生成脚本失败");
+                }))
+            // 重新生成的用量单独归为regeneration类型，与首次生成的成本分开统计
+            .as(mono -> UsageAttribution.attribute(mono, userId, AiService.VIDEO_TYPE_REGENERATION));
+    }
 
-        try {
-            List<Integer> list = objectMapper.readValue(lockedScenesJson,
-                objectMapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
-            result.addAll(list);
-        } catch (Exception e) {
-            log.warn("解析锁定分镜数据失败: {}", lockedScenesJson, e);
-        }
+    /**
+     * 保持锁定分镜不变，重新生成其余内容并保存
+     *
+     * @param version 基础版本
+     * @param fullMode 是否整体重新生成
+     * @return 合并后的脚本内容
+     */
+    private Mono<ScriptContentDTO> regenerateWithLocks(ScriptVersion version, boolean fullMode) {
+        // 解析锁定状态
+        Set<Integer> lockedSceneSet = ScriptContents.parseLockedScenes(objectMapper, version.getLockedScenes());
+
+        return Mono.fromCallable(() -> version.getContent())
+            .flatMap(originalContent -> {
+                // 没有锁定分镜的模板草稿按原始输入重新生成完整脚本，替换模板标题和结尾话术
+                boolean redraft = lockedSceneSet.isEmpty()
+                    && ScriptVersion.SOURCE_FALLBACK.equals(version.getSource());
+
+                // 如果没有锁定任何分镜，直接返回原内容
+                if (lockedSceneSet.isEmpty() && !redraft) {
+                    return Mono.just(originalContent);
+                }
 
-        return result;
+                Mono<ScriptContentDTO> regenerated;
+                if (redraft) {
+                    regenerated = redraftScript(version);
+                } else {
+                    regenerated = fullMode
+                        ? regenerateFullScript(originalContent, lockedSceneSet)
+                        : regenerateUnlockedScenes(originalContent, lockedSceneSet);
+                }
+
+                return regenerated
+                    .publishOn(generationScheduler)
+                    .map(mergedContent -> {
+                        // 更新数据库
+                        version.setContent(mergedContent);
+                        version.setWordCount(ScriptContents.calculateWordCount(mergedContent));
+                        version.setFirstScene(ScriptContents.firstScenePreview(mergedContent));
+                        version.setPromptVersion(aiService.getPromptVersion());
+                        if (redraft) {
+                            version.setTitle(mergedContent.getTitle());
+                            version.setSceneCount(mergedContent.getScenes() != null ? mergedContent.getScenes().length : 0);
+                            version.setSource(ScriptVersion.SOURCE_AI);
+                        }
+                        versionMapper.update(version);
+
+                        log.info("重新生成脚本成功: versionId={}, lockedScenes={}, fullMode={}",
+                                version.getId(), lockedSceneSet, fullMode);
+                        return mergedContent;
+                    });
+            });
     }
 
     /**
-     * 格式化锁定分镜为JSON字符串
+     * 按会话的原始输入重新生成模板草稿
      *
-     * @param lockedScenes 锁定分镜的索引集合
-     * @return JSON字符串
+     * @param version 模板草稿版本
+     * @return 新的脚本内容
      */
-    private String formatLockedScenes(Set<Integer> lockedScenes) {
-        if (lockedScenes == null || lockedScenes.isEmpty()) {
-            return null;
-        }
-
-        try {
-            List<Integer> sortedList = new ArrayList<>(lockedScenes);
-            Collections.sort(sortedList);
-            return objectMapper.writeValueAsString(sortedList);
-        } catch (Exception e) {
-            log.error("格式化锁定分镜数据失败", e);
-            return null;
-        }
+    private Mono<ScriptContentDTO> redraftScript(ScriptVersion version) {
+        return Mono.fromCallable(() -> sessionMapper.selectById(version.getSessionId()))
+            .subscribeOn(generationScheduler)
+            .flatMap(session -> aiService.generateScriptReactive(
+                    session.getVideoType(),
+                    session.getThemeInput(),
+                    session.getStylePreference(),
+                    version.getVersionIndex() - 1
+                ))
+            .as(mono -> RequestDeadline.timeout(mono, Duration.ofSeconds(GENERATION_TIMEOUT_SECONDS)));
     }
 
     /**
-     * 构建重新生成的提示词
+     * 整体重新生成脚本后合并锁定分镜
      *
      * @param originalContent 原始内容
      * @param lockedScenes 锁定的分镜索引
-     * @return 提示词
+     * @return 合并后的内容
      */
-    private String buildRegenerationPrompt(ScriptContentDTO originalContent, Set<Integer> lockedScenes) {
-        StringBuilder prompt = new StringBuilder();
-
-        prompt.append("你是一个专业的短视频脚本编辑专家。请基于现有的脚本，重新生成未锁定的分镜内容。\n\n");
+    private Mono<ScriptContentDTO> regenerateFullScript(ScriptContentDTO originalContent, Set<Integer> lockedScenes) {
+        // 构建新的提示词
+        String prompt = buildRegenerationPrompt(originalContent, lockedScenes);
 
-        prompt.append("原始脚本标题：").append(originalContent.getTitle()).append("\n\n");
+        // 调用AI重新生成
+        return aiService.generateScriptReactive(
+                AiService.VIDEO_TYPE_REGENERATION,
+                prompt,
+                "professional"
+            )
+            .as(mono -> RequestDeadline.timeout(mono, Duration.ofSeconds(REGENERATION_TIMEOUT_SECONDS)))
+            // 合并锁定分镜和新生成的内容
+            .map(newContent -> ScriptContents.mergeContentWithLocks(originalContent, newContent, lockedScenes));
+    }
 
-        prompt.append("分镜情况：\n");
+    /**
+     * 只重新生成未锁定的分镜
+     *
+     * @description 每个未锁定的分镜各自并发请求，只带相邻分镜作为上下文，结果按索引拼回，
+     *              时间范围保持原值。单个分镜失败时保留原分镜，全部失败时抛出第一个错误
+     * @param originalContent 原始内容
+     * @param lockedScenes 锁定的分镜索引
+     * @return 拼接后的内容
+     */
+    private Mono<ScriptContentDTO> regenerateUnlockedScenes(ScriptContentDTO originalContent, Set<Integer> lockedScenes) {
         ScriptContentDTO.SceneDTO[] scenes = originalContent.getScenes();
-        if (scenes != null) {
-            for (int i = 0; i < scenes.length; i++) {
-                if (lockedScenes.contains(i)) {
-                    prompt.append("分镜").append(i + 1).append("（已锁定，保持不变）：\n");
-                    prompt.append("- 时间范围：").append(scenes[i].getTimeRange()).append("\n");
-                    prompt.append("- 画面描述：").append(scenes[i].getVisualDescription()).append("\n");
-                    prompt.append("- 文案/旁白：").append(scenes[i].getVoiceover()).append("\n");
-                    prompt.append("- 字幕提示：").append(scenes[i].getSubtitle()).append("\n\n");
-                } else {
-                    prompt.append("分镜").append(i + 1).append("（需要重新生成）：\n");
-                    prompt.append("- 时间范围：").append(scenes[i].getTimeRange()).append("\n");
-                    prompt.append("- 保持风格一致，但内容要创新\n\n");
-                }
+        List<Integer> unlocked = new ArrayList<>();
+        for (int i = 0; scenes != null && i < scenes.length; i++) {
+            if (!lockedScenes.contains(i)) {
+                unlocked.add(i);
             }
         }
+        if (unlocked.isEmpty()) {
+            return Mono.just(originalContent);
+        }
 
-        prompt.append("要求：\n");
-        prompt.append("1. 保持锁定的分镜完全不变\n");
-        prompt.append("2. 只重新生成未锁定的分镜\n");
-        prompt.append("3. 整体风格和质量要与原脚本保持一致\n");
-        prompt.append("4. 返回完整的脚本JSON格式\n");
-        prompt.append("5. 确保返回的是纯JSON格式，不要包含任何markdown标记或其他文字\n\n");
-
-        prompt.append("请按照以下JSON格式返回重新生成的完整脚本内容：\n");
-        prompt.append("{\n");
-        prompt.append("  \"title\": \"脚本标题\",\n");
-        prompt.append("  \"alternativeTitles\": [\"备选标题1\", \"备选标题2\"],\n");
-        prompt.append("  \"scenes\": [\n");
-        prompt.append("    {\n");
-        prompt.append("      \"timeRange\": \"0-10秒\",\n");
-        prompt.append("      \"visualDescription\": \"画面描述\",\n");
-        prompt.append("      \"voiceover\": \"文案/旁白\",\n");
-        prompt.append("      \"subtitle\": \"字幕提示\"\n");
-        prompt.append("    }\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"videoElements\": {\n");
-        prompt.append("    \"bgmStyle\": \"BGM风格建议\",\n");
-        prompt.append("    \"shootingLocation\": \"拍摄场地建议\",\n");
-        prompt.append("    \"effects\": \"特效/转场建议\"\n");
-        prompt.append("  },\n");
-        prompt.append("  \"endingCTA\": [\"结尾话术1\", \"结尾话术2\", \"结尾话术3\"]\n");
-        prompt.append("}\n");
-
-        return prompt.toString();
+        List<Throwable> sceneErrors = Collections.synchronizedList(new ArrayList<>());
+        return Flux.fromIterable(unlocked)
+            .flatMap(index -> aiService.regenerateScene(originalContent.getTitle(), scenes, index)
+                .as(mono -> RequestDeadline.timeout(mono, Duration.ofSeconds(SCENE_REGENERATION_TIMEOUT_SECONDS)))
+                .map(scene -> Map.entry(index, scene))
+                .onErrorResume(e -> {
+                    Throwable cause = ExceptionUtils.unwrap(e);
+                    log.warn("重新生成分镜失败，保留原分镜: sceneIndex={}, {}", index, cause.getMessage());
+                    sceneErrors.add(cause);
+                    return Mono.empty();
+                }), unlocked.size())
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .flatMap(regenerated -> {
+                if (regenerated.isEmpty()) {
+                    return Mono.error(sceneErrors.get(0));
+                }
+                return Mono.just(spliceScenes(originalContent, regenerated));
+            });
     }
 
     /**
-     * 合并原内容和重新生成的内容
+     * 将重新生成的分镜按索引拼回原脚本
      *
      * @param originalContent 原始内容
-     * @param newContent 新生成的内容
-     * @param lockedScenes 锁定的分镜索引
-     * @return 合并后的内容
+     * @param regenerated 分镜索引到新分镜的映射
+     * @return 拼接后的内容
      */
-    private ScriptContentDTO mergeContentWithLocks(ScriptContentDTO originalContent,
-                                                  ScriptContentDTO newContent,
-                                                  Set<Integer> lockedScenes) {
+    private ScriptContentDTO spliceScenes(ScriptContentDTO originalContent,
+                                          Map<Integer, ScriptContentDTO.SceneDTO> regenerated) {
         ScriptContentDTO merged = new ScriptContentDTO();
-
-        // 保持标题等基本信息
         merged.setTitle(originalContent.getTitle());
         merged.setAlternativeTitles(originalContent.getAlternativeTitles());
         merged.setVideoElements(originalContent.getVideoElements());
         merged.setEndingCTA(originalContent.getEndingCTA());
 
-        // 合并分镜
-        ScriptContentDTO.SceneDTO[] originalScenes = originalContent.getScenes();
-        ScriptContentDTO.SceneDTO[] newScenes = newContent.getScenes();
-
-        if (originalScenes != null && newScenes != null && originalScenes.length == newScenes.length) {
-            ScriptContentDTO.SceneDTO[] mergedScenes = new ScriptContentDTO.SceneDTO[originalScenes.length];
-
-            for (int i = 0; i < originalScenes.length; i++) {
-                if (lockedScenes.contains(i)) {
-                    // 保持锁定的分镜不变
-                    mergedScenes[i] = originalScenes[i];
-                } else {
-                    // 使用新生成的分镜
-                    mergedScenes[i] = newScenes[i];
-                }
-            }
-
-            merged.setScenes(mergedScenes);
-        } else {
-            // 如果分镜数量不匹配，使用新内容
-            merged.setScenes(newContent.getScenes());
-        }
-
+        ScriptContentDTO.SceneDTO[] mergedScenes = originalContent.getScenes().clone();
+        regenerated.forEach((index, scene) -> {
+            scene.setTimeRange(mergedScenes[index].getTimeRange());
+            mergedScenes[index] = scene;
+        });
+        merged.setScenes(mergedScenes);
         return merged;
     }
 
-    private int calculateWordCount(ScriptContentDTO content) {
-        int count = 0;
-        if (content.getScenes() != null) {
-            for (ScriptContentDTO.SceneDTO scene : content.getScenes()) {
-                if (scene.getVoiceover() != null) {
-                    count += scene.getVoiceover().length();
-                }
-            }
-        }
-        return count;
+    /**
+     * 构建重新生成的提示词
+     *
+     * @param originalContent 原始内容
+     * @param lockedScenes 锁定的分镜索引
+     * @return 提示词
+     */
+    private String buildRegenerationPrompt(ScriptContentDTO originalContent, Set<Integer> lockedScenes) {
+        return promptTemplateService.render(PromptTemplateService.TEMPLATE_REGENERATION, Map.of(
+                "title", Objects.toString(originalContent.getTitle(), ""),
+                "scenes", ScriptPrompts.regenerationScenes(originalContent, lockedScenes)));
     }
 }
 
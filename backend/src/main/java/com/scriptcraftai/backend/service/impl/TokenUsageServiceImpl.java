@@ -0,0 +1,326 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.config.AsyncConfig;
+import com.scriptcraftai.backend.entity.TokenUsageDaily;
+import com.scriptcraftai.backend.exception.QuotaExceededException;
+import com.scriptcraftai.backend.mapper.TokenUsageMapper;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.util.UsageAttribution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * token用量服务实现类
+ *
+ * @description 每个用户的当天、当月用量计数保存在Redis中，由Lua脚本原子累加并在首次累加时设置过期时间，
+ *              各节点共享同一份计数；明细按(日期, 用户, 视频类型, 提示词版本, 模型)在内存中汇总，
+ *              定期以增量累加的方式写入token_usage_daily表，写入失败时增量留到下次写入。
+ *              Redis不可用时不拦截生成，用量仍写入数据库汇总
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+@Service
+public class TokenUsageServiceImpl implements TokenUsageService {
+
+    // Redis key前缀，完整格式为 token_usage:{userId}:{yyyyMMdd|yyyyMM}
+    private static final String COUNTER_KEY_PREFIX = "token_usage:";
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // 同时累加当天和当月计数，计数还没有过期时间时设置（周期结束后再保留一天，便于排查）
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local daily = redis.call('incrby', KEYS[1], ARGV[1]) "
+                    + "if redis.call('ttl', KEYS[1]) < 0 then redis.call('expire', KEYS[1], ARGV[2]) end "
+                    + "redis.call('incrby', KEYS[2], ARGV[1]) "
+                    + "if redis.call('ttl', KEYS[2]) < 0 then redis.call('expire', KEYS[2], ARGV[3]) end "
+                    + "return daily",
+            Long.class);
+
+    // 无法归属的调用使用的用户ID、视频类型和提示词版本
+    private static final String UNKNOWN = "unknown";
+
+    // 配额周期（指标标签）
+    private static final String PERIOD_DAILY = "daily";
+    private static final String PERIOD_MONTHLY = "monthly";
+
+    // 每条INSERT最多写入的行数
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TokenUsageMapper usageMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    @Qualifier(AsyncConfig.GENERATION_SCHEDULER)
+    private Scheduler generationScheduler;
+
+    @Value("${scriptcraft.quota.enabled:true}")
+    private boolean quotaEnabled;
+
+    @Value("${scriptcraft.quota.daily-tokens:200000}")
+    private long dailyTokens;
+
+    @Value("${scriptcraft.quota.monthly-tokens:3000000}")
+    private long monthlyTokens;
+
+    // 待写入数据库的用量增量
+    private final Map<RollupKey, Rollup> pending = new ConcurrentHashMap<>();
+
+    // 各模型的单价（元/千token），首次使用时读取配置
+    private final Map<String, ModelPrice> prices = new ConcurrentHashMap<>();
+
+    @Override
+    public void checkQuota(String userId) {
+        if (!quotaEnabled || (dailyTokens <= 0 && monthlyTokens <= 0)) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<String> used;
+        try {
+            used = stringRedisTemplate.opsForValue().multiGet(List.of(dailyKey(userId, now), monthlyKey(userId, now)));
+        } catch (Exception e) {
+            log.warn("读取用户用量失败，跳过配额检查: userId={}, {}", userId, e.getMessage());
+            return;
+        }
+        if (used == null) {
+            return;
+        }
+
+        if (dailyTokens > 0 && parseCount(used.get(0)) >= dailyTokens) {
+            LocalDateTime resetAt = now.toLocalDate().plusDays(1).atStartOfDay();
+            reject(userId, PERIOD_DAILY, "今日AI用量已达上限，请明天再试", now, resetAt);
+        }
+        if (monthlyTokens > 0 && parseCount(used.get(1)) >= monthlyTokens) {
+            LocalDateTime resetAt = now.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            reject(userId, PERIOD_MONTHLY, "本月AI用量已达上限，请下月再试", now, resetAt);
+        }
+    }
+
+    @Override
+    public void record(UsageAttribution attribution, String promptVersion, String model, long latencyNanos,
+                       Integer inputTokens, Integer outputTokens) {
+        if (inputTokens == null && outputTokens == null) {
+            return;
+        }
+        long input = inputTokens != null ? inputTokens : 0;
+        long output = outputTokens != null ? outputTokens : 0;
+        String userId = attribution.userId() != null ? attribution.userId() : UNKNOWN;
+        String videoType = attribution.videoType() != null ? attribution.videoType() : UNKNOWN;
+        String version = promptVersion != null ? promptVersion : UNKNOWN;
+
+        tokenCounter("input", model, videoType, version).increment(input);
+        tokenCounter("output", model, videoType, version).increment(output);
+        ModelPrice price = price(model);
+        Counter.builder("scriptcraft.ai.cost")
+                .description("按配置单价估算的AI调用费用")
+                .baseUnit("yuan")
+                .tags("model", model, "video_type", videoType)
+                .register(meterRegistry)
+                .increment((input * price.inputPer1k() + output * price.outputPer1k()) / 1000.0);
+
+        pending.computeIfAbsent(new RollupKey(LocalDate.now(), userId, videoType, version, model), key -> new Rollup())
+                .add(1, input, output, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+
+        // 在AI调用的回调线程上不做阻塞操作，计数交给生成编排线程池累加
+        if (attribution.userId() != null && input + output > 0) {
+            generationScheduler.schedule(() -> incrementCounters(attribution.userId(), input + output));
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${scriptcraft.usage.flush-interval-millis:60000}")
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        List<TokenUsageDaily> rows = new ArrayList<>();
+        for (Map.Entry<RollupKey, Rollup> entry : pending.entrySet()) {
+            TokenUsageDaily row = entry.getValue().drain(entry.getKey());
+            if (row != null) {
+                rows.add(row);
+            } else if (entry.getKey().usageDate().isBefore(today)) {
+                // 前一天的汇总已全部写入，不会再有新的增量
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (int from = 0; from < rows.size(); from += FLUSH_BATCH_SIZE) {
+            List<TokenUsageDaily> batch = rows.subList(from, Math.min(from + FLUSH_BATCH_SIZE, rows.size()));
+            try {
+                usageMapper.upsertBatch(batch);
+                meterRegistry.counter("scriptcraft.usage.flush", "outcome", "success").increment();
+            } catch (Exception e) {
+                log.warn("写入token用量汇总失败，下次重试: rows={}, {}", batch.size(), e.getMessage());
+                meterRegistry.counter("scriptcraft.usage.flush", "outcome", "failure").increment();
+                batch.forEach(this::restore);
+            }
+        }
+    }
+
+    /**
+     * 停机前写入剩余的用量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 原子累加用户的当天和当月计数
+     *
+     * @param userId 用户ID
+     * @param tokens token数
+     */
+    private void incrementCounters(String userId, long tokens) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime dailyExpireAt = now.toLocalDate().plusDays(2).atStartOfDay();
+        LocalDateTime monthlyExpireAt = now.toLocalDate().withDayOfMonth(1).plusMonths(1).plusDays(1).atStartOfDay();
+        try {
+            stringRedisTemplate.execute(INCREMENT_SCRIPT, List.of(dailyKey(userId, now), monthlyKey(userId, now)),
+                    String.valueOf(tokens),
+                    String.valueOf(Duration.between(now, dailyExpireAt).toSeconds()),
+                    String.valueOf(Duration.between(now, monthlyExpireAt).toSeconds()));
+        } catch (Exception e) {
+            log.warn("累加用户用量失败: userId={}, tokens={}, {}", userId, tokens, e.getMessage());
+        }
+    }
+
+    /**
+     * 拒绝超出配额的生成
+     *
+     * @param userId 用户ID
+     * @param period 配额周期
+     * @param message 错误消息
+     * @param now 当前时间
+     * @param resetAt 配额重置时间
+     */
+    private void reject(String userId, String period, String message, LocalDateTime now, LocalDateTime resetAt) {
+        log.info("用户用量已达配额: userId={}, period={}", userId, period);
+        meterRegistry.counter("scriptcraft.quota.rejected", "period", period).increment();
+        throw new QuotaExceededException(message, Math.max(1, Duration.between(now, resetAt).toSeconds()));
+    }
+
+    /**
+     * 写入失败的增量放回待写入汇总
+     *
+     * @param row 用量增量
+     */
+    private void restore(TokenUsageDaily row) {
+        RollupKey key = new RollupKey(row.getUsageDate(), row.getUserId(), row.getVideoType(),
+                row.getPromptVersion(), row.getModel());
+        pending.computeIfAbsent(key, k -> new Rollup())
+                .add(row.getCallCount(), row.getInputTokens(), row.getOutputTokens(), row.getLatencyMillis());
+    }
+
+    private Counter tokenCounter(String type, String model, String videoType, String promptVersion) {
+        return Counter.builder("scriptcraft.ai.tokens")
+                .description("AI调用消耗的token数")
+                .tags("type", type, "model", model, "video_type", videoType, "prompt_version", promptVersion)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 读取模型单价
+     *
+     * @description 配置项为 scriptcraft.usage.prices.{模型名称}.input-per-1k / output-per-1k，未配置的模型按0计算
+     * @param model 模型名称
+     * @return 模型单价
+     */
+    private ModelPrice price(String model) {
+        return prices.computeIfAbsent(model, m -> new ModelPrice(
+                environment.getProperty("scriptcraft.usage.prices." + m + ".input-per-1k", Double.class, 0.0),
+                environment.getProperty("scriptcraft.usage.prices." + m + ".output-per-1k", Double.class, 0.0)));
+    }
+
+    private String dailyKey(String userId, LocalDateTime now) {
+        return COUNTER_KEY_PREFIX + userId + ":" + now.format(DAY_FORMAT);
+    }
+
+    private String monthlyKey(String userId, LocalDateTime now) {
+        return COUNTER_KEY_PREFIX + userId + ":" + now.format(MONTH_FORMAT);
+    }
+
+    private long parseCount(String value) {
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    /**
+     * 汇总维度
+     */
+    private record RollupKey(LocalDate usageDate, String userId, String videoType, String promptVersion,
+                             String model) {
+    }
+
+    /**
+     * 模型单价（元/千token）
+     */
+    private record ModelPrice(double inputPer1k, double outputPer1k) {
+    }
+
+    /**
+     * 一个汇总维度上尚未写入数据库的增量
+     */
+    private static class Rollup {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final LongAdder latencyMillis = new LongAdder();
+
+        void add(long calls, long inputTokens, long outputTokens, long latencyMillis) {
+            this.calls.add(calls);
+            this.inputTokens.add(inputTokens);
+            this.outputTokens.add(outputTokens);
+            this.latencyMillis.add(latencyMillis);
+        }
+
+        /**
+         * 取出并清零增量，并发累加的部分留到下次写入
+         *
+         * @param key 汇总维度
+         * @return 用量增量，没有增量时返回null
+         */
+        TokenUsageDaily drain(RollupKey key) {
+            long callCount = calls.sumThenReset();
+            long input = inputTokens.sumThenReset();
+            long output = outputTokens.sumThenReset();
+            long latency = latencyMillis.sumThenReset();
+            if (callCount == 0 && input == 0 && output == 0) {
+                return null;
+            }
+            return new TokenUsageDaily(key.usageDate(), key.userId(), key.videoType(), key.promptVersion(),
+                    key.model(), callCount, input, output, latency, null, null);
+        }
+    }
+}
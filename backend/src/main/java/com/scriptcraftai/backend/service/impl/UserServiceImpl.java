@@ -58,7 +58,7 @@ public class UserServiceImpl implements UserService {
         
         // 2. 创建用户对象
         User user = new User();
-        user.setId(IdGenerator.generateUUID());
+        user.setId(IdGenerator.generateTimeOrderedId());
         user.setEmail(request.getEmail());
         user.setPassword(passwordEncoder.encode(request.getPassword()));
         user.setNickname(request.getNickname() != null ? request.getNickname() : extractNicknameFromEmail(request.getEmail()));
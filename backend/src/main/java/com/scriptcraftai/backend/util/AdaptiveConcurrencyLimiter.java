@@ -0,0 +1,342 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * 自适应并发限制器
+ *
+ * @description 按AIMD方式根据上游的实际表现调整并发上限：请求成功且耗时正常时上限缓慢增加，
+ *              上游限流、超时或耗时明显高于基线时按比例下调。超出上限的请求进入有界的FIFO队列，
+ *              排队超过期限或队列已满时立即以503拒绝并携带Retry-After。排队时间不超过请求剩余的截止时间，
+ *              截止时间先到时以DeadlineExceededException（504）失败。线程安全。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    // 基线耗时的平滑系数
+    private static final double BASELINE_SMOOTHING = 0.1;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueCapacity;
+    private final Duration queueTimeout;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long retryAfterSeconds;
+    private final Predicate<Throwable> droppedClassifier;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    // 以下状态由this保护
+    private double limit;
+    private int inFlight;
+    private double baselineLatencyNanos;
+
+    private final Timer queueWaitTimer;
+    private final Counter queueFullCounter;
+    private final Counter queueTimeoutCounter;
+
+    /**
+     * 构造函数
+     *
+     * @param name 名称（用于日志和指标标签）
+     * @param initialLimit 初始并发上限
+     * @param minLimit 最小并发上限
+     * @param maxLimit 最大并发上限
+     * @param queueCapacity 等待队列容量
+     * @param queueTimeout 最长排队时间
+     * @param backoffRatio 拥塞时的下调比例（0-1）
+     * @param latencyTolerance 耗时超过基线多少倍视为拥塞
+     * @param retryAfterSeconds 拒绝时建议的重试等待时间（秒）
+     * @param droppedClassifier 判断异常是否表示上游拥塞（限流、超时）
+     * @param meterRegistry 指标注册表
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      int queueCapacity, Duration queueTimeout,
+                                      double backoffRatio, double latencyTolerance, long retryAfterSeconds,
+                                      Predicate<Throwable> droppedClassifier, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueCapacity = queueCapacity;
+        this.queueTimeout = queueTimeout;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.droppedClassifier = droppedClassifier;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Gauge.builder("scriptcraft.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("当前并发上限")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("scriptcraft.limiter.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("正在执行的请求数")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("scriptcraft.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("排队中的请求数")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("scriptcraft.limiter.queue.wait")
+                .description("获取许可的排队等待时间")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.queueFullCounter = Counter.builder("scriptcraft.limiter.rejected")
+                .description("被拒绝的请求数")
+                .tag("limiter", name)
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.queueTimeoutCounter = Counter.builder("scriptcraft.limiter.rejected")
+                .description("被拒绝的请求数")
+                .tag("limiter", name)
+                .tag("reason", "queue_timeout")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在并发限制内执行单个请求
+     *
+     * @param call 上游调用（订阅时才真正发出请求）
+     * @return 受限的调用
+     */
+    public <T> Mono<T> limit(Mono<T> call) {
+        return acquire().flatMap(permit -> call
+                .doOnSuccess(value -> permit.onSuccess())
+                .doOnError(permit::onError)
+                .doOnCancel(permit::onIgnore));
+    }
+
+    /**
+     * 在并发限制内执行流式请求，整个流结束后才归还许可
+     *
+     * @param call 上游调用（订阅时才真正发出请求）
+     * @return 受限的调用
+     */
+    public <T> Flux<T> limit(Flux<T> call) {
+        return acquire().flatMapMany(permit -> call
+                .doOnComplete(permit::onSuccess)
+                .doOnError(permit::onError)
+                .doOnCancel(permit::onIgnore));
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * 获取许可，必要时排队等待
+     *
+     * @description 最长排队时间取queueTimeout与请求剩余时间中较小者
+     * @return 许可
+     */
+    private Mono<Permit> acquire() {
+        return Mono.deferContextual(context -> {
+            Duration wait = RequestDeadline.remaining(context, queueTimeout);
+            if (wait.isZero()) {
+                return Mono.error(new DeadlineExceededException());
+            }
+            boolean deadlineFirst = wait.compareTo(queueTimeout) < 0;
+            return enqueue().timeout(wait, Mono.defer(() -> {
+                if (deadlineFirst) {
+                    log.warn("AI调用排队期间请求到达截止时间: limiter={}, waited={}ms", name, wait.toMillis());
+                    return Mono.error(new DeadlineExceededException());
+                }
+                queueTimeoutCounter.increment();
+                log.warn("AI调用排队超时，拒绝请求: limiter={}, timeout={}ms", name, queueTimeout.toMillis());
+                return Mono.error(overloaded());
+            }));
+        });
+    }
+
+    /**
+     * 立即分配许可，或在队列未满时排队
+     *
+     * @return 许可
+     */
+    private Mono<Permit> enqueue() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, System.nanoTime());
+            Permit granted = null;
+            boolean rejected = false;
+            synchronized (this) {
+                if (queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    granted = new Permit();
+                } else if (queue.size() >= queueCapacity) {
+                    rejected = true;
+                } else {
+                    queue.addLast(waiter);
+                }
+            }
+
+            if (granted != null) {
+                queueWaitTimer.record(0, TimeUnit.NANOSECONDS);
+                sink.success(granted);
+                return;
+            }
+            if (rejected) {
+                queueFullCounter.increment();
+                log.warn("AI调用排队已满，拒绝请求: limiter={}, limit={}, queued={}", name, (int) getLimit(), queueCapacity);
+                sink.error(overloaded());
+                return;
+            }
+            sink.onCancel(() -> cancelWaiter(waiter));
+        });
+    }
+
+    /**
+     * 排队的请求被取消（超时或调用方断开）
+     *
+     * @param waiter 排队的请求
+     */
+    private void cancelWaiter(Waiter waiter) {
+        Permit leaked;
+        synchronized (this) {
+            if (queue.remove(waiter)) {
+                return;
+            }
+            // 已分配许可但调用方不再需要，立即归还
+            leaked = waiter.permit;
+        }
+        if (leaked != null) {
+            leaked.onIgnore();
+        }
+    }
+
+    /**
+     * 归还许可并按结果调整并发上限，然后按先后顺序唤醒排队的请求
+     *
+     * @param latencyNanos 请求耗时
+     * @param outcome 请求结果
+     */
+    private void release(long latencyNanos, Outcome outcome) {
+        synchronized (this) {
+            inFlight--;
+            double previous = limit;
+            switch (outcome) {
+                case SUCCESS -> {
+                    if (baselineLatencyNanos > 0 && latencyNanos > baselineLatencyNanos * latencyTolerance) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                    } else if (inFlight + 1 >= (int) limit) {
+                        // 只有并发被用满时才继续探测更高的上限
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                    baselineLatencyNanos = baselineLatencyNanos == 0
+                            ? latencyNanos
+                            : baselineLatencyNanos * (1 - BASELINE_SMOOTHING) + latencyNanos * BASELINE_SMOOTHING;
+                }
+                case DROPPED -> limit = Math.max(minLimit, limit * backoffRatio);
+                default -> {
+                }
+            }
+            if ((int) previous != (int) limit) {
+                log.info("调整AI调用并发上限: limiter={}, {} -> {}, outcome={}", name, (int) previous, (int) limit, outcome);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * 为排队的请求分配空闲许可
+     */
+    private void drain() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                if (queue.isEmpty() || inFlight >= (int) limit) {
+                    return;
+                }
+                next = queue.pollFirst();
+                inFlight++;
+                next.permit = new Permit();
+            }
+            queueWaitTimer.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            next.sink.success(next.permit);
+        }
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "AI服务繁忙，请稍后重试", retryAfterSeconds);
+    }
+
+    /**
+     * 请求结果
+     */
+    private enum Outcome {
+        // 成功，参与上限调整
+        SUCCESS,
+        // 上游限流或超时，下调上限
+        DROPPED,
+        // 其他错误或取消，不影响上限
+        IGNORED
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static class Waiter {
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt;
+        private Permit permit;
+
+        private Waiter(MonoSink<Permit> sink, long enqueuedAt) {
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * 并发许可，只会被归还一次
+     */
+    private class Permit {
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private void onSuccess() {
+            complete(Outcome.SUCCESS);
+        }
+
+        private void onError(Throwable error) {
+            complete(droppedClassifier.test(error) ? Outcome.DROPPED : Outcome.IGNORED);
+        }
+
+        private void onIgnore() {
+            complete(Outcome.IGNORED);
+        }
+
+        private void complete(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                release(System.nanoTime() - startedAt, outcome);
+            }
+        }
+    }
+}
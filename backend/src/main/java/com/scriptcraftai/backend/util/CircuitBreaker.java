@@ -0,0 +1,283 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.exception.CircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * 熔断器
+ *
+ * @description 按最近若干次调用的失败率判断上游是否可用：失败率达到阈值后打开，期间的调用立即以503拒绝，
+ *              不再等待上游超时；打开一段时间后进入半开状态，放行少量试探调用，全部成功则关闭，
+ *              任一失败则重新打开。取消的调用不计入结果。线程安全。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> failureClassifier;
+
+    // 以下状态由this保护
+    private State state = State.CLOSED;
+    // 最近的调用结果（环形缓冲，true为失败）
+    private final boolean[] window;
+    private int windowCount;
+    private int windowPosition;
+    private int windowFailures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final Counter rejectedCounter;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 构造函数
+     *
+     * @param name 名称（用于日志和指标标签）
+     * @param failureRateThreshold 打开熔断的失败率（0-1）
+     * @param minimumCalls 统计窗口内至少有多少次调用才计算失败率
+     * @param windowSize 统计窗口大小（最近的调用次数）
+     * @param openDuration 打开状态的持续时间
+     * @param halfOpenCalls 半开状态放行的试探调用数
+     * @param failureClassifier 判断异常是否计为上游失败
+     * @param meterRegistry 指标注册表
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, int windowSize,
+                          Duration openDuration, int halfOpenCalls,
+                          Predicate<Throwable> failureClassifier, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, Math.min(windowSize, minimumCalls));
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.openDuration = openDuration;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.failureClassifier = failureClassifier;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("scriptcraft.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("熔断器状态（0-关闭，1-半开，2-打开）")
+                .tag("breaker", name)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("scriptcraft.circuit.rejected")
+                .description("熔断期间被拒绝的调用数")
+                .tag("breaker", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在熔断器保护下执行单个调用
+     *
+     * @param call 上游调用（订阅时才真正发出请求）
+     * @return 受保护的调用
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            Permit permit = acquire();
+            return call
+                    .doOnSuccess(value -> permit.onSuccess())
+                    .doOnError(permit::onError)
+                    .doOnCancel(permit::onIgnore);
+        });
+    }
+
+    /**
+     * 在熔断器保护下执行流式调用，整个流结束后才记录结果
+     *
+     * @param call 上游调用（订阅时才真正发出请求）
+     * @return 受保护的调用
+     */
+    public <T> Flux<T> protect(Flux<T> call) {
+        return Flux.defer(() -> {
+            Permit permit = acquire();
+            return call
+                    .doOnComplete(permit::onSuccess)
+                    .doOnError(permit::onError)
+                    .doOnCancel(permit::onIgnore);
+        });
+    }
+
+    /**
+     * 当前是否会放行调用（不占用半开状态的试探名额）
+     *
+     * @return 关闭、半开或打开已到期时为true
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> halfOpenPermits < halfOpenCalls;
+            case OPEN -> System.nanoTime() - openedAt >= openDuration.toNanos();
+        };
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 获取调用许可，熔断打开时抛出异常
+     *
+     * @return 许可
+     */
+    private Permit acquire() {
+        long retryAfterNanos;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration.toNanos()) {
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                return new Permit(false);
+            }
+            if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+                halfOpenPermits++;
+                return new Permit(true);
+            }
+            retryAfterNanos = state == State.OPEN
+                    ? openDuration.toNanos() - (System.nanoTime() - openedAt)
+                    : openDuration.toNanos();
+        }
+        rejectedCounter.increment();
+        throw new CircuitOpenException(Math.max(1, Duration.ofNanos(retryAfterNanos).toSeconds()));
+    }
+
+    /**
+     * 记录一次调用结果并按需切换状态
+     *
+     * @param trial 是否为半开状态的试探调用
+     * @param outcome 调用结果
+     */
+    private synchronized void record(boolean trial, Outcome outcome) {
+        if (trial) {
+            // 熔断器已被其他试探调用重新打开，此结果不再有意义
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            switch (outcome) {
+                case FAILURE -> transition(State.OPEN);
+                case SUCCESS -> {
+                    if (++halfOpenSuccesses >= halfOpenCalls) {
+                        transition(State.CLOSED);
+                    }
+                }
+                // 试探调用被取消，归还名额
+                default -> halfOpenPermits--;
+            }
+            return;
+        }
+        if (state != State.CLOSED || outcome == Outcome.IGNORED) {
+            return;
+        }
+
+        boolean failed = outcome == Outcome.FAILURE;
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failed;
+        windowPosition = (windowPosition + 1) % window.length;
+        if (failed) {
+            windowFailures++;
+        }
+
+        if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+            log.warn("上游失败率过高，打开熔断: breaker={}, failures={}/{}", name, windowFailures, windowCount);
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * 切换状态并重置对应的计数（调用方持有锁）
+     *
+     * @param next 目标状态
+     */
+    private void transition(State next) {
+        if (state == next) {
+            return;
+        }
+        log.info("熔断器状态变化: breaker={}, {} -> {}", name, state, next);
+        state = next;
+        switch (next) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                halfOpenPermits = 0;
+                halfOpenSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowCount = 0;
+                windowPosition = 0;
+                windowFailures = 0;
+            }
+        }
+        meterRegistry.counter("scriptcraft.circuit.transitions", "breaker", name, "state", next.name().toLowerCase())
+                .increment();
+    }
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        // 正常放行
+        CLOSED,
+        // 放行少量试探调用
+        HALF_OPEN,
+        // 拒绝所有调用
+        OPEN
+    }
+
+    /**
+     * 调用结果
+     */
+    private enum Outcome {
+        SUCCESS,
+        FAILURE,
+        // 取消或不计为上游失败的错误
+        IGNORED
+    }
+
+    /**
+     * 调用许可，只会记录一次结果
+     */
+    private class Permit {
+        private final boolean trial;
+        private final AtomicBoolean recorded = new AtomicBoolean(false);
+
+        private Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        private void onSuccess() {
+            complete(Outcome.SUCCESS);
+        }
+
+        private void onError(Throwable error) {
+            // 半开状态下的非上游错误同样归还名额
+            complete(failureClassifier.test(error) ? Outcome.FAILURE : Outcome.IGNORED);
+        }
+
+        private void onIgnore() {
+            complete(Outcome.IGNORED);
+        }
+
+        private void complete(Outcome outcome) {
+            if (recorded.compareAndSet(false, true)) {
+                record(trial, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 通义千问响应解析器
+ *
+ * @description 逐个token读取DashScope响应，只保留需要的字段（生成内容、token用量、错误码、错误信息），
+ *              不构建JsonNode树，也不需要先把响应体拼接成完整字符串。
+ *              可按网络分片增量喂入字节，也可一次性解析SSE分片。非线程安全。
+ * @author ScriptCraft AI Team
+ */
+public class DashScopeResponseParser {
+
+    private static final JsonPointer CONTENT_POINTER = JsonPointer.compile("/output/choices/0/message/content");
+    private static final JsonPointer CODE_POINTER = JsonPointer.compile("/code");
+    private static final JsonPointer MESSAGE_POINTER = JsonPointer.compile("/message");
+    private static final JsonPointer INPUT_TOKENS_POINTER = JsonPointer.compile("/usage/input_tokens");
+    private static final JsonPointer OUTPUT_TOKENS_POINTER = JsonPointer.compile("/usage/output_tokens");
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+
+    private String content;
+    private String code;
+    private String message;
+    private Integer inputTokens;
+    private Integer outputTokens;
+
+    /**
+     * 创建增量解析器
+     *
+     * @param jsonFactory JSON工厂
+     */
+    public DashScopeResponseParser(JsonFactory jsonFactory) {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    private DashScopeResponseParser(JsonParser parser) {
+        this.parser = parser;
+        this.feeder = null;
+    }
+
+    /**
+     * 一次性解析完整的响应文本（如SSE分片）
+     *
+     * @param jsonFactory JSON工厂
+     * @param json 响应文本
+     * @return 解析结果
+     */
+    public static DashScopeResponseParser parse(JsonFactory jsonFactory, String json) {
+        try (JsonParser jsonParser = jsonFactory.createParser(json)) {
+            DashScopeResponseParser result = new DashScopeResponseParser(jsonParser);
+            result.drain();
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 喂入一段响应字节，读取其中所有完整的token
+     *
+     * @param buffer 响应字节
+     */
+    public void feed(ByteBuffer buffer) {
+        try {
+            feeder.feedInput(buffer);
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 响应结束
+     *
+     * @return 当前解析器
+     */
+    public DashScopeResponseParser endOfInput() {
+        feeder.endOfInput();
+        try {
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    /**
+     * 生成的文本内容
+     *
+     * @return 内容，响应中没有时为null
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * 错误码（仅调用失败时有值）
+     *
+     * @return 错误码
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 错误信息（仅调用失败时有值）
+     *
+     * @return 错误信息
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 输入token数
+     *
+     * @return token数，响应中没有时为null
+     */
+    public Integer getInputTokens() {
+        return inputTokens;
+    }
+
+    /**
+     * 输出token数（增量输出时为截至当前分片的累计值）
+     *
+     * @return token数，响应中没有时为null
+     */
+    public Integer getOutputTokens() {
+        return outputTokens;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (!token.isScalarValue()) {
+                continue;
+            }
+            // 先按字段名过滤，只有候选字段才计算完整路径
+            String name = parser.currentName();
+            if ("content".equals(name)) {
+                if (CONTENT_POINTER.equals(parser.getParsingContext().pathAsPointer())) {
+                    content = parser.getText();
+                }
+            } else if ("code".equals(name)) {
+                if (CODE_POINTER.equals(parser.getParsingContext().pathAsPointer())) {
+                    code = parser.getText();
+                }
+            } else if ("message".equals(name)) {
+                if (MESSAGE_POINTER.equals(parser.getParsingContext().pathAsPointer())) {
+                    message = parser.getText();
+                }
+            } else if ("input_tokens".equals(name)) {
+                if (INPUT_TOKENS_POINTER.equals(parser.getParsingContext().pathAsPointer())) {
+                    inputTokens = parser.getIntValue();
+                }
+            } else if ("output_tokens".equals(name)) {
+                if (OUTPUT_TOKENS_POINTER.equals(parser.getParsingContext().pathAsPointer())) {
+                    outputTokens = parser.getIntValue();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异常工具类
+ * 
+ * @description 提供异步调用异常的拆包功能
+ * @author ScriptCraft AI Team
+ */
+public class ExceptionUtils {
+
+    /**
+     * 拆出CompletableFuture或Reactor调度器包装的真实异常
+     * 
+     * @param e 异常
+     * @return 真实异常
+     */
+    public static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+                || (cause instanceof RejectedExecutionException
+                    && cause.getCause() instanceof ServiceOverloadedException))
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -1,18 +1,25 @@
 package com.scriptcraftai.backend.util;
 
+import java.security.SecureRandom;
+import java.util.HexFormat;
 import java.util.UUID;
 
 /**
  * ID生成器工具类
- * 
- * @description 提供UUID生成功能
+ *
+ * @description 提供UUID生成功能。数据库主键使用按时间递增的UUIDv7，新行追加在聚簇索引末尾；
+ *              会话令牌等不应可预测的值仍使用随机UUID。主键以BINARY(16)存储，对外为32位十六进制字符串
  * @author ScriptCraft AI Team
  */
 public class IdGenerator {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final HexFormat HEX = HexFormat.of();
+
     /**
      * 生成UUID（去掉横线）
-     * 
+     *
      * @return 32位UUID字符串
      */
     public static String generateUUID() {
@@ -21,11 +28,57 @@ public class IdGenerator {
 
     /**
      * 生成标准UUID（保留横线）
-     * 
+     *
      * @return 36位UUID字符串
      */
     public static String generateStandardUUID() {
         return UUID.randomUUID().toString();
     }
-}
 
+    /**
+     * 生成按时间递增的UUIDv7（去掉横线）
+     *
+     * @description 前48位为毫秒时间戳，其余为随机数（同一毫秒内的顺序随机），用作数据库主键
+     * @return 32位UUID字符串
+     */
+    public static String generateTimeOrderedId() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 6; i++) {
+            bytes[i] = (byte) (timestamp >>> (40 - 8 * i));
+        }
+        // 版本号7，变体10
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x70);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+        return HEX.formatHex(bytes);
+    }
+
+    /**
+     * 将ID转换为BINARY(16)存储的字节
+     *
+     * @param id 32位UUID字符串（也接受带横线的36位格式）
+     * @return 16字节，格式不正确时返回null
+     */
+    public static byte[] toBinary(String id) {
+        String hex = id.length() == 36 ? id.replace("-", "") : id;
+        if (hex.length() != 32) {
+            return null;
+        }
+        try {
+            return HEX.parseHex(hex);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 将BINARY(16)存储的字节转换为ID
+     *
+     * @param bytes 16字节，可以为null
+     * @return 32位UUID字符串（小写）
+     */
+    public static String fromBinary(byte[] bytes) {
+        return bytes != null ? HEX.formatHex(bytes) : null;
+    }
+}
@@ -0,0 +1,280 @@
+package com.scriptcraftai.backend.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * AI输出的JSON修复工具
+ *
+ * @description 严格解析失败后使用。从第一个 { 开始单遍扫描到根对象结束，丢弃前后的markdown标记和说明文字，
+ *              同时修复常见问题：结构位置上的中文引号和全角标点、多余的尾随逗号、字符串中未转义的引号和换行、
+ *              括号不匹配。以英文引号开始的字符串只由英文引号结束，文案中的中文引号原样保留。
+ *              输出被截断时回退到scenes数组中最后一个完整的分镜或根对象的最后一个完整字段，再补齐括号，
+ *              不完整的分镜整体丢弃。线程安全。
+ * @author ScriptCraft AI Team
+ */
+public class JsonRepair {
+
+    /**
+     * 修复类型：结构位置上的中文引号
+     */
+    public static final String FIX_QUOTES = "quotes";
+
+    /**
+     * 修复类型：结构位置上的全角逗号、冒号
+     */
+    public static final String FIX_PUNCTUATION = "punctuation";
+
+    /**
+     * 修复类型：对象或数组末尾多余的逗号
+     */
+    public static final String FIX_TRAILING_COMMA = "trailing_comma";
+
+    /**
+     * 修复类型：字符串中未转义的引号或控制字符
+     */
+    public static final String FIX_UNESCAPED = "unescaped";
+
+    /**
+     * 修复类型：括号不匹配
+     */
+    public static final String FIX_BRACKETS = "brackets";
+
+    /**
+     * 修复类型：输出被截断
+     */
+    public static final String FIX_TRUNCATED = "truncated";
+
+    // 截断时按元素回退的数组
+    private static final String SCENES_FIELD = "scenes";
+
+    /**
+     * 修复结果
+     *
+     * @param json 修复后的JSON
+     * @param fixes 实际应用的修复类型
+     */
+    public record Result(String json, Set<String> fixes) {
+    }
+
+    /**
+     * 修复AI输出的JSON
+     *
+     * @param text AI输出的完整文本
+     * @return 修复结果，找不到JSON或截断位置之前没有任何完整内容时为null
+     */
+    public static Result repair(String text) {
+        int start = text == null ? -1 : text.indexOf('{');
+        if (start < 0) {
+            return null;
+        }
+
+        Set<String> fixes = new LinkedHashSet<>();
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        // 未闭合的括号（{ 或 [）
+        StringBuilder stack = new StringBuilder();
+        // 对象中下一个字符串是否为字段名，与stack一一对应
+        StringBuilder expectKey = new StringBuilder();
+
+        // 最后一个可以安全截断的位置及当时的括号栈
+        int safeLength = -1;
+        String safeStack = null;
+
+        boolean inString = false;
+        boolean stringIsKey = false;
+        // 当前字符串是否以中文引号开始（此时中文引号也可以结束字符串）
+        boolean typographicOpen = false;
+        int stringStart = -1;
+        // 根对象中最近的字段名，以及根对象下当前数组所属的字段
+        String rootKey = null;
+        String rootArrayKey = null;
+        boolean closed = false;
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (inString) {
+                if (c == '\\' && i + 1 < text.length()) {
+                    out.append(c).append(text.charAt(++i));
+                } else if ((c == '"' || (typographicOpen && (c == '”' || c == '“'))) && closesString(text, i + 1)) {
+                    if (c != '"') {
+                        fixes.add(FIX_QUOTES);
+                    }
+                    out.append('"');
+                    inString = false;
+                    if (stringIsKey && stack.length() == 1) {
+                        rootKey = out.substring(stringStart + 1, out.length() - 1);
+                    }
+                    if (!stringIsKey && isSafeParent(stack, rootArrayKey)) {
+                        safeLength = out.length();
+                        safeStack = stack.toString();
+                    }
+                } else if (c == '"') {
+                    fixes.add(FIX_UNESCAPED);
+                    out.append("\\\"");
+                } else if (c == '\n') {
+                    fixes.add(FIX_UNESCAPED);
+                    out.append("\\n");
+                } else if (c == '\r') {
+                    fixes.add(FIX_UNESCAPED);
+                    out.append("\\r");
+                } else if (c == '\t') {
+                    fixes.add(FIX_UNESCAPED);
+                    out.append("\\t");
+                } else {
+                    out.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"', '“', '”' -> {
+                    if (c != '"') {
+                        fixes.add(FIX_QUOTES);
+                    }
+                    stringStart = out.length();
+                    out.append('"');
+                    inString = true;
+                    typographicOpen = c != '"';
+                    stringIsKey = isTop(stack, '{') && expectKey.charAt(expectKey.length() - 1) == '1';
+                }
+                case '{', '[' -> {
+                    if (c == '[' && stack.length() == 1) {
+                        rootArrayKey = rootKey;
+                    }
+                    stack.append(c);
+                    expectKey.append(c == '{' ? '1' : '0');
+                    out.append(c);
+                }
+                case '}', ']' -> {
+                    if (stack.isEmpty()) {
+                        closed = true;
+                        break;
+                    }
+                    char expected = stack.charAt(stack.length() - 1) == '{' ? '}' : ']';
+                    if (c != expected) {
+                        fixes.add(FIX_BRACKETS);
+                    }
+                    if (removeTrailingComma(out)) {
+                        fixes.add(FIX_TRAILING_COMMA);
+                    }
+                    out.append(expected);
+                    stack.setLength(stack.length() - 1);
+                    expectKey.setLength(expectKey.length() - 1);
+                    if (stack.isEmpty()) {
+                        closed = true;
+                    } else if (isSafeParent(stack, rootArrayKey)) {
+                        safeLength = out.length();
+                        safeStack = stack.toString();
+                    }
+                }
+                case ',', '，' -> {
+                    if (c != ',') {
+                        fixes.add(FIX_PUNCTUATION);
+                    }
+                    if (isSafeParent(stack, rootArrayKey)) {
+                        safeLength = out.length();
+                        safeStack = stack.toString();
+                    }
+                    out.append(',');
+                    if (isTop(stack, '{')) {
+                        expectKey.setCharAt(expectKey.length() - 1, '1');
+                    }
+                }
+                case ':', '：' -> {
+                    if (c != ':') {
+                        fixes.add(FIX_PUNCTUATION);
+                    }
+                    out.append(':');
+                    if (isTop(stack, '{')) {
+                        expectKey.setCharAt(expectKey.length() - 1, '0');
+                    }
+                }
+                default -> out.append(c);
+            }
+            if (closed) {
+                break;
+            }
+        }
+
+        if (!closed) {
+            // 输出被截断：回退到最后一个完整的元素，再补齐括号
+            if (safeLength < 0) {
+                return null;
+            }
+            fixes.add(FIX_TRUNCATED);
+            out.setLength(safeLength);
+            for (int i = safeStack.length() - 1; i >= 0; i--) {
+                out.append(safeStack.charAt(i) == '{' ? '}' : ']');
+            }
+        }
+        return new Result(out.toString(), Collections.unmodifiableSet(fixes));
+    }
+
+    /**
+     * 判断字符串中的引号是否为结束引号：其后（跳过空白）是结构字符或文本结尾。
+     * 全角逗号、冒号在文案中很常见（如 “真香”，），只有其后紧接着下一个字符串或对象、数组时才算结构字符
+     *
+     * @param text 文本
+     * @param from 引号之后的位置
+     * @return true-结束引号
+     */
+    private static boolean closesString(String text, int from) {
+        int i = skipWhitespace(text, from);
+        if (i >= text.length()) {
+            return true;
+        }
+        char c = text.charAt(i);
+        if (c == ',' || c == ':' || c == '}' || c == ']') {
+            return true;
+        }
+        if (c == '，' || c == '：') {
+            int next = skipWhitespace(text, i + 1);
+            return next >= text.length() || "\"“{[".indexOf(text.charAt(next)) >= 0;
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 当前位置是否可以作为截断点：位于根对象中（一个字段完整结束），
+     * 或直接位于根对象的scenes数组中（一个分镜完整结束）
+     *
+     * @param stack 未闭合的括号
+     * @param rootArrayKey 根对象下当前数组所属的字段名
+     * @return true-可以截断
+     */
+    private static boolean isSafeParent(StringBuilder stack, String rootArrayKey) {
+        return stack.length() == 1 || (stack.length() == 2 && isTop(stack, '[') && SCENES_FIELD.equals(rootArrayKey));
+    }
+
+    private static boolean isTop(StringBuilder stack, char bracket) {
+        return !stack.isEmpty() && stack.charAt(stack.length() - 1) == bracket;
+    }
+
+    /**
+     * 删除输出末尾（空白之前）的逗号
+     *
+     * @param out 输出
+     * @return 是否删除了逗号
+     */
+    private static boolean removeTrailingComma(StringBuilder out) {
+        int i = out.length() - 1;
+        while (i >= 0 && Character.isWhitespace(out.charAt(i))) {
+            i--;
+        }
+        if (i >= 0 && out.charAt(i) == ',') {
+            out.deleteCharAt(i);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.scriptcraftai.backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 提示词模板
+ *
+ * @description 模板文本中用 {{name}} 标记变量。加载时一次性拆分为常量片段和变量，渲染时只做拼接，
+ *              不再逐行append。第一个变量之前的内容为固定前缀，所有请求完全相同，
+ *              模板应把说明、JSON格式和要求放在前面，变量放在末尾，以便命中上游的前缀缓存。不可变，线程安全。
+ * @author ScriptCraft AI Team
+ */
+public class PromptTemplate {
+
+    private static final String VARIABLE_START = "{{";
+    private static final String VARIABLE_END = "}}";
+
+    private final String name;
+
+    // 第一个变量之前的固定前缀
+    private final String staticPrefix;
+
+    // 每个变量及其后的常量片段：variables[i]之后紧跟literals[i]
+    private final String[] variables;
+    private final String[] literals;
+
+    // 常量部分的总长度，用于预估渲染结果的容量
+    private final int literalLength;
+
+    private PromptTemplate(String name, String staticPrefix, String[] variables, String[] literals) {
+        this.name = name;
+        this.staticPrefix = staticPrefix;
+        this.variables = variables;
+        this.literals = literals;
+        int length = staticPrefix.length();
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板文本
+     *
+     * @param name 模板名称（用于错误信息）
+     * @param text 模板文本
+     * @return 编译后的模板
+     * @throws IllegalArgumentException 变量标记不完整或变量名为空时抛出
+     */
+    public static PromptTemplate compile(String name, String text) {
+        List<String> variables = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        int start = text.indexOf(VARIABLE_START);
+        String staticPrefix = start < 0 ? text : text.substring(0, start);
+        while (start >= 0) {
+            int end = text.indexOf(VARIABLE_END, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("提示词模板变量未闭合: template=" + name + ", offset=" + start);
+            }
+            String variable = text.substring(start + VARIABLE_START.length(), end).trim();
+            if (variable.isEmpty()) {
+                throw new IllegalArgumentException("提示词模板变量名为空: template=" + name + ", offset=" + start);
+            }
+            variables.add(variable);
+            int next = text.indexOf(VARIABLE_START, end);
+            literals.add(text.substring(end + VARIABLE_END.length(), next < 0 ? text.length() : next));
+            start = next;
+        }
+        return new PromptTemplate(name, staticPrefix,
+                variables.toArray(new String[0]), literals.toArray(new String[0]));
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param values 变量值
+     * @return 提示词
+     * @throws IllegalArgumentException 缺少变量值时抛出
+     */
+    public String render(Map<String, String> values) {
+        if (variables.length == 0) {
+            return staticPrefix;
+        }
+        String[] resolved = new String[variables.length];
+        int length = literalLength;
+        for (int i = 0; i < variables.length; i++) {
+            resolved[i] = values.get(variables[i]);
+            if (resolved[i] == null) {
+                throw new IllegalArgumentException("缺少提示词模板变量: template=" + name + ", variable=" + variables[i]);
+            }
+            length += resolved[i].length();
+        }
+        StringBuilder prompt = new StringBuilder(length).append(staticPrefix);
+        for (int i = 0; i < variables.length; i++) {
+            prompt.append(resolved[i]).append(literals[i]);
+        }
+        return prompt.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStaticPrefix() {
+        return staticPrefix;
+    }
+}
@@ -0,0 +1,124 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 请求截止时间工具类
+ *
+ * @description 入口（控制器、任务执行器）为一次请求设置唯一的截止时间，通过Reactor上下文传到下游；
+ *              各层的超时取自身上限与剩余时间中较小者，截止时间到达时以DeadlineExceededException失败，
+ *              订阅链随之取消，上游AI调用不会在请求结束后继续占用并发
+ * @author ScriptCraft AI Team
+ */
+public class RequestDeadline {
+
+    // Reactor上下文中截止时间（System.nanoTime）的键
+    private static final Class<RequestDeadline> CONTEXT_KEY = RequestDeadline.class;
+
+    // 入口超时比截止时间晚触发，内层先按截止时间失败，保存已完成的部分并返回明确的错误
+    private static final Duration ENTRY_GRACE = Duration.ofSeconds(2);
+
+    /**
+     * 为异步结果设置截止时间
+     *
+     * @description 已有更早的截止时间时沿用更早的
+     * @param mono 异步结果
+     * @param budget 允许的总耗时
+     * @return 带截止时间的异步结果
+     */
+    public static <T> Mono<T> within(Mono<T> mono, Duration budget) {
+        return Mono.deferContextual(context -> {
+            long deadline = resolveDeadline(context, budget);
+            return mono.timeout(remaining(deadline).plus(ENTRY_GRACE), Mono.error(DeadlineExceededException::new))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, deadline));
+        });
+    }
+
+    /**
+     * 为事件流设置截止时间
+     *
+     * @description 截止时间对整个流生效，而不是两个事件之间的间隔
+     * @param flux 事件流
+     * @param budget 允许的总耗时
+     * @return 带截止时间的事件流
+     */
+    public static <T> Flux<T> within(Flux<T> flux, Duration budget) {
+        return Flux.deferContextual(context -> {
+            long deadline = resolveDeadline(context, budget);
+            return flux.timeout(Mono.delay(remaining(deadline).plus(ENTRY_GRACE)),
+                            item -> Mono.delay(remaining(deadline).plus(ENTRY_GRACE)),
+                            Flux.error(DeadlineExceededException::new))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, deadline));
+        });
+    }
+
+    /**
+     * 按自身上限与剩余时间中较小者设置超时
+     *
+     * @description 自身上限先到时以TimeoutException失败（视为上游变慢），
+     *              截止时间先到时以DeadlineExceededException失败
+     * @param mono 异步结果
+     * @param cap 自身超时上限
+     * @return 带超时的异步结果
+     */
+    public static <T> Mono<T> timeout(Mono<T> mono, Duration cap) {
+        return Mono.deferContextual(context -> {
+            Optional<Long> deadline = context.getOrEmpty(CONTEXT_KEY);
+            if (deadline.isEmpty()) {
+                return mono.timeout(cap);
+            }
+            Duration remaining = remaining(deadline.get());
+            if (remaining.isZero()) {
+                return Mono.error(new DeadlineExceededException());
+            }
+            return remaining.compareTo(cap) >= 0
+                    ? mono.timeout(cap)
+                    : mono.timeout(remaining, Mono.error(DeadlineExceededException::new));
+        });
+    }
+
+    /**
+     * 计算剩余时间
+     *
+     * @param context Reactor上下文
+     * @param cap 上限，未设置截止时间时返回该值
+     * @return 剩余时间与上限中较小者
+     */
+    public static Duration remaining(ContextView context, Duration cap) {
+        Optional<Long> deadline = context.getOrEmpty(CONTEXT_KEY);
+        if (deadline.isEmpty()) {
+            return cap;
+        }
+        Duration remaining = remaining(deadline.get());
+        return remaining.compareTo(cap) < 0 ? remaining : cap;
+    }
+
+    /**
+     * 移除上下文中的截止时间
+     *
+     * @description 用于多个请求共享的调用：共享调用不受其中某一个请求截止时间的约束，
+     *              各请求在共享之后按自己的截止时间计时
+     * @param context Reactor上下文
+     * @return 不含截止时间的上下文
+     */
+    public static Context detach(Context context) {
+        return context.delete(CONTEXT_KEY);
+    }
+
+    private static long resolveDeadline(ContextView context, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        Optional<Long> outer = context.getOrEmpty(CONTEXT_KEY);
+        return outer.isPresent() && outer.get() - deadline < 0 ? outer.get() : deadline;
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+}
@@ -0,0 +1,209 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 脚本内容编解码器
+ *
+ * @description script_versions.content以MEDIUMBLOB存储，第一个字节为格式版本：
+ *              1-Smile（二进制JSON），2-Smile后再经LZ4压缩（其后4字节为压缩前长度）；
+ *              其他首字节按迁移前的JSON文本处理（以"{"开头），读取时照常解析，由业务层改写为当前格式。
+ *              编码前较短的内容压缩收益很小，只用Smile。写入格式在创建时指定（scriptcraft.content.format），
+ *              读取支持所有格式
+ * @author ScriptCraft AI Team
+ */
+public class ScriptContentCodec {
+
+    /**
+     * 存储格式
+     */
+    public enum Format {
+        /**
+         * JSON文本，无格式字节（迁移前的数据，也可配置为写入格式以便排查）
+         */
+        JSON(-1),
+        /**
+         * Smile
+         */
+        SMILE(1),
+        /**
+         * Smile + LZ4
+         */
+        SMILE_LZ4(2);
+
+        private final int code;
+
+        Format(int code) {
+            this.code = code;
+        }
+
+        /**
+         * @return 格式字节，JSON没有格式字节，返回-1
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * 根据存储内容的第一个字节判断格式
+         *
+         * @param firstByte 第一个字节（无符号），内容为空时为null
+         * @return 存储格式
+         */
+        public static Format of(Integer firstByte) {
+            if (firstByte != null && firstByte == SMILE.code) {
+                return SMILE;
+            }
+            if (firstByte != null && firstByte == SMILE_LZ4.code) {
+                return SMILE_LZ4;
+            }
+            return JSON;
+        }
+    }
+
+    /**
+     * 达到此长度的Smile内容才压缩
+     */
+    public static final int COMPRESS_MIN_BYTES = 512;
+
+    private static final ObjectMapper JSON_MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // 分镜中重复的短字符串（如时间段）只写一次；共享字符串值的标志记录在Smile头中，因此保留4字节的头
+    private static final ObjectMapper SMILE_MAPPER = new SmileMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.WRITE_HEADER)
+            .enable(SmileParser.Feature.REQUIRE_HEADER)
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final Format writeFormat;
+
+    /**
+     * @param writeFormat 写入时使用的格式
+     */
+    public ScriptContentCodec(Format writeFormat) {
+        this.writeFormat = writeFormat;
+    }
+
+    /**
+     * @return 写入时使用的格式
+     */
+    public Format getWriteFormat() {
+        return writeFormat;
+    }
+
+    /**
+     * 判断已存储的内容是否需要改写为当前写入格式
+     *
+     * @param firstByte 存储内容的第一个字节
+     * @return 格式与写入格式不同时返回true；写入格式为SMILE_LZ4时，未压缩的短内容不算
+     */
+    public boolean needsMigration(Integer firstByte) {
+        Format stored = Format.of(firstByte);
+        if (writeFormat == Format.SMILE_LZ4) {
+            return stored == Format.JSON;
+        }
+        return stored != writeFormat;
+    }
+
+    /**
+     * 按当前写入格式编码
+     *
+     * @param content 脚本内容
+     * @return 存储字节
+     */
+    public byte[] encode(ScriptContentDTO content) {
+        Format format = writeFormat;
+        try {
+            if (format == Format.JSON) {
+                return JSON_MAPPER.writeValueAsBytes(content);
+            }
+            byte[] smile = SMILE_MAPPER.writeValueAsBytes(content);
+            if (format == Format.SMILE || smile.length < COMPRESS_MIN_BYTES) {
+                byte[] stored = new byte[smile.length + 1];
+                stored[0] = (byte) Format.SMILE.code;
+                System.arraycopy(smile, 0, stored, 1, smile.length);
+                return stored;
+            }
+            int maxLength = COMPRESSOR.maxCompressedLength(smile.length);
+            byte[] stored = new byte[5 + maxLength];
+            stored[0] = (byte) Format.SMILE_LZ4.code;
+            ByteBuffer.wrap(stored, 1, 4).putInt(smile.length);
+            int compressed = COMPRESSOR.compress(smile, 0, smile.length, stored, 5, maxLength);
+            return Arrays.copyOf(stored, 5 + compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("脚本内容编码失败", e);
+        }
+    }
+
+    /**
+     * 解码存储的内容
+     *
+     * @param stored 存储字节（任意格式）
+     * @return 脚本内容，stored为null时返回null
+     */
+    public ScriptContentDTO decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        try {
+            return switch (formatOf(stored)) {
+                case SMILE -> SMILE_MAPPER.readValue(stored, 1, stored.length - 1, ScriptContentDTO.class);
+                case SMILE_LZ4 -> SMILE_MAPPER.readValue(decompress(stored), ScriptContentDTO.class);
+                case JSON -> JSON_MAPPER.readValue(stored, ScriptContentDTO.class);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("脚本内容解码失败", e);
+        }
+    }
+
+    /**
+     * 将存储的内容转换为JSON文本，用于排查问题
+     *
+     * @param stored 存储字节（任意格式）
+     * @return 格式化的JSON文本
+     */
+    public String toJson(byte[] stored) {
+        try {
+            return JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(decode(stored));
+        } catch (IOException e) {
+            throw new UncheckedIOException("脚本内容转换失败", e);
+        }
+    }
+
+    /**
+     * 根据存储内容判断格式
+     *
+     * @param stored 存储字节
+     * @return 存储格式
+     */
+    public static Format formatOf(byte[] stored) {
+        return Format.of(stored.length > 0 ? stored[0] & 0xff : null);
+    }
+
+    private static byte[] decompress(byte[] stored) {
+        int length = ByteBuffer.wrap(stored, 1, 4).getInt();
+        return DECOMPRESSOR.decompress(stored, 5, stored.length - 5, length);
+    }
+}
@@ -0,0 +1,153 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 脚本内容工具类
+ *
+ * @description 锁定分镜的读写、重新生成结果与锁定分镜的合并、字数统计，每次编辑和重新生成都会用到
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+public class ScriptContents {
+
+    /**
+     * 预览文字的最大长度，与script_versions.first_scene列一致
+     */
+    public static final int PREVIEW_MAX_LENGTH = 255;
+
+    /**
+     * 解析锁定分镜的JSON字符串
+     *
+     * @param objectMapper JSON序列化工具
+     * @param lockedScenesJson JSON字符串，如 "[0,2,4]"
+     * @return 锁定分镜的索引集合
+     */
+    public static Set<Integer> parseLockedScenes(ObjectMapper objectMapper, String lockedScenesJson) {
+        Set<Integer> result = new HashSet<>();
+        if (lockedScenesJson == null || lockedScenesJson.trim().isEmpty()) {
+            return result;
+        }
+
+        try {
+            List<Integer> list = objectMapper.readValue(lockedScenesJson,
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
+            result.addAll(list);
+        } catch (Exception e) {
+            log.warn("解析锁定分镜数据失败: {}", lockedScenesJson, e);
+        }
+
+        return result;
+    }
+
+    /**
+     * 格式化锁定分镜为JSON字符串
+     *
+     * @param objectMapper JSON序列化工具
+     * @param lockedScenes 锁定分镜的索引集合
+     * @return JSON字符串
+     */
+    public static String formatLockedScenes(ObjectMapper objectMapper, Set<Integer> lockedScenes) {
+        if (lockedScenes == null || lockedScenes.isEmpty()) {
+            return null;
+        }
+
+        try {
+            List<Integer> sortedList = new ArrayList<>(lockedScenes);
+            Collections.sort(sortedList);
+            return objectMapper.writeValueAsString(sortedList);
+        } catch (Exception e) {
+            log.error("格式化锁定分镜数据失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 合并原内容和重新生成的内容
+     *
+     * @param originalContent 原始内容
+     * @param newContent 新生成的内容
+     * @param lockedScenes 锁定的分镜索引
+     * @return 合并后的内容
+     */
+    public static ScriptContentDTO mergeContentWithLocks(ScriptContentDTO originalContent,
+                                                         ScriptContentDTO newContent,
+                                                         Set<Integer> lockedScenes) {
+        ScriptContentDTO merged = new ScriptContentDTO();
+
+        // 保持标题等基本信息
+        merged.setTitle(originalContent.getTitle());
+        merged.setAlternativeTitles(originalContent.getAlternativeTitles());
+        merged.setVideoElements(originalContent.getVideoElements());
+        merged.setEndingCTA(originalContent.getEndingCTA());
+
+        // 合并分镜
+        ScriptContentDTO.SceneDTO[] originalScenes = originalContent.getScenes();
+        ScriptContentDTO.SceneDTO[] newScenes = newContent.getScenes();
+
+        if (originalScenes != null && newScenes != null && originalScenes.length == newScenes.length) {
+            ScriptContentDTO.SceneDTO[] mergedScenes = new ScriptContentDTO.SceneDTO[originalScenes.length];
+
+            for (int i = 0; i < originalScenes.length; i++) {
+                if (lockedScenes.contains(i)) {
+                    // 保持锁定的分镜不变
+                    mergedScenes[i] = originalScenes[i];
+                } else {
+                    // 使用新生成的分镜
+                    mergedScenes[i] = newScenes[i];
+                }
+            }
+
+            merged.setScenes(mergedScenes);
+        } else {
+            // 如果分镜数量不匹配，使用新内容
+            merged.setScenes(newContent.getScenes());
+        }
+
+        return merged;
+    }
+
+    /**
+     * 统计文案字数
+     *
+     * @param content 脚本内容
+     * @return 各分镜文案/旁白的字数之和
+     */
+    public static int calculateWordCount(ScriptContentDTO content) {
+        int count = 0;
+        if (content.getScenes() != null) {
+            for (ScriptContentDTO.SceneDTO scene : content.getScenes()) {
+                if (scene.getVoiceover() != null) {
+                    count += scene.getVoiceover().length();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提取列表预览文字
+     *
+     * @param content 脚本内容
+     * @return 第一个分镜的画面描述，超过PREVIEW_MAX_LENGTH时截断，没有分镜时为空字符串
+     */
+    public static String firstScenePreview(ScriptContentDTO content) {
+        if (content.getScenes() == null || content.getScenes().length == 0
+                || content.getScenes()[0].getVisualDescription() == null) {
+            return "";
+        }
+        String text = content.getScenes()[0].getVisualDescription();
+        if (text.codePointCount(0, text.length()) <= PREVIEW_MAX_LENGTH) {
+            return text;
+        }
+        return text.substring(0, text.offsetByCodePoints(0, PREVIEW_MAX_LENGTH));
+    }
+}
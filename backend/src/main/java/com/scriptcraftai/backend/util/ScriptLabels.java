@@ -0,0 +1,49 @@
+package com.scriptcraftai.backend.util;
+
+/**
+ * 脚本标签工具类
+ *
+ * @description 视频类型、风格代码与中文标签的对照，供提示词和模板草稿共用
+ * @author ScriptCraft AI Team
+ */
+public class ScriptLabels {
+
+    /**
+     * 获取视频类型标签
+     * 
+     * @param type 类型代码
+     * @return 类型标签
+     */
+    public static String videoType(String type) {
+        return switch (type) {
+            case "product_review" -> "产品测评";
+            case "knowledge" -> "知识科普";
+            case "vlog" -> "Vlog日记";
+            case "comedy" -> "搞笑剧情";
+            case "food" -> "美食制作";
+            case "makeup" -> "美妆教程";
+            case "movie" -> "影视解说";
+            case "unboxing" -> "开箱体验";
+            case "skill" -> "技能教学";
+            default -> "其他";
+        };
+    }
+
+    /**
+     * 获取风格标签
+     * 
+     * @param style 风格代码
+     * @return 风格标签
+     */
+    public static String style(String style) {
+        return switch (style) {
+            case "humorous" -> "幽默风趣";
+            case "professional" -> "专业严谨";
+            case "cute" -> "亲切可爱";
+            case "passionate" -> "激情澎湃";
+            case "emotional" -> "温情故事";
+            case "suspenseful" -> "悬念刺激";
+            default -> "";
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+
+import java.util.Set;
+
+/**
+ * 提示词片段工具类
+ *
+ * @description 构建填入提示词模板变量的动态片段（视频要求、重新生成时的分镜情况），模板本身由PromptTemplateService渲染
+ * @author ScriptCraft AI Team
+ */
+public class ScriptPrompts {
+
+    // 多方案生成时，方案1起依次使用的创作角度
+    private static final String[] VARIANT_ANGLES = {
+        "换一种与常规写法不同的切入点，例如以反常识的结论开场",
+        "以讲故事的方式展开，用具体的人物和场景串联内容",
+        "以清单盘点的结构组织内容，节奏更快、信息更密集",
+        "以提问互动开场，引导观众带着问题看完",
+    };
+
+    /**
+     * 构建视频类型、主题、风格和创作角度（提示词中随请求变化的部分）
+     *
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     * @return 视频要求
+     */
+    public static String requirements(String videoType, String themeInput, String stylePreference, int variant) {
+        StringBuilder requirements = new StringBuilder();
+        appendRequirements(requirements, videoType, themeInput, stylePreference, variant);
+        return requirements.toString();
+    }
+
+    /**
+     * 追加视频类型、主题、风格和创作角度
+     *
+     * @param prompt 提示词
+     * @param videoType 视频类型
+     * @param themeInput 主题描述
+     * @param stylePreference 风格偏好
+     * @param variant 方案序号（从0开始）
+     */
+    public static void appendRequirements(StringBuilder prompt, String videoType, String themeInput,
+                                          String stylePreference, int variant) {
+        prompt.append("视频类型：").append(ScriptLabels.videoType(videoType)).append("\n");
+        prompt.append("主题：").append(themeInput).append("\n");
+
+        if (stylePreference != null && !stylePreference.isEmpty()) {
+            prompt.append("风格：").append(ScriptLabels.style(stylePreference)).append("\n");
+        }
+
+        if (variant > 0) {
+            prompt.append("创作角度：").append(VARIANT_ANGLES[(variant - 1) % VARIANT_ANGLES.length]).append("\n");
+        }
+    }
+
+    /**
+     * 构建重新生成时的分镜情况：锁定的分镜给出完整内容，其余只给时间范围
+     *
+     * @param content 原始内容
+     * @param lockedScenes 锁定的分镜索引
+     * @return 分镜情况
+     */
+    public static String regenerationScenes(ScriptContentDTO content, Set<Integer> lockedScenes) {
+        StringBuilder scenesText = new StringBuilder();
+        ScriptContentDTO.SceneDTO[] scenes = content.getScenes();
+        if (scenes != null) {
+            for (int i = 0; i < scenes.length; i++) {
+                if (lockedScenes.contains(i)) {
+                    scenesText.append("分镜").append(i + 1).append("（已锁定，保持不变）：\n");
+                    scenesText.append("- 时间范围：").append(scenes[i].getTimeRange()).append("\n");
+                    scenesText.append("- 画面描述：").append(scenes[i].getVisualDescription()).append("\n");
+                    scenesText.append("- 文案/旁白：").append(scenes[i].getVoiceover()).append("\n");
+                    scenesText.append("- 字幕提示：").append(scenes[i].getSubtitle()).append("\n\n");
+                } else {
+                    scenesText.append("分镜").append(i + 1).append("（需要重新生成）：\n");
+                    scenesText.append("- 时间范围：").append(scenes[i].getTimeRange()).append("\n");
+                    scenesText.append("- 保持风格一致，但内容要创新\n\n");
+                }
+            }
+        }
+        return scenesText.toString();
+    }
+}
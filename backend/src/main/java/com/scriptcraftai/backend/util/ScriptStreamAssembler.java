@@ -0,0 +1,263 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.dto.ScriptStreamEvent;
+import com.scriptcraftai.backend.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 脚本流式组装器
+ *
+ * @description 基于Jackson非阻塞解析器逐段接收AI增量输出的文本，只扫描一遍：
+ *              标题、每个分镜、视频元素、结尾话术各自完整时立即产出事件，同时把根对象的
+ *              token记录下来供最终解析，不再回头重新解析文本。忽略JSON之前的markdown标记和
+ *              说明文字，以及根对象结束之后的多余内容。非线程安全，每次生成创建一个实例。
+ * @author ScriptCraft AI Team
+ */
+@Slf4j
+public class ScriptStreamAssembler {
+
+    private static final String SCENES_KEY = "scenes";
+    private static final String TITLE_KEY = "title";
+    private static final String VIDEO_ELEMENTS_KEY = "videoElements";
+    private static final String ENDING_CTA_KEY = "endingCTA";
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    // 根对象的全部token，用于最终解析
+    private final TokenBuffer rootTokens;
+
+    // 是否已跳过JSON之前的内容
+    private boolean started;
+
+    // 根对象是否已接收完整
+    private boolean complete;
+
+    // JSON格式错误
+    private boolean malformed;
+
+    // 已接收的字符数（用于日志）
+    private long received;
+
+    // 当前嵌套深度，根对象内部为1
+    private int depth;
+
+    // 根对象层级当前字段名
+    private String currentKey;
+
+    // 正在记录的根对象字段值（视频元素、结尾话术）
+    private TokenBuffer fieldTokens;
+
+    // 正在记录的分镜对象及已产出的分镜数量
+    private TokenBuffer sceneTokens;
+    private int sceneIndex;
+
+    public ScriptStreamAssembler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建JSON解析器", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.rootTokens = new TokenBuffer(objectMapper, false);
+    }
+
+    /**
+     * 一次性解析完整的AI输出文本
+     *
+     * @description 跳过JSON之前的内容后直接在原字符串上解析，不做正则替换和额外拷贝，
+     *              根对象之后的多余内容不会被读取
+     * @param objectMapper JSON映射器
+     * @param text AI输出的完整文本
+     * @return 脚本内容
+     */
+    public static ScriptContentDTO parse(ObjectMapper objectMapper, String text) {
+        return parse(objectMapper, text, ScriptContentDTO.class);
+    }
+
+    /**
+     * 一次性解析完整的AI输出文本为指定类型（如单个分镜）
+     *
+     * @param objectMapper JSON映射器
+     * @param text AI输出的完整文本
+     * @param type 目标类型
+     * @return 解析结果
+     */
+    public static <T> T parse(ObjectMapper objectMapper, String text, Class<T> type) {
+        try {
+            return read(objectMapper, text, type);
+        } catch (Exception e) {
+            log.error("解析AI响应失败: {}", e.getMessage(), e);
+            throw new BusinessException("解析AI响应失败，请重新生成");
+        }
+    }
+
+    /**
+     * 一次性严格解析完整的AI输出文本，不记录日志，由调用方决定失败后是否修复
+     *
+     * @param objectMapper JSON映射器
+     * @param text AI输出的完整文本
+     * @param type 目标类型
+     * @return 解析结果
+     * @throws IOException 未找到JSON或JSON格式错误时抛出
+     */
+    public static <T> T read(ObjectMapper objectMapper, String text, Class<T> type) throws IOException {
+        int start = text == null ? -1 : text.indexOf('{');
+        if (start < 0) {
+            throw new IOException("AI响应中未找到JSON内容");
+        }
+        try (StringReader reader = new StringReader(text);
+             JsonParser jsonParser = objectMapper.getFactory().createParser(reader)) {
+            reader.skip(start);
+            return objectMapper.readValue(jsonParser, type);
+        }
+    }
+
+    /**
+     * 追加一段增量文本
+     *
+     * @param chunk 增量文本
+     * @return 本次新完成的字段事件
+     */
+    public List<ScriptStreamEvent> append(String chunk) {
+        List<ScriptStreamEvent> events = new ArrayList<>();
+        if (chunk == null || chunk.isEmpty() || complete || malformed) {
+            return events;
+        }
+        received += chunk.length();
+
+        if (!started) {
+            // 跳过JSON之前的```json标记或说明文字
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return events;
+            }
+            chunk = chunk.substring(start);
+            started = true;
+        }
+
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                onToken(token, events);
+            }
+        } catch (IOException e) {
+            malformed = true;
+            log.warn("AI流式响应JSON格式错误: {}", e.getMessage());
+        }
+        return events;
+    }
+
+    /**
+     * 根对象是否已接收完整
+     *
+     * @return true-已完整
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 结束组装并解析完整脚本
+     *
+     * @return 完整脚本内容
+     */
+    public ScriptContentDTO finish() {
+        if (!complete) {
+            log.error("AI流式响应不完整: received={} chars, malformed={}", received, malformed);
+            throw new BusinessException("AI返回内容不完整，请重新生成");
+        }
+        try {
+            return objectMapper.readValue(rootTokens.asParser(objectMapper), ScriptContentDTO.class);
+        } catch (Exception e) {
+            log.error("解析AI流式响应失败: {}", e.getMessage(), e);
+            throw new BusinessException("解析AI响应失败，请重新生成");
+        }
+    }
+
+    private void onToken(JsonToken token, List<ScriptStreamEvent> events) throws IOException {
+        rootTokens.copyCurrentEvent(parser);
+
+        if (token.isStructStart()) {
+            depth++;
+            if (depth == 2 && !SCENES_KEY.equals(currentKey)) {
+                fieldTokens = new TokenBuffer(objectMapper, false);
+            } else if (depth == 3 && token == JsonToken.START_OBJECT && SCENES_KEY.equals(currentKey)) {
+                sceneTokens = new TokenBuffer(objectMapper, false);
+            }
+        }
+
+        if (fieldTokens != null) {
+            fieldTokens.copyCurrentEvent(parser);
+        }
+        if (sceneTokens != null) {
+            sceneTokens.copyCurrentEvent(parser);
+        }
+
+        if (token.isStructEnd()) {
+            if (depth == 3 && sceneTokens != null) {
+                emitScene(events);
+                sceneTokens = null;
+            } else if (depth == 2 && fieldTokens != null) {
+                emitField(events);
+                fieldTokens = null;
+            } else if (depth == 1) {
+                complete = true;
+            }
+            depth--;
+        } else if (depth == 1) {
+            if (token == JsonToken.FIELD_NAME) {
+                currentKey = parser.currentName();
+            } else if (token == JsonToken.VALUE_STRING && TITLE_KEY.equals(currentKey)) {
+                events.add(ScriptStreamEvent.title(parser.getText()));
+            }
+        }
+    }
+
+    private void emitScene(List<ScriptStreamEvent> events) {
+        try {
+            ScriptContentDTO.SceneDTO scene = objectMapper.readValue(
+                    sceneTokens.asParser(objectMapper), ScriptContentDTO.SceneDTO.class);
+            events.add(ScriptStreamEvent.scene(sceneIndex++, scene));
+        } catch (Exception e) {
+            // 单个片段解析失败不影响最终完整解析
+            log.debug("解析流式分镜片段失败: {}", e.getMessage());
+        }
+    }
+
+    private void emitField(List<ScriptStreamEvent> events) {
+        if (currentKey == null) {
+            return;
+        }
+        try {
+            JsonParser fieldParser = fieldTokens.asParser(objectMapper);
+            switch (currentKey) {
+                case VIDEO_ELEMENTS_KEY -> events.add(ScriptStreamEvent.videoElements(
+                        objectMapper.readValue(fieldParser, ScriptContentDTO.VideoElementsDTO.class)));
+                case ENDING_CTA_KEY -> events.add(ScriptStreamEvent.endingCTA(
+                        objectMapper.readValue(fieldParser, String[].class)));
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            log.debug("解析流式字段片段失败: key={}, {}", currentKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.scriptcraftai.backend.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * token用量归属
+ *
+ * @description 入口（任务执行器、流式生成、重新生成）把发起用户和视频类型写入Reactor上下文，
+ *              AI调用结束时据此记录token用量。合并执行的相同请求只调用一次AI，用量全部归属于创建共享调用的请求，
+ *              合并进来的请求不记录用量（见GenerationCoalescingServiceImpl）
+ * @param userId 用户ID，未知时为null
+ * @param videoType 视频类型，未知时为null
+ * @author ScriptCraft AI Team
+ */
+public record UsageAttribution(String userId, String videoType) {
+
+    // Reactor上下文中用量归属的键
+    private static final Class<UsageAttribution> CONTEXT_KEY = UsageAttribution.class;
+
+    /**
+     * 上下文中没有归属信息时使用（如连接预热等内部调用）
+     */
+    public static final UsageAttribution UNATTRIBUTED = new UsageAttribution(null, null);
+
+    /**
+     * 为异步结果设置用量归属
+     *
+     * @param mono 异步结果
+     * @param userId 用户ID
+     * @param videoType 视频类型
+     * @return 带用量归属的异步结果
+     */
+    public static <T> Mono<T> attribute(Mono<T> mono, String userId, String videoType) {
+        UsageAttribution attribution = new UsageAttribution(userId, videoType);
+        return mono.contextWrite(ctx -> ctx.put(CONTEXT_KEY, attribution));
+    }
+
+    /**
+     * 为事件流设置用量归属
+     *
+     * @param flux 事件流
+     * @param userId 用户ID
+     * @param videoType 视频类型
+     * @return 带用量归属的事件流
+     */
+    public static <T> Flux<T> attribute(Flux<T> flux, String userId, String videoType) {
+        UsageAttribution attribution = new UsageAttribution(userId, videoType);
+        return flux.contextWrite(ctx -> ctx.put(CONTEXT_KEY, attribution));
+    }
+
+    /**
+     * 读取上下文中的用量归属
+     *
+     * @param context Reactor上下文
+     * @return 用量归属，没有时返回UNATTRIBUTED
+     */
+    public static UsageAttribution from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, UNATTRIBUTED);
+    }
+}
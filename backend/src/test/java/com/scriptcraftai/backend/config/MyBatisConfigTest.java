@@ -0,0 +1,105 @@
+package com.scriptcraftai.backend.config;
+
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.entity.ScriptVersion;
+import com.scriptcraftai.backend.mapper.handler.BinaryIdTypeHandler;
+import com.scriptcraftai.backend.mapper.handler.ScriptContentTypeHandler;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MyBatis配置测试
+ *
+ * @description 解析ScriptVersionMapper.xml，确认内容列和ID列使用MyBatisConfig注册的类型处理器，
+ *              以及读取时改写旧格式所依赖的格式字节查询和条件更新
+ * @author ScriptCraft AI Team
+ */
+class MyBatisConfigTest {
+
+    private static final String NAMESPACE = "com.scriptcraftai.backend.mapper.ScriptVersionMapper";
+
+    private Configuration configuration;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MyBatisConfig config = new MyBatisConfig();
+        configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        config.typeHandlerCustomizer(config.scriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4))
+                .customize(configuration);
+
+        String resource = "mapper/ScriptVersionMapper.xml";
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            new XMLMapperBuilder(in, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+    }
+
+    @Test
+    void mapsContentColumnsWithCodec() {
+        ResultMapping content = resultMapping("content");
+        assertThat(content.getTypeHandler()).isInstanceOf(ScriptContentTypeHandler.class);
+        assertThat(resultMapping("id").getTypeHandler()).isInstanceOf(BinaryIdTypeHandler.class);
+    }
+
+    @Test
+    void bindsContentParametersWithCodec() {
+        assertThat(parameterMapping("insert", "content").getTypeHandler())
+                .isInstanceOf(ScriptContentTypeHandler.class);
+        assertThat(parameterMapping("update", "content").getTypeHandler())
+                .isInstanceOf(ScriptContentTypeHandler.class);
+    }
+
+    @Test
+    void migratesContentConditionallyOnStoredFormat() {
+        assertThat(resultMapping("contentFormat").getColumn()).isEqualTo("content_format");
+        assertThat(sql("selectById", "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e"))
+                .contains("ASCII(content) AS content_format");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e");
+        params.put("content", new ScriptContentDTO());
+        params.put("fromFormat", (int) '{');
+        BoundSql update = configuration.getMappedStatement(NAMESPACE + ".updateContent").getBoundSql(params);
+        assertThat(update.getSql().replaceAll("\\s+", " "))
+                .contains("updated_at = updated_at")
+                .contains("AND ASCII(content) = ?");
+        assertThat(update.getParameterMappings()).extracting(ParameterMapping::getProperty)
+                .containsExactly("content", "id", "fromFormat");
+        // 多参数语句按参数的运行时类型查找类型处理器
+        assertThat(configuration.getTypeHandlerRegistry().getTypeHandler(ScriptContentDTO.class, JdbcType.BLOB))
+                .isInstanceOf(ScriptContentTypeHandler.class);
+    }
+
+    private String sql(String statement, Object parameter) {
+        return configuration.getMappedStatement(NAMESPACE + "." + statement).getBoundSql(parameter).getSql();
+    }
+
+    private ResultMapping resultMapping(String property) {
+        return configuration.getResultMap(NAMESPACE + ".BaseResultMap").getResultMappings().stream()
+                .filter(mapping -> property.equals(mapping.getProperty()))
+                .findFirst().orElseThrow();
+    }
+
+    private ParameterMapping parameterMapping(String statement, String property) {
+        ScriptVersion version = new ScriptVersion();
+        version.setId("0190f6a0c2e47b3c8d9e0f1a2b3c4d5e");
+        version.setContent(new ScriptContentDTO());
+        return configuration.getMappedStatement(NAMESPACE + "." + statement).getBoundSql(version)
+                .getParameterMappings().stream()
+                .filter(mapping -> property.equals(mapping.getProperty()))
+                .findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,68 @@
+package com.scriptcraftai.backend.config;
+
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.exception.CircuitOpenException;
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.netty.http.client.PrematureCloseException;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * 通义千问熔断器失败分类测试
+ *
+ * @description 只有上游故障计入熔断，本地拒绝、截止时间、取消以及业务和解析错误不计入
+ * @author ScriptCraft AI Team
+ */
+class WebClientConfigTest {
+
+    static Stream<Arguments> errors() {
+        return Stream.of(
+                arguments("连接失败", wrapped(new WebClientRequestException(new ConnectException("refused"),
+                        HttpMethod.POST, URI.create("https://dashscope.example.com"), new HttpHeaders())), true),
+                arguments("连接被提前关闭", wrapped(PrematureCloseException.TEST_EXCEPTION), true),
+                arguments("读超时", wrapped(ReadTimeoutException.INSTANCE), true),
+                arguments("调用超时", wrapped(new TimeoutException()), true),
+                arguments("未包装的调用超时", new TimeoutException(), true),
+                arguments("上游500", wrapped(status(500)), true),
+                arguments("上游503", wrapped(status(503)), true),
+                arguments("上游429", wrapped(status(429)), true),
+                arguments("上游400", wrapped(status(400)), false),
+                arguments("上游401", wrapped(status(401)), false),
+                arguments("请求截止时间到达", new DeadlineExceededException(), false),
+                arguments("本地排队被拒绝", new ServiceOverloadedException(503, "排队已满", 10), false),
+                arguments("熔断打开", new CircuitOpenException(10), false),
+                arguments("调用被取消", new CancellationException(), false),
+                arguments("上游返回错误内容", new BusinessException("AI服务调用失败，请稍后重试"), false),
+                arguments("解析错误", wrapped(new IllegalStateException("unexpected token")), false));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("errors")
+    void countsOnlyUpstreamFailures(String name, Throwable error, boolean failure) {
+        assertThat(WebClientConfig.isUpstreamFailure(error)).isEqualTo(failure);
+    }
+
+    private static WebClientResponseException status(int code) {
+        return WebClientResponseException.create(code, "status " + code, null, null, null);
+    }
+
+    private static BusinessException wrapped(Throwable cause) {
+        return new BusinessException(500, "AI服务调用失败，请稍后重试", cause);
+    }
+}
@@ -0,0 +1,279 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.service.AiService;
+import com.scriptcraftai.backend.service.ModelRouter;
+import com.scriptcraftai.backend.service.TokenUsageService;
+import com.scriptcraftai.backend.util.AdaptiveConcurrencyLimiter;
+import com.scriptcraftai.backend.util.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AI服务续写判断和分段生成测试
+ *
+ * @description 能完整解析的脚本不论分镜多少都直接接受，只有输出被截断且有视频要求时才发起一次续写调用；
+ *              分段生成按大纲顺序组装各部分，任一部分失败时整体失败
+ * @author ScriptCraft AI Team
+ */
+class AiServiceImplTest {
+
+    private static final String REQUIREMENTS = "视频类型：好物推荐\n主题：降噪耳机\n";
+
+    private static final String SCENE_1 = "{\"timeRange\":\"0-3s\",\"visualDescription\":\"开箱\",\"voiceover\":\"先看包装\"}";
+
+    private static final String SCENE_2 = "{\"timeRange\":\"3-6s\",\"visualDescription\":\"试戴\",\"voiceover\":\"戴上就安静了\"}";
+
+    private static final String CONTINUATION = "{\"scenes\":[" + SCENE_2 + "],"
+            + "\"videoElements\":{\"bgmStyle\":\"轻快\"},\"endingCTA\":[\"点赞收藏\"]}";
+
+    private static final String[] OUTLINE_TIME_RANGES = {"0-20秒", "20-40秒", "40-60秒"};
+
+    private static final Pattern SCENE_NUMBER = Pattern.compile("需要展开的是第(\\d+)个分镜");
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+    // 分段生成时上游收到的调用次数
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private AiServiceImpl service;
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        PromptTemplateServiceImpl promptTemplateService = new PromptTemplateServiceImpl();
+        ReflectionTestUtils.setField(promptTemplateService, "version", "v2");
+        promptTemplateService.init();
+
+        // 上游调用由熔断器包装，直接返回续写的内容
+        circuitBreaker = mock(CircuitBreaker.class);
+        when(circuitBreaker.protect(any(Mono.class))).thenReturn(Mono.just(CONTINUATION));
+
+        service = new AiServiceImpl();
+        ReflectionTestUtils.setField(service, "objectMapper", new JacksonConfig().objectMapper());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "aiIoScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(service, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(service, "promptTemplateService", promptTemplateService);
+    }
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                arguments("完整的单分镜脚本直接接受",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "]}", REQUIREMENTS, false, 1),
+                arguments("缺少视频元素和结尾话术也直接接受",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "," + SCENE_2 + "]}", REQUIREMENTS, false, 2),
+                arguments("修复格式问题后完整的脚本不续写",
+                        "```json\n{“title”：“好物”,\"scenes\":[" + SCENE_1 + ",],}\n```", REQUIREMENTS, false, 1),
+                arguments("截断的脚本从中断处续写",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + ",{\"timeRange\":\"3-6s\",\"visual",
+                        REQUIREMENTS, true, 2),
+                arguments("重新生成时截断的脚本返回修复结果",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + ",{\"timeRange\":\"3-6s\",\"visual",
+                        null, false, 1),
+                arguments("重新生成时完整的脚本直接接受",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "]}", null, false, 1));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    @SuppressWarnings("unchecked")
+    void continuesOnlyTruncatedScripts(String name, String response, String requirements,
+                                       boolean continued, int sceneCount) {
+        AiServiceImpl.Parsed<ScriptContentDTO> parsed = service.parse(response, ScriptContentDTO.class, "script");
+
+        ScriptContentDTO content = service.ensureComplete(parsed, requirements, null).block();
+
+        assertThat(content).isNotNull();
+        assertThat(content.getTitle()).isEqualTo("好物");
+        assertThat(content.getScenes()).hasSize(sceneCount);
+        assertThat(Arrays.stream(content.getScenes()).map(ScriptContentDTO.SceneDTO::getVoiceover))
+                .doesNotContainNull();
+        verify(circuitBreaker, continued ? times(1) : never()).protect(any(Mono.class));
+        if (continued) {
+            assertThat(content.getEndingCTA()).containsExactly("点赞收藏");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void decomposedGenerationAssemblesPartsInOutlineOrder() {
+        useStubbedUpstream(null);
+
+        ScriptContentDTO content = service.generateScriptReactive("好物推荐", "降噪耳机", null, 0,
+                AiService.GENERATION_MODE_DECOMPOSED).block();
+
+        assertThat(content).isNotNull();
+        assertThat(content.getTitle()).isEqualTo("三分钟看懂降噪");
+        // 后面的分镜先返回，结果仍按大纲顺序排列，时间范围以大纲为准
+        assertThat(Arrays.stream(content.getScenes()).map(ScriptContentDTO.SceneDTO::getVoiceover))
+                .containsExactly("旁白1", "旁白2", "旁白3");
+        assertThat(Arrays.stream(content.getScenes()).map(ScriptContentDTO.SceneDTO::getTimeRange))
+                .containsExactly(OUTLINE_TIME_RANGES);
+        assertThat(content.getVideoElements().getBgmStyle()).isEqualTo("轻快");
+        assertThat(content.getAlternativeTitles()).containsExactly("降噪原理一次讲清");
+        assertThat(content.getEndingCTA()).containsExactly("点赞收藏");
+        // 大纲、三个分镜、视频元素、备选标题和结尾话术
+        assertThat(upstreamCalls).hasValue(6);
+    }
+
+    @ParameterizedTest(name = "{0}失败")
+    @MethodSource("failingParts")
+    void decomposedGenerationFailsWhenAnyPartFails(String part, String marker) {
+        useStubbedUpstream(marker);
+
+        assertThatThrownBy(() -> service.generateScriptReactive("好物推荐", "降噪耳机", null, 0,
+                AiService.GENERATION_MODE_DECOMPOSED).block())
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("AI脚本生成失败，请稍后重试");
+    }
+
+    static Stream<Arguments> failingParts() {
+        return Stream.of(
+                arguments("大纲", "\"point\""),
+                arguments("分镜正文", "需要展开的是第2个分镜"),
+                arguments("视频元素", "\"bgmStyle\""),
+                arguments("备选标题和结尾话术", "\"endingCTA\""));
+    }
+
+    /**
+     * 用按提示词应答的WebClient替换上游，熔断器和并发限制器直接放行
+     *
+     * @param failOn 提示词包含该文本时返回500，为null时全部成功
+     */
+    @SuppressWarnings("unchecked")
+    private void useStubbedUpstream(String failOn) {
+        when(circuitBreaker.protect(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AdaptiveConcurrencyLimiter limiter = mock(AdaptiveConcurrencyLimiter.class);
+        when(limiter.limit(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ModelRouter modelRouter = mock(ModelRouter.class);
+        when(modelRouter.route(anyString())).thenReturn("qwen-plus");
+
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> readPrompt(request).flatMap(prompt -> respond(prompt, failOn)))
+                .build();
+        ReflectionTestUtils.setField(service, "webClient", webClient);
+        ReflectionTestUtils.setField(service, "apiUrl", "http://dashscope.test/generation");
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "concurrencyLimiter", limiter);
+        ReflectionTestUtils.setField(service, "modelRouter", modelRouter);
+        ReflectionTestUtils.setField(service, "tokenUsageService", mock(TokenUsageService.class));
+    }
+
+    private Mono<String> readPrompt(ClientRequest request) {
+        MockClientHttpRequest captured = new MockClientHttpRequest(HttpMethod.POST, URI.create("/"));
+        return request.body().insert(captured, new BodyInserter.Context() {
+                    @Override
+                    public List<HttpMessageWriter<?>> messageWriters() {
+                        return ExchangeStrategies.withDefaults().messageWriters();
+                    }
+
+                    @Override
+                    public Optional<ServerHttpRequest> serverRequest() {
+                        return Optional.empty();
+                    }
+
+                    @Override
+                    public Map<String, Object> hints() {
+                        return Map.of();
+                    }
+                })
+                .then(Mono.defer(captured::getBodyAsString))
+                .map(body -> {
+                    try {
+                        return objectMapper.readTree(body).at("/input/messages/0/content").asText();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+    }
+
+    /**
+     * 按提示词要求的内容应答，分镜序号越小返回越晚
+     */
+    private Mono<ClientResponse> respond(String prompt, String failOn) {
+        upstreamCalls.incrementAndGet();
+        if (failOn != null && prompt.contains(failOn)) {
+            return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"code\":\"InternalError\",\"message\":\"upstream failed\"}")
+                    .build());
+        }
+        Matcher scene = SCENE_NUMBER.matcher(prompt);
+        Object content;
+        Duration delay = Duration.ZERO;
+        if (scene.find()) {
+            int number = Integer.parseInt(scene.group(1));
+            content = Map.of("timeRange", "模型改写的时间", "visualDescription", "画面" + number,
+                    "voiceover", "旁白" + number);
+            delay = Duration.ofMillis((OUTLINE_TIME_RANGES.length - number) * 50L);
+        } else if (prompt.contains("\"point\"")) {
+            content = Map.of("title", "三分钟看懂降噪", "scenes", Arrays.stream(OUTLINE_TIME_RANGES)
+                    .map(timeRange -> Map.of("timeRange", timeRange, "point", "要点" + timeRange))
+                    .toList());
+        } else if (prompt.contains("\"bgmStyle\"")) {
+            content = Map.of("bgmStyle", "轻快", "shootingLocation", "客厅", "effects", "快切");
+        } else {
+            content = Map.of("alternativeTitles", List.of("降噪原理一次讲清"), "endingCTA", List.of("点赞收藏"));
+        }
+        try {
+            String body = objectMapper.writeValueAsString(Map.of(
+                    "output", Map.of("choices", List.of(Map.of("finish_reason", "stop",
+                            "message", Map.of("role", "assistant",
+                                    "content", objectMapper.writeValueAsString(content))))),
+                    "usage", Map.of("input_tokens", 100, "output_tokens", 50)));
+            return Mono.delay(delay).thenReturn(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(body)
+                    .build());
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.util.RequestDeadline;
+import com.scriptcraftai.backend.util.UsageAttribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 生成请求合并服务测试
+ *
+ * @description 共享调用不继承首个调用方的截止时间，用量固定归属于创建共享调用的请求
+ * @author ScriptCraft AI Team
+ */
+class GenerationCoalescingServiceImplTest {
+
+    private static final String KEY = "variant-key";
+
+    private GenerationCoalescingServiceImpl service;
+
+    // 共享调用执行时看到的用量归属
+    private final List<UsageAttribution> upstreamAttributions = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), any(), any(Duration.class))).thenReturn(true);
+
+        service = new GenerationCoalescingServiceImpl();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "generationScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "leaseSeconds", 90L);
+        ReflectionTestUtils.setField(service, "pollIntervalMillis", 50L);
+        ReflectionTestUtils.setField(service, "resultTtlSeconds", 60L);
+    }
+
+    @Test
+    void followerOutlivesLeaderDeadline() {
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        request("leader", Duration.ofMillis(100)).subscribe(content -> { }, leaderError::set);
+
+        ScriptContentDTO content = request("follower", Duration.ofSeconds(5)).block();
+
+        assertThat(content).isNotNull();
+        assertThat(content.getTitle()).isEqualTo("共享结果");
+        assertThat(leaderError.get()).isInstanceOf(DeadlineExceededException.class);
+        assertThat(upstreamAttributions).hasSize(1);
+    }
+
+    @Test
+    void usageIsAttributedToTheRequestThatCreatedTheFlight() {
+        request("leader", Duration.ofSeconds(5)).subscribe();
+
+        request("follower", Duration.ofSeconds(5)).block();
+
+        assertThat(upstreamAttributions).containsExactly(new UsageAttribution("leader", "short_video"));
+    }
+
+    /**
+     * 按ScriptServiceImpl的方式发起一次合并请求：各自的截止时间和用量归属，共享之后各自计时
+     */
+    private Mono<ScriptContentDTO> request(String userId, Duration budget) {
+        Mono<ScriptContentDTO> coalesced = service.coalesce(KEY, upstream())
+                .as(mono -> RequestDeadline.timeout(mono, Duration.ofSeconds(10)));
+        return RequestDeadline.within(UsageAttribution.attribute(coalesced, userId, "short_video"), budget);
+    }
+
+    /**
+     * 模拟AI调用：每次调用按上下文中的截止时间计时，并记录用量归属
+     */
+    private Supplier<Mono<ScriptContentDTO>> upstream() {
+        return () -> Mono.deferContextual(context -> {
+            upstreamAttributions.add(UsageAttribution.from(context));
+            ScriptContentDTO content = new ScriptContentDTO();
+            content.setTitle("共享结果");
+            return RequestDeadline.timeout(Mono.delay(Duration.ofMillis(300)).thenReturn(content),
+                    Duration.ofSeconds(10));
+        });
+    }
+}
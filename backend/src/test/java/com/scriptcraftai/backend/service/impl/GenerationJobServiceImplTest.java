@@ -0,0 +1,165 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.entity.GenerationJob;
+import com.scriptcraftai.backend.entity.ScriptSession;
+import com.scriptcraftai.backend.exception.BusinessException;
+import com.scriptcraftai.backend.mapper.GenerationJobMapper;
+import com.scriptcraftai.backend.mapper.ScriptSessionMapper;
+import com.scriptcraftai.backend.service.GenerationJobQueue;
+import com.scriptcraftai.backend.service.ScriptService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步生成任务服务测试
+ *
+ * @description 执行失败后重新排队时会话保持生成中，只有不再重试时才标记会话失败；
+ *              接管的队列消息对应的任务仍在其他节点的租约内执行时不确认
+ * @author ScriptCraft AI Team
+ */
+class GenerationJobServiceImplTest {
+
+    private static final String JOB_ID = "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e";
+
+    private static final String SESSION_ID = "0190f6a0c2e47b3c8d9e0f1a2b3c4d5f";
+
+    private GenerationJobServiceImpl service;
+
+    private GenerationJobMapper jobMapper;
+
+    private GenerationJobQueue jobQueue;
+
+    private ScriptSessionMapper sessionMapper;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jobMapper = mock(GenerationJobMapper.class);
+        sessionMapper = mock(ScriptSessionMapper.class);
+        jobQueue = mock(GenerationJobQueue.class);
+        ScriptService scriptService = mock(ScriptService.class);
+        when(scriptService.generateScripts(any(), any()))
+                .thenReturn(Mono.error(new BusinessException("生成脚本失败，请稍后重试")));
+        ScriptSession session = new ScriptSession();
+        session.setId(SESSION_ID);
+        session.setStatus(ScriptSession.STATUS_PENDING);
+        when(sessionMapper.selectById(SESSION_ID)).thenReturn(session);
+        when(jobMapper.selectClaimableIds(any(), anyLong())).thenReturn(List.of(JOB_ID));
+        when(jobMapper.claim(eq(JOB_ID), anyString(), anyLong())).thenReturn(1);
+        when(jobMapper.markFailed(eq(JOB_ID), anyString(), anyString())).thenReturn(1);
+
+        service = new GenerationJobServiceImpl();
+        ReflectionTestUtils.setField(service, "jobMapper", jobMapper);
+        ReflectionTestUtils.setField(service, "sessionMapper", sessionMapper);
+        ReflectionTestUtils.setField(service, "jobQueue", jobQueue);
+        ReflectionTestUtils.setField(service, "scriptService", scriptService);
+        ReflectionTestUtils.setField(service, "redisTemplate", mock(RedisTemplate.class));
+        ReflectionTestUtils.setField(service, "objectMapper", new JacksonConfig().objectMapper());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "generationScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(service, "nodeId", "node-1");
+        ReflectionTestUtils.setField(service, "workerConcurrency", 1);
+        ReflectionTestUtils.setField(service, "retryBackoffSeconds", 10L);
+    }
+
+    @Test
+    void requeuedAttemptLeavesSessionPending() {
+        when(jobMapper.selectById(JOB_ID)).thenReturn(job(1, 3));
+
+        service.dispatch();
+
+        verify(jobMapper).requeue(eq(JOB_ID), eq("node-1"), anyLong(), anyString());
+        verify(jobMapper, never()).markFailed(any(), any(), any());
+        verify(sessionMapper, never()).updateStatus(any(), any(), any());
+    }
+
+    @Test
+    void lastAttemptMarksSessionFailed() {
+        when(jobMapper.selectById(JOB_ID)).thenReturn(job(3, 3));
+
+        service.dispatch();
+
+        verify(jobMapper, never()).requeue(any(), any(), anyLong(), any());
+        verify(jobMapper).markFailed(JOB_ID, "node-1", "生成脚本失败，请稍后重试");
+        verify(sessionMapper).updateStatus(SESSION_ID, ScriptSession.STATUS_FAILED, "生成脚本失败，请稍后重试");
+    }
+
+    @Test
+    void reclaimedMessageOfLeasedJobIsNotAcked() {
+        GenerationJob running = job(1, 3);
+        running.setLeaseOwner("node-2");
+        running.setLeaseExpiresAt(LocalDateTime.now().plusSeconds(60));
+        pollOnly(running);
+
+        service.dispatch();
+
+        verify(jobQueue, never()).ack(any());
+    }
+
+    @Test
+    void reclaimedMessageOfFinishedJobIsAcked() {
+        GenerationJob finished = job(1, 3);
+        finished.setStatus(GenerationJob.STATUS_SUCCEEDED);
+        pollOnly(finished);
+
+        service.dispatch();
+
+        verify(jobQueue).ack("1700000000000-0");
+    }
+
+    @Test
+    void reclaimedMessageOfRequeuedJobIsAcked() {
+        GenerationJob requeued = job(1, 3);
+        requeued.setStatus(GenerationJob.STATUS_QUEUED);
+        requeued.setAvailableAt(LocalDateTime.now().plusSeconds(10));
+        pollOnly(requeued);
+
+        service.dispatch();
+
+        verify(jobQueue).ack("1700000000000-0");
+    }
+
+    /**
+     * 队列返回一条接管的消息，数据库中的任务无法领取，也不进行兜底扫描
+     */
+    private void pollOnly(GenerationJob job) {
+        when(jobQueue.isEnabled()).thenReturn(true);
+        when(jobQueue.poll("node-1", 1))
+                .thenReturn(List.of(new GenerationJobQueue.QueuedJob("1700000000000-0", JOB_ID)));
+        when(jobMapper.claim(eq(JOB_ID), anyString(), anyLong())).thenReturn(0);
+        when(jobMapper.selectById(JOB_ID)).thenReturn(job);
+        ReflectionTestUtils.setField(service, "lastSweepAt", System.currentTimeMillis());
+        ReflectionTestUtils.setField(service, "sweepIntervalMillis", 60_000L);
+    }
+
+    private GenerationJob job(int attempts, int maxAttempts) {
+        GenerationJob job = new GenerationJob();
+        job.setId(JOB_ID);
+        job.setSessionId(SESSION_ID);
+        job.setUserId("user-1");
+        job.setRequestJson("{\"videoType\":\"好物推荐\",\"themeInput\":\"降噪耳机\"}");
+        job.setAttempts(attempts);
+        job.setMaxAttempts(maxAttempts);
+        job.setDeadlineAt(LocalDateTime.now().plusMinutes(10));
+        job.setStatus(GenerationJob.STATUS_RUNNING);
+        return job;
+    }
+}
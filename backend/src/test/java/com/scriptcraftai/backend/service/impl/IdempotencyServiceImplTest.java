@@ -0,0 +1,48 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.config.JacksonConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 幂等键服务测试
+ *
+ * @description 请求指纹与Map的迭代顺序无关
+ * @author ScriptCraft AI Team
+ */
+class IdempotencyServiceImplTest {
+
+    private IdempotencyServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyServiceImpl();
+        ReflectionTestUtils.setField(service, "objectMapper", new JacksonConfig().objectMapper());
+    }
+
+    @Test
+    void fingerprintIgnoresMapIterationOrder() {
+        Map<String, String> versionFirst = new LinkedHashMap<>();
+        versionFirst.put("versionId", "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e");
+        versionFirst.put("mode", "scene");
+        Map<String, String> modeFirst = new LinkedHashMap<>();
+        modeFirst.put("mode", "scene");
+        modeFirst.put("versionId", "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e");
+
+        assertThat(service.fingerprint(versionFirst)).isEqualTo(service.fingerprint(modeFirst));
+        assertThat(service.fingerprint(Map.of("versionId", "0190f6a0c2e47b3c8d9e0f1a2b3c4d5e", "mode", "scene")))
+                .isEqualTo(service.fingerprint(modeFirst));
+    }
+
+    @Test
+    void fingerprintDiffersForDifferentRequests() {
+        assertThat(service.fingerprint(Map.of("versionId", "a", "mode", "scene")))
+                .isNotEqualTo(service.fingerprint(Map.of("versionId", "a", "mode", "full")));
+    }
+}
@@ -0,0 +1,95 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.service.PromptTemplateService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * 提示词模板服务测试
+ *
+ * @description 当前版本的每个模板都能加载，变量全部替换且位于固定前缀之后
+ * @author ScriptCraft AI Team
+ */
+class PromptTemplateServiceImplTest {
+
+    private PromptTemplateServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new PromptTemplateServiceImpl();
+        ReflectionTestUtils.setField(service, "version", "v2");
+        service.init();
+    }
+
+    static Stream<Arguments> templates() {
+        return Stream.of(
+                arguments(PromptTemplateService.TEMPLATE_SCRIPT, List.of("requirements")),
+                arguments(PromptTemplateService.TEMPLATE_OUTLINE, List.of("requirements")),
+                arguments(PromptTemplateService.TEMPLATE_SCENE_BODY,
+                        List.of("brief", "sceneNumber", "timeRange", "point")),
+                arguments(PromptTemplateService.TEMPLATE_VIDEO_ELEMENTS, List.of("brief")),
+                arguments(PromptTemplateService.TEMPLATE_EXTRAS, List.of("brief")),
+                arguments(PromptTemplateService.TEMPLATE_SCENE_REWRITE,
+                        List.of("title", "scenes", "sceneNumber", "sceneCount")),
+                arguments(PromptTemplateService.TEMPLATE_REGENERATION, List.of("title", "scenes")),
+                arguments(PromptTemplateService.TEMPLATE_CONTINUATION,
+                        List.of("requirements", "title", "scenes", "sceneNumber")));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("templates")
+    void rendersAllVariablesAfterStaticPrefix(String name, List<String> variables) {
+        Map<String, String> values = new HashMap<>();
+        variables.forEach(variable -> values.put(variable, "<" + variable + ">"));
+
+        String first = service.render(name, values);
+
+        assertThat(first).doesNotContain("{{").doesNotContain("}}");
+        Map<String, String> other = new HashMap<>();
+        variables.forEach(variable -> other.put(variable, "[" + variable + "]"));
+        String second = service.render(name, other);
+        // 不同请求的提示词共享变量之前的全部内容
+        int prefix = 0;
+        while (prefix < first.length() && first.charAt(prefix) == second.charAt(prefix)) {
+            prefix++;
+        }
+        for (String variable : variables) {
+            assertThat(first.indexOf("<" + variable + ">")).isGreaterThanOrEqualTo(prefix);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("templates")
+    void rejectsMissingVariables(String name, List<String> variables) {
+        Map<String, String> values = new HashMap<>();
+        variables.subList(1, variables.size()).forEach(variable -> values.put(variable, "<" + variable + ">"));
+
+        assertThatThrownBy(() -> service.render(name, values))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("variable=" + variables.get(0));
+    }
+
+    @Test
+    void rejectsUnknownTemplate() {
+        assertThatThrownBy(() -> service.render("unknown", Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void exposesVersion() {
+        assertThat(service.getVersion()).isEqualTo("v2");
+    }
+}
@@ -0,0 +1,211 @@
+package com.scriptcraftai.backend.service.impl;
+
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import com.scriptcraftai.backend.entity.ScriptSession;
+import com.scriptcraftai.backend.entity.ScriptVersion;
+import com.scriptcraftai.backend.mapper.ScriptSessionMapper;
+import com.scriptcraftai.backend.mapper.ScriptVersionMapper;
+import com.scriptcraftai.backend.mapper.handler.ScriptContentTypeHandler;
+import com.scriptcraftai.backend.request.GenerateScriptRequest;
+import com.scriptcraftai.backend.service.GenerationCacheService;
+import com.scriptcraftai.backend.service.GenerationCoalescingService;
+import com.scriptcraftai.backend.util.ScriptContentCodec;
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 脚本服务测试
+ *
+ * @description 异步任务的生成失败或被取消（停机移交）时会话保持生成中，由任务服务决定是否标记失败；
+ *              读取旧格式的内容时经类型处理器改写为当前格式，改写以读到的格式字节为条件
+ * @author ScriptCraft AI Team
+ */
+class ScriptServiceImplTest {
+
+    private static final String VERSION_ID = "0190f6a0c2e47b3c8d9e0f1a2b3c4d60";
+
+    private ScriptServiceImpl service;
+
+    private ScriptSessionMapper sessionMapper;
+
+    private GenerationCoalescingService coalescingService;
+
+    private ScriptVersionMapper versionMapper;
+
+    private ScriptContentTypeHandler contentHandler;
+
+    // script_versions中一行的content列
+    private byte[] storedContent;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sessionMapper = mock(ScriptSessionMapper.class);
+        GenerationCacheService cacheService = mock(GenerationCacheService.class);
+        when(cacheService.buildKey(any(), any(), any(), anyInt())).thenReturn("variant-key");
+        // AI调用一直进行中，直到被取消
+        coalescingService = mock(GenerationCoalescingService.class);
+        when(coalescingService.coalesce(anyString(), any())).thenReturn(Mono.never());
+
+        service = new ScriptServiceImpl();
+        ReflectionTestUtils.setField(service, "sessionMapper", sessionMapper);
+        ReflectionTestUtils.setField(service, "generationCacheService", cacheService);
+        ReflectionTestUtils.setField(service, "generationCoalescingService", coalescingService);
+        ReflectionTestUtils.setField(service, "generationScheduler", Schedulers.immediate());
+
+        ScriptContentCodec codec = new ScriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4);
+        contentHandler = new ScriptContentTypeHandler(codec);
+        versionMapper = mock(ScriptVersionMapper.class);
+        // 按ScriptVersionMapper.xml的语义读写内存中的一行：content_format为ASCII(content)，改写以格式字节为条件
+        when(versionMapper.selectById(VERSION_ID)).thenAnswer(invocation -> selectVersion());
+        when(versionMapper.selectStoredContent(VERSION_ID)).thenAnswer(invocation -> storedContent);
+        when(versionMapper.updateContent(eq(VERSION_ID), any(), any())).thenAnswer(invocation ->
+                updateContent(invocation.getArgument(1), invocation.getArgument(2)));
+        ScriptSession owner = session();
+        when(sessionMapper.selectById(owner.getId())).thenReturn(owner);
+        ReflectionTestUtils.setField(service, "versionMapper", versionMapper);
+        ReflectionTestUtils.setField(service, "contentCodec", codec);
+    }
+
+    @Test
+    void cancelledJobLeavesSessionPending() {
+        Disposable job = service.generateScripts(session(), request()).subscribe();
+        verify(coalescingService).coalesce(anyString(), any());
+        job.dispose();
+
+        verify(sessionMapper, never()).updateStatus(any(), any(), any());
+    }
+
+    @Test
+    void failedJobLeavesSessionPending() {
+        when(coalescingService.coalesce(anyString(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("upstream closed")));
+
+        assertThatThrownBy(() -> service.generateScripts(session(), request()).block())
+                .hasMessage("生成脚本失败，请稍后重试");
+
+        verify(sessionMapper, never()).updateStatus(any(), any(), any());
+    }
+
+    @Test
+    void legacyJsonContentIsRewrittenOnFirstRead() throws Exception {
+        ScriptContentDTO content = script(8);
+        storedContent = new JacksonConfig().objectMapper().writeValueAsBytes(content);
+
+        assertThat(service.getVersionDetail(VERSION_ID, "user-1").getContent()).isEqualTo(content);
+        assertThat(ScriptContentCodec.formatOf(storedContent)).isEqualTo(ScriptContentCodec.Format.SMILE_LZ4);
+        assertThat(service.getVersionDetail(VERSION_ID, "user-1").getContent()).isEqualTo(content);
+
+        // 第二次读取时已是当前格式，不再改写
+        verify(versionMapper, times(1)).updateContent(eq(VERSION_ID), any(), any());
+        assertThat(service.getStoredContent(VERSION_ID, "user-1"))
+                .containsEntry("format", ScriptContentCodec.Format.SMILE_LZ4)
+                .containsEntry("storedBytes", storedContent.length);
+    }
+
+    @Test
+    void currentFormatIsNotRewritten() throws Exception {
+        storedContent = write(script(8));
+
+        service.getVersionDetail(VERSION_ID, "user-1");
+
+        verify(versionMapper, never()).updateContent(any(), any(), any());
+    }
+
+    @Test
+    void concurrentEditIsNotOverwrittenByMigration() throws Exception {
+        ScriptContentDTO edited = script(3);
+        edited.setTitle("编辑后的标题");
+        storedContent = new JacksonConfig().objectMapper().writeValueAsBytes(script(8));
+        // 读取之后、改写之前，另一个请求保存了编辑（已是新格式）
+        when(versionMapper.selectById(VERSION_ID)).thenAnswer(invocation -> {
+            ScriptVersion version = selectVersion();
+            storedContent = write(edited);
+            return version;
+        });
+
+        service.getVersionDetail(VERSION_ID, "user-1");
+
+        verify(versionMapper).updateContent(eq(VERSION_ID), any(), eq((int) '{'));
+        assertThat(read(storedContent)).isEqualTo(edited);
+    }
+
+    private ScriptVersion selectVersion() throws SQLException {
+        ScriptVersion version = new ScriptVersion();
+        version.setId(VERSION_ID);
+        version.setSessionId(session().getId());
+        version.setContent(read(storedContent));
+        version.setContentFormat(storedContent.length > 0 ? storedContent[0] & 0xff : null);
+        return version;
+    }
+
+    private int updateContent(ScriptContentDTO content, Integer fromFormat) throws SQLException {
+        if (storedContent.length == 0 || (storedContent[0] & 0xff) != fromFormat) {
+            return 0;
+        }
+        storedContent = write(content);
+        return 1;
+    }
+
+    private byte[] write(ScriptContentDTO content) throws SQLException {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        contentHandler.setParameter(ps, 1, content, JdbcType.BLOB);
+        ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+        verify(ps).setBytes(eq(1), bytes.capture());
+        return bytes.getValue();
+    }
+
+    private ScriptContentDTO read(byte[] stored) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes("content")).thenReturn(stored);
+        return contentHandler.getResult(rs, "content");
+    }
+
+    private ScriptContentDTO script(int sceneCount) {
+        ScriptContentDTO.SceneDTO[] scenes = new ScriptContentDTO.SceneDTO[sceneCount];
+        for (int i = 0; i < sceneCount; i++) {
+            scenes[i] = new ScriptContentDTO.SceneDTO(i * 3 + "-" + (i + 1) * 3 + "s",
+                    "近景展示耳机第" + (i + 1) + "个细节", "第" + (i + 1) + "句文案，突出降噪效果", "字幕" + (i + 1));
+        }
+        return new ScriptContentDTO("降噪耳机真实体验", new String[]{"通勤神器", "安静一整天"}, scenes,
+                new ScriptContentDTO.VideoElementsDTO("轻快", "地铁车厢", "降噪前后对比"),
+                new String[]{"点赞收藏", "评论区聊聊"});
+    }
+
+    private ScriptSession session() {
+        ScriptSession session = new ScriptSession();
+        session.setId("0190f6a0c2e47b3c8d9e0f1a2b3c4d5e");
+        session.setUserId("user-1");
+        session.setStatus(ScriptSession.STATUS_PENDING);
+        return session;
+    }
+
+    private GenerateScriptRequest request() {
+        GenerateScriptRequest request = new GenerateScriptRequest();
+        request.setVideoType("好物推荐");
+        request.setThemeInput("降噪耳机");
+        return request;
+    }
+}
@@ -0,0 +1,66 @@
+package com.scriptcraftai.backend.util;
+
+import com.scriptcraftai.backend.exception.DeadlineExceededException;
+import com.scriptcraftai.backend.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 自适应并发限制器测试
+ *
+ * @description 排队时间受请求截止时间约束，以及截止时间与排队上限各自到达时的错误
+ * @author ScriptCraft AI Team
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1,
+            10, Duration.ofSeconds(10), 0.9, 2.0, 5, error -> false, new SimpleMeterRegistry());
+
+    // 占住唯一的许可，使后续请求进入队列
+    private final Disposable holder = limiter.limit(Mono.never()).subscribe();
+
+    @AfterEach
+    void releaseHolder() {
+        holder.dispose();
+    }
+
+    @Test
+    void queuedRequestFailsWithDeadlineBeforeQueueTimeout() {
+        long startedAt = System.nanoTime();
+
+        assertThatThrownBy(() -> RequestDeadline.within(limiter.limit(Mono.just("ok")), Duration.ofMillis(200)).block())
+                .isInstanceOf(DeadlineExceededException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(2));
+        assertThat(limiter.getQueued()).isZero();
+    }
+
+    @Test
+    void queuedRequestIsRejectedAsOverloadedWhenQueueTimeoutComesFirst() {
+        AdaptiveConcurrencyLimiter shortQueue = new AdaptiveConcurrencyLimiter("short", 1, 1, 1,
+                10, Duration.ofMillis(200), 0.9, 2.0, 5, error -> false, new SimpleMeterRegistry());
+        Disposable shortHolder = shortQueue.limit(Mono.never()).subscribe();
+        try {
+            assertThatThrownBy(() -> RequestDeadline.within(shortQueue.limit(Mono.just("ok")), Duration.ofSeconds(30)).block())
+                    .isInstanceOf(ServiceOverloadedException.class);
+        } finally {
+            shortHolder.dispose();
+        }
+    }
+
+    @Test
+    void queuedRequestRunsOnceAPermitIsReleased() {
+        Mono<String> queued = RequestDeadline.within(limiter.limit(Mono.just("ok")), Duration.ofSeconds(5));
+        Mono.delay(Duration.ofMillis(100)).subscribe(tick -> holder.dispose());
+
+        assertThat(queued.block()).isEqualTo("ok");
+    }
+}
@@ -0,0 +1,99 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * AI输出JSON修复测试
+ *
+ * @description 每个用例给出原始输出、修复后应等价的JSON和记录的修复类型
+ * @author ScriptCraft AI Team
+ */
+class JsonRepairTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String SCENE_1 = "{\"timeRange\":\"0-3s\",\"visualDescription\":\"开箱\",\"voiceover\":\"先看包装\"}";
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                arguments("合法JSON原样返回",
+                        "{\"title\":\"好物\"}",
+                        "{\"title\":\"好物\"}",
+                        Set.of()),
+                arguments("跳过markdown标记和说明文字",
+                        "下面是脚本：\n```json\n{\"title\":\"好物\"}\n```\n希望对你有帮助",
+                        "{\"title\":\"好物\"}",
+                        Set.of()),
+                arguments("结构位置上的中文引号和冒号",
+                        "{“title”：“好物”}",
+                        "{\"title\":\"好物\"}",
+                        Set.of(JsonRepair.FIX_QUOTES, JsonRepair.FIX_PUNCTUATION)),
+                arguments("文案中的中文引号原样保留",
+                        "{\"voiceover\":\"他说“真香”，然后下单\",\"subtitle\":\"“真香”：\"}",
+                        "{\"voiceover\":\"他说“真香”，然后下单\",\"subtitle\":\"“真香”：\"}",
+                        Set.of()),
+                arguments("文案中未转义的英文引号",
+                        "{\"voiceover\":\"他说\"真香\"，然后下单\"}",
+                        "{\"voiceover\":\"他说\\\"真香\\\"，然后下单\"}",
+                        Set.of(JsonRepair.FIX_UNESCAPED)),
+                arguments("字符串中的换行",
+                        "{\"voiceover\":\"第一句\n第二句\"}",
+                        "{\"voiceover\":\"第一句\\n第二句\"}",
+                        Set.of(JsonRepair.FIX_UNESCAPED)),
+                arguments("对象和数组的尾随逗号",
+                        "{\"endingCTA\":[\"点赞\",\"关注\",],\"title\":\"好物\",}",
+                        "{\"endingCTA\":[\"点赞\",\"关注\"],\"title\":\"好物\"}",
+                        Set.of(JsonRepair.FIX_TRAILING_COMMA)),
+                arguments("括号不匹配",
+                        "{\"endingCTA\":[\"点赞\",\"关注\"}}",
+                        "{\"endingCTA\":[\"点赞\",\"关注\"]}",
+                        Set.of(JsonRepair.FIX_BRACKETS)),
+                arguments("截断在分镜中，保留完整的分镜",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + ",{\"timeRange\":\"3-6s\",\"visualDes",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "]}",
+                        Set.of(JsonRepair.FIX_TRUNCATED)),
+                arguments("截断在分镜内的数组中，整个分镜丢弃",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + ",{\"visualDescription\":\"试用\",\"tags\":[\"a\",\"b",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "]}",
+                        Set.of(JsonRepair.FIX_TRUNCATED)),
+                arguments("截断在其他数组中，回退到根对象的上一个字段",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "],\"endingCTA\":[\"点赞\",\"关",
+                        "{\"title\":\"好物\",\"scenes\":[" + SCENE_1 + "]}",
+                        Set.of(JsonRepair.FIX_TRUNCATED)),
+                arguments("截断在字段值中",
+                        "{\"title\":\"好物\",\"alternativeTitles\":[\"备选",
+                        "{\"title\":\"好物\"}",
+                        Set.of(JsonRepair.FIX_TRUNCATED)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void repairs(String name, String input, String expected, Set<String> fixes) throws Exception {
+        JsonRepair.Result result = JsonRepair.repair(input);
+
+        assertThat(result).isNotNull();
+        assertThat(MAPPER.readTree(result.json())).isEqualTo(MAPPER.readTree(expected));
+        assertThat(result.fixes()).containsExactlyInAnyOrderElementsOf(fixes);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("unrepairable")
+    void returnsNullWithoutCompleteContent(String name, String input) {
+        assertThat(JsonRepair.repair(input)).isNull();
+    }
+
+    static Stream<Arguments> unrepairable() {
+        return Stream.of(
+                arguments("没有JSON对象", "抱歉，我无法生成这个脚本"),
+                arguments("第一个字段就被截断", "{\"title\":\"好"));
+    }
+}
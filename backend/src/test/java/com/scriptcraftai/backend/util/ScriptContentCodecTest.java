@@ -0,0 +1,123 @@
+package com.scriptcraftai.backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scriptcraftai.backend.config.JacksonConfig;
+import com.scriptcraftai.backend.dto.ScriptContentDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 脚本内容编解码器测试
+ *
+ * @description 各写入格式的往返、迁移前JSON文本的读取、格式字节和改写判断
+ * @author ScriptCraft AI Team
+ */
+class ScriptContentCodecTest {
+
+    @ParameterizedTest
+    @EnumSource(ScriptContentCodec.Format.class)
+    void roundTripsShortContent(ScriptContentCodec.Format format) {
+        assertRoundTrip(format, script(1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScriptContentCodec.Format.class)
+    void roundTripsLongContent(ScriptContentCodec.Format format) {
+        assertRoundTrip(format, script(60));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScriptContentCodec.Format.class)
+    void decodesContentStoredBeforeMigration(ScriptContentCodec.Format format) throws Exception {
+        // 迁移前由应用的ObjectMapper写入TEXT列，转换为MEDIUMBLOB后字节不变
+        ObjectMapper legacyMapper = new JacksonConfig().objectMapper();
+        ScriptContentDTO content = script(6);
+        byte[] legacy = legacyMapper.writeValueAsString(content).getBytes(StandardCharsets.UTF_8);
+
+        ScriptContentCodec codec = new ScriptContentCodec(format);
+
+        assertThat(ScriptContentCodec.formatOf(legacy)).isEqualTo(ScriptContentCodec.Format.JSON);
+        assertThat(codec.decode(legacy)).usingRecursiveComparison().isEqualTo(content);
+    }
+
+    @Test
+    void compressesOnlyLargeContent() {
+        ScriptContentCodec codec = new ScriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4);
+
+        ScriptContentDTO tiny = new ScriptContentDTO();
+        tiny.setTitle("三分钟讲清楚");
+
+        assertThat(ScriptContentCodec.formatOf(codec.encode(tiny))).isEqualTo(ScriptContentCodec.Format.SMILE);
+        assertThat(ScriptContentCodec.formatOf(codec.encode(script(60))))
+                .isEqualTo(ScriptContentCodec.Format.SMILE_LZ4);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 6, 60})
+    void binaryFormatsAreSmallerThanJson(int sceneCount) {
+        ScriptContentDTO content = script(sceneCount);
+        int json = new ScriptContentCodec(ScriptContentCodec.Format.JSON).encode(content).length;
+
+        assertThat(new ScriptContentCodec(ScriptContentCodec.Format.SMILE).encode(content).length).isLessThan(json);
+        assertThat(new ScriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4).encode(content).length)
+                .isLessThan(json);
+    }
+
+    @Test
+    void migratesOnlyFromOtherFormats() {
+        ScriptContentCodec lz4 = new ScriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4);
+        assertThat(lz4.needsMigration((int) '{')).isTrue();
+        assertThat(lz4.needsMigration(ScriptContentCodec.Format.SMILE.getCode())).isFalse();
+        assertThat(lz4.needsMigration(ScriptContentCodec.Format.SMILE_LZ4.getCode())).isFalse();
+
+        ScriptContentCodec json = new ScriptContentCodec(ScriptContentCodec.Format.JSON);
+        assertThat(json.needsMigration((int) '{')).isFalse();
+        assertThat(json.needsMigration(ScriptContentCodec.Format.SMILE.getCode())).isTrue();
+    }
+
+    @Test
+    void rendersStoredContentAsJson() throws Exception {
+        ScriptContentDTO content = script(3);
+        ScriptContentCodec codec = new ScriptContentCodec(ScriptContentCodec.Format.SMILE_LZ4);
+
+        String json = codec.toJson(codec.encode(content));
+
+        assertThat(new ObjectMapper().readValue(json, ScriptContentDTO.class))
+                .usingRecursiveComparison().isEqualTo(content);
+    }
+
+    private static void assertRoundTrip(ScriptContentCodec.Format format, ScriptContentDTO content) {
+        ScriptContentCodec codec = new ScriptContentCodec(format);
+
+        byte[] stored = codec.encode(content);
+
+        assertThat(codec.decode(stored)).usingRecursiveComparison().isEqualTo(content);
+        // 其他写入格式的节点也能读取
+        for (ScriptContentCodec.Format other : ScriptContentCodec.Format.values()) {
+            assertThat(new ScriptContentCodec(other).decode(stored)).usingRecursiveComparison().isEqualTo(content);
+        }
+    }
+
+    private static ScriptContentDTO script(int sceneCount) {
+        ScriptContentDTO.SceneDTO[] scenes = new ScriptContentDTO.SceneDTO[sceneCount];
+        for (int i = 0; i < sceneCount; i++) {
+            scenes[i] = new ScriptContentDTO.SceneDTO(
+                    (i * 5) + "-" + ((i + 1) * 5) + "秒",
+                    "主播坐在书桌前，镜头从白板缓慢推到主播面部，第" + (i + 1) + "个要点出现在画面左侧。",
+                    "很多人以为多喝水就能排毒，其实肾脏每天能处理的水量是有上限的。",
+                    "多喝水≠排毒");
+        }
+        return new ScriptContentDTO(
+                "普通人也能听懂：三分钟讲清楚一个常见误区",
+                new String[]{"这个误区，90%的人都中过招"},
+                scenes,
+                new ScriptContentDTO.VideoElementsDTO("轻快的电子乐", "明亮的室内桌面", "快切转场"),
+                new String[]{"关注我，下期继续聊"});
+    }
+}
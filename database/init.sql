@@ -10,7 +10,7 @@ USE scriptcraft_ai;
 
 -- 用户表
 CREATE TABLE IF NOT EXISTS users (
-    id VARCHAR(36) PRIMARY KEY COMMENT 'UUID主键',
+    id BINARY(16) PRIMARY KEY COMMENT 'UUIDv7主键(按时间递增)',
     email VARCHAR(100) NOT NULL UNIQUE COMMENT '邮箱',
     password VARCHAR(255) NOT NULL COMMENT '密码(BCrypt加密)',
     nickname VARCHAR(50) COMMENT '昵称',
@@ -24,42 +24,98 @@ CREATE TABLE IF NOT EXISTS users (
 
 -- 脚本生成会话表
 CREATE TABLE IF NOT EXISTS script_sessions (
-    id VARCHAR(36) PRIMARY KEY COMMENT 'UUID主键',
-    user_id VARCHAR(36) NOT NULL COMMENT '用户ID',
+    id BINARY(16) PRIMARY KEY COMMENT 'UUIDv7主键(按时间递增)',
+    user_id BINARY(16) NOT NULL COMMENT '用户ID',
     video_type VARCHAR(50) NOT NULL COMMENT '视频类型:product_review,knowledge,vlog,comedy,food,makeup,movie,unboxing,skill',
     theme_input TEXT NOT NULL COMMENT '主题描述(最多200字)',
     style_preference VARCHAR(50) COMMENT '风格偏好:humorous,professional,cute,passionate,emotional,suspenseful',
+    status VARCHAR(20) NOT NULL DEFAULT 'completed' COMMENT '生成状态:pending-生成中,completed-已完成,failed-失败',
+    error_message VARCHAR(500) COMMENT '失败原因',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
-    INDEX idx_user_id (user_id),
     INDEX idx_created_at (created_at),
-    INDEX idx_video_type (video_type),
+    INDEX idx_user_created (user_id, created_at),
+    INDEX idx_user_type_created (user_id, video_type, created_at),
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='脚本生成会话表';
 
+-- 会话计数表（历史记录总数，随会话的创建和删除在同一事务中更新）
+CREATE TABLE IF NOT EXISTS script_session_counts (
+    user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    video_type VARCHAR(50) NOT NULL COMMENT '视频类型',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '会话数量',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id, video_type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='会话计数表';
+
 -- 脚本版本表
 CREATE TABLE IF NOT EXISTS script_versions (
-    id VARCHAR(36) PRIMARY KEY COMMENT 'UUID主键',
-    session_id VARCHAR(36) NOT NULL COMMENT '会话ID',
+    id BINARY(16) PRIMARY KEY COMMENT 'UUIDv7主键(按时间递增)',
+    session_id BINARY(16) NOT NULL COMMENT '会话ID',
     version_index INT NOT NULL COMMENT '版本序号:1,2,3',
     title VARCHAR(200) NOT NULL COMMENT '脚本标题',
-    content_json TEXT NOT NULL COMMENT '脚本内容(JSON格式)',
+    content MEDIUMBLOB NOT NULL COMMENT '脚本内容(首字节为格式:1-Smile,2-Smile+LZ4,其他为JSON文本)',
     is_selected TINYINT DEFAULT 0 COMMENT '是否被选中:1-是,0-否',
     word_count INT COMMENT '字数统计',
     scene_count INT COMMENT '分镜数量',
+    first_scene VARCHAR(255) NOT NULL DEFAULT '' COMMENT '第一个分镜的画面描述(列表预览)',
     locked_scenes VARCHAR(500) COMMENT '锁定的分镜索引(JSON数组，如:[0,2,4])',
+    source VARCHAR(20) NOT NULL DEFAULT 'ai' COMMENT '内容来源:ai-AI生成,cache-命中缓存,fallback-模板草稿',
+    prompt_version VARCHAR(20) COMMENT '提示词模板版本,模板草稿为NULL',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
-    INDEX idx_session_id (session_id),
+    INDEX idx_session_brief (session_id, version_index, title, is_selected, word_count, scene_count, source, first_scene),
     INDEX idx_created_at (created_at),
     INDEX idx_is_selected (is_selected),
     FOREIGN KEY (session_id) REFERENCES script_sessions(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='脚本版本表';
 
+-- 异步生成任务表
+CREATE TABLE IF NOT EXISTS generation_jobs (
+    id BINARY(16) PRIMARY KEY COMMENT 'UUIDv7主键(按时间递增)',
+    user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    session_id BINARY(16) NOT NULL COMMENT '会话ID',
+    request_json TEXT NOT NULL COMMENT '生成请求(JSON格式)',
+    status VARCHAR(20) NOT NULL DEFAULT 'queued' COMMENT '任务状态:queued-排队中,running-执行中,succeeded-已完成,failed-失败',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    max_attempts INT NOT NULL DEFAULT 3 COMMENT '最多执行次数',
+    lease_owner VARCHAR(100) COMMENT '持有租约的节点',
+    lease_expires_at DATETIME COMMENT '租约到期时间',
+    available_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '最早可领取时间(重试退避)',
+    deadline_at DATETIME NOT NULL COMMENT '截止时间，超过后不再重试',
+    error_message VARCHAR(500) COMMENT '失败原因',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    finished_at DATETIME COMMENT '结束时间',
+    INDEX idx_status_available (status, available_at),
+    INDEX idx_status_lease (status, lease_expires_at),
+    INDEX idx_user_id (user_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (session_id) REFERENCES script_sessions(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='异步生成任务表';
+
+-- token用量日汇总表
+CREATE TABLE IF NOT EXISTS token_usage_daily (
+    usage_date DATE NOT NULL COMMENT '日期',
+    user_id VARCHAR(36) NOT NULL COMMENT '用户ID,无法归属的调用为unknown',
+    video_type VARCHAR(20) NOT NULL COMMENT '视频类型,重新生成为regeneration',
+    prompt_version VARCHAR(32) NOT NULL COMMENT '提示词模板版本',
+    model VARCHAR(64) NOT NULL COMMENT '模型名称',
+    call_count BIGINT NOT NULL DEFAULT 0 COMMENT '调用次数',
+    input_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输入token数',
+    output_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输出token数',
+    latency_millis BIGINT NOT NULL DEFAULT 0 COMMENT '累计调用耗时(毫秒)',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (usage_date, user_id, video_type, prompt_version, model),
+    INDEX idx_user_date (user_id, usage_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='token用量日汇总表';
+
 -- 脚本收藏表 (V2功能)
 CREATE TABLE IF NOT EXISTS favorite_scripts (
-    id VARCHAR(36) PRIMARY KEY COMMENT 'UUID主键',
-    user_id VARCHAR(36) NOT NULL COMMENT '用户ID',
-    version_id VARCHAR(36) NOT NULL COMMENT '脚本版本ID',
+    id BINARY(16) PRIMARY KEY COMMENT 'UUIDv7主键(按时间递增)',
+    user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    version_id BINARY(16) NOT NULL COMMENT '脚本版本ID',
     tags VARCHAR(500) COMMENT '标签(逗号分隔)',
     notes TEXT COMMENT '备注',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
@@ -72,7 +128,7 @@ CREATE TABLE IF NOT EXISTS favorite_scripts (
 -- 插入初始数据（测试用户）
 -- 密码: test123456 (BCrypt加密后的值，实际使用时会由后端生成)
 INSERT INTO users (id, email, password, nickname, status) VALUES
-('550e8400-e29b-41d4-a716-446655440000', 'test@example.com', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iAt6Z5EH', '测试用户', 1);
+(UNHEX('550e8400e29b41d4a716446655440000'), 'test@example.com', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iAt6Z5EH', '测试用户', 1);
 
 -- 查看表结构
 SHOW TABLES;
@@ -80,7 +136,10 @@ SHOW TABLES;
 -- 查看用户表结构
 DESCRIBE users;
 DESCRIBE script_sessions;
+DESCRIBE script_session_counts;
 DESCRIBE script_versions;
+DESCRIBE generation_jobs;
+DESCRIBE token_usage_daily;
 DESCRIBE favorite_scripts;
 
 -- 显示创建成功信息
@@ -0,0 +1,20 @@
+-- 版本列表的预览字段改为写入时提取
+-- 原列表查询SELECT *读取每个版本完整的content_json，再逐个反序列化只为取第一个分镜的画面描述。
+-- 新增first_scene列，并建立包含列表全部字段的覆盖索引，列表查询只读索引，不回表读取content_json。
+-- 覆盖索引以session_id开头，同时满足外键对索引的要求，原来的idx_session_id不再需要
+
+USE scriptcraft_ai;
+
+-- 1. 预览列
+ALTER TABLE script_versions
+    ADD COLUMN first_scene VARCHAR(255) NOT NULL DEFAULT '' COMMENT '第一个分镜的画面描述(列表预览)' AFTER scene_count;
+
+-- 2. 回填已有版本（与ScriptContents.firstScenePreview一致，超过255个字符截断）
+UPDATE script_versions
+SET first_scene = LEFT(COALESCE(JSON_UNQUOTE(JSON_EXTRACT(content_json, '$.scenes[0].visualDescription')), ''), 255)
+WHERE JSON_VALID(content_json);
+
+-- 3. 列表覆盖索引
+ALTER TABLE script_versions
+    ADD INDEX idx_session_brief (session_id, version_index, title, is_selected, word_count, scene_count, source, first_scene),
+    DROP INDEX idx_session_id;
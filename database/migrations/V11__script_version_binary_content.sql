@@ -0,0 +1,11 @@
+-- 脚本内容改为二进制存储
+-- content_json以TEXT保存JSON文本，每次查看、编辑和重新生成都完整读写。改为MEDIUMBLOB列content，
+-- 由应用以Smile编码，较长的内容再经LZ4压缩，首字节为格式版本（见ScriptContentCodec）。
+-- 列类型转换保留原有字节，已有行仍为JSON文本（首字节为"{"），应用可以直接读取，
+-- 并在首次查看时改写为当前格式；从未读取的行保持JSON文本，不影响使用。
+-- 执行后旧版本应用无法读取新写入的内容，请与新版本一起上线
+
+USE scriptcraft_ai;
+
+ALTER TABLE script_versions
+    CHANGE COLUMN content_json content MEDIUMBLOB NOT NULL COMMENT '脚本内容(首字节为格式:1-Smile,2-Smile+LZ4,其他为JSON文本)';
@@ -0,0 +1,9 @@
+-- 脚本会话增加生成状态
+-- 生成流程拆分为：写入pending会话 -> 调用AI（不占用数据库连接） -> 短事务写入版本并完成会话
+-- 已有会话均为生成成功的记录，默认值为completed
+
+USE scriptcraft_ai;
+
+ALTER TABLE script_sessions
+    ADD COLUMN status VARCHAR(20) NOT NULL DEFAULT 'completed' COMMENT '生成状态:pending-生成中,completed-已完成,failed-失败' AFTER style_preference,
+    ADD COLUMN error_message VARCHAR(500) COMMENT '失败原因' AFTER status;
@@ -0,0 +1,8 @@
+-- 脚本版本增加内容来源
+-- 相同视频类型、主题、风格的生成请求可能直接命中生成结果缓存，此时记录source=cache
+-- 已有版本均由AI生成，默认值为ai
+
+USE scriptcraft_ai;
+
+ALTER TABLE script_versions
+    ADD COLUMN source VARCHAR(20) NOT NULL DEFAULT 'ai' COMMENT '内容来源:ai-AI生成,cache-命中缓存' AFTER locked_scenes;
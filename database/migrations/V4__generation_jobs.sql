@@ -0,0 +1,29 @@
+-- 新增异步生成任务表
+-- POST /scripts/generate 只写入会话和任务后返回202，由各节点的任务执行器按租约领取执行，
+-- 节点崩溃或重启后租约过期，任务由其他节点继续执行
+
+USE scriptcraft_ai;
+
+-- 异步生成任务表
+CREATE TABLE IF NOT EXISTS generation_jobs (
+    id VARCHAR(36) PRIMARY KEY COMMENT 'UUID主键',
+    user_id VARCHAR(36) NOT NULL COMMENT '用户ID',
+    session_id VARCHAR(36) NOT NULL COMMENT '会话ID',
+    request_json TEXT NOT NULL COMMENT '生成请求(JSON格式)',
+    status VARCHAR(20) NOT NULL DEFAULT 'queued' COMMENT '任务状态:queued-排队中,running-执行中,succeeded-已完成,failed-失败',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    max_attempts INT NOT NULL DEFAULT 3 COMMENT '最多执行次数',
+    lease_owner VARCHAR(100) COMMENT '持有租约的节点',
+    lease_expires_at DATETIME COMMENT '租约到期时间',
+    available_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '最早可领取时间(重试退避)',
+    deadline_at DATETIME NOT NULL COMMENT '截止时间，超过后不再重试',
+    error_message VARCHAR(500) COMMENT '失败原因',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    finished_at DATETIME COMMENT '结束时间',
+    INDEX idx_status_available (status, available_at),
+    INDEX idx_status_lease (status, lease_expires_at),
+    INDEX idx_user_id (user_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (session_id) REFERENCES script_sessions(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='异步生成任务表';
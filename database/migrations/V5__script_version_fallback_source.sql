@@ -0,0 +1,8 @@
+-- 脚本版本的内容来源增加fallback
+-- AI服务熔断或请求剩余时间不足时，生成请求返回本地分镜模板组装的草稿，此时记录source=fallback，
+-- 用户重新生成后改为ai。source为VARCHAR，只需更新字段注释
+
+USE scriptcraft_ai;
+
+ALTER TABLE script_versions
+    MODIFY COLUMN source VARCHAR(20) NOT NULL DEFAULT 'ai' COMMENT '内容来源:ai-AI生成,cache-命中缓存,fallback-模板草稿';
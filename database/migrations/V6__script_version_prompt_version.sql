@@ -0,0 +1,8 @@
+-- 脚本版本记录提示词模板版本
+-- 提示词改为按版本存放的模板文件（resources/prompts/{version}），生成时记录所用版本，便于对比不同版本的效果
+-- 已有版本由内置提示词生成，保持NULL；模板草稿不经过提示词，同样为NULL
+
+USE scriptcraft_ai;
+
+ALTER TABLE script_versions
+    ADD COLUMN prompt_version VARCHAR(20) NULL COMMENT '提示词模板版本,模板草稿为NULL' AFTER source;
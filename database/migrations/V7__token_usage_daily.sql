@@ -0,0 +1,22 @@
+-- 新增token用量日汇总表
+-- 每次AI调用的token用量按(日期, 用户, 视频类型, 提示词版本, 模型)在各节点内存中汇总，定期累加写入，
+-- 用于按用户、视频类型和提示词版本分析用量和成本；配额检查使用Redis中的实时计数，不读取此表
+
+USE scriptcraft_ai;
+
+-- token用量日汇总表
+CREATE TABLE IF NOT EXISTS token_usage_daily (
+    usage_date DATE NOT NULL COMMENT '日期',
+    user_id VARCHAR(36) NOT NULL COMMENT '用户ID,无法归属的调用为unknown',
+    video_type VARCHAR(20) NOT NULL COMMENT '视频类型,重新生成为regeneration',
+    prompt_version VARCHAR(32) NOT NULL COMMENT '提示词模板版本',
+    model VARCHAR(64) NOT NULL COMMENT '模型名称',
+    call_count BIGINT NOT NULL DEFAULT 0 COMMENT '调用次数',
+    input_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输入token数',
+    output_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输出token数',
+    latency_millis BIGINT NOT NULL DEFAULT 0 COMMENT '累计调用耗时(毫秒)',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (usage_date, user_id, video_type, prompt_version, model),
+    INDEX idx_user_date (user_id, usage_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='token用量日汇总表';
@@ -0,0 +1,60 @@
+-- 主键和外键改为BINARY(16)
+-- 随机UUID以VARCHAR(36)存储时，新行分散插入聚簇索引的各个页，二级索引中的主键副本也占36字节；
+-- 新数据改用按时间递增的UUIDv7，以16字节存储，插入追加在索引末尾。接口中的ID仍为32位十六进制字符串，
+-- 由MyBatis的BinaryIdTypeHandler转换；已有的随机ID按原值转换（UNHEX），保持不变。
+-- 执行期间各表会重建两次，请在停机窗口执行；外键名为建表时自动生成的默认名称（{表名}_ibfk_{n}）
+
+USE scriptcraft_ai;
+
+-- 1. 删除外键，父子表的ID按同样的规则转换，完成后重新建立
+ALTER TABLE script_sessions DROP FOREIGN KEY script_sessions_ibfk_1;
+ALTER TABLE script_versions DROP FOREIGN KEY script_versions_ibfk_1;
+ALTER TABLE generation_jobs DROP FOREIGN KEY generation_jobs_ibfk_1, DROP FOREIGN KEY generation_jobs_ibfk_2;
+ALTER TABLE favorite_scripts DROP FOREIGN KEY favorite_scripts_ibfk_1, DROP FOREIGN KEY favorite_scripts_ibfk_2;
+
+-- 2. 先改为VARBINARY，保留原字符串的字节
+ALTER TABLE users MODIFY id VARBINARY(36) NOT NULL;
+ALTER TABLE script_sessions MODIFY id VARBINARY(36) NOT NULL, MODIFY user_id VARBINARY(36) NOT NULL;
+ALTER TABLE script_versions MODIFY id VARBINARY(36) NOT NULL, MODIFY session_id VARBINARY(36) NOT NULL;
+ALTER TABLE generation_jobs MODIFY id VARBINARY(36) NOT NULL, MODIFY user_id VARBINARY(36) NOT NULL,
+    MODIFY session_id VARBINARY(36) NOT NULL;
+ALTER TABLE favorite_scripts MODIFY id VARBINARY(36) NOT NULL, MODIFY user_id VARBINARY(36) NOT NULL,
+    MODIFY version_id VARBINARY(36) NOT NULL;
+
+-- 3. 十六进制字符串转换为16字节（兼容带横线的36位格式）
+UPDATE users SET id = UNHEX(REPLACE(id, '-', ''));
+UPDATE script_sessions SET id = UNHEX(REPLACE(id, '-', '')), user_id = UNHEX(REPLACE(user_id, '-', ''));
+UPDATE script_versions SET id = UNHEX(REPLACE(id, '-', '')), session_id = UNHEX(REPLACE(session_id, '-', ''));
+UPDATE generation_jobs SET id = UNHEX(REPLACE(id, '-', '')), user_id = UNHEX(REPLACE(user_id, '-', '')),
+    session_id = UNHEX(REPLACE(session_id, '-', ''));
+UPDATE favorite_scripts SET id = UNHEX(REPLACE(id, '-', '')), user_id = UNHEX(REPLACE(user_id, '-', '')),
+    version_id = UNHEX(REPLACE(version_id, '-', ''));
+
+-- 4. 改为定长BINARY(16)
+ALTER TABLE users MODIFY id BINARY(16) NOT NULL COMMENT 'UUIDv7主键(按时间递增)';
+ALTER TABLE script_sessions
+    MODIFY id BINARY(16) NOT NULL COMMENT 'UUIDv7主键(按时间递增)',
+    MODIFY user_id BINARY(16) NOT NULL COMMENT '用户ID';
+ALTER TABLE script_versions
+    MODIFY id BINARY(16) NOT NULL COMMENT 'UUIDv7主键(按时间递增)',
+    MODIFY session_id BINARY(16) NOT NULL COMMENT '会话ID';
+ALTER TABLE generation_jobs
+    MODIFY id BINARY(16) NOT NULL COMMENT 'UUIDv7主键(按时间递增)',
+    MODIFY user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    MODIFY session_id BINARY(16) NOT NULL COMMENT '会话ID';
+ALTER TABLE favorite_scripts
+    MODIFY id BINARY(16) NOT NULL COMMENT 'UUIDv7主键(按时间递增)',
+    MODIFY user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    MODIFY version_id BINARY(16) NOT NULL COMMENT '脚本版本ID';
+
+-- 5. 重新建立外键
+ALTER TABLE script_sessions
+    ADD CONSTRAINT script_sessions_ibfk_1 FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE script_versions
+    ADD CONSTRAINT script_versions_ibfk_1 FOREIGN KEY (session_id) REFERENCES script_sessions(id) ON DELETE CASCADE;
+ALTER TABLE generation_jobs
+    ADD CONSTRAINT generation_jobs_ibfk_1 FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    ADD CONSTRAINT generation_jobs_ibfk_2 FOREIGN KEY (session_id) REFERENCES script_sessions(id) ON DELETE CASCADE;
+ALTER TABLE favorite_scripts
+    ADD CONSTRAINT favorite_scripts_ibfk_1 FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    ADD CONSTRAINT favorite_scripts_ibfk_2 FOREIGN KEY (version_id) REFERENCES script_versions(id) ON DELETE CASCADE;
@@ -0,0 +1,28 @@
+-- 历史记录改为按(created_at, id)游标分页，总数改为读取按用户和视频类型维护的计数表
+-- 原查询按OFFSET分页并对用户的全部会话COUNT(*)，翻页越深扫描越多；视频类型使用LIKE过滤，无法使用索引。
+-- 新索引以user_id开头，同时满足外键对索引的要求，原来的单列索引不再需要。
+-- 请在新版本上线前执行：计数表由应用在创建和删除会话时维护，回填之后创建的会话才会被正确计数
+
+USE scriptcraft_ai;
+
+-- 1. 历史查询索引
+ALTER TABLE script_sessions
+    ADD INDEX idx_user_created (user_id, created_at),
+    ADD INDEX idx_user_type_created (user_id, video_type, created_at),
+    DROP INDEX idx_user_id,
+    DROP INDEX idx_video_type;
+
+-- 2. 会话计数表
+CREATE TABLE IF NOT EXISTS script_session_counts (
+    user_id BINARY(16) NOT NULL COMMENT '用户ID',
+    video_type VARCHAR(50) NOT NULL COMMENT '视频类型',
+    session_count INT NOT NULL DEFAULT 0 COMMENT '会话数量',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id, video_type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='会话计数表';
+
+-- 3. 回填已有会话的数量
+INSERT INTO script_session_counts (user_id, video_type, session_count)
+SELECT user_id, video_type, COUNT(*) FROM script_sessions GROUP BY user_id, video_type
+ON DUPLICATE KEY UPDATE session_count = VALUES(session_count);
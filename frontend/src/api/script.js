@@ -1,19 +1,54 @@
-import request from '@/utils/request'
+import request, { postEventStream } from '@/utils/request'
 
 /**
- * 生成脚本
+ * 提交生成任务
+ *
+ * 返回排队中的任务，通过 getGenerationJob 查询进度和结果。
+ * 重试时传入相同的 idempotencyKey 会返回第一次提交的任务
  * 
  * @param {object} data 生成参数
+ * @param {string} [idempotencyKey] 幂等键
  * @returns {Promise}
  */
-export function generateScript(data) {
+export function generateScript(data, idempotencyKey) {
   return request({
     url: '/scripts/generate',
     method: 'post',
-    data
+    data,
+    headers: idempotencyHeaders(idempotencyKey)
+  })
+}
+
+/**
+ * 查询生成任务
+ *
+ * status 为 succeeded 时 result 包含 sessionId 和 versions
+ *
+ * @param {string} jobId 任务ID
+ * @returns {Promise}
+ */
+export function getGenerationJob(jobId) {
+  return request({
+    url: `/scripts/jobs/${jobId}`,
+    method: 'get'
   })
 }
 
+/**
+ * 流式生成脚本（SSE）
+ *
+ * 依次收到 title、scene、videoElements、endingCTA 事件，保存成功后收到 done 事件，
+ * 失败时收到 error 事件
+ *
+ * @param {object} data 生成参数
+ * @param {function} onEvent 事件回调 (eventName, event) => void
+ * @param {AbortSignal} [signal] 用于取消生成
+ * @returns {Promise<void>}
+ */
+export function generateScriptStream(data, onEvent, signal) {
+  return postEventStream('/scripts/generate/stream', data, onEvent, signal)
+}
+
 /**
  * 获取脚本版本详情
  * 
@@ -113,13 +148,27 @@ export function updateSceneLock(versionId, sceneIndex, locked) {
 /**
  * 重新生成脚本（保持锁定分镜不变）
  *
+ * 重试时传入相同的 idempotencyKey 会返回第一次的结果，不会再次生成
+ *
  * @param {string} versionId 版本ID
+ * @param {string} [idempotencyKey] 幂等键
  * @returns {Promise}
  */
-export function regenerateScript(versionId) {
+export function regenerateScript(versionId, idempotencyKey) {
   return request({
     url: `/scripts/versions/${versionId}/regenerate`,
-    method: 'post'
+    method: 'post',
+    headers: idempotencyHeaders(idempotencyKey)
   })
 }
 
+/**
+ * 构造幂等键请求头
+ *
+ * @param {string} [idempotencyKey] 幂等键
+ * @returns {object}
+ */
+function idempotencyHeaders(idempotencyKey) {
+  return idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {}
+}
+
@@ -85,5 +85,78 @@ request.interceptors.response.use(
   }
 )
 
+/**
+ * 以POST方式请求SSE事件流（EventSource不支持POST和自定义请求头）
+ *
+ * @param {string} url 接口地址（相对baseURL）
+ * @param {object} data 请求体
+ * @param {function} onEvent 事件回调 (eventName, payload) => void
+ * @param {AbortSignal} [signal] 用于取消请求
+ * @returns {Promise<void>} 事件流结束时resolve
+ */
+export async function postEventStream(url, data, onEvent, signal) {
+  const userStore = useUserStore()
+  const headers = {
+    'Content-Type': 'application/json',
+    Accept: 'text/event-stream'
+  }
+  if (userStore.token) {
+    headers.Authorization = `Bearer ${userStore.token}`
+  }
+
+  const response = await fetch(`${request.defaults.baseURL}${url}`, {
+    method: 'POST',
+    headers,
+    body: JSON.stringify(data),
+    signal
+  })
+
+  if (!response.ok) {
+    if (response.status === 401) {
+      ElMessage.error('登录已过期，请重新登录')
+      userStore.logout()
+      router.push('/login')
+    } else {
+      ElMessage.error('网络请求失败')
+    }
+    throw new Error(`HTTP ${response.status}`)
+  }
+
+  const reader = response.body.getReader()
+  const decoder = new TextDecoder('utf-8')
+  let buffer = ''
+
+  // 解析一个完整的SSE事件块
+  const dispatch = (block) => {
+    let eventName = 'message'
+    const dataLines = []
+    block.split('\n').forEach((line) => {
+      if (line.startsWith('event:')) {
+        eventName = line.slice(6).trim()
+      } else if (line.startsWith('data:')) {
+        dataLines.push(line.slice(5).replace(/^ /, ''))
+      }
+    })
+    if (dataLines.length > 0) {
+      onEvent(eventName, JSON.parse(dataLines.join('\n')))
+    }
+  }
+
+  while (true) {
+    const { done, value } = await reader.read()
+    if (done) break
+    buffer += decoder.decode(value, { stream: true }).replace(/\r\n/g, '\n')
+
+    let boundary
+    while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+      dispatch(buffer.slice(0, boundary))
+      buffer = buffer.slice(boundary + 2)
+    }
+  }
+  if (buffer.trim()) {
+    dispatch(buffer)
+  }
+}
+
 export default request
 